@@ -30,6 +30,15 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
+    sourceSets {
+        // Benchmarks (println e milhares de fsync) só entram com -Pbenchmarks
+        if (project.hasProperty("benchmarks")) {
+            getByName("test").java.srcDir("src/benchmark/java")
+        }
+    }
 }
 
 dependencies {
@@ -46,6 +55,7 @@ dependencies {
     implementation(libs.room.common)
     implementation(libs.room.runtime)
     testImplementation(libs.junit)
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     annotationProcessor(libs.room.compiler)
@@ -0,0 +1,188 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Migrações do outbox (esquema v1 criado à mão) e leitura por segmento no banco atual
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxDatabaseTest {
+    private static final long DAY = OutboxDatabase.SEGMENT_MS;
+
+    // === ESQUEMA V1 ===
+    private static final String CREATE_GEOFENCE_V1 = "CREATE TABLE geofence_events ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, local_id TEXT, dedup_key TEXT NOT NULL, "
+            + "status INTEGER NOT NULL, timestamp INTEGER NOT NULL, event_type TEXT, geofence_name TEXT, "
+            + "geofence_code TEXT, geofence_id TEXT, user_name TEXT, employee_id TEXT, company_id TEXT, "
+            + "latitude REAL NOT NULL, longitude REAL NOT NULL, accuracy REAL NOT NULL, "
+            + "device_info TEXT, extras TEXT)";
+    private static final String CREATE_SYSTEM_V1 = "CREATE TABLE system_events ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, local_id TEXT, dedup_key TEXT NOT NULL, "
+            + "status INTEGER NOT NULL, timestamp INTEGER NOT NULL, event_type TEXT, message TEXT, "
+            + "user_name TEXT, employee_id TEXT, company_id TEXT, gps_enabled INTEGER NOT NULL, "
+            + "device_info TEXT, extras TEXT)";
+
+    private Context context;
+    private SupportSQLiteDatabase legacyDb;
+    private OutboxDatabase roomDb;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @After
+    public void tearDown() {
+        if (legacyDb != null) legacyDb.close();
+        if (roomDb != null) roomDb.close();
+    }
+
+    private SupportSQLiteDatabase openV1() {
+        SupportSQLiteOpenHelper.Configuration config = SupportSQLiteOpenHelper.Configuration.builder(context)
+                .name(null)
+                .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                    @Override
+                    public void onCreate(SupportSQLiteDatabase db) {
+                        db.execSQL(CREATE_GEOFENCE_V1);
+                        db.execSQL(CREATE_SYSTEM_V1);
+                    }
+
+                    @Override
+                    public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(config).getWritableDatabase();
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static GeofenceEventEntity geofenceEvent(String dedupKey, long timestamp, int status) {
+        GeofenceEventEntity event = new GeofenceEventEntity();
+        event.localId = dedupKey;
+        event.dedupKey = dedupKey;
+        event.timestamp = timestamp;
+        event.segment = OutboxDatabase.segmentOf(timestamp);
+        event.status = status;
+        event.eventType = "Entrada Confirmada";
+        return event;
+    }
+
+    // === MIGRAÇÃO 1 -> 2 ===
+    @Test
+    public void migration1To2_backfillsSegmentAndIndex() {
+        legacyDb = openV1();
+        legacyDb.execSQL("INSERT INTO geofence_events (dedup_key, status, timestamp, latitude, longitude, accuracy) "
+                + "VALUES ('a', 0, " + (DAY - 1) + ", 0, 0, 0), ('b', 0, " + (3 * DAY + 5) + ", 0, 0, 0)");
+        legacyDb.execSQL("INSERT INTO system_events (dedup_key, status, timestamp, gps_enabled) "
+                + "VALUES ('c', 0, " + (2 * DAY) + ", 1)");
+
+        OutboxDatabase.MIGRATION_1_2.migrate(legacyDb);
+
+        assertEquals(0, queryLong(legacyDb, "SELECT segment FROM geofence_events WHERE dedup_key = 'a'"));
+        assertEquals(3, queryLong(legacyDb, "SELECT segment FROM geofence_events WHERE dedup_key = 'b'"));
+        assertEquals(2, queryLong(legacyDb, "SELECT segment FROM system_events WHERE dedup_key = 'c'"));
+        assertEquals(2, queryLong(legacyDb, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' "
+                + "AND name IN ('index_geofence_events_segment_status', 'index_system_events_segment_status')"));
+    }
+
+    // === MIGRAÇÃO 2 -> 3 ===
+    @Test
+    public void migration2To3_backfillsSameSizeAsEstimate() {
+        legacyDb = openV1();
+        legacyDb.execSQL("INSERT INTO geofence_events (local_id, dedup_key, status, timestamp, event_type, "
+                + "geofence_name, geofence_code, geofence_id, user_name, employee_id, company_id, "
+                + "latitude, longitude, accuracy, device_info, extras) VALUES ('l1', 'k1', 0, 1000, "
+                + "'Entrada Confirmada', 'Obra Centro', 'OBRA-1', 'g-1', 'Ana', 'func-7', 'empresa-1', "
+                + "0, 0, 0, 'Pixel 7', NULL)");
+        legacyDb.execSQL("INSERT INTO system_events (local_id, dedup_key, status, timestamp, event_type, "
+                + "message, user_name, employee_id, company_id, gps_enabled, device_info, extras) VALUES "
+                + "('l2', 'k2', 0, 1000, 'gps_disabled', 'GPS desligado', 'Ana', 'func-7', 'empresa-1', 0, "
+                + "'Pixel 7', '{}')");
+
+        OutboxDatabase.MIGRATION_1_2.migrate(legacyDb);
+        OutboxDatabase.MIGRATION_2_3.migrate(legacyDb);
+
+        GeofenceEventEntity geofence = new GeofenceEventEntity();
+        geofence.localId = "l1";
+        geofence.dedupKey = "k1";
+        geofence.eventType = "Entrada Confirmada";
+        geofence.geofenceName = "Obra Centro";
+        geofence.geofenceCode = "OBRA-1";
+        geofence.geofenceId = "g-1";
+        geofence.userName = "Ana";
+        geofence.employeeId = "func-7";
+        geofence.companyId = "empresa-1";
+        geofence.deviceInfo = "Pixel 7";
+        assertEquals(geofence.estimateSizeBytes(),
+                queryLong(legacyDb, "SELECT size_bytes FROM geofence_events WHERE dedup_key = 'k1'"));
+
+        SystemEventEntity system = new SystemEventEntity();
+        system.localId = "l2";
+        system.dedupKey = "k2";
+        system.eventType = "gps_disabled";
+        system.message = "GPS desligado";
+        system.userName = "Ana";
+        system.employeeId = "func-7";
+        system.companyId = "empresa-1";
+        system.deviceInfo = "Pixel 7";
+        system.extras = "{}";
+        assertEquals(system.estimateSizeBytes(),
+                queryLong(legacyDb, "SELECT size_bytes FROM system_events WHERE dedup_key = 'k2'"));
+        assertEquals(OutboxBudget.PRIORITY_GPS_STATUS,
+                queryLong(legacyDb, "SELECT priority FROM system_events WHERE dedup_key = 'k2'"));
+    }
+
+    // === SINCRONIZAÇÃO POR SEGMENTO ===
+    @Test
+    public void segmentPages_followSegmentThenTimestampOrder() {
+        roomDb = Room.inMemoryDatabaseBuilder(context, OutboxDatabase.class).build();
+        OutboxDao dao = roomDb.outboxDao();
+        dao.insertGeofenceEvents(Arrays.asList(
+                geofenceEvent("d2-a", 2 * DAY + 10, GeofenceEventEntity.STATUS_PENDING),
+                geofenceEvent("d0-a", 100, GeofenceEventEntity.STATUS_PENDING),
+                geofenceEvent("d0-b", 200, GeofenceEventEntity.STATUS_PENDING),
+                geofenceEvent("d0-c", 200, GeofenceEventEntity.STATUS_PENDING),
+                geofenceEvent("d1-synced", DAY + 1, GeofenceEventEntity.STATUS_SYNCED)));
+
+        assertEquals(Arrays.asList(0L, 2L), dao.getGeofenceSegments(GeofenceEventEntity.STATUS_PENDING));
+
+        List<GeofenceEventEntity> first = dao.getGeofenceSegmentPage(0, GeofenceEventEntity.STATUS_PENDING, -1, 0, 2);
+        assertEquals(2, first.size());
+        assertEquals("d0-a", first.get(0).dedupKey);
+        assertEquals("d0-b", first.get(1).dedupKey);
+
+        GeofenceEventEntity last = first.get(1);
+        List<GeofenceEventEntity> second = dao.getGeofenceSegmentPage(0, GeofenceEventEntity.STATUS_PENDING,
+                last.timestamp, last.id, 2);
+        assertEquals(1, second.size());
+        assertEquals("d0-c", second.get(0).dedupKey);
+
+        // Retenção apaga o segmento inteiro, pendente ou não
+        assertEquals(4, dao.dropGeofenceSegmentsBefore(2));
+        assertEquals(Arrays.asList(2L), dao.getGeofenceSegments(GeofenceEventEntity.STATUS_PENDING));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.granith;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara o EventCodec com o caminho JSON atual (toJson().toString() e
+ * fromJson(new JSONObject(...))) em bytes por evento e eventos por segundo.
+ *
+ * Fora da suíte unitária: ./gradlew testDebugUnitTest -Pbenchmarks
+ */
+public class EventCodecBenchmarkTest {
+    private static final int EVENTS = 1000;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void encodeDecode_codecVsJson() throws Exception {
+        List<GeofenceEventEntity> events = sampleEvents();
+
+        // Aquecimento
+        for (int i = 0; i < 3; i++) {
+            runCodec(events);
+            runJson(events);
+        }
+
+        long codecBytes = 0;
+        long codecStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            codecBytes = runCodec(events);
+        }
+        long codecNanos = System.nanoTime() - codecStart;
+
+        long jsonBytes = 0;
+        long jsonStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            jsonBytes = runJson(events);
+        }
+        long jsonNanos = System.nanoTime() - jsonStart;
+
+        System.out.println("formato | bytes/evento | eventos/s (codificar + decodificar)");
+        System.out.println(String.format(Locale.US, "codec   | %12.1f | %10.0f",
+                codecBytes / (double) EVENTS, EVENTS * ROUNDS / (codecNanos / 1e9)));
+        System.out.println(String.format(Locale.US, "json    | %12.1f | %10.0f",
+                jsonBytes / (double) EVENTS, EVENTS * ROUNDS / (jsonNanos / 1e9)));
+
+        assertTrue(codecBytes < jsonBytes);
+    }
+
+    private static long runCodec(List<GeofenceEventEntity> events) throws Exception {
+        byte[] data = EventCodec.encode(events);
+        List<GeofenceEventEntity> decoded = EventCodec.decode(data);
+        assertEquals(events.size(), decoded.size());
+        return data.length;
+    }
+
+    private static long runJson(List<GeofenceEventEntity> events) throws Exception {
+        long bytes = 0;
+        List<GeofenceEventEntity> decoded = new ArrayList<>(events.size());
+        for (GeofenceEventEntity event : events) {
+            String json = event.toJson().toString();
+            bytes += json.getBytes(StandardCharsets.UTF_8).length;
+            decoded.add(GeofenceEventEntity.fromJson(new JSONObject(json)));
+        }
+        assertEquals(events.size(), decoded.size());
+        return bytes;
+    }
+
+    private static List<GeofenceEventEntity> sampleEvents() {
+        String[] types = {"Entrada Confirmada", "Saída Confirmada", "Saída Automática"};
+        List<GeofenceEventEntity> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            GeofenceEventEntity event = EventCodecTest.event("Obra " + (i % 12), types[i % 3],
+                    1_700_000_000_000L + i * 45_000L);
+            event.latitude += (i % 100) * 1e-5;
+            event.longitude -= (i % 100) * 1e-5;
+            event.companyId = "empresa-1";
+            event.deviceInfo = "Samsung SM-A515F (Android 13)";
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.granith;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara o custo de adicionar um evento no EventJournal com o formato antigo,
+ * em que a fila inteira ficava em uma string JSON no XML do SharedPreferences:
+ * cada evento lia o arquivo, acrescentava o item e regravava tudo com fsync.
+ * O formato antigo aqui não inclui o parse do JSON, então é um limite inferior.
+ *
+ * Fora da suíte unitária: ./gradlew testDebugUnitTest -Pbenchmarks
+ */
+public class EventJournalBenchmarkTest {
+    private static final int[] QUEUE_SIZES = {10, 100, 1000, 10000};
+    private static final int MEASURED_APPENDS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendLatency_journalVsPrefsJson() throws Exception {
+        System.out.println("eventos na fila | journal (us/evento) | prefs JSON (us/evento)");
+        for (int queued : QUEUE_SIZES) {
+            long journalNanos = measureJournal(queued);
+            long prefsNanos = measurePrefsJson(queued);
+            System.out.println(String.format(Locale.US, "%15d | %19.1f | %22.1f",
+                    queued, journalNanos / 1000.0 / MEASURED_APPENDS, prefsNanos / 1000.0 / MEASURED_APPENDS));
+        }
+    }
+
+    private long measureJournal(int queued) throws Exception {
+        EventJournal journal = new EventJournal(folder.newFolder("journal-" + queued));
+        for (int i = 0; i < queued; i++) {
+            journal.append(eventJson(i).getBytes(StandardCharsets.UTF_8), false);
+        }
+        journal.sync();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_APPENDS; i++) {
+            journal.append(eventJson(queued + i).getBytes(StandardCharsets.UTF_8), true);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(queued + MEASURED_APPENDS, journal.readAll().size());
+        journal.close();
+        return elapsed;
+    }
+
+    private long measurePrefsJson(int queued) throws Exception {
+        File prefs = folder.newFile("MyAppPrefs-" + queued + ".xml");
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < queued; i++) {
+            if (i > 0) array.append(',');
+            array.append(eventJson(i));
+        }
+        array.append(']');
+        writePrefs(prefs, array.toString());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_APPENDS; i++) {
+            String xml = new String(Files.readAllBytes(prefs.toPath()), StandardCharsets.UTF_8);
+            String current = unescape(xml.substring(xml.indexOf('>', xml.indexOf("<string")) + 1,
+                    xml.lastIndexOf("</string>")));
+            String updated = current.substring(0, current.length() - 1)
+                    + (current.length() > 2 ? "," : "") + eventJson(queued + i) + "]";
+            writePrefs(prefs, updated);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void writePrefs(File file, String value) throws Exception {
+        String xml = "<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n"
+                + "    <string name=\"offline_events\">" + escape(value) + "</string>\n</map>\n";
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(xml.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&quot;", "\"").replace("&amp;", "&");
+    }
+
+    private static String eventJson(int i) {
+        long timestamp = 1700000000000L + i * 1000L;
+        return "{\"local_id\":\"" + timestamp + "_" + i + "\",\"event_type\":\"Entrada Confirmada\","
+                + "\"geofence_name\":\"Obra Centro\",\"geofence_code\":\"OB-" + (i % 50) + "\","
+                + "\"user_name\":\"Funcionario\",\"employeeId\":\"emp-1\",\"companyId\":\"empresa-1\","
+                + "\"latitude\":-23.5505" + (i % 10) + ",\"longitude\":-46.6333" + (i % 10) + ","
+                + "\"accuracy\":12.0,\"timestamp\":" + timestamp + "}";
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.granith;
+
+import org.json.JSONArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tempo até a primeira consulta na inicialização: snapshot mapeado (abrir +
+ * geofence mais próxima) contra o caminho antigo (JSONArray + GeofenceData.fromJson).
+ * Fora da suíte unitária: ./gradlew testDebugUnitTest -Pbenchmarks
+ */
+public class GeofenceSnapshotBenchmarkTest {
+    private static final int[] SITE_COUNTS = {10, 100, 1000, 10000};
+    private static final int ROUNDS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void startup_snapshotVsJson() throws Exception {
+        System.out.println("obras | snapshot (us) | JSON (us)");
+        for (int sites : SITE_COUNTS) {
+            List<GeofenceData> geofences = sampleGeofences(sites);
+            File file = new File(folder.getRoot(), "geofences-" + sites + ".snap");
+            GeofenceSnapshot.write(file, geofences);
+            JSONArray array = new JSONArray();
+            for (GeofenceData geofence : geofences) {
+                array.put(geofence.toJson());
+            }
+            String json = array.toString();
+
+            // Aquecimento
+            for (int i = 0; i < 3; i++) {
+                startWithSnapshot(file);
+                startWithJson(json);
+            }
+
+            long snapshotStart = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertTrue(startWithSnapshot(file) >= 0);
+            }
+            long snapshotNanos = (System.nanoTime() - snapshotStart) / ROUNDS;
+
+            long jsonStart = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertEquals(sites, startWithJson(json));
+            }
+            long jsonNanos = (System.nanoTime() - jsonStart) / ROUNDS;
+
+            System.out.println(String.format(Locale.US, "%5d | %13.1f | %9.1f",
+                    sites, snapshotNanos / 1e3, jsonNanos / 1e3));
+        }
+    }
+
+    private static int startWithSnapshot(File file) {
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+        return snapshot.findNearestEdge(-23.55, -46.63);
+    }
+
+    private static int startWithJson(String json) throws Exception {
+        JSONArray array = new JSONArray(json);
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            geofences.add(GeofenceData.fromJson(array.getJSONObject(i)));
+        }
+        return geofences.size();
+    }
+
+    private static List<GeofenceData> sampleGeofences(int count) {
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double lat = -23.9 + (i % 100) * 0.008;
+            double lng = -46.9 + (i / 100) * 0.008;
+            geofences.add(new GeofenceData(lat, lng, 100f + i % 50, "Obra " + i, "OB-" + i));
+        }
+        return geofences;
+    }
+}
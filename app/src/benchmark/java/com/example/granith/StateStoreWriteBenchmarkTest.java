@@ -0,0 +1,209 @@
+package com.example.granith;
+
+import android.content.SharedPreferences;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gravações em disco por hora: StateStore contra o SharedPreferences que ele substituiu,
+ * com as mesmas edições.
+ *
+ * A hora simulada reproduz as escritas do serviço em execução: marcos de inicialização
+ * e estado do GPS na subida, nível de bateria a cada variação (descarga de 1% a cada
+ * 4 min, pelo DeviceStateReceiver registrado pelo serviço), transições de geofence e
+ * intervalos de oscilação do GPS. A linha de base grava um arquivo XML do namespace a
+ * cada apply() que muda algum valor, como o SharedPreferences.
+ * Fora da suíte unitária: ./gradlew testDebugUnitTest -Pbenchmarks
+ */
+public class StateStoreWriteBenchmarkTest {
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now;
+    private final PriorityQueue<Task> pending = new PriorityQueue<>();
+    private long sequence;
+
+    private static final class Task implements Comparable<Task> {
+        final long due;
+        final long order;
+        final Runnable runnable;
+
+        Task(long due, long order, Runnable runnable) {
+            this.due = due;
+            this.order = order;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (due != other.due) return Long.compare(due, other.due);
+            return Long.compare(order, other.order);
+        }
+    }
+
+    @Test
+    public void oneHourOfTracking_writesLessThanSharedPreferences() {
+        File file = new File(folder.getRoot(), "state.bin");
+        long[] storeBytes = {0};
+        StateStore store = new StateStore(file, StateStore.DEFAULT_FLUSH_DELAY_MS,
+                (task, delayMs) -> pending.add(new Task(now + delayMs, sequence++, task)),
+                Runnable::run);
+        SharedPreferencesBaseline baseline = new SharedPreferencesBaseline();
+        List<Edit> edits = hourOfTracking();
+
+        for (Edit edit : edits) {
+            advanceTo(edit.at, store, file, storeBytes);
+            baseline.apply(edit);
+            SharedPreferences prefs = store.getPreferences(edit.namespace);
+            SharedPreferences.Editor editor = prefs.edit();
+            for (int i = 0; i < edit.keys.length; i++) {
+                String key = edit.keys[i];
+                Object value = edit.values[i];
+                if (value instanceof Integer) {
+                    editor.putInt(key, (Integer) value);
+                } else if (value instanceof Boolean) {
+                    editor.putBoolean(key, (Boolean) value);
+                } else if (value instanceof Long) {
+                    editor.putLong(key, (Long) value);
+                } else {
+                    editor.putString(key, String.valueOf(value));
+                }
+            }
+            editor.apply();
+        }
+        advanceTo(HOUR_MS + StateStore.DEFAULT_FLUSH_DELAY_MS, store, file, storeBytes);
+
+        long storeWrites = store.getDiskWriteCount();
+        System.out.println("gravador          | apply() | gravações/h | bytes/h");
+        System.out.println(String.format(Locale.US, "%-17s | %7d | %11d | %7d",
+                "SharedPreferences", edits.size(), baseline.writes, baseline.bytes));
+        System.out.println(String.format(Locale.US, "%-17s | %7d | %11d | %7d",
+                "StateStore", store.getTransactionCount(), storeWrites, storeBytes[0]));
+
+        assertEquals(edits.size(), store.getTransactionCount());
+        assertTrue(storeWrites > 0);
+        // No máximo metade das gravações (fsyncs) da linha de base, e menos bytes,
+        // mesmo regravando todos os namespaces a cada vez
+        assertTrue(storeWrites * 2 <= baseline.writes);
+        assertTrue(storeBytes[0] < baseline.bytes);
+    }
+
+    private void advanceTo(long time, StateStore store, File file, long[] storeBytes) {
+        while (!pending.isEmpty() && pending.peek().due <= time) {
+            Task task = pending.poll();
+            now = task.due;
+            long writesBefore = store.getDiskWriteCount();
+            task.runnable.run();
+            if (store.getDiskWriteCount() > writesBefore) storeBytes[0] += file.length();
+        }
+        now = time;
+    }
+
+    /**
+     * Linha de base: cada apply() que muda um valor regrava o XML inteiro do namespace
+     * (edições separadas por segundos não se juntam no QueuedWork)
+     */
+    private static final class SharedPreferencesBaseline {
+        private final Map<String, Map<String, Object>> files = new HashMap<>();
+        long writes;
+        long bytes;
+
+        void apply(Edit edit) {
+            Map<String, Object> values = files.computeIfAbsent(edit.namespace, k -> new TreeMap<>());
+            boolean changed = false;
+            for (int i = 0; i < edit.keys.length; i++) {
+                changed |= !Objects.equals(values.put(edit.keys[i], edit.values[i]), edit.values[i]);
+            }
+            if (!changed) return;
+            writes++;
+            bytes += toXml(values).getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        private static String toXml(Map<String, Object> values) {
+            StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof String) {
+                    xml.append("    <string name=\"").append(entry.getKey()).append("\">")
+                            .append(value).append("</string>\n");
+                } else {
+                    String type = value instanceof Integer ? "int" : value instanceof Long ? "long" : "boolean";
+                    xml.append("    <").append(type).append(" name=\"").append(entry.getKey())
+                            .append("\" value=\"").append(value).append("\" />\n");
+                }
+            }
+            return xml.append("</map>\n").toString();
+        }
+    }
+
+    private static final class Edit {
+        final long at;
+        final String namespace;
+        final String[] keys;
+        final Object[] values;
+
+        Edit(long at, String namespace, String key, Object value) {
+            this(at, namespace, new String[]{key}, new Object[]{value});
+        }
+
+        Edit(long at, String namespace, String[] keys, Object[] values) {
+            this.at = at;
+            this.namespace = namespace;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static List<Edit> hourOfTracking() {
+        List<Edit> edits = new ArrayList<>();
+
+        // Subida do serviço: marcos em sequência e estado inicial do GPS
+        String[] milestones = {"boot_received", "conditions_met", "service_created",
+                "location_requested", "deferred_init_done", "first_evaluation", "first_live_fix"};
+        for (int i = 0; i < milestones.length; i++) {
+            edits.add(new Edit(i * 1500L, StateStore.STARTUP_MILESTONES, "milestone_" + milestones[i], i * 1500L));
+        }
+        edits.add(new Edit(12000, StateStore.APP, "gps_reported_enabled", true));
+
+        // Bateria: cada variação de nível é gravada pelo DeviceStateReceiver
+        int level = 80;
+        for (long t = 4 * 60 * 1000; t < HOUR_MS; t += 4 * 60 * 1000) {
+            level--;
+            edits.add(new Edit(t, StateStore.DEVICE_STATE, "last_battery_level", level));
+        }
+
+        // Quatro transições (entrada e saída de duas obras)
+        long[] transitionTimes = {9 * 60 * 1000, 24 * 60 * 1000, 38 * 60 * 1000, 51 * 60 * 1000};
+        String[] types = {"Entrada Confirmada", "Saída Confirmada"};
+        for (int i = 0; i < transitionTimes.length; i++) {
+            long t = transitionTimes[i];
+            edits.add(new Edit(t, StateStore.GEOFENCE_STATE,
+                    new String[]{"last_geofence_name", "last_event_type", "last_event_timestamp"},
+                    new Object[]{"Obra " + (i / 2), types[i % 2], t}));
+        }
+
+        // Dois intervalos de oscilação do GPS
+        edits.add(new Edit(17 * 60 * 1000, StateStore.APP, "gps_reported_enabled", false));
+        edits.add(new Edit(17 * 60 * 1000 + 40000, StateStore.APP, "gps_reported_enabled", true));
+
+        edits.sort((a, b) -> Long.compare(a.at, b.at));
+        return edits;
+    }
+}
@@ -51,7 +51,7 @@ public class AssignedVehiclesActivity extends AppCompatActivity {
         adapter = new VehicleAdapter(new ArrayList<>());
         rvVehicles.setAdapter(adapter);
 
-        sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        sharedPreferences = StateStore.prefs(this, StateStore.APP);
         currentDriver = sharedPreferences.getString("USER_NAME", "");
         if (currentDriver.isEmpty()) {
             Toast.makeText(this, "Motorista não identificado", Toast.LENGTH_LONG).show();
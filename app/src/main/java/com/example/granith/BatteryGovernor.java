@@ -0,0 +1,74 @@
+package com.example.granith;
+
+import com.google.android.gms.location.Priority;
+
+import java.util.Calendar;
+
+/**
+ * Converte o estado da bateria (nível, carregamento e modo de economia) em um
+ * orçamento de amostragem de localização.
+ *
+ * Abaixo de 20% o orçamento é calculado a partir das horas que faltam para o fim
+ * do turno, para que o dispositivo continue rastreando até o fim do dia em vez
+ * de descarregar no meio do expediente.
+ */
+public class BatteryGovernor {
+    public static final int DEFAULT_SHIFT_END_HOUR = 18;
+
+    private static final int LOW_BATTERY_PCT = 20;
+    private static final int MEDIUM_BATTERY_PCT = 50;
+
+    // Estimativa conservadora: 1% de bateria sustenta ~6 localizações de baixo consumo
+    // somando o custo fixo do serviço em primeiro plano
+    private static final double LOW_POWER_FIXES_PER_PERCENT = 6;
+    private static final int MIN_FIXES_PER_HOUR = 2;
+    private static final int LOW_BATTERY_MAX_FIXES_PER_HOUR = 12;
+    private static final double MIN_HOURS_REMAINING = 1;
+
+    private static final SamplingBudget FULL_BUDGET = SamplingBudget.UNLIMITED;
+    private static final SamplingBudget SAVER_BUDGET =
+            new SamplingBudget(30, Priority.PRIORITY_BALANCED_POWER_ACCURACY);
+
+    private final int shiftEndHour;
+
+    public BatteryGovernor() {
+        this(DEFAULT_SHIFT_END_HOUR);
+    }
+
+    public BatteryGovernor(int shiftEndHour) {
+        this.shiftEndHour = shiftEndHour;
+    }
+
+    /**
+     * @param batteryLevel   nível da bateria em % (-1 quando desconhecido)
+     * @param charging       dispositivo carregando
+     * @param powerSaveMode  modo de economia de energia do sistema ativo
+     * @param hoursRemaining horas até o fim do turno
+     */
+    public SamplingBudget computeBudget(int batteryLevel, boolean charging, boolean powerSaveMode,
+                                        double hoursRemaining) {
+        if (charging || batteryLevel < 0) {
+            return FULL_BUDGET;
+        }
+
+        if (batteryLevel < LOW_BATTERY_PCT) {
+            double hours = Math.max(MIN_HOURS_REMAINING, hoursRemaining);
+            int fixesPerHour = (int) Math.round(batteryLevel * LOW_POWER_FIXES_PER_PERCENT / hours);
+            fixesPerHour = Math.max(MIN_FIXES_PER_HOUR, Math.min(LOW_BATTERY_MAX_FIXES_PER_HOUR, fixesPerHour));
+            return new SamplingBudget(fixesPerHour, Priority.PRIORITY_LOW_POWER);
+        }
+
+        if (powerSaveMode || batteryLevel < MEDIUM_BATTERY_PCT) {
+            return SAVER_BUDGET;
+        }
+        return FULL_BUDGET;
+    }
+
+    /**
+     * Horas até o fim do turno; depois do fim do turno considera o mínimo
+     */
+    public double hoursUntilShiftEnd(Calendar now) {
+        double currentHour = now.get(Calendar.HOUR_OF_DAY) + now.get(Calendar.MINUTE) / 60.0;
+        return Math.max(MIN_HOURS_REMAINING, shiftEndHour - currentHour);
+    }
+}
@@ -33,12 +33,12 @@ public class BatteryReceiver extends BroadcastReceiver {
             Log.w(TAG, "⚠️ Preparando para shutdown por: " + reason);
 
             // Salva estado de emergência
-            SharedPreferences prefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+            SharedPreferences prefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
             prefs.edit()
                     .putBoolean("battery_emergency", true)
                     .putString("battery_emergency_reason", reason)
                     .putLong("battery_emergency_time", System.currentTimeMillis())
-                    .apply();
+                    .commit();
 
             // Se bateria crítica, processa geofences imediatamente
             if ("Bateria Crítica".equals(reason)) {
@@ -13,7 +13,6 @@ import androidx.work.WorkManager;
  */
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
-    private static final long SHUTDOWN_DETECTION_WINDOW = 300000; // 5 minutos
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -26,101 +25,78 @@ public class BootReceiver extends BroadcastReceiver {
                 Intent.ACTION_MY_PACKAGE_REPLACED.equals(action) ||
                 Intent.ACTION_PACKAGE_REPLACED.equals(action)) {
 
-            Log.d(TAG, "Boot concluído. Iniciando monitoramento de condições.");
+            StartupMilestones.record(context, StartupMilestones.BOOT_RECEIVED);
 
-            // === FUNCIONALIDADE ORIGINAL ===
-            // Inicia o BootWorker original
-            OneTimeWorkRequest bootWorkRequest = new OneTimeWorkRequest.Builder(BootWorker.class)
-                    .build();
-            WorkManager.getInstance(context).enqueue(bootWorkRequest);
-
-            // === NOVA FUNCIONALIDADE ===
-            // Verifica se houve shutdown não processado
-            checkForUnprocessedShutdown(context);
+            if (ServiceConditions.check(context).allConditionsMet()) {
+                // === CAMINHO RÁPIDO ===
+                // Condições já atendidas: inicia o rastreamento sem passar pelo BootWorker e pelo monitor
+                Log.d(TAG, "Boot concluído. Condições atendidas, iniciando rastreamento.");
+                startLocationServiceDirectly(context);
+            } else {
+                Log.d(TAG, "Boot concluído. Iniciando monitoramento de condições.");
 
-            // Inicia o serviço de monitoramento de shutdown
-            startShutdownMonitoringService(context);
+                // === FUNCIONALIDADE ORIGINAL ===
+                // Inicia o BootWorker original
+                OneTimeWorkRequest bootWorkRequest = new OneTimeWorkRequest.Builder(BootWorker.class)
+                        .build();
+                WorkManager.getInstance(context).enqueue(bootWorkRequest);
+            }
 
-            // Reseta flags de inicialização
-            resetStartupFlags(context);
+            // === NOVA FUNCIONALIDADE ===
+            // Recuperação (Room, replay do journal, fsync) fora da thread principal.
+            // A ordem importa: o monitor só começa a bater depois de a recuperação
+            // ler o último sinal de vida do boot anterior
+            PendingResult result = goAsync();
+            new Thread(() -> {
+                try {
+                    // Verifica se houve shutdown não processado
+                    checkForUnprocessedShutdown(context);
+
+                    // Inicia o serviço de monitoramento de shutdown
+                    startShutdownMonitoringService(context);
+
+                    // Reseta flags de inicialização
+                    resetStartupFlags(context);
+
+                    // O processo pode ser encerrado depois do finish(): grava os apply() pendentes
+                    StateStore.getInstance(context).flush();
+                } finally {
+                    result.finish();
+                }
+            }, "BootRecovery").start();
         }
     }
 
-    /**
-     * Verifica se houve shutdown não processado baseado no heartbeat
-     */
-    private void checkForUnprocessedShutdown(Context context) {
+    private void startLocationServiceDirectly(Context context) {
         try {
-            SharedPreferences heartbeatPrefs = context.getSharedPreferences("HeartbeatPrefs", Context.MODE_PRIVATE);
-            SharedPreferences devicePrefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
-
-            long lastHeartbeat = heartbeatPrefs.getLong("last_heartbeat", 0);
-            boolean wasRunning = heartbeatPrefs.getBoolean("app_running", false);
-            boolean shutdownProcessed = devicePrefs.getBoolean("shutdown_processed", true);
-
-            long currentTime = System.currentTimeMillis();
-            long timeSinceLastHeartbeat = currentTime - lastHeartbeat;
-
-            Log.d(TAG, "=== VERIFICAÇÃO DE SHUTDOWN ===");
-            Log.d(TAG, "Último heartbeat: " + timeSinceLastHeartbeat + "ms atrás");
-            Log.d(TAG, "App estava rodando: " + wasRunning);
-            Log.d(TAG, "Shutdown já processado: " + shutdownProcessed);
-
-            // Condições para detectar shutdown perdido:
-            // 1. App estava rodando antes do boot
-            // 2. Passou tempo suficiente desde último heartbeat
-            // 3. Shutdown ainda não foi processado
-            if (wasRunning &&
-                    lastHeartbeat > 0 &&
-                    timeSinceLastHeartbeat > SHUTDOWN_DETECTION_WINDOW &&
-                    !shutdownProcessed) {
-
-                Log.w(TAG, "🚨 SHUTDOWN NÃO PROCESSADO DETECTADO!");
-                Log.w(TAG, "Gap de tempo: " + (timeSinceLastHeartbeat / 1000) + " segundos");
-
-                // Processa o shutdown perdido
-                processUnprocessedShutdown(context, lastHeartbeat);
-            } else {
-                Log.d(TAG, "✅ Nenhum shutdown perdido detectado");
-            }
-
-            // Limpa flags antigas do heartbeat
-            heartbeatPrefs.edit()
-                    .putBoolean("app_running", false)
-                    .putLong("last_heartbeat", currentTime)
-                    .apply();
-
+            StartupMilestones.record(context, StartupMilestones.CONDITIONS_MET);
+            LocationForegroundService.start(context);
+            Log.d(TAG, "🚀 Serviço de localização iniciado pelo caminho rápido");
         } catch (Exception e) {
-            Log.e(TAG, "Erro ao verificar shutdown não processado", e);
+            Log.e(TAG, "❌ Erro no caminho rápido, usando BootWorker", e);
+            WorkManager.getInstance(context).enqueue(new OneTimeWorkRequest.Builder(BootWorker.class).build());
         }
     }
 
     /**
-     * Processa shutdown que não foi detectado durante o desligamento
+     * Reaplica o journal de rastreamento: gera as saídas de um desligamento não
+     * registrado com o último sinal de vida real (TrackingRecovery)
      */
-    private void processUnprocessedShutdown(Context context, long lastHeartbeatTime) {
+    private void checkForUnprocessedShutdown(Context context) {
         try {
-            Log.w(TAG, "🔄 Processando shutdown perdido...");
-
-            // Cria Intent para processar o shutdown com timestamp estimado
-            Intent shutdownIntent = new Intent(context, ShutdownJobIntentService.class);
-            shutdownIntent.putExtra("shutdown_reason", "Shutdown Não Detectado (Recovery)");
-            shutdownIntent.putExtra("estimated_shutdown_time", lastHeartbeatTime);
-            shutdownIntent.putExtra("is_recovery", true);
-            shutdownIntent.putExtra("detection_method", "boot_heartbeat_gap");
-
-            // Enfileira o trabalho usando JobIntentService
-            androidx.core.app.JobIntentService.enqueueWork(
-                    context,
-                    ShutdownJobIntentService.class,
-                    ShutdownJobIntentService.JOB_ID,
-                    shutdownIntent
-            );
+            TrackingJournal.State state = TrackingRecovery.recover(context);
+            if (state != null) {
+                Log.d(TAG, "✅ Journal de rastreamento recuperado: " + state.entered.size() + " entradas abertas");
+            }
 
-            Log.d(TAG, "✅ Shutdown perdido enfileirado para processamento");
+            // Marca o app como parado até o monitor voltar a bater
+            BreadcrumbRing ring = BreadcrumbRing.getInstance(context);
+            if (ring != null) {
+                ring.recordHeartbeat(System.currentTimeMillis(), false);
+            }
 
         } catch (Exception e) {
-            Log.e(TAG, "❌ Erro ao processar shutdown perdido", e);
+            Log.e(TAG, "Erro ao verificar shutdown não processado", e);
         }
     }
 
@@ -142,7 +118,7 @@ public class BootReceiver extends BroadcastReceiver {
      */
     private void resetStartupFlags(Context context) {
         try {
-            SharedPreferences devicePrefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+            SharedPreferences devicePrefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
 
             // Reseta flags de controle
             devicePrefs.edit()
@@ -21,6 +21,13 @@ public class BootWorker extends Worker {
         Context context = getApplicationContext();
 
         try {
+            if (ServiceConditions.check(context).allConditionsMet()) {
+                StartupMilestones.record(context, StartupMilestones.CONDITIONS_MET);
+                LocationForegroundService.start(context);
+                Log.d(TAG, "Condições atendidas - serviço principal iniciado pelo BootWorker.");
+                return Result.success();
+            }
+
             // Inicia o serviço de monitoramento ao invés do serviço principal
             Intent monitorIntent = new Intent(context, ServiceConditionMonitor.class);
 
@@ -0,0 +1,218 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Arquivo circular mapeado em memória com os últimos heartbeats e as últimas
+ * localizações, em registros binários de tamanho fixo.
+ *
+ * Gravar é só escrever na memória mapeada; o SO leva as páginas para o disco.
+ * Cada registro leva um número de sequência gravado por último, então um registro
+ * pela metade é ignorado na leitura. Usado no boot e na recuperação de shutdown
+ * para saber quando o app esteve vivo pela última vez e onde.
+ */
+public class BreadcrumbRing {
+    private static final String TAG = "BreadcrumbRing";
+    private static final String FILE_NAME = "breadcrumbs.ring";
+
+    private static final int MAGIC = 0x47425243; // "GBRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // [long seq][long timestamp][double lat][double lng][float accuracy][int flags]
+    private static final int RECORD_BYTES = 40;
+
+    public static final int DEFAULT_HEARTBEAT_SLOTS = 16;
+    public static final int DEFAULT_FIX_SLOTS = 64;
+
+    public static final int FLAG_RUNNING = 1;
+
+    /**
+     * Registro lido do arquivo
+     */
+    public static class Record {
+        public final long sequence;
+        public final long timestamp;
+        public final double latitude;
+        public final double longitude;
+        public final float accuracy;
+        public final int flags;
+
+        Record(long sequence, long timestamp, double latitude, double longitude, float accuracy, int flags) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.flags = flags;
+        }
+
+        public boolean isRunning() {
+            return (flags & FLAG_RUNNING) != 0;
+        }
+    }
+
+    private static BreadcrumbRing instance;
+
+    private final MappedByteBuffer buffer;
+    private final int heartbeatSlots;
+    private final int fixSlots;
+    private long nextHeartbeatSeq;
+    private long nextFixSeq;
+
+    public BreadcrumbRing(File file, int heartbeatSlots, int fixSlots) throws IOException {
+        this.heartbeatSlots = heartbeatSlots;
+        this.fixSlots = fixSlots;
+        long size = HEADER_BYTES + (long) (heartbeatSlots + fixSlots) * RECORD_BYTES;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // O mapeamento continua válido depois de fechar o arquivo
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != heartbeatSlots || buffer.getInt(12) != fixSlots) {
+            // Arquivo novo ou com layout diferente: começa do zero
+            for (int i = 0; i < size; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, heartbeatSlots);
+            buffer.putInt(12, fixSlots);
+        }
+
+        nextHeartbeatSeq = maxSequence(heartbeatOffset(), heartbeatSlots) + 1;
+        nextFixSeq = maxSequence(fixOffset(), fixSlots) + 1;
+    }
+
+    public static synchronized BreadcrumbRing getInstance(Context context) {
+        if (instance == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            try {
+                instance = new BreadcrumbRing(file, DEFAULT_HEARTBEAT_SLOTS, DEFAULT_FIX_SLOTS);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao mapear " + FILE_NAME, e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    // === ESCRITA ===
+    public synchronized void recordHeartbeat(long timestamp, boolean running) {
+        long seq = nextHeartbeatSeq++;
+        writeRecord(slotOffset(heartbeatOffset(), heartbeatSlots, seq), seq, timestamp,
+                Double.NaN, Double.NaN, 0, running ? FLAG_RUNNING : 0);
+    }
+
+    public synchronized void recordFix(long timestamp, double latitude, double longitude, float accuracy) {
+        long seq = nextFixSeq++;
+        writeRecord(slotOffset(fixOffset(), fixSlots, seq), seq, timestamp,
+                latitude, longitude, accuracy, FLAG_RUNNING);
+    }
+
+    /**
+     * Pede ao SO para gravar as páginas agora (ex.: durante o desligamento)
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    private void writeRecord(int offset, long seq, long timestamp, double latitude, double longitude,
+                             float accuracy, int flags) {
+        // Invalida o slot antes de sobrescrever e grava a sequência por último
+        buffer.putLong(offset, 0);
+        buffer.putLong(offset + 8, timestamp);
+        buffer.putDouble(offset + 16, latitude);
+        buffer.putDouble(offset + 24, longitude);
+        buffer.putFloat(offset + 32, accuracy);
+        buffer.putInt(offset + 36, flags);
+        buffer.putLong(offset, seq);
+    }
+
+    // === LEITURA ===
+    public synchronized Record getLastHeartbeat() {
+        return latest(heartbeatOffset(), heartbeatSlots);
+    }
+
+    public synchronized Record getLastFix() {
+        return latest(fixOffset(), fixSlots);
+    }
+
+    /**
+     * Últimas localizações, da mais antiga para a mais recente
+     */
+    public synchronized List<Record> getRecentFixes() {
+        List<Record> fixes = new ArrayList<>();
+        for (int i = 0; i < fixSlots; i++) {
+            Record record = readRecord(fixOffset() + i * RECORD_BYTES);
+            if (record != null) fixes.add(record);
+        }
+        Collections.sort(fixes, (a, b) -> Long.compare(a.sequence, b.sequence));
+        return fixes;
+    }
+
+    /**
+     * Último instante em que o app comprovadamente estava vivo (heartbeat ou localização)
+     */
+    public synchronized long getLastAliveTime() {
+        Record heartbeat = getLastHeartbeat();
+        Record fix = getLastFix();
+        long lastAlive = 0;
+        if (heartbeat != null && heartbeat.isRunning()) lastAlive = heartbeat.timestamp;
+        if (fix != null) lastAlive = Math.max(lastAlive, fix.timestamp);
+        return lastAlive;
+    }
+
+    private Record latest(int regionOffset, int slots) {
+        long seq = maxSequence(regionOffset, slots);
+        if (seq == 0) return null;
+        return readRecord(slotOffset(regionOffset, slots, seq));
+    }
+
+    private long maxSequence(int regionOffset, int slots) {
+        long max = 0;
+        for (int i = 0; i < slots; i++) {
+            int offset = regionOffset + i * RECORD_BYTES;
+            long seq = buffer.getLong(offset);
+            // Sequência fora do slot esperado = registro inválido
+            if (seq > 0 && slotOffset(regionOffset, slots, seq) == offset) {
+                max = Math.max(max, seq);
+            }
+        }
+        return max;
+    }
+
+    private Record readRecord(int offset) {
+        long seq = buffer.getLong(offset);
+        if (seq <= 0) return null;
+        return new Record(seq,
+                buffer.getLong(offset + 8),
+                buffer.getDouble(offset + 16),
+                buffer.getDouble(offset + 24),
+                buffer.getFloat(offset + 32),
+                buffer.getInt(offset + 36));
+    }
+
+    private int heartbeatOffset() {
+        return HEADER_BYTES;
+    }
+
+    private int fixOffset() {
+        return HEADER_BYTES + heartbeatSlots * RECORD_BYTES;
+    }
+
+    private static int slotOffset(int regionOffset, int slots, long seq) {
+        return regionOffset + (int) ((seq - 1) % slots) * RECORD_BYTES;
+    }
+}
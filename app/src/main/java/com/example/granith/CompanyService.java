@@ -6,7 +6,6 @@ import android.util.Log;
 
 public class CompanyService {
     private static final String TAG = "CompanyService";
-    private static final String PREFS_NAME = "company_prefs";
     private static final String KEY_COMPANY_ID = "current_company_id";
     private static final String KEY_COMPANY_NAME = "current_company_name";
 
@@ -16,7 +15,7 @@ public class CompanyService {
     private String currentCompanyName;
 
     private CompanyService(Context context) {
-        sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        sharedPreferences = StateStore.prefs(context, StateStore.COMPANY);
         loadCompanyData();
     }
 
@@ -0,0 +1,15 @@
+package com.example.granith;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Projeção mínima de um evento de geofence para reconstruir o DedupIndex
+ */
+public class DedupEntry {
+    public long id;
+
+    @ColumnInfo(name = "dedup_key")
+    public String dedupKey;
+
+    public long timestamp;
+}
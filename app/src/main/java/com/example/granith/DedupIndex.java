@@ -0,0 +1,188 @@
+package com.example.granith;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Índice em memória para detectar eventos duplicados em O(1).
+ *
+ * A chave (geofence, tipo, usuário) é combinada com um bucket de tempo da largura
+ * da janela de duplicidade; cada entrada guarda os poucos timestamps do bucket.
+ * Como o bucket tem a largura da janela, olhar o bucket do evento e os dois
+ * vizinhos é suficiente. O índice é salvo em formato binário junto com o maior id
+ * do outbox já incluído, para completar só o que faltar na próxima abertura.
+ */
+public class DedupIndex {
+    private static final int MAGIC = 0x47444958; // "GDIX"
+    private static final int VERSION = 1;
+
+    private final long bucketMs;
+    // hash(chave, bucket) -> timestamps do bucket
+    private final Map<Long, long[]> entries = new HashMap<>();
+    private long coveredId = 0;
+
+    public DedupIndex(long bucketMs) {
+        this.bucketMs = bucketMs;
+    }
+
+    public long getBucketMs() {
+        return bucketMs;
+    }
+
+    /**
+     * Verifica se já existe evento com a mesma chave a menos de windowMs (exclusivo)
+     * do timestamp. A janela não pode ser maior que o bucket.
+     */
+    public boolean contains(String dedupKey, long timestamp, long windowMs) {
+        if (windowMs > bucketMs) {
+            throw new IllegalArgumentException("Janela maior que o bucket do índice: " + windowMs);
+        }
+        long keyHash = hash(dedupKey);
+        long bucket = Math.floorDiv(timestamp, bucketMs);
+        for (long b = bucket - 1; b <= bucket + 1; b++) {
+            long[] times = entries.get(mix(keyHash, b));
+            if (times == null) continue;
+            for (long stored : times) {
+                if (Math.abs(stored - timestamp) < windowMs) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void add(String dedupKey, long timestamp) {
+        long key = mix(hash(dedupKey), Math.floorDiv(timestamp, bucketMs));
+        long[] times = entries.get(key);
+        if (times == null) {
+            entries.put(key, new long[]{timestamp});
+        } else {
+            long[] grown = Arrays.copyOf(times, times.length + 1);
+            grown[times.length] = timestamp;
+            entries.put(key, grown);
+        }
+    }
+
+    /**
+     * Remove buckets cujos eventos são todos anteriores ao limite
+     */
+    public int pruneBefore(long olderThan) {
+        int removed = 0;
+        for (Iterator<long[]> it = entries.values().iterator(); it.hasNext(); ) {
+            if (max(it.next()) < olderThan) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Maior id do outbox já incluído no índice
+     */
+    public long getCoveredId() {
+        return coveredId;
+    }
+
+    public void setCoveredId(long coveredId) {
+        this.coveredId = Math.max(this.coveredId, coveredId);
+    }
+
+    // === PERSISTÊNCIA ===
+    /**
+     * Formato: magic, versão, largura do bucket, id coberto, quantidade e
+     * entradas (hash, quantidade de timestamps, timestamps)
+     */
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(bucketMs);
+            out.writeLong(coveredId);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, long[]> entry : entries.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeShort(entry.getValue().length);
+                for (long timestamp : entry.getValue()) {
+                    out.writeLong(timestamp);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Não foi possível substituir " + file);
+        }
+    }
+
+    /**
+     * Lê um índice salvo; retorna null se o arquivo não existir, estiver corrompido
+     * ou tiver sido salvo com outra largura de bucket
+     */
+    public static DedupIndex readFrom(File file, long bucketMs) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != bucketMs) {
+                return null;
+            }
+            DedupIndex index = new DedupIndex(bucketMs);
+            index.coveredId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long[] times = new long[in.readUnsignedShort()];
+                for (int j = 0; j < times.length; j++) {
+                    times[j] = in.readLong();
+                }
+                index.entries.put(key, times);
+            }
+            return index;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long max(long[] times) {
+        long max = Long.MIN_VALUE;
+        for (long timestamp : times) {
+            max = Math.max(max, timestamp);
+        }
+        return max;
+    }
+
+    // === HASH ===
+    private static long hash(String key) {
+        // FNV-1a 64 bits sobre os bytes UTF-8
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long keyHash, long bucket) {
+        long h = keyHash ^ (bucket * 0x9E3779B97F4A7C15L);
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -6,13 +6,13 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.location.Location;
 import android.os.BatteryManager;
+import android.os.PowerManager;
 import android.util.Log;
 
 import androidx.core.app.JobIntentService;
 
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.HashMap;
@@ -40,10 +40,20 @@ public class DeviceStateReceiver extends BroadcastReceiver {
         void syncOfflineEventsToFirebase();
 
         void onBatteryStateChanged(int batteryLevel, boolean isLow, boolean isCritical);
+
+        void onChargingStateChanged(boolean charging);
+
+        void onPowerSaveModeChanged(boolean powerSaveMode);
+
+        void onScreenStateChanged(boolean screenOn);
+
+        void onDeviceIdleModeChanged(boolean idle);
     }
 
     private DeviceStateListener listener;
     private FirebaseFirestore firestore;
+    private Boolean lastChargingState = null;
+    private int lastNotifiedBatteryLevel = -1;
 
     public DeviceStateReceiver() {
         this.firestore = FirebaseFirestore.getInstance();
@@ -82,6 +92,21 @@ public class DeviceStateReceiver extends BroadcastReceiver {
                     handleBatteryChanged(context, intent);
                     break;
 
+                case PowerManager.ACTION_POWER_SAVE_MODE_CHANGED:
+                    handlePowerSaveModeChanged(context);
+                    break;
+
+                case Intent.ACTION_SCREEN_ON:
+                case Intent.ACTION_SCREEN_OFF:
+                    if (listener != null) {
+                        listener.onScreenStateChanged(Intent.ACTION_SCREEN_ON.equals(action));
+                    }
+                    break;
+
+                case PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED:
+                    handleDeviceIdleModeChanged(context);
+                    break;
+
                 case Intent.ACTION_DEVICE_STORAGE_LOW:
                     Log.d(TAG, "Armazenamento baixo detectado");
                     break;
@@ -89,6 +114,12 @@ public class DeviceStateReceiver extends BroadcastReceiver {
         } catch (Exception e) {
             Log.e(TAG, "Erro no DeviceStateReceiver", e);
         }
+        // Instância do manifesto: o processo pode ser encerrado depois de onReceive, então
+        // grava os apply() pendentes. A registrada pelo serviço vive com ele (que grava no
+        // onDestroy) e deixa a bateria seguir a janela do StateStore.
+        if (listener == null) {
+            StateStore.getInstance(context).flush();
+        }
     }
 
     /**
@@ -106,7 +137,7 @@ public class DeviceStateReceiver extends BroadcastReceiver {
     }
 
     private void handleLowBattery(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
         prefs.edit()
                 .putBoolean("low_battery_detected", true)
                 .putLong("low_battery_timestamp", System.currentTimeMillis())
@@ -121,7 +152,7 @@ public class DeviceStateReceiver extends BroadcastReceiver {
     }
 
     private void handleCriticalBattery(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
         prefs.edit()
                 .putBoolean("critical_battery_detected", true)
                 .putLong("critical_battery_timestamp", System.currentTimeMillis())
@@ -141,11 +172,22 @@ public class DeviceStateReceiver extends BroadcastReceiver {
         int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
         int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
 
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+        if (listener != null && (lastChargingState == null || lastChargingState != charging)) {
+            listener.onChargingStateChanged(charging);
+        }
+        lastChargingState = charging;
+
         if (level >= 0 && scale > 0) {
             int batteryLevel = (int) ((level / (float) scale) * 100);
 
-            SharedPreferences prefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
-            prefs.edit().putInt("last_battery_level", batteryLevel).apply();
+            SharedPreferences prefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
+            int previousLevel = prefs.getInt("last_battery_level", -1);
+            if (previousLevel != batteryLevel) {
+                prefs.edit().putInt("last_battery_level", batteryLevel).apply();
+            }
 
             boolean wasLow = prefs.getBoolean("low_battery_detected", false);
             boolean wasCritical = prefs.getBoolean("critical_battery_detected", false);
@@ -153,15 +195,44 @@ public class DeviceStateReceiver extends BroadcastReceiver {
             if (batteryLevel <= 3) {
                 handleCriticalBattery(context);
             } else if (batteryLevel > 15) {
-                prefs.edit()
-                        .putBoolean("low_battery_detected", false)
-                        .putBoolean("critical_battery_detected", false)
-                        .apply();
+                if (wasLow || wasCritical) {
+                    prefs.edit()
+                            .putBoolean("low_battery_detected", false)
+                            .putBoolean("critical_battery_detected", false)
+                            .apply();
+                }
 
-                if (listener != null && (wasLow || wasCritical)) {
+                if (listener != null && (wasLow || wasCritical || lastNotifiedBatteryLevel != batteryLevel)) {
                     listener.onBatteryStateChanged(batteryLevel, false, false);
                 }
+            } else if (listener != null && lastNotifiedBatteryLevel != batteryLevel) {
+                listener.onBatteryStateChanged(batteryLevel, wasLow, false);
             }
+            lastNotifiedBatteryLevel = batteryLevel;
+        }
+    }
+
+    private void handlePowerSaveModeChanged(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) return;
+
+        boolean powerSaveMode = powerManager.isPowerSaveMode();
+        Log.d(TAG, "Modo de economia de energia: " + (powerSaveMode ? "ativado" : "desativado"));
+
+        if (listener != null) {
+            listener.onPowerSaveModeChanged(powerSaveMode);
+        }
+    }
+
+    private void handleDeviceIdleModeChanged(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) return;
+
+        boolean idle = powerManager.isDeviceIdleMode();
+        Log.d(TAG, "Modo ocioso (Doze): " + (idle ? "ativado" : "desativado"));
+
+        if (listener != null) {
+            listener.onDeviceIdleModeChanged(idle);
         }
     }
 
@@ -203,7 +274,7 @@ public class DeviceStateReceiver extends BroadcastReceiver {
     private void generateShutdownGeofenceEvent(Context ctx, GeofenceData geofence, String eventType) {
         Location fake = createFakeLocation(geofence);
         String user = UserPreferences.loadUserName(
-                ctx.getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE));
+                StateStore.prefs(ctx, StateStore.APP));
         Map<String, Object> event = new HashMap<>();
         event.put("event_type", eventType);
         event.put("latitude", fake.getLatitude());
@@ -234,9 +305,6 @@ public class DeviceStateReceiver extends BroadcastReceiver {
 
     private void storeShutdownEventLocally(Context context, Map<String, Object> shutdownEvent) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            JSONArray offlineEventsArray = getOfflineEventsArray(prefs);
-
             JSONObject eventJson = new JSONObject();
             for (Map.Entry<String, Object> entry : shutdownEvent.entrySet()) {
                 eventJson.put(entry.getKey(), entry.getValue());
@@ -245,8 +313,7 @@ public class DeviceStateReceiver extends BroadcastReceiver {
             eventJson.put("is_shutdown_event", true);
             eventJson.put("local_id", "shutdown_" + System.currentTimeMillis());
 
-            offlineEventsArray.put(eventJson);
-            prefs.edit().putString("offline_events", offlineEventsArray.toString()).apply();
+            EventOutbox.getInstance(context).addGeofenceEvent(eventJson, 0);
 
             Log.d(TAG, "Evento de shutdown armazenado localmente");
 
@@ -255,23 +322,13 @@ public class DeviceStateReceiver extends BroadcastReceiver {
         }
     }
 
-    private JSONArray getOfflineEventsArray(SharedPreferences prefs) {
-        try {
-            String offlineEventsString = prefs.getString("offline_events", "[]");
-            return new JSONArray(offlineEventsString);
-        } catch (Exception e) {
-            Log.e(TAG, "Erro ao carregar eventos offline", e);
-            return new JSONArray();
-        }
-    }
-
     private void saveShutdownState(Context context, String shutdownReason) {
-        SharedPreferences prefs = context.getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = StateStore.prefs(context, StateStore.DEVICE_STATE);
         prefs.edit()
                 .putString("last_shutdown_reason", shutdownReason)
                 .putLong("last_shutdown_timestamp", System.currentTimeMillis())
                 .putBoolean("shutdown_processed", true)
                 .putBoolean("shutdown_occurred", true)
-                .apply();
+                .commit();
     }
 }
\ No newline at end of file
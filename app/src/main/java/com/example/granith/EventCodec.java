@@ -0,0 +1,315 @@
+package com.example.granith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec binário versionado para eventos de geofence na fila local.
+ *
+ * Lote: [versão][tabela de strings][quantidade][eventos]. Cada string (nome da
+ * obra, usuário, deviceInfo...) aparece uma única vez na tabela e os eventos guardam
+ * só o índice. Tipos de evento conhecidos viram um código de um byte, coordenadas
+ * viram micrograus em int32, a precisão vira decímetros e os timestamps são varints
+ * com delta em relação ao evento anterior.
+ *
+ * A conversão é com perdas: coordenadas em 1e-6 grau (~11 cm) e precisão em 0,1 m.
+ */
+public final class EventCodec {
+    public static final int VERSION = 1;
+
+    // Códigos fixos: só acrescentar no final; 0 = tipo livre na tabela de strings
+    private static final String[] EVENT_TYPES = {
+            null,
+            "Entrada Confirmada",
+            "Saída Confirmada",
+            "Saída Automática",
+            "Saída por Shutdown",
+            "Saída por Desligamento Manual",
+            "Saída por Bateria Esgotada",
+            "Saída por Reinicialização",
+            "Saída por Desligamento de Emergência",
+            "Desligamento do Dispositivo",
+            "Destruição do Serviço",
+            "Shutdown Perdido Detectado",
+            "Shutdown Não Detectado (Recovery)"
+    };
+    private static final Map<String, Integer> EVENT_CODES = new HashMap<>();
+
+    static {
+        for (int i = 1; i < EVENT_TYPES.length; i++) {
+            EVENT_CODES.put(EVENT_TYPES[i], i);
+        }
+    }
+
+    // Bits de presença dos campos opcionais
+    private static final int HAS_EVENT_TYPE = 1;
+    private static final int HAS_LOCAL_ID = 1 << 1;
+    private static final int HAS_GEOFENCE_NAME = 1 << 2;
+    private static final int HAS_GEOFENCE_CODE = 1 << 3;
+    private static final int HAS_GEOFENCE_ID = 1 << 4;
+    private static final int HAS_USER_NAME = 1 << 5;
+    private static final int HAS_EMPLOYEE_ID = 1 << 6;
+    private static final int HAS_COMPANY_ID = 1 << 7;
+    private static final int HAS_DEVICE_INFO = 1 << 8;
+    private static final int HAS_EXTRAS = 1 << 9;
+    // local_id no formato padrão nome_tipo_usuário_timestamp: não é gravado
+    private static final int LOCAL_ID_DERIVED = 1 << 10;
+
+    private static final double MICRO_DEGREES = 1_000_000.0;
+
+    private EventCodec() {
+    }
+
+    // === CODIFICAÇÃO ===
+    public static byte[] encode(GeofenceEventEntity event) {
+        return encode(Arrays.asList(event));
+    }
+
+    public static byte[] encode(List<GeofenceEventEntity> events) {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteWriter body = new ByteWriter(events.size() * 24 + 16);
+
+        body.writeVarint(events.size());
+        long previousTimestamp = 0;
+        for (GeofenceEventEntity event : events) {
+            Integer code = event.eventType != null ? EVENT_CODES.get(event.eventType) : null;
+            boolean derivedLocalId = event.localId != null && event.localId.equals(
+                    derivedLocalId(event.geofenceName, event.eventType, event.userName, event.timestamp));
+
+            int mask = 0;
+            if (event.eventType != null && code == null) mask |= HAS_EVENT_TYPE;
+            if (derivedLocalId) mask |= LOCAL_ID_DERIVED;
+            else if (event.localId != null) mask |= HAS_LOCAL_ID;
+            if (event.geofenceName != null) mask |= HAS_GEOFENCE_NAME;
+            if (event.geofenceCode != null) mask |= HAS_GEOFENCE_CODE;
+            if (event.geofenceId != null) mask |= HAS_GEOFENCE_ID;
+            if (event.userName != null) mask |= HAS_USER_NAME;
+            if (event.employeeId != null) mask |= HAS_EMPLOYEE_ID;
+            if (event.companyId != null) mask |= HAS_COMPANY_ID;
+            if (event.deviceInfo != null) mask |= HAS_DEVICE_INFO;
+            if (event.extras != null) mask |= HAS_EXTRAS;
+
+            body.writeByte(code != null ? code : 0);
+            body.writeVarint(mask);
+            body.writeVarint(zigzag(event.timestamp - previousTimestamp));
+            previousTimestamp = event.timestamp;
+            body.writeInt((int) Math.round(event.latitude * MICRO_DEGREES));
+            body.writeInt((int) Math.round(event.longitude * MICRO_DEGREES));
+            body.writeVarint(Math.max(0, Math.round(event.accuracy * 10)));
+
+            if ((mask & HAS_EVENT_TYPE) != 0) body.writeVarint(intern(event.eventType, stringIndex, strings));
+            if ((mask & HAS_LOCAL_ID) != 0) body.writeVarint(intern(event.localId, stringIndex, strings));
+            if ((mask & HAS_GEOFENCE_NAME) != 0) body.writeVarint(intern(event.geofenceName, stringIndex, strings));
+            if ((mask & HAS_GEOFENCE_CODE) != 0) body.writeVarint(intern(event.geofenceCode, stringIndex, strings));
+            if ((mask & HAS_GEOFENCE_ID) != 0) body.writeVarint(intern(event.geofenceId, stringIndex, strings));
+            if ((mask & HAS_USER_NAME) != 0) body.writeVarint(intern(event.userName, stringIndex, strings));
+            if ((mask & HAS_EMPLOYEE_ID) != 0) body.writeVarint(intern(event.employeeId, stringIndex, strings));
+            if ((mask & HAS_COMPANY_ID) != 0) body.writeVarint(intern(event.companyId, stringIndex, strings));
+            if ((mask & HAS_DEVICE_INFO) != 0) body.writeVarint(intern(event.deviceInfo, stringIndex, strings));
+            if ((mask & HAS_EXTRAS) != 0) body.writeVarint(intern(event.extras, stringIndex, strings));
+        }
+
+        ByteWriter out = new ByteWriter(body.size() + strings.size() * 16 + 8);
+        out.writeByte(VERSION);
+        out.writeVarint(strings.size());
+        for (String value : strings) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+        }
+        out.writeBytes(body.buffer, 0, body.size());
+        return out.toByteArray();
+    }
+
+    // === DECODIFICAÇÃO ===
+    public static List<GeofenceEventEntity> decode(byte[] data) throws IOException {
+        ByteReader in = new ByteReader(data);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Versão de codec não suportada: " + version);
+        }
+
+        String[] strings = new String[in.readVarintInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readString(in.readVarintInt());
+        }
+
+        int count = in.readVarintInt();
+        List<GeofenceEventEntity> events = new ArrayList<>(count);
+        long previousTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            GeofenceEventEntity event = new GeofenceEventEntity();
+            int code = in.readByte();
+            int mask = in.readVarintInt();
+            event.timestamp = previousTimestamp + unzigzag(in.readVarint());
+            previousTimestamp = event.timestamp;
+            event.latitude = in.readInt() / MICRO_DEGREES;
+            event.longitude = in.readInt() / MICRO_DEGREES;
+            event.accuracy = in.readVarint() / 10.0;
+
+            if (code >= EVENT_TYPES.length) {
+                throw new IOException("Código de evento desconhecido: " + code);
+            }
+            event.eventType = EVENT_TYPES[code];
+            if ((mask & HAS_EVENT_TYPE) != 0) event.eventType = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_LOCAL_ID) != 0) event.localId = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_GEOFENCE_NAME) != 0) event.geofenceName = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_GEOFENCE_CODE) != 0) event.geofenceCode = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_GEOFENCE_ID) != 0) event.geofenceId = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_USER_NAME) != 0) event.userName = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_EMPLOYEE_ID) != 0) event.employeeId = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_COMPANY_ID) != 0) event.companyId = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_DEVICE_INFO) != 0) event.deviceInfo = lookup(strings, in.readVarintInt());
+            if ((mask & HAS_EXTRAS) != 0) event.extras = lookup(strings, in.readVarintInt());
+            if ((mask & LOCAL_ID_DERIVED) != 0) {
+                event.localId = derivedLocalId(event.geofenceName, event.eventType, event.userName, event.timestamp);
+            }
+
+            event.dedupKey = GeofenceEventEntity.dedupKey(event.geofenceName, event.eventType, event.userName);
+            events.add(event);
+        }
+        return events;
+    }
+
+    // === AUXILIARES ===
+    private static String derivedLocalId(String geofenceName, String eventType, String userName, long timestamp) {
+        return geofenceName + "_" + eventType + "_" + userName + "_" + timestamp;
+    }
+
+    private static int intern(String value, Map<String, Integer> index, List<String> strings) {
+        Integer position = index.get(value);
+        if (position == null) {
+            position = strings.size();
+            index.put(value, position);
+            strings.add(value);
+        }
+        return position;
+    }
+
+    private static String lookup(String[] strings, int index) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Índice de string inválido: " + index);
+        }
+        return strings[index];
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class ByteWriter {
+        byte[] buffer;
+        int size;
+
+        ByteWriter(int capacity) {
+            buffer = new byte[Math.max(16, capacity)];
+        }
+
+        void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class ByteReader {
+        final byte[] data;
+        int position;
+
+        ByteReader(byte[] data) {
+            this.data = data;
+        }
+
+        void require(int bytes) throws IOException {
+            if (position + bytes > data.length) {
+                throw new IOException("Lote truncado");
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return data[position++] & 0xFF;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            return ((data[position++] & 0xFF) << 24)
+                    | ((data[position++] & 0xFF) << 16)
+                    | ((data[position++] & 0xFF) << 8)
+                    | (data[position++] & 0xFF);
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Varint inválido");
+        }
+
+        int readVarintInt() throws IOException {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Valor fora do limite: " + value);
+            }
+            return (int) value;
+        }
+
+        String readString(int length) throws IOException {
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.granith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal binário append-only, segmentado, para o caminho de escrita mais crítico
+ * (confirmações e saídas por desligamento).
+ *
+ * Formato do segmento: cabeçalho (magic + versão) seguido de registros
+ * [int comprimento][int CRC32 do conteúdo][conteúdo]. Cada append é uma única escrita
+ * pequena; force() é chamado explicitamente quando o registro precisa ser durável.
+ * Threads que pedem force ao mesmo tempo compartilham uma única chamada (group
+ * commit): quem chega enquanto outra thread força o arquivo espera e, se seu
+ * registro já foi coberto, retorna sem forçar de novo.
+ * Na abertura, o último segmento é verificado e truncado no último registro válido.
+ */
+public class EventJournal {
+    private static final int MAGIC = 0x474A4E4C; // "GJNL"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    public static final long DEFAULT_SEGMENT_BYTES = 256 * 1024;
+    public static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    public interface RecordHandler {
+        void onRecord(byte[] payload);
+    }
+
+    private final File directory;
+    private final long maxSegmentBytes;
+
+    private RandomAccessFile currentFile;
+    private FileChannel currentChannel;
+    private long currentSegmentNumber;
+    private long recoveredTruncations = 0;
+
+    // Group commit: sequência do último registro escrito e do último coberto por force
+    private final Object syncLock = new Object();
+    private long appendedSequence = 0;
+    private long syncedSequence = 0;
+    private long forceCount = 0;
+
+    public EventJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public EventJournal(File directory, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar o diretório do journal: " + directory);
+        }
+        recover();
+    }
+
+    // === ESCRITA ===
+    /**
+     * Adiciona um registro com uma única escrita
+     *
+     * @param force true para só retornar depois que o registro estiver no disco
+     */
+    public void append(byte[] payload, boolean force) throws IOException {
+        long sequence = write(payload);
+        if (force) {
+            syncTo(sequence);
+        }
+    }
+
+    /**
+     * Escreve o registro sem forçar e retorna sua sequência, para um syncTo posterior
+     */
+    public synchronized long write(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD_BYTES) {
+            throw new IOException("Registro grande demais: " + payload.length + " bytes");
+        }
+        if (currentChannel.size() + RECORD_HEADER_BYTES + payload.length > maxSegmentBytes
+                && currentChannel.size() > SEGMENT_HEADER_BYTES) {
+            rollSegment();
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt(crc(payload, 0, payload.length));
+        record.put(payload);
+        record.flip();
+
+        long position = currentChannel.size();
+        while (record.hasRemaining()) {
+            position += currentChannel.write(record, position);
+        }
+        return ++appendedSequence;
+    }
+
+    /**
+     * Ponto de durabilidade explícito para registros escritos sem force
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        syncTo(sequence);
+    }
+
+    /**
+     * Garante que o registro com esta sequência (e os anteriores) está no disco
+     */
+    public void syncTo(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                // Outra thread já forçou o arquivo depois deste registro
+                return;
+            }
+            FileChannel channel;
+            long target;
+            synchronized (this) {
+                channel = currentChannel;
+                target = appendedSequence;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // O segmento foi fechado por rollSegment (que força antes) ou clear
+            }
+            syncedSequence = target;
+            forceCount++;
+        }
+    }
+
+    // === LEITURA ===
+    /**
+     * Entrega todos os registros válidos, em ordem
+     */
+    public synchronized void replay(RecordHandler handler) throws IOException {
+        for (File segment : listSegments()) {
+            if (segment.length() == 0) continue;
+            try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+                scanSegment(file.getChannel(), handler);
+            }
+        }
+    }
+
+    public synchronized List<byte[]> readAll() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        replay(records::add);
+        return records;
+    }
+
+    /**
+     * Descarta todos os registros (após terem sido aplicados no outbox)
+     */
+    public synchronized void clear() throws IOException {
+        closeCurrent();
+        for (File segment : listSegments()) {
+            if (!segment.delete()) {
+                throw new IOException("Não foi possível remover " + segment);
+            }
+        }
+        openSegment(currentSegmentNumber + 1);
+    }
+
+    public synchronized void close() throws IOException {
+        closeCurrent();
+    }
+
+    public synchronized int getSegmentCount() {
+        return listSegments().size();
+    }
+
+    /**
+     * Quantas chamadas de force foram feitas pelos appends com durabilidade
+     */
+    public long getForceCount() {
+        synchronized (syncLock) {
+            return forceCount;
+        }
+    }
+
+    /**
+     * Quantas vezes a recuperação encontrou um final inválido e truncou o segmento
+     */
+    public long getRecoveredTruncations() {
+        return recoveredTruncations;
+    }
+
+    // === RECUPERAÇÃO ===
+    private void recover() throws IOException {
+        List<File> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+            return;
+        }
+
+        File last = segments.get(segments.size() - 1);
+        currentSegmentNumber = segmentNumber(last);
+        currentFile = new RandomAccessFile(last, "rw");
+        currentChannel = currentFile.getChannel();
+
+        if (currentChannel.size() < SEGMENT_HEADER_BYTES || !hasValidHeader(currentChannel)) {
+            // Segmento criado mas o cabeçalho não chegou ao disco
+            currentChannel.truncate(0);
+            writeHeader(currentChannel);
+            recoveredTruncations++;
+            return;
+        }
+
+        long validEnd = scanSegment(currentChannel, null);
+        if (validEnd < currentChannel.size()) {
+            currentChannel.truncate(validEnd);
+            currentChannel.force(false);
+            recoveredTruncations++;
+        }
+    }
+
+    /**
+     * Percorre os registros do segmento e retorna a posição final do último registro válido
+     */
+    private static long scanSegment(FileChannel channel, RecordHandler handler) throws IOException {
+        long size = channel.size();
+        if (size < SEGMENT_HEADER_BYTES || !hasValidHeader(channel)) {
+            return 0;
+        }
+
+        long position = SEGMENT_HEADER_BYTES;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int expectedCrc = header.getInt();
+
+            if (length < 0 || length > MAX_RECORD_BYTES || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + RECORD_HEADER_BYTES);
+            byte[] bytes = payload.array();
+            if (crc(bytes, 0, length) != expectedCrc) {
+                break;
+            }
+
+            if (handler != null) {
+                handler.onRecord(bytes);
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    // === SEGMENTOS ===
+    private void rollSegment() throws IOException {
+        currentChannel.force(false);
+        closeCurrent();
+        openSegment(currentSegmentNumber + 1);
+    }
+
+    private void openSegment(long number) throws IOException {
+        currentSegmentNumber = number;
+        currentFile = new RandomAccessFile(segmentFile(number), "rw");
+        currentChannel = currentFile.getChannel();
+        currentChannel.truncate(0);
+        writeHeader(currentChannel);
+    }
+
+    private void closeCurrent() throws IOException {
+        if (currentFile != null) {
+            currentFile.close();
+            currentFile = null;
+            currentChannel = null;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(true);
+    }
+
+    private static boolean hasValidHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        readFully(channel, header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private File segmentFile(long number) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        List<File> segments = new ArrayList<>();
+        if (files == null) return segments;
+        Arrays.sort(files, (a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        segments.addAll(Arrays.asList(files));
+        return segments;
+    }
+
+    private static long segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, offset, length);
+        return (int) crc32.getValue();
+    }
+}
@@ -0,0 +1,766 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox de eventos pendentes de sincronização, apoiado no Room, compartilhado por
+ * todos os produtores do processo (serviço de localização, receivers e serviços de
+ * shutdown).
+ *
+ * Os produtores só enfileiram (fila sem lock, vários produtores e um consumidor);
+ * uma única thread grava. Tudo o que estiver na fila quando ela acorda vai para o
+ * banco em uma transação (group commit), então uma rajada como shutdown + confirmação
+ * vira uma escrita só. Os métodos "Now" são para chamadores que já estão fora da
+ * thread principal (ex.: JobIntentService).
+ *
+ * Antes de cada transação a thread de gravação escreve os eventos de geofence do lote
+ * no EventJournal e força o arquivo uma vez para o lote inteiro, então eles sobrevivem
+ * a um desligamento mesmo que a inserção no Room não termine. Nenhum fsync acontece
+ * na thread do produtor. O journal é reaplicado na inicialização e limpo quando tudo o
+ * que foi escrito nele já está no banco.
+ */
+public class EventOutbox {
+    private static final String TAG = "EventOutbox";
+
+    // Chaves antigas em MyAppPrefs, importadas uma única vez
+    private static final String LEGACY_EVENTS_KEY = "offline_events";
+    private static final String LEGACY_GPS_EVENTS_KEY = "offline_gps_events";
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    // Janela de duplicidade dos eventos de geofence (também a largura do bucket do índice)
+    public static final long DEDUP_WINDOW_MS = 2 * 60 * 1000; // 2 minutos
+    private static final String DEDUP_INDEX_FILE = "dedup.idx";
+    private static final int DEDUP_SAVE_EVERY = 32;
+
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    // Um evento que falha sozinho é tentado de novo nos próximos lotes antes de ser descartado
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    private static final long INSERT_RETRY_DELAY_MS = 30 * 1000;
+
+    // Eventos descartados por vez quando o outbox passa do orçamento
+    private static final int EVICTION_BATCH = 50;
+
+    private static final String JOURNAL_DIR = "event_journal";
+    // Janela usada ao reaplicar o journal: o mesmo evento já inserido no Room tem o mesmo timestamp
+    private static final long REPLAY_DEDUP_WINDOW_MS = 1;
+
+    private static EventOutbox instance;
+
+    private final Context context;
+    private final OutboxDao dao;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Fila dos produtores; drenada em lote pela thread do executor
+    private final ConcurrentLinkedQueue<PendingEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    // Acessados só pela thread do executor
+    private final List<PendingEvent> retryEvents = new ArrayList<>();
+    private EventJournal journal;
+    private long journalAppended = 0;
+    private long journalApplied = 0;
+
+    private DedupIndex dedupIndex;
+    private boolean dedupIndexStale = true;
+    private int dedupUnsavedChanges = 0;
+
+    // Orçamento em bytes dos eventos pendentes; só acessado na thread do executor
+    private final OutboxBudget budget = new OutboxBudget(OutboxBudget.DEFAULT_BUDGET_BYTES);
+    private boolean budgetStale = true;
+    private boolean criticalOverBudgetLogged = false;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static final class PendingEvent {
+        final GeofenceEventEntity geofenceEvent;
+        final SystemEventEntity systemEvent;
+        final long dedupWindowMs;
+        // Definidos pela thread do executor
+        boolean journaled;
+        int failedAttempts;
+
+        PendingEvent(GeofenceEventEntity geofenceEvent, SystemEventEntity systemEvent, long dedupWindowMs) {
+            this.geofenceEvent = geofenceEvent;
+            this.systemEvent = systemEvent;
+            this.dedupWindowMs = dedupWindowMs;
+        }
+    }
+
+    private EventOutbox(Context context) {
+        this.context = context;
+        this.dao = OutboxDatabase.getInstance(context).outboxDao();
+        executor.execute(this::openJournal);
+        executor.execute(this::importLegacyEvents);
+        executor.execute(this::replayJournal);
+    }
+
+    public static synchronized EventOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new EventOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // === ESCRITA ===
+    /**
+     * Adiciona um evento de geofence. Com dedupWindowMs > 0, ignora o evento se já
+     * existir outro com a mesma chave (geofence, tipo, usuário) dentro da janela.
+     */
+    public void addGeofenceEvent(JSONObject eventJson, long dedupWindowMs) {
+        GeofenceEventEntity entity;
+        try {
+            entity = GeofenceEventEntity.fromJson(eventJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "Erro ao converter evento de geofence", e);
+            return;
+        }
+        enqueue(new PendingEvent(entity, null, dedupWindowMs));
+    }
+
+    public void addSystemEvent(JSONObject eventJson) {
+        try {
+            enqueue(new PendingEvent(null, SystemEventEntity.fromJson(eventJson), 0));
+        } catch (JSONException e) {
+            Log.e(TAG, "Erro ao converter evento de sistema", e);
+        }
+    }
+
+    /**
+     * Espera a fila atual chegar ao banco (para quem vai ler o outbox logo em seguida)
+     */
+    @WorkerThread
+    public void awaitFlush() {
+        try {
+            executor.submit(this::drainPendingEvents).get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, "Fila do outbox não foi gravada a tempo", e);
+        }
+    }
+
+    private void enqueue(PendingEvent event) {
+        pendingEvents.offer(event);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drainPendingEvents);
+        }
+    }
+
+    // === GRAVAÇÃO EM LOTE ===
+    /**
+     * Grava tudo o que estiver na fila em uma única transação. Se o lote falhar, grava
+     * um evento por vez para que um evento com problema não derrube os outros.
+     */
+    @WorkerThread
+    private void drainPendingEvents() {
+        // Liberado antes de drenar: um evento enfileirado depois daqui agenda outro lote
+        drainScheduled.set(false);
+        List<PendingEvent> batch = new ArrayList<>(retryEvents);
+        retryEvents.clear();
+        PendingEvent next;
+        while ((next = pendingEvents.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) return;
+
+        appendToJournal(batch);
+
+        int applied;
+        try (WakeLockManager.Hold hold = WakeLockManager.getInstance(context).acquire(WakeLockManager.TAG_OUTBOX_FLUSH)) {
+            try {
+                OutboxDatabase.getInstance(context).runInTransaction(() -> {
+                    for (PendingEvent event : batch) {
+                        insertEvent(event);
+                    }
+                });
+                applied = countJournaled(batch);
+                if (batch.size() > 1) {
+                    Log.d(TAG, "Lote de " + batch.size() + " eventos gravado em uma transação");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao gravar lote de " + batch.size() + " eventos, gravando um a um", e);
+                onTransactionRolledBack();
+                applied = insertOneByOne(batch);
+            }
+        }
+
+        if (applied > 0) {
+            onJournalRecordsApplied(applied);
+        }
+        if (!retryEvents.isEmpty()) {
+            mainHandler.postDelayed(this::scheduleDrain, INSERT_RETRY_DELAY_MS);
+        }
+        enforceBudget();
+    }
+
+    /**
+     * Grava cada evento na sua própria transação; os que falharem voltam para o próximo lote
+     *
+     * @return quantos eventos do journal foram resolvidos (gravados ou descartados)
+     */
+    @WorkerThread
+    private int insertOneByOne(List<PendingEvent> batch) {
+        int applied = 0;
+        for (PendingEvent event : batch) {
+            try {
+                OutboxDatabase.getInstance(context).runInTransaction(() -> insertEvent(event));
+                if (event.journaled) applied++;
+            } catch (Exception e) {
+                onTransactionRolledBack();
+                if (++event.failedAttempts < MAX_INSERT_ATTEMPTS) {
+                    retryEvents.add(event);
+                } else {
+                    // Sem descartar, o journal nunca chegaria a ser limpo
+                    Log.e(TAG, "Evento descartado após " + MAX_INSERT_ATTEMPTS + " tentativas de gravação", e);
+                    if (event.journaled) applied++;
+                }
+            }
+        }
+        return applied;
+    }
+
+    @WorkerThread
+    private void insertEvent(PendingEvent event) {
+        if (event.geofenceEvent != null) {
+            insertGeofenceEvent(event.geofenceEvent, event.dedupWindowMs);
+        } else {
+            insertSystemEvent(event.systemEvent);
+        }
+    }
+
+    /**
+     * A transação foi desfeita: o índice e o orçamento podem contar linhas que não existem
+     */
+    @WorkerThread
+    private void onTransactionRolledBack() {
+        resetDedupIndex();
+        budgetStale = true;
+    }
+
+    private static int countJournaled(List<PendingEvent> batch) {
+        int journaled = 0;
+        for (PendingEvent event : batch) {
+            if (event.journaled) journaled++;
+        }
+        return journaled;
+    }
+
+    @WorkerThread
+    private boolean insertGeofenceEvent(GeofenceEventEntity entity, long dedupWindowMs) {
+        if (dedupWindowMs > 0 && isDuplicate(entity, dedupWindowMs)) {
+            Log.d(TAG, "Evento duplicado local ignorado: " + entity.dedupKey);
+            return false;
+        }
+        entity.segment = OutboxDatabase.segmentOf(entity.timestamp);
+        entity.sizeBytes = entity.estimateSizeBytes();
+        long id = dao.insertGeofenceEvent(entity);
+        onGeofenceEventInserted(entity, id);
+        if (!budgetStale) {
+            budget.add(OutboxBudget.PRIORITY_CRITICAL, entity.sizeBytes);
+        }
+        return true;
+    }
+
+    @WorkerThread
+    private void insertSystemEvent(SystemEventEntity entity) {
+        entity.segment = OutboxDatabase.segmentOf(entity.timestamp);
+        entity.sizeBytes = entity.estimateSizeBytes();
+        dao.insertSystemEvent(entity);
+        if (!budgetStale) {
+            budget.add(entity.priority, entity.sizeBytes);
+        }
+    }
+
+    // === LEITURA PAGINADA ===
+    /**
+     * Próxima página de eventos de geofence pendentes após (afterTimestamp, afterId).
+     * O callback roda na thread principal.
+     */
+    public void loadPendingGeofenceEvents(long afterTimestamp, long afterId, int limit,
+                                          Callback<List<GeofenceEventEntity>> callback) {
+        executor.execute(() -> {
+            List<GeofenceEventEntity> page = getPendingGeofenceEventsNow(afterTimestamp, afterId, limit);
+            mainHandler.post(() -> callback.onResult(page));
+        });
+    }
+
+    @WorkerThread
+    public List<GeofenceEventEntity> getPendingGeofenceEventsNow(long afterTimestamp, long afterId, int limit) {
+        try {
+            return dao.getGeofenceEventsPage(GeofenceEventEntity.STATUS_PENDING, afterTimestamp, afterId, limit);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao ler eventos de geofence pendentes", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Segmentos (dias) que ainda têm eventos de geofence pendentes, do mais antigo ao mais novo
+     */
+    public void loadPendingGeofenceSegments(Callback<List<Long>> callback) {
+        executor.execute(() -> {
+            List<Long> segments;
+            try {
+                segments = dao.getGeofenceSegments(GeofenceEventEntity.STATUS_PENDING);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao ler segmentos pendentes", e);
+                segments = new ArrayList<>();
+            }
+            List<Long> result = segments;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Próxima página de eventos pendentes dentro de um segmento
+     */
+    public void loadPendingGeofenceSegmentPage(long segment, long afterTimestamp, long afterId, int limit,
+                                               Callback<List<GeofenceEventEntity>> callback) {
+        executor.execute(() -> {
+            List<GeofenceEventEntity> page;
+            try {
+                page = dao.getGeofenceSegmentPage(segment, GeofenceEventEntity.STATUS_PENDING,
+                        afterTimestamp, afterId, limit);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao ler segmento " + segment, e);
+                page = new ArrayList<>();
+            }
+            List<GeofenceEventEntity> result = page;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Próxima página de eventos de sistema pendentes, da prioridade mais alta para a
+     * mais baixa, após (afterPriority, afterTimestamp, afterId)
+     */
+    public void loadPendingSystemEvents(int afterPriority, long afterTimestamp, long afterId, int limit,
+                                        Callback<List<SystemEventEntity>> callback) {
+        executor.execute(() -> {
+            List<SystemEventEntity> page;
+            try {
+                page = dao.getSystemEventsPage(SystemEventEntity.STATUS_PENDING, afterPriority,
+                        afterTimestamp, afterId, limit);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao ler eventos de sistema pendentes", e);
+                page = new ArrayList<>();
+            }
+            List<SystemEventEntity> result = page;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    // === STATUS E LIMPEZA ===
+    public void markGeofenceEventSynced(long id) {
+        executor.execute(() -> markGeofenceEventsSynced(singletonList(id)));
+    }
+
+    @WorkerThread
+    private void markGeofenceEventsSynced(List<Long> ids) {
+        try {
+            long bytes = dao.sumGeofenceEventBytesByIds(ids, GeofenceEventEntity.STATUS_PENDING);
+            dao.updateGeofenceEventStatus(ids, GeofenceEventEntity.STATUS_SYNCED);
+            if (!budgetStale) {
+                budget.remove(OutboxBudget.PRIORITY_CRITICAL, bytes);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao marcar eventos como sincronizados", e);
+        }
+    }
+
+    public void markSystemEventSynced(long id) {
+        executor.execute(() -> {
+            try {
+                SystemEventEntity entity = dao.getSystemEvent(id);
+                if (entity == null || entity.status != SystemEventEntity.STATUS_PENDING) return;
+                dao.updateSystemEventStatus(singletonList(id), SystemEventEntity.STATUS_SYNCED);
+                if (!budgetStale) {
+                    budget.remove(entity.priority, entity.sizeBytes);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao marcar evento de sistema como sincronizado", e);
+            }
+        });
+    }
+
+    /**
+     * Remove eventos já sincronizados e os segmentos (dias) inteiramente anteriores
+     * ao limite. Cada DELETE percorre só o trecho do índice que vai ser apagado.
+     */
+    public void purge(long olderThan) {
+        executor.execute(() -> {
+            try {
+                long firstKeptSegment = OutboxDatabase.segmentOf(olderThan);
+                int removed = dao.dropGeofenceSegmentsBefore(firstKeptSegment)
+                        + dao.dropSystemSegmentsBefore(firstKeptSegment)
+                        + dao.deleteGeofenceEventsByStatus(GeofenceEventEntity.STATUS_SYNCED)
+                        + dao.deleteSystemEventsByStatus(SystemEventEntity.STATUS_SYNCED);
+                if (dedupIndex != null) {
+                    dedupIndex.pruneBefore(olderThan);
+                    saveDedupIndex();
+                }
+                if (removed > 0) {
+                    // Podem ter saído eventos pendentes antigos: recalcula o orçamento
+                    budgetStale = true;
+                    Log.d(TAG, "Removidos " + removed + " eventos do outbox");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao limpar outbox", e);
+            }
+        });
+    }
+
+    // === ORÇAMENTO E DESCARTE ===
+    /**
+     * Descarta os eventos pendentes mais antigos da prioridade mais baixa até o
+     * outbox voltar ao orçamento. Eventos críticos só são descartados acima do
+     * limite rígido do OutboxBudget.
+     */
+    @WorkerThread
+    private void enforceBudget() {
+        try {
+            ensureBudget();
+            int evicted = 0;
+            int evictedCritical = 0;
+            int priority;
+            while ((priority = budget.nextEvictionPriority()) != -1) {
+                List<Long> ids = new ArrayList<>();
+                long bytes = 0;
+                if (priority == OutboxBudget.PRIORITY_CRITICAL) {
+                    for (GeofenceEventEntity entity : dao.getOldestGeofenceEvents(
+                            GeofenceEventEntity.STATUS_PENDING, EVICTION_BATCH)) {
+                        ids.add(entity.id);
+                        bytes += entity.sizeBytes;
+                    }
+                    if (!ids.isEmpty()) dao.deleteGeofenceEvents(ids);
+                } else {
+                    for (SystemEventEntity entity : dao.getOldestSystemEvents(
+                            SystemEventEntity.STATUS_PENDING, priority, EVICTION_BATCH)) {
+                        ids.add(entity.id);
+                        bytes += entity.sizeBytes;
+                    }
+                    if (!ids.isEmpty()) dao.deleteSystemEvents(ids);
+                }
+                if (ids.isEmpty()) {
+                    // Contagem fora de sincronia com o banco
+                    budget.set(priority, 0);
+                    continue;
+                }
+                budget.recordEviction(priority, ids.size(), bytes);
+                if (priority == OutboxBudget.PRIORITY_CRITICAL) {
+                    evictedCritical += ids.size();
+                } else {
+                    evicted += ids.size();
+                }
+            }
+
+            if (evicted > 0) {
+                Log.w(TAG, "Outbox acima do orçamento: " + evicted + " eventos de baixa prioridade descartados "
+                        + "(GPS: " + budget.getEvictedEvents(OutboxBudget.PRIORITY_GPS_STATUS)
+                        + ", diagnóstico: " + budget.getEvictedEvents(OutboxBudget.PRIORITY_DIAGNOSTIC)
+                        + " desde a abertura)");
+            }
+            if (evictedCritical > 0) {
+                Log.e(TAG, "Eventos críticos acima do limite de " + budget.getCriticalLimitBytes()
+                        + " bytes: " + evictedCritical + " eventos mais antigos descartados");
+            }
+            if (budget.isOverBudget()) {
+                if (!criticalOverBudgetLogged) {
+                    Log.w(TAG, "Eventos críticos pendentes (" + budget.getTotalBytes()
+                            + " bytes) excedem o orçamento de " + budget.getBudgetBytes() + " bytes");
+                    criticalOverBudgetLogged = true;
+                }
+            } else {
+                criticalOverBudgetLogged = false;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao aplicar orçamento do outbox", e);
+            budgetStale = true;
+        }
+    }
+
+    @WorkerThread
+    private void ensureBudget() {
+        if (!budgetStale) return;
+        budget.set(OutboxBudget.PRIORITY_CRITICAL,
+                dao.sumGeofenceEventBytes(GeofenceEventEntity.STATUS_PENDING));
+        budget.set(OutboxBudget.PRIORITY_GPS_STATUS,
+                dao.sumSystemEventBytes(SystemEventEntity.STATUS_PENDING, OutboxBudget.PRIORITY_GPS_STATUS));
+        budget.set(OutboxBudget.PRIORITY_DIAGNOSTIC,
+                dao.sumSystemEventBytes(SystemEventEntity.STATUS_PENDING, OutboxBudget.PRIORITY_DIAGNOSTIC));
+        budgetStale = false;
+    }
+
+    // === JOURNAL ===
+    @WorkerThread
+    private void openJournal() {
+        try {
+            journal = new EventJournal(new File(context.getFilesDir(), JOURNAL_DIR));
+            if (journal.getRecoveredTruncations() > 0) {
+                Log.w(TAG, "Journal truncado no último registro válido");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao abrir journal de eventos, seguindo só com o Room", e);
+            journal = null;
+        }
+    }
+
+    /**
+     * Grava no journal os eventos de geofence do lote, com um único force para todos,
+     * antes da transação no Room
+     *
+     */
+    @WorkerThread
+    private void appendToJournal(List<PendingEvent> batch) {
+        if (journal == null) return;
+        long lastSequence = -1;
+        for (PendingEvent event : batch) {
+            // Eventos de nova tentativa já estão no journal
+            if (event.geofenceEvent == null || event.journaled) continue;
+            try {
+                lastSequence = journal.write(EventCodec.encode(event.geofenceEvent));
+                event.journaled = true;
+                journalAppended++;
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao gravar evento no journal", e);
+            }
+        }
+        if (lastSequence >= 0) {
+            try {
+                journal.syncTo(lastSequence);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao forçar journal no disco", e);
+            }
+        }
+    }
+
+    @WorkerThread
+    private void onJournalRecordsApplied(int count) {
+        journalApplied += count;
+        if (journalApplied == journalAppended) {
+            clearJournal();
+        }
+    }
+
+    /**
+     * Reaplica no Room os eventos que ficaram só no journal (ex.: queda de energia).
+     * Roda no executor antes de qualquer lote, então todos os registros são da execução anterior.
+     */
+    @WorkerThread
+    private void replayJournal() {
+        if (journal == null) return;
+        List<byte[]> records;
+        try {
+            records = journal.readAll();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao ler journal", e);
+            return;
+        }
+        int recovered = records.size();
+
+        if (recovered > 0) {
+            try (WakeLockManager.Hold hold = WakeLockManager.getInstance(context).acquire(WakeLockManager.TAG_OUTBOX_FLUSH)) {
+                List<GeofenceEventEntity> entities = new ArrayList<>();
+                for (int i = 0; i < recovered; i++) {
+                    entities.addAll(decodeJournalRecord(records.get(i)));
+                }
+                int[] replayed = {0};
+                OutboxDatabase.getInstance(context).runInTransaction(() -> {
+                    for (GeofenceEventEntity entity : entities) {
+                        if (insertGeofenceEvent(entity, REPLAY_DEDUP_WINDOW_MS)) {
+                            replayed[0]++;
+                        }
+                    }
+                });
+                Log.d(TAG, "Journal reaplicado: " + replayed[0] + " de " + entities.size() + " eventos inseridos");
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao reaplicar journal", e);
+                resetDedupIndex();
+                return;
+            }
+        }
+
+        if (journalApplied == journalAppended) {
+            clearJournal();
+        }
+    }
+
+    /**
+     * Registros do journal usam o EventCodec; os primeiros journals gravavam JSON
+     */
+    private static List<GeofenceEventEntity> decodeJournalRecord(byte[] record) throws IOException, JSONException {
+        if (record.length > 0 && record[0] == '{') {
+            List<GeofenceEventEntity> legacy = new ArrayList<>(1);
+            legacy.add(GeofenceEventEntity.fromJson(new JSONObject(new String(record, StandardCharsets.UTF_8))));
+            return legacy;
+        }
+        return EventCodec.decode(record);
+    }
+
+    private void clearJournal() {
+        try {
+            journal.clear();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao limpar journal", e);
+        }
+    }
+
+    // === ÍNDICE DE DUPLICIDADE ===
+    @WorkerThread
+    private boolean isDuplicate(GeofenceEventEntity entity, long dedupWindowMs) {
+        if (dedupWindowMs > DEDUP_WINDOW_MS) {
+            // Janela maior que o bucket do índice: consulta o banco
+            return dao.countGeofenceEventsByDedupKey(entity.dedupKey,
+                    entity.timestamp - dedupWindowMs, entity.timestamp + dedupWindowMs) > 0;
+        }
+        return ensureDedupIndex().contains(entity.dedupKey, entity.timestamp, dedupWindowMs);
+    }
+
+    @WorkerThread
+    private void onGeofenceEventInserted(GeofenceEventEntity entity, long id) {
+        if (dedupIndex == null || dedupIndexStale) return;
+        dedupIndex.add(entity.dedupKey, entity.timestamp);
+        dedupIndex.setCoveredId(id);
+        if (++dedupUnsavedChanges >= DEDUP_SAVE_EVERY) {
+            saveDedupIndex();
+        }
+    }
+
+    /**
+     * Carrega o índice salvo (ou cria um vazio) e completa com as linhas do outbox
+     * inseridas depois do último id coberto
+     */
+    @WorkerThread
+    private DedupIndex ensureDedupIndex() {
+        if (dedupIndex == null) {
+            dedupIndex = DedupIndex.readFrom(dedupIndexFile(), DEDUP_WINDOW_MS);
+            if (dedupIndex == null) {
+                dedupIndex = new DedupIndex(DEDUP_WINDOW_MS);
+            }
+            dedupIndexStale = true;
+        }
+        if (dedupIndexStale) {
+            List<DedupEntry> missing = dao.getDedupEntriesAfter(dedupIndex.getCoveredId());
+            for (DedupEntry entry : missing) {
+                dedupIndex.add(entry.dedupKey, entry.timestamp);
+                dedupIndex.setCoveredId(entry.id);
+            }
+            dedupIndexStale = false;
+            if (!missing.isEmpty()) {
+                Log.d(TAG, "Índice de duplicidade completado com " + missing.size() + " eventos");
+                saveDedupIndex();
+            }
+        }
+        return dedupIndex;
+    }
+
+    @WorkerThread
+    private void resetDedupIndex() {
+        dedupIndex = null;
+        dedupUnsavedChanges = 0;
+        if (!dedupIndexFile().delete()) {
+            Log.d(TAG, "Índice de duplicidade não estava salvo");
+        }
+    }
+
+    @WorkerThread
+    private void saveDedupIndex() {
+        try {
+            dedupIndex.writeTo(dedupIndexFile());
+            dedupUnsavedChanges = 0;
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao salvar índice de duplicidade", e);
+        }
+    }
+
+    private File dedupIndexFile() {
+        return new File(context.getFilesDir(), DEDUP_INDEX_FILE);
+    }
+
+    private static List<Long> singletonList(long id) {
+        List<Long> ids = new ArrayList<>(1);
+        ids.add(id);
+        return ids;
+    }
+
+    // === MIGRAÇÃO DOS BLOBS JSON ===
+    /**
+     * Importa os eventos ainda guardados como JSON em MyAppPrefs e remove as chaves antigas
+     */
+    @WorkerThread
+    private void importLegacyEvents() {
+        SharedPreferences prefs = StateStore.prefs(context, StateStore.APP);
+        String events = prefs.getString(LEGACY_EVENTS_KEY, null);
+        String gpsEvents = prefs.getString(LEGACY_GPS_EVENTS_KEY, null);
+        if (events == null && gpsEvents == null) return;
+
+        try {
+            List<GeofenceEventEntity> geofenceEntities = new ArrayList<>();
+            if (events != null) {
+                JSONArray array = new JSONArray(events);
+                for (int i = 0; i < array.length(); i++) {
+                    GeofenceEventEntity entity = GeofenceEventEntity.fromJson(array.getJSONObject(i));
+                    entity.segment = OutboxDatabase.segmentOf(entity.timestamp);
+                    entity.sizeBytes = entity.estimateSizeBytes();
+                    geofenceEntities.add(entity);
+                }
+            }
+
+            List<SystemEventEntity> systemEntities = new ArrayList<>();
+            if (gpsEvents != null) {
+                JSONArray array = new JSONArray(gpsEvents);
+                for (int i = 0; i < array.length(); i++) {
+                    SystemEventEntity entity = SystemEventEntity.fromJson(array.getJSONObject(i));
+                    entity.segment = OutboxDatabase.segmentOf(entity.timestamp);
+                    entity.sizeBytes = entity.estimateSizeBytes();
+                    systemEntities.add(entity);
+                }
+            }
+
+            OutboxDatabase.getInstance(context).runInTransaction(() -> {
+                dao.insertGeofenceEvents(geofenceEntities);
+                dao.insertSystemEvents(systemEntities);
+            });
+            // As linhas importadas entram no índice e no orçamento na próxima verificação
+            dedupIndexStale = true;
+            budgetStale = true;
+
+            prefs.edit()
+                    .remove(LEGACY_EVENTS_KEY)
+                    .remove(LEGACY_GPS_EVENTS_KEY)
+                    .commit();
+            Log.d(TAG, "Importados " + geofenceEntities.size() + " eventos de geofence e "
+                    + systemEntities.size() + " eventos de GPS do formato antigo");
+        } catch (JSONException e) {
+            Log.e(TAG, "Erro ao importar eventos antigos", e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.granith;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Filtro de qualidade aplicado a cada localização antes da avaliação das geofences.
+ *
+ * - Precisão: comparada ao raio da geofence mais próxima
+ * - Velocidade implícita: salto impossível em relação à última localização aceita
+ * - Idade: localizações antigas entregues em lote pelo provedor
+ * - Mock: localizações de provedores simulados
+ *
+ * Só localizações ACCEPT avançam os contadores de confirmação de entrada/saída.
+ * O veredito não impede o serviço de usar a localização para trocar de modo e de
+ * precisão; apenas localizações simuladas são descartadas por completo.
+ */
+public class FixQualityGate {
+
+    public enum Verdict {
+        ACCEPT, DEGRADED, REJECT
+    }
+
+    public enum Reason {
+        POOR_ACCURACY, IMPOSSIBLE_SPEED, STALE, MOCK
+    }
+
+    // Valores padrão
+    public static final float DEFAULT_DEGRADED_ACCURACY_RATIO = 0.5f;  // precisão > 50% do raio
+    public static final float DEFAULT_REJECT_ACCURACY_RATIO = 1.5f;    // precisão > 150% do raio
+    public static final float DEFAULT_MAX_SPEED_MPS = 70f;             // ~250 km/h
+    public static final long DEFAULT_DEGRADED_AGE_MS = 30 * 1000;      // 30 segundos
+    public static final long DEFAULT_MAX_AGE_MS = 2 * 60 * 1000;       // 2 minutos
+
+    // Tolerância mínima para geofences muito pequenas
+    private static final float MIN_DEGRADED_ACCURACY_M = 20f;
+
+    private final float degradedAccuracyRatio;
+    private final float rejectAccuracyRatio;
+    private final float maxSpeedMps;
+    private final long degradedAgeMs;
+    private final long maxAgeMs;
+    private final boolean allowMock;
+
+    private final Map<Reason, Long> rejectionCounts = new EnumMap<>(Reason.class);
+    private final Map<Reason, Long> degradedCounts = new EnumMap<>(Reason.class);
+    private long acceptedCount = 0;
+    // Motivo da última rejeição ou degradação (null quando aceita)
+    private Reason lastReason;
+
+    // Última localização aceita (ou degradada) para o cálculo de velocidade
+    private boolean hasPrevious = false;
+    private double previousLat;
+    private double previousLng;
+    private float previousAccuracy;
+    private long previousElapsedMs;
+
+    public FixQualityGate() {
+        this(DEFAULT_DEGRADED_ACCURACY_RATIO, DEFAULT_REJECT_ACCURACY_RATIO, DEFAULT_MAX_SPEED_MPS,
+                DEFAULT_DEGRADED_AGE_MS, DEFAULT_MAX_AGE_MS, false);
+    }
+
+    public FixQualityGate(float degradedAccuracyRatio, float rejectAccuracyRatio, float maxSpeedMps,
+                          long degradedAgeMs, long maxAgeMs, boolean allowMock) {
+        this.degradedAccuracyRatio = degradedAccuracyRatio;
+        this.rejectAccuracyRatio = rejectAccuracyRatio;
+        this.maxSpeedMps = maxSpeedMps;
+        this.degradedAgeMs = degradedAgeMs;
+        this.maxAgeMs = maxAgeMs;
+        this.allowMock = allowMock;
+    }
+
+    /**
+     * @param accuracy      precisão horizontal em metros (0 ou negativa quando desconhecida)
+     * @param fixElapsedMs  momento da localização em elapsedRealtime (ms)
+     * @param nowElapsedMs  elapsedRealtime atual (ms)
+     * @param nearestRadius raio da geofence mais próxima (0 quando não há geofences)
+     */
+    public Verdict evaluate(double lat, double lng, float accuracy, long fixElapsedMs, long nowElapsedMs,
+                            boolean mock, float nearestRadius) {
+        lastReason = null;
+        if (mock && !allowMock) {
+            return reject(Reason.MOCK);
+        }
+
+        long ageMs = nowElapsedMs - fixElapsedMs;
+        if (ageMs > maxAgeMs) {
+            return reject(Reason.STALE);
+        }
+
+        if (accuracy <= 0) {
+            // Sem precisão informada não há como confiar na localização para confirmar eventos
+            return degrade(Reason.POOR_ACCURACY, lat, lng, accuracy, fixElapsedMs);
+        }
+
+        if (nearestRadius > 0 && accuracy > nearestRadius * rejectAccuracyRatio) {
+            return reject(Reason.POOR_ACCURACY);
+        }
+
+        if (hasPrevious && fixElapsedMs > previousElapsedMs) {
+            double distance = GeoUtils.distanceMeters(previousLat, previousLng, lat, lng);
+            // Desconta a incerteza das duas localizações antes de calcular a velocidade
+            double uncertainDistance = Math.max(0, distance - accuracy - previousAccuracy);
+            double seconds = (fixElapsedMs - previousElapsedMs) / 1000.0;
+            if (uncertainDistance / seconds > maxSpeedMps) {
+                return reject(Reason.IMPOSSIBLE_SPEED);
+            }
+        }
+
+        if (nearestRadius > 0
+                && accuracy > Math.max(MIN_DEGRADED_ACCURACY_M, nearestRadius * degradedAccuracyRatio)) {
+            return degrade(Reason.POOR_ACCURACY, lat, lng, accuracy, fixElapsedMs);
+        }
+
+        if (ageMs > degradedAgeMs) {
+            return degrade(Reason.STALE, lat, lng, accuracy, fixElapsedMs);
+        }
+
+        acceptedCount++;
+        remember(lat, lng, accuracy, fixElapsedMs);
+        return Verdict.ACCEPT;
+    }
+
+    private Verdict reject(Reason reason) {
+        lastReason = reason;
+        rejectionCounts.put(reason, getRejectionCount(reason) + 1);
+        return Verdict.REJECT;
+    }
+
+    private Verdict degrade(Reason reason, double lat, double lng, float accuracy, long fixElapsedMs) {
+        lastReason = reason;
+        degradedCounts.put(reason, getDegradedCount(reason) + 1);
+        remember(lat, lng, accuracy, fixElapsedMs);
+        return Verdict.DEGRADED;
+    }
+
+    private void remember(double lat, double lng, float accuracy, long fixElapsedMs) {
+        if (hasPrevious && fixElapsedMs < previousElapsedMs) return;
+        hasPrevious = true;
+        previousLat = lat;
+        previousLng = lng;
+        previousAccuracy = Math.max(0, accuracy);
+        previousElapsedMs = fixElapsedMs;
+    }
+
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    /**
+     * Motivo do último veredito REJECT ou DEGRADED, ou null se a última foi aceita
+     */
+    public Reason getLastReason() {
+        return lastReason;
+    }
+
+    public long getRejectionCount(Reason reason) {
+        Long count = rejectionCounts.get(reason);
+        return count != null ? count : 0;
+    }
+
+    public long getDegradedCount(Reason reason) {
+        Long count = degradedCounts.get(reason);
+        return count != null ? count : 0;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public Map<Reason, Long> getRejectionSnapshot() {
+        return new EnumMap<>(rejectionCounts);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.granith;
+
+/**
+ * Utilitários geográficos em Java puro (sem dependência do framework Android)
+ */
+public final class GeoUtils {
+    private static final double EARTH_RADIUS_M = 6371008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Distância em metros entre dois pontos (fórmula de haversine)
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Distância em metros até a borda da geofence (negativa quando dentro)
+     */
+    public static double edgeDistanceMeters(double lat, double lng, GeofenceData geofence) {
+        return distanceMeters(lat, lng, geofence.getLatitude(), geofence.getLongitude()) - geofence.getRadius();
+    }
+}
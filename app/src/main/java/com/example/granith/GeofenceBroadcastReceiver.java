@@ -0,0 +1,38 @@
+package com.example.granith;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Recebe as transições das geofences registradas no SO (modo híbrido) e as
+ * encaminha ao LocationForegroundService.
+ *
+ * A entrega por broadcast é mais confiável em segundo plano do que um PendingIntent
+ * de serviço, e transições de geofence permitem iniciar o serviço em primeiro plano.
+ */
+public class GeofenceBroadcastReceiver extends BroadcastReceiver {
+    private static final String TAG = "GeofenceBroadcastReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (intent == null || !LocationForegroundService.ACTION_OS_GEOFENCE_EVENT.equals(intent.getAction())) {
+            return;
+        }
+
+        // Mantém os extras preenchidos pelo GeofencingEvent
+        Intent serviceIntent = new Intent(intent);
+        serviceIntent.setClass(context, LocationForegroundService.class);
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(serviceIntent);
+            } else {
+                context.startService(serviceIntent);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao encaminhar evento de geofence do SO", e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.granith;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Evento de geofence pendente de sincronização (outbox).
+ * Os campos conhecidos viram colunas; campos extras dos produtores (ex.: dados de
+ * shutdown) ficam em "extras" como JSON, para que o evento possa ser reconstruído.
+ */
+@Entity(tableName = "geofence_events",
+        indices = {
+                @Index(value = {"status", "timestamp"}),
+                @Index(value = {"dedup_key"}),
+                @Index(value = {"segment", "status"})
+        })
+public class GeofenceEventEntity {
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_SYNCED = 1;
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "local_id")
+    public String localId;
+
+    @NonNull
+    @ColumnInfo(name = "dedup_key")
+    public String dedupKey = "";
+
+    @ColumnInfo(name = "status")
+    public int status = STATUS_PENDING;
+
+    @ColumnInfo(name = "timestamp")
+    public long timestamp;
+
+    // Partição por dia (UTC) do timestamp: a retenção apaga segmentos inteiros
+    @ColumnInfo(name = "segment", defaultValue = "0")
+    public long segment;
+
+    // Tamanho estimado da linha, para o orçamento do outbox
+    @ColumnInfo(name = "size_bytes", defaultValue = "0")
+    public int sizeBytes;
+
+    @ColumnInfo(name = "event_type")
+    public String eventType;
+
+    @ColumnInfo(name = "geofence_name")
+    public String geofenceName;
+
+    @ColumnInfo(name = "geofence_code")
+    public String geofenceCode;
+
+    @ColumnInfo(name = "geofence_id")
+    public String geofenceId;
+
+    @ColumnInfo(name = "user_name")
+    public String userName;
+
+    @ColumnInfo(name = "employee_id")
+    public String employeeId;
+
+    @ColumnInfo(name = "company_id")
+    public String companyId;
+
+    @ColumnInfo(name = "latitude")
+    public double latitude;
+
+    @ColumnInfo(name = "longitude")
+    public double longitude;
+
+    @ColumnInfo(name = "accuracy")
+    public double accuracy;
+
+    @ColumnInfo(name = "device_info")
+    public String deviceInfo;
+
+    @ColumnInfo(name = "extras")
+    public String extras;
+
+    // Colunas somadas por estimateSizeBytes, para o preenchimento da MIGRATION_2_3
+    static final String[] SIZE_COLUMNS = {"local_id", "dedup_key", "event_type", "geofence_name",
+            "geofence_code", "geofence_id", "user_name", "employee_id", "company_id", "device_info", "extras"};
+
+    public int estimateSizeBytes() {
+        return OutboxBudget.estimateBytes(localId, dedupKey, eventType, geofenceName, geofenceCode,
+                geofenceId, userName, employeeId, companyId, deviceInfo, extras);
+    }
+
+    public static String dedupKey(String geofenceName, String eventType, String userName) {
+        return geofenceName + "_" + eventType + "_" + userName;
+    }
+
+    /**
+     * Converte o JSON usado pelos produtores (mesmas chaves do antigo offline_events)
+     */
+    public static GeofenceEventEntity fromJson(JSONObject json) throws JSONException {
+        GeofenceEventEntity entity = new GeofenceEventEntity();
+        JSONObject extras = new JSONObject();
+
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            switch (key) {
+                case "local_id":
+                    entity.localId = json.optString(key, null);
+                    break;
+                case "timestamp":
+                    entity.timestamp = json.optLong(key, System.currentTimeMillis());
+                    break;
+                case "event_type":
+                    entity.eventType = json.optString(key, null);
+                    break;
+                case "geofence_name":
+                    entity.geofenceName = json.optString(key, null);
+                    break;
+                case "geofence_code":
+                    entity.geofenceCode = json.optString(key, null);
+                    break;
+                case "geofence_id":
+                    entity.geofenceId = json.optString(key, null);
+                    break;
+                case "user_name":
+                    entity.userName = json.optString(key, null);
+                    break;
+                case "employeeId":
+                    entity.employeeId = json.optString(key, null);
+                    break;
+                case "companyId":
+                    entity.companyId = json.optString(key, null);
+                    break;
+                case "latitude":
+                    entity.latitude = json.optDouble(key, 0);
+                    break;
+                case "longitude":
+                    entity.longitude = json.optDouble(key, 0);
+                    break;
+                case "accuracy":
+                    entity.accuracy = json.optDouble(key, 0);
+                    break;
+                case "device_info":
+                    entity.deviceInfo = json.optString(key, null);
+                    break;
+                default:
+                    extras.put(key, json.get(key));
+                    break;
+            }
+        }
+
+        if (entity.timestamp == 0) {
+            entity.timestamp = System.currentTimeMillis();
+        }
+        entity.dedupKey = dedupKey(entity.geofenceName, entity.eventType, entity.userName);
+        entity.extras = extras.length() > 0 ? extras.toString() : null;
+        return entity;
+    }
+
+    /**
+     * Reconstrói o JSON no formato original dos produtores
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = extras != null ? new JSONObject(extras) : new JSONObject();
+        json.put("timestamp", timestamp);
+        json.put("latitude", latitude);
+        json.put("longitude", longitude);
+        json.put("accuracy", accuracy);
+        putIfNotNull(json, "local_id", localId);
+        putIfNotNull(json, "event_type", eventType);
+        putIfNotNull(json, "geofence_name", geofenceName);
+        putIfNotNull(json, "geofence_code", geofenceCode);
+        putIfNotNull(json, "geofence_id", geofenceId);
+        putIfNotNull(json, "user_name", userName);
+        putIfNotNull(json, "employeeId", employeeId);
+        putIfNotNull(json, "companyId", companyId);
+        putIfNotNull(json, "device_info", deviceInfo);
+        return json;
+    }
+
+    private static void putIfNotNull(JSONObject json, String key, String value) throws JSONException {
+        if (value != null) {
+            json.put(key, value);
+        }
+    }
+}
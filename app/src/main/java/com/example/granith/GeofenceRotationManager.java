@@ -0,0 +1,168 @@
+package com.example.granith;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mantém registradas no sistema operacional apenas as N geofences mais próximas,
+ * fazendo a rotação do conjunto conforme o dispositivo se desloca entre regiões.
+ *
+ * O conjunto registrado cobre um círculo em torno do ponto de ancoragem (raio até a
+ * borda da N-ésima geofence). A rotação acontece quando o dispositivo percorre metade
+ * dessa cobertura, garantindo que nenhuma geofence próxima fique sem registro.
+ */
+public class GeofenceRotationManager {
+    private static final String TAG = "GeofenceRotationManager";
+
+    // O Android permite no máximo 100 geofences por aplicativo
+    public static final int DEFAULT_MAX_REGISTERED = 90;
+    private static final double MIN_ROTATION_DISTANCE_M = 100;
+
+    private final GeofencingBackend backend;
+    private final int maxRegistered;
+
+    private final Set<String> registeredIds = new LinkedHashSet<>();
+    private List<GeofenceData> allGeofences = new ArrayList<>();
+    private boolean hasAnchor = false;
+    private boolean forceRotation = true;
+    private double anchorLat;
+    private double anchorLng;
+    private double rotationDistance = Double.MAX_VALUE;
+    private int rotationCount = 0;
+
+    public GeofenceRotationManager(GeofencingBackend backend) {
+        this(backend, DEFAULT_MAX_REGISTERED);
+    }
+
+    public GeofenceRotationManager(GeofencingBackend backend, int maxRegistered) {
+        this.backend = backend;
+        this.maxRegistered = maxRegistered;
+    }
+
+    /**
+     * Atualiza a lista completa de geofences; o conjunto registrado é recalculado
+     * na próxima localização (ou imediatamente, se já houver ponto de ancoragem)
+     */
+    public void setGeofences(List<GeofenceData> geofences) {
+        allGeofences = geofences != null ? new ArrayList<>(geofences) : new ArrayList<>();
+        forceRotation = true;
+        if (hasAnchor) {
+            rotate(anchorLat, anchorLng);
+        }
+    }
+
+    /**
+     * Processa uma nova localização e roda o conjunto se necessário
+     *
+     * @return true se houve rotação
+     */
+    public boolean onLocation(double lat, double lng) {
+        if (!forceRotation && hasAnchor
+                && GeoUtils.distanceMeters(anchorLat, anchorLng, lat, lng) < rotationDistance) {
+            return false;
+        }
+        rotate(lat, lng);
+        return true;
+    }
+
+    private void rotate(double lat, double lng) {
+        List<GeofenceData> nearest = selectNearest(lat, lng);
+
+        Map<String, GeofenceData> desired = new HashMap<>();
+        for (GeofenceData geofence : nearest) {
+            desired.put(geofence.getName(), geofence);
+        }
+
+        List<String> toRemove = new ArrayList<>();
+        for (String id : registeredIds) {
+            if (!desired.containsKey(id)) {
+                toRemove.add(id);
+            }
+        }
+
+        List<GeofenceData> toAdd = new ArrayList<>();
+        for (GeofenceData geofence : nearest) {
+            if (!registeredIds.contains(geofence.getName())) {
+                toAdd.add(geofence);
+            }
+        }
+
+        if (!toRemove.isEmpty()) {
+            backend.unregister(toRemove);
+            registeredIds.removeAll(toRemove);
+        }
+        if (!toAdd.isEmpty()) {
+            backend.register(toAdd);
+            for (GeofenceData geofence : toAdd) {
+                registeredIds.add(geofence.getName());
+            }
+        }
+
+        anchorLat = lat;
+        anchorLng = lng;
+        hasAnchor = true;
+        forceRotation = false;
+        rotationDistance = computeRotationDistance(lat, lng, nearest);
+        rotationCount++;
+
+        Log.d(TAG, "Rotação #" + rotationCount + ": +" + toAdd.size() + " -" + toRemove.size()
+                + " (registradas: " + registeredIds.size() + ", próxima rotação em "
+                + (rotationDistance == Double.MAX_VALUE ? "∞" : Math.round(rotationDistance) + "m") + ")");
+    }
+
+    private List<GeofenceData> selectNearest(double lat, double lng) {
+        List<GeofenceData> sorted = new ArrayList<>(allGeofences);
+        if (sorted.size() <= maxRegistered) {
+            return sorted;
+        }
+        Map<GeofenceData, Double> edgeDistances = new HashMap<>();
+        for (GeofenceData geofence : sorted) {
+            edgeDistances.put(geofence, GeoUtils.edgeDistanceMeters(lat, lng, geofence));
+        }
+        Collections.sort(sorted, Comparator.comparingDouble(edgeDistances::get));
+        return sorted.subList(0, maxRegistered);
+    }
+
+    /**
+     * Com todas as geofences registradas não há necessidade de rotação; caso contrário,
+     * roda ao percorrer metade da distância até a borda da geofence mais distante do conjunto
+     */
+    private double computeRotationDistance(double lat, double lng, List<GeofenceData> nearest) {
+        if (allGeofences.size() <= maxRegistered || nearest.isEmpty()) {
+            return Double.MAX_VALUE;
+        }
+        double coverage = 0;
+        for (GeofenceData geofence : nearest) {
+            coverage = Math.max(coverage, GeoUtils.edgeDistanceMeters(lat, lng, geofence));
+        }
+        return Math.max(MIN_ROTATION_DISTANCE_M, coverage / 2);
+    }
+
+    /**
+     * Remove todas as geofences registradas (ex.: ao sair do modo híbrido)
+     */
+    public void clear() {
+        if (!registeredIds.isEmpty()) {
+            backend.unregister(new ArrayList<>(registeredIds));
+            registeredIds.clear();
+        }
+        hasAnchor = false;
+        forceRotation = true;
+    }
+
+    public Set<String> getRegisteredIds() {
+        return Collections.unmodifiableSet(registeredIds);
+    }
+
+    public int getRotationCount() {
+        return rotationCount;
+    }
+}
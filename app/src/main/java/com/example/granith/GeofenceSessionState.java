@@ -0,0 +1,172 @@
+package com.example.granith;
+
+import android.content.SharedPreferences;
+
+/**
+ * Estado de sessão do motor de geofences mantido em memória: usuário e última transição.
+ *
+ * O caminho de cada localização lê só campos; nada de SharedPreferences nem mapas.
+ * As transições são gravadas logo depois (write-behind): transições da mesma rajada
+ * viram uma única edição em GeofenceStatePrefs, feita fora da thread do motor.
+ * O nome do usuário e as saídas gravadas fora do serviço (markExited) chegam pelo
+ * aviso de alteração do StateStore; antes de gravar, uma transição persistida mais
+ * nova que a da memória prevalece.
+ */
+public class GeofenceSessionState {
+    public static final long DEFAULT_WRITE_DELAY_MS = 250;
+
+    private static final String KEY_LAST_GEOFENCE_NAME = "last_geofence_name";
+    private static final String KEY_LAST_EVENT_TYPE = "last_event_type";
+    private static final String KEY_LAST_EVENT_TIMESTAMP = "last_event_timestamp";
+    private static final String KEY_USER_NAME = "USER_NAME";
+
+    private final SharedPreferences statePrefs;
+    private final SharedPreferences appPrefs;
+    private final StateStore.FlushScheduler scheduler;
+    private final long writeDelayMs;
+
+    private volatile String userName;
+    private volatile String lastGeofenceName;
+    private volatile String lastEventType;
+    private volatile long lastEventTimestamp;
+
+    private boolean dirty = false;
+    private boolean writeScheduled = false;
+    private long writes = 0;
+
+    // Referência forte: SharedPreferences pode guardar listeners de forma fraca
+    private final SharedPreferences.OnSharedPreferenceChangeListener userListener = (prefs, key) -> {
+        if (KEY_USER_NAME.equals(key)) {
+            userName = UserPreferences.loadUserName(prefs);
+        }
+    };
+    private final SharedPreferences.OnSharedPreferenceChangeListener stateListener = (prefs, key) -> {
+        if (KEY_LAST_EVENT_TIMESTAMP.equals(key) || KEY_LAST_EVENT_TYPE.equals(key)) {
+            synchronized (this) {
+                reloadIfNewer();
+            }
+        }
+    };
+
+    public GeofenceSessionState(SharedPreferences statePrefs, SharedPreferences appPrefs,
+                                StateStore.FlushScheduler scheduler, long writeDelayMs) {
+        this.statePrefs = statePrefs;
+        this.appPrefs = appPrefs;
+        this.scheduler = scheduler;
+        this.writeDelayMs = writeDelayMs;
+
+        userName = UserPreferences.loadUserName(appPrefs);
+        lastGeofenceName = statePrefs.getString(KEY_LAST_GEOFENCE_NAME, null);
+        lastEventType = statePrefs.getString(KEY_LAST_EVENT_TYPE, null);
+        lastEventTimestamp = statePrefs.getLong(KEY_LAST_EVENT_TIMESTAMP, 0);
+        appPrefs.registerOnSharedPreferenceChangeListener(userListener);
+        statePrefs.registerOnSharedPreferenceChangeListener(stateListener);
+    }
+
+    // === LEITURA (caminho de cada localização) ===
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getLastGeofenceName() {
+        return lastGeofenceName;
+    }
+
+    public String getLastEventType() {
+        return lastEventType;
+    }
+
+    public long getLastEventTimestamp() {
+        return lastEventTimestamp;
+    }
+
+    /**
+     * Geofence da última entrada confirmada ainda sem saída, ou null
+     */
+    public String getEnteredGeofenceName() {
+        return "Entrada Confirmada".equals(lastEventType) ? lastGeofenceName : null;
+    }
+
+    // === TRANSIÇÕES ===
+    /**
+     * Atualiza o estado em memória na hora e agenda a gravação
+     */
+    public void recordTransition(String geofenceName, String eventType, long timestamp) {
+        synchronized (this) {
+            lastGeofenceName = geofenceName;
+            lastEventType = eventType;
+            lastEventTimestamp = timestamp;
+            dirty = true;
+            if (writeScheduled) return;
+            writeScheduled = true;
+        }
+        scheduler.schedule(this::flush, writeDelayMs);
+    }
+
+    /**
+     * Grava a última transição pendente (chamado pelo agendador ou no encerramento)
+     */
+    public void flush() {
+        String name;
+        String type;
+        long timestamp;
+        synchronized (this) {
+            writeScheduled = false;
+            reloadIfNewer();
+            if (!dirty) return;
+            dirty = false;
+            name = lastGeofenceName;
+            type = lastEventType;
+            timestamp = lastEventTimestamp;
+            writes++;
+        }
+        statePrefs.edit()
+                .putString(KEY_LAST_GEOFENCE_NAME, name)
+                .putString(KEY_LAST_EVENT_TYPE, type)
+                .putLong(KEY_LAST_EVENT_TIMESTAMP, timestamp)
+                .apply();
+    }
+
+    /**
+     * Adota a transição persistida se for mais nova que a da memória (ex.: saída
+     * gravada por markExited); a transição pendente mais antiga é descartada
+     */
+    private void reloadIfNewer() {
+        long persistedTimestamp = statePrefs.getLong(KEY_LAST_EVENT_TIMESTAMP, 0);
+        if (persistedTimestamp <= lastEventTimestamp) return;
+        lastGeofenceName = statePrefs.getString(KEY_LAST_GEOFENCE_NAME, null);
+        lastEventType = statePrefs.getString(KEY_LAST_EVENT_TYPE, null);
+        lastEventTimestamp = persistedTimestamp;
+        dirty = false;
+    }
+
+    /**
+     * Quantas edições foram feitas em GeofenceStatePrefs
+     */
+    public synchronized long getWriteCount() {
+        return writes;
+    }
+
+    /**
+     * Registra a saída no estado persistido quando a última transição ainda é a entrada
+     * nessa geofence (saídas geradas fora do serviço: desligamento e recuperação)
+     */
+    public static void markExited(SharedPreferences statePrefs, String geofenceName, String eventType,
+                                  long timestamp) {
+        if (geofenceName == null
+                || !geofenceName.equals(statePrefs.getString(KEY_LAST_GEOFENCE_NAME, null))
+                || !"Entrada Confirmada".equals(statePrefs.getString(KEY_LAST_EVENT_TYPE, null))) {
+            return;
+        }
+        statePrefs.edit()
+                .putString(KEY_LAST_EVENT_TYPE, eventType)
+                .putLong(KEY_LAST_EVENT_TIMESTAMP, timestamp)
+                .commit();
+    }
+
+    public void close() {
+        appPrefs.unregisterOnSharedPreferenceChangeListener(userListener);
+        statePrefs.unregisterOnSharedPreferenceChangeListener(stateListener);
+        flush();
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.granith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot binário das geofences, mapeado em memória e consultado no lugar.
+ *
+ * Formato: cabeçalho, colunas de largura fixa (latitude, longitude, raio e
+ * referências de nome e código), uma grade espacial pré-montada (células
+ * ordenadas + índices das geofences de cada célula) e a tabela de strings.
+ * Abrir o arquivo valida só o cabeçalho (com CRC32 próprio) e o tamanho, sem tocar
+ * nas páginas do corpo; o CRC32 do corpo é conferido depois por verifyBody(), fora
+ * da thread principal. Nenhuma geofence é convertida em objeto até alguém pedir por ela.
+ */
+public class GeofenceSnapshot {
+    private static final int MAGIC = 0x4747534E; // "GGSN"
+    private static final int VERSION = 3;
+    // magic, versão, quantidade, célula (micrograus), início da grade, dos membros,
+    // das strings, quantidade de células, tamanho e CRC32 do corpo, CRC32 do cabeçalho
+    private static final int HEADER_BYTES = 44;
+    private static final int HEADER_CRC_OFFSET = 40;
+    private static final int CELL_BYTES = 16; // [long chave][int início][int quantidade]
+    // Comprimento reservado na tabela de strings para nome/código ausente
+    private static final int NULL_STRING = 0xffff;
+    private static final int MAX_STRING_BYTES = NULL_STRING - 1;
+
+    // Célula de ~2,2 km; cada geofence entra nas células que cobrem raio + margem
+    public static final int DEFAULT_CELL_E6 = 20000;
+    public static final double GRID_MARGIN_M = 1000;
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int cellE6;
+    private final int gridOffset;
+    private final int membersOffset;
+    private final int stringsOffset;
+    private final int cellCount;
+    private final GeofenceData[] materialized;
+
+    private GeofenceSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || checksum(buffer, 0, HEADER_CRC_OFFSET) != buffer.getInt(HEADER_CRC_OFFSET)) {
+            throw new IOException("Snapshot de geofences inválido");
+        }
+        count = buffer.getInt(8);
+        cellE6 = buffer.getInt(12);
+        gridOffset = buffer.getInt(16);
+        membersOffset = buffer.getInt(20);
+        stringsOffset = buffer.getInt(24);
+        cellCount = buffer.getInt(28);
+        int bodyLength = buffer.getInt(32);
+        if (bodyLength != buffer.capacity() - HEADER_BYTES) {
+            throw new IOException("Snapshot de geofences truncado");
+        }
+        if (count < 0 || cellE6 <= 0 || cellCount < 0 || gridOffset != columnsEnd(count)
+                || membersOffset != gridOffset + cellCount * CELL_BYTES
+                || stringsOffset < membersOffset || stringsOffset > buffer.capacity()) {
+            throw new IOException("Snapshot de geofences inconsistente");
+        }
+        materialized = new GeofenceData[count];
+    }
+
+    /**
+     * Mapeia o snapshot; retorna null se o arquivo não existir ou for inválido
+     */
+    public static GeofenceSnapshot open(File file) {
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new GeofenceSnapshot(mapped);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Confere o CRC32 do corpo; percorre o arquivo inteiro, então deve rodar fora da
+     * thread principal. Se falhar, o snapshot deve ser descartado.
+     */
+    public boolean verifyBody() {
+        return checksum(buffer, HEADER_BYTES, buffer.capacity()) == buffer.getInt(36);
+    }
+
+    // === CONSULTA NO LUGAR ===
+    public int size() {
+        return count;
+    }
+
+    public double getLatitude(int index) {
+        return buffer.getDouble(HEADER_BYTES + index * 8);
+    }
+
+    public double getLongitude(int index) {
+        return buffer.getDouble(HEADER_BYTES + count * 8 + index * 8);
+    }
+
+    public float getRadius(int index) {
+        return buffer.getFloat(HEADER_BYTES + count * 16 + index * 4);
+    }
+
+    public String getName(int index) {
+        return readString(buffer.getInt(HEADER_BYTES + count * 20 + index * 4));
+    }
+
+    public String getCode(int index) {
+        return readString(buffer.getInt(HEADER_BYTES + count * 24 + index * 4));
+    }
+
+    /**
+     * Distância até a borda da geofence (negativa quando dentro)
+     */
+    public double edgeDistance(int index, double latitude, double longitude) {
+        return GeoUtils.distanceMeters(latitude, longitude, getLatitude(index), getLongitude(index))
+                - getRadius(index);
+    }
+
+    /**
+     * Índices das geofences cuja borda pode estar a menos de GRID_MARGIN_M do ponto
+     * (consulta à grade, sem percorrer todas as geofences)
+     */
+    public int[] candidatesNear(double latitude, double longitude) {
+        long key = cellKey(Math.floorDiv(toE6(latitude), (long) cellE6),
+                Math.floorDiv(toE6(longitude), (long) cellE6));
+        int low = 0;
+        int high = cellCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = gridOffset + mid * CELL_BYTES;
+            long midKey = buffer.getLong(offset);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                int start = buffer.getInt(offset + 8);
+                int members = buffer.getInt(offset + 12);
+                // Corpo ainda não conferido: referências fora do lugar viram "sem candidatos"
+                if (start < 0 || members < 0 || membersOffset + (long) (start + members) * 4 > stringsOffset) {
+                    return new int[0];
+                }
+                int[] result = new int[members];
+                for (int i = 0; i < members; i++) {
+                    int index = buffer.getInt(membersOffset + (start + i) * 4);
+                    if (index < 0 || index >= count) return new int[0];
+                    result[i] = index;
+                }
+                return result;
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Índice da geofence com a borda mais próxima do ponto, ou -1 se não houver geofences.
+     * Usa a grade quando alguma borda está dentro da margem; senão percorre as colunas.
+     */
+    public int findNearestEdge(double latitude, double longitude) {
+        int best = -1;
+        double bestEdge = Double.MAX_VALUE;
+        for (int index : candidatesNear(latitude, longitude)) {
+            double edge = edgeDistance(index, latitude, longitude);
+            if (edge < bestEdge) {
+                bestEdge = edge;
+                best = index;
+            }
+        }
+        // Fora da grade, qualquer borda está além da margem
+        if (best != -1 && bestEdge <= GRID_MARGIN_M) return best;
+
+        for (int index = 0; index < count; index++) {
+            double edge = edgeDistance(index, latitude, longitude);
+            if (edge < bestEdge) {
+                bestEdge = edge;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    // === MATERIALIZAÇÃO SOB DEMANDA ===
+    public synchronized GeofenceData get(int index) {
+        GeofenceData geofence = materialized[index];
+        if (geofence == null) {
+            geofence = new GeofenceData(getLatitude(index), getLongitude(index), getRadius(index),
+                    getName(index), getCode(index));
+            materialized[index] = geofence;
+        }
+        return geofence;
+    }
+
+    public List<GeofenceData> toList() {
+        List<GeofenceData> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    private String readString(int offset) {
+        int position = stringsOffset + offset;
+        if (offset < 0 || position + 2 > buffer.capacity()) return null;
+        int length = buffer.getShort(position) & 0xffff;
+        if (length == NULL_STRING || position + 2 + length > buffer.capacity()) return null;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // === ESCRITA ===
+    /**
+     * Grava o snapshot em um arquivo temporário e substitui o atual
+     */
+    public static void write(File file, List<GeofenceData> geofences) throws IOException {
+        write(file, geofences, DEFAULT_CELL_E6);
+    }
+
+    public static void write(File file, List<GeofenceData> geofences, int cellE6) throws IOException {
+        int count = geofences.size();
+
+        // Tabela de strings: [u16 comprimento][UTF-8], com strings repetidas compartilhadas
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteBuffer strings = ByteBuffer.allocate(stringTableBytes(geofences));
+        int[] nameRefs = new int[count];
+        int[] codeRefs = new int[count];
+        for (int i = 0; i < count; i++) {
+            nameRefs[i] = intern(geofences.get(i).getName(), stringOffsets, strings);
+            codeRefs[i] = intern(geofences.get(i).getCodigoObra(), stringOffsets, strings);
+        }
+
+        // Grade: célula -> geofences cuja caixa (raio + margem) cobre a célula
+        TreeMap<Long, List<Integer>> cells = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            GeofenceData geofence = geofences.get(i);
+            double reach = geofence.getRadius() + GRID_MARGIN_M;
+            double latReach = reach / METERS_PER_DEGREE;
+            double lngReach = reach / (METERS_PER_DEGREE
+                    * Math.max(0.01, Math.cos(Math.toRadians(geofence.getLatitude()))));
+            long minLat = Math.floorDiv(toE6(geofence.getLatitude() - latReach), (long) cellE6);
+            long maxLat = Math.floorDiv(toE6(geofence.getLatitude() + latReach), (long) cellE6);
+            long minLng = Math.floorDiv(toE6(geofence.getLongitude() - lngReach), (long) cellE6);
+            long maxLng = Math.floorDiv(toE6(geofence.getLongitude() + lngReach), (long) cellE6);
+            for (long cellLat = minLat; cellLat <= maxLat; cellLat++) {
+                for (long cellLng = minLng; cellLng <= maxLng; cellLng++) {
+                    cells.computeIfAbsent(cellKey(cellLat, cellLng), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        int memberCount = 0;
+        for (List<Integer> members : cells.values()) {
+            memberCount += members.size();
+        }
+
+        int gridOffset = columnsEnd(count);
+        int membersOffset = gridOffset + cells.size() * CELL_BYTES;
+        int stringsOffset = membersOffset + memberCount * 4;
+        ByteBuffer out = ByteBuffer.allocate(stringsOffset + strings.position());
+
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(cellE6)
+                .putInt(gridOffset).putInt(membersOffset).putInt(stringsOffset).putInt(cells.size())
+                .putInt(0).putInt(0).putInt(0); // tamanho e CRCs, preenchidos no fim
+        for (GeofenceData geofence : geofences) out.putDouble(geofence.getLatitude());
+        for (GeofenceData geofence : geofences) out.putDouble(geofence.getLongitude());
+        for (GeofenceData geofence : geofences) out.putFloat(geofence.getRadius());
+        for (int ref : nameRefs) out.putInt(ref);
+        for (int ref : codeRefs) out.putInt(ref);
+
+        int start = 0;
+        for (Map.Entry<Long, List<Integer>> cell : cells.entrySet()) {
+            out.putLong(cell.getKey()).putInt(start).putInt(cell.getValue().size());
+            start += cell.getValue().size();
+        }
+        for (List<Integer> members : cells.values()) {
+            for (int index : members) out.putInt(index);
+        }
+        out.put(strings.array(), 0, strings.position());
+        out.putInt(32, out.capacity() - HEADER_BYTES);
+        out.putInt(36, checksum(out, HEADER_BYTES, out.capacity()));
+        out.putInt(HEADER_CRC_OFFSET, checksum(out, 0, HEADER_CRC_OFFSET));
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            fileOut.write(out.array());
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Não foi possível substituir " + file);
+        }
+    }
+
+    private static int intern(String value, Map<String, Integer> offsets, ByteBuffer strings) {
+        Integer existing = offsets.get(value);
+        if (existing != null) return existing;
+        int offset = strings.position();
+        if (value == null) {
+            strings.putShort((short) NULL_STRING);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES) {
+                bytes = Arrays.copyOf(bytes, MAX_STRING_BYTES);
+            }
+            strings.putShort((short) bytes.length);
+            strings.put(bytes);
+        }
+        offsets.put(value, offset);
+        return offset;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(to);
+        range.position(from);
+        CRC32 crc = new CRC32();
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    private static int stringTableBytes(List<GeofenceData> geofences) {
+        int bytes = 0;
+        for (GeofenceData geofence : geofences) {
+            bytes += 4 + utf8Length(geofence.getName()) + utf8Length(geofence.getCodigoObra());
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(String value) {
+        return value != null ? Math.min(MAX_STRING_BYTES, value.getBytes(StandardCharsets.UTF_8).length) : 0;
+    }
+
+    private static int columnsEnd(int count) {
+        // lat (8) + lng (8) + raio (4) + nome (4) + código (4)
+        return HEADER_BYTES + count * 28;
+    }
+
+    private static long toE6(double degrees) {
+        return Math.round(degrees * 1e6);
+    }
+
+    private static long cellKey(long cellLat, long cellLng) {
+        return (cellLat << 32) | (cellLng & 0xffffffffL);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.granith;
+
+import java.util.List;
+
+/**
+ * Abstração do registro de geofences no sistema operacional.
+ * Permite testar a rotação de geofences sem um dispositivo.
+ */
+public interface GeofencingBackend {
+
+    /**
+     * Registra as geofences informadas (o request id é o nome da geofence)
+     */
+    void register(List<GeofenceData> geofences);
+
+    /**
+     * Remove as geofences com os request ids informados
+     */
+    void unregister(List<String> requestIds);
+}
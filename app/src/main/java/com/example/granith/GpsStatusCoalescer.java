@@ -0,0 +1,139 @@
+package com.example.granith;
+
+/**
+ * Junta as mudanças de status do GPS que acontecem em sequência em um único
+ * registro de intervalo, antes de gravar ou enviar.
+ *
+ * Alguns aparelhos ligam e desligam o provedor várias vezes por minuto. A primeira
+ * mudança abre um intervalo; as seguintes só atualizam o último estado e a
+ * contagem. O intervalo é fechado depois de um período sem mudanças (ou ao atingir
+ * a duração máxima, para não segurar um GPS que oscila sem parar). Mudanças para o
+ * estado já registrado (ex.: status inicial a cada início do serviço) são ignoradas.
+ */
+public class GpsStatusCoalescer {
+    public static final long DEFAULT_QUIET_MS = 30 * 1000;        // 30 segundos
+    public static final long DEFAULT_MAX_SPAN_MS = 5 * 60 * 1000; // 5 minutos
+
+    /**
+     * Intervalo fechado: do primeiro ao último estado observado
+     */
+    public static class Interval {
+        public final long startTimestamp;
+        public final long endTimestamp;
+        public final boolean firstEnabled;
+        public final boolean lastEnabled;
+        public final int toggleCount;
+        public final String firstMessage;
+
+        Interval(long startTimestamp, long endTimestamp, boolean firstEnabled, boolean lastEnabled,
+                 int toggleCount, String firstMessage) {
+            this.startTimestamp = startTimestamp;
+            this.endTimestamp = endTimestamp;
+            this.firstEnabled = firstEnabled;
+            this.lastEnabled = lastEnabled;
+            this.toggleCount = toggleCount;
+            this.firstMessage = firstMessage;
+        }
+    }
+
+    private final long quietMs;
+    private final long maxSpanMs;
+
+    // Último estado já entregue (null = desconhecido)
+    private Boolean reportedEnabled;
+
+    // Intervalo aberto
+    private boolean open = false;
+    private long startTimestamp;
+    private long lastChangeTimestamp;
+    private boolean firstEnabled;
+    private boolean lastEnabled;
+    private int toggleCount;
+    private String firstMessage;
+    private long suppressedChanges = 0;
+
+    public GpsStatusCoalescer(long quietMs, long maxSpanMs, Boolean reportedEnabled) {
+        this.quietMs = quietMs;
+        this.maxSpanMs = maxSpanMs;
+        this.reportedEnabled = reportedEnabled;
+    }
+
+    /**
+     * Registra um status observado
+     *
+     * @return true se um intervalo foi aberto agora (o chamador deve agendar flushDue)
+     */
+    public synchronized boolean onStatus(long timestamp, boolean enabled, String message) {
+        if (!open) {
+            if (reportedEnabled != null && reportedEnabled == enabled) {
+                suppressedChanges++;
+                return false;
+            }
+            open = true;
+            startTimestamp = timestamp;
+            lastChangeTimestamp = timestamp;
+            firstEnabled = enabled;
+            lastEnabled = enabled;
+            toggleCount = 1;
+            firstMessage = message;
+            return true;
+        }
+
+        if (enabled == lastEnabled) {
+            // Outro provedor mudou; o GPS continua igual
+            suppressedChanges++;
+            return false;
+        }
+        lastEnabled = enabled;
+        lastChangeTimestamp = timestamp;
+        toggleCount++;
+        suppressedChanges++;
+        return false;
+    }
+
+    /**
+     * Fecha e retorna o intervalo se ele já ficou quieto o suficiente ou atingiu a
+     * duração máxima; senão retorna null
+     */
+    public synchronized Interval flushDue(long now) {
+        if (!open) return null;
+        if (now - lastChangeTimestamp < quietMs && now - startTimestamp < maxSpanMs) {
+            return null;
+        }
+        return close();
+    }
+
+    /**
+     * Fecha o intervalo aberto imediatamente (ex.: serviço sendo destruído)
+     */
+    public synchronized Interval flush() {
+        return open ? close() : null;
+    }
+
+    /**
+     * Quanto esperar até o intervalo aberto poder ser fechado; -1 se não há intervalo
+     */
+    public synchronized long nextFlushDelay(long now) {
+        if (!open) return -1;
+        long due = Math.min(lastChangeTimestamp + quietMs, startTimestamp + maxSpanMs);
+        return Math.max(0, due - now);
+    }
+
+    public synchronized boolean hasOpenInterval() {
+        return open;
+    }
+
+    /**
+     * Quantas mudanças foram absorvidas sem gerar registro próprio
+     */
+    public synchronized long getSuppressedChanges() {
+        return suppressedChanges;
+    }
+
+    private Interval close() {
+        open = false;
+        reportedEnabled = lastEnabled;
+        return new Interval(startTimestamp, lastChangeTimestamp, firstEnabled, lastEnabled,
+                toggleCount, firstMessage);
+    }
+}
@@ -32,7 +32,6 @@ import java.util.Map;
 
 public class InputActivity extends AppCompatActivity {
 
-    private static final String SHARED_PREFS_NAME = "MyAppPrefs";
     private static final String USER_NAME_KEY = "USER_NAME";
     private static final String USER_ROLE_KEY = "USER_ROLE";
     private static final String TAG = "InputActivity";
@@ -404,7 +403,7 @@ public class InputActivity extends AppCompatActivity {
                     Log.d(TAG, "Sessão criada: " + documentReference.getId());
 
                     // Salva o ID da sessão para poder encerrar depois
-                    SharedPreferences prefs = getSharedPreferences(SHARED_PREFS_NAME, MODE_PRIVATE);
+                    SharedPreferences prefs = StateStore.prefs(this, StateStore.APP);
                     prefs.edit().putString("SESSION_ID", documentReference.getId()).apply();
                 })
                 .addOnFailureListener(e -> {
@@ -467,7 +466,7 @@ public class InputActivity extends AppCompatActivity {
      * Salva os dados do usuário nas SharedPreferences
      */
     private void saveUserData(String userName, String userRole, String employeeId) {
-        SharedPreferences sharedPreferences = getSharedPreferences(SHARED_PREFS_NAME, MODE_PRIVATE);
+        SharedPreferences sharedPreferences = StateStore.prefs(this, StateStore.APP);
         SharedPreferences.Editor editor = sharedPreferences.edit();
         editor.putString(USER_NAME_KEY, userName);
         editor.putString(USER_ROLE_KEY, userRole != null ? userRole : "Usuario");
@@ -20,11 +20,14 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingEvent;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
@@ -35,30 +38,56 @@ import com.google.firebase.firestore.QuerySnapshot;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class LocationForegroundService extends Service implements DeviceStateReceiver.DeviceStateListener {
     private static final String TAG = "LocationForegroundService";
 
+    // Ação usada pelo PendingIntent das geofences registradas no SO (modo híbrido, via GeofenceBroadcastReceiver)
+    public static final String ACTION_OS_GEOFENCE_EVENT = "com.example.granith.OS_GEOFENCE_EVENT";
+    // Chave em GeofencesPrefs que habilita o modo híbrido (geofences do SO + rotação)
+    public static final String HYBRID_MODE_PREF_KEY = "hybrid_geofencing_enabled";
+    // Chave em GeofencesPrefs com o limite de obsolescência das localizações passivas (ms)
+    public static final String PASSIVE_STALENESS_PREF_KEY = "passive_fix_staleness_ms";
+
     // === CONSTANTES CONSOLIDADAS ===
     private static final String CHANNEL_ID = "location_service_channel";
     private static final long SYNC_INTERVAL_MS = 5 * 60 * 1000; // 5 minutos
     private static final long STALE_CHECK_INTERVAL = 30 * 60 * 1000; // 30 minutos
-    private static final long DUPLICATE_WINDOW_MS = 2 * 60 * 1000; // 2 minutos
+    private static final long CLEANUP_INTERVAL_MS = 24 * 60 * 60 * 1000; // 24 horas
+    private static final long GEOFENCE_UPDATE_INTERVAL_MS = 24 * 60 * 60 * 1000; // 24 horas
+
+    // Tarefas de manutenção
+    private static final String TASK_SYNC = "sync";
+    private static final String TASK_STALE_CHECK = "stale_check";
+    private static final String TASK_CLEANUP = "cleanup";
+    private static final String TASK_GEOFENCE_UPDATE = "geofence_update";
+    private static final long DUPLICATE_WINDOW_MS = EventOutbox.DEDUP_WINDOW_MS;
     private static final long AUTO_EXIT_THRESHOLD_MS = 24 * 60 * 60 * 1000; // 24 horas
     private static final long EVENT_CLEANUP_AGE_MS = 7 * 24 * 60 * 60 * 1000; // 7 dias
+    private static final long HYBRID_CONFIRMATION_WINDOW_MS = 5 * 60 * 1000; // 5 minutos
     private String currentCompanyId;
     private CompanyService companyService;
     // Dentro da classe LocationForegroundService
     private boolean lowBatteryDetected = false;
     private boolean criticalBatteryDetected = false;
     private int lastBatteryLevel = -1;
+    private boolean chargingDetected = false;
+    private boolean powerSaveModeDetected = false;
     private DeviceStateReceiver deviceStateReceiver;
+    private final BatteryGovernor batteryGovernor = new BatteryGovernor();
 
 
     // Parâmetros de confirmação consolidados
@@ -75,69 +104,112 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     private final Map<String, Integer> entryUpdateCounter = new HashMap<>();
     private final Map<String, Integer> exitUpdateCounter = new HashMap<>();
     private final Map<String, Boolean> geofenceEntryState = new HashMap<>();
+    // Usuário e última transição em memória; gravação adiada fora da thread principal
+    private GeofenceSessionState sessionState;
+    // Gravações em arquivo do serviço (estado de sessão, snapshot de geofences, journal)
+    private ScheduledExecutorService storageWriter;
+    private final Handler storageResultHandler = new Handler();
+    private TrackingJournal trackingJournal;
 
     // === COMPONENTES ===
+    // Materializada sob demanda a partir do snapshot (null até alguém precisar da lista inteira)
     private List<GeofenceData> geofenceList;
+    private GeofenceSnapshot geofenceSnapshot;
+    private static final String GEOFENCE_SNAPSHOT_FILE = "geofences.snap";
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationRequest locationRequest;
-    private PowerManager.WakeLock wakeLock;
+    private LocationScheduler locationScheduler;
+    private WakeLockManager wakeLockManager;
+    private WakeLockManager.Hold syncWakeHold;
+    // Segmentos (dias) pendentes da sincronização em andamento
+    private List<Long> syncSegments;
+    private int syncSegmentIndex = 0;
+    // Página em andamento e rodada atual: callbacks de uma rodada abandonada são ignorados
+    private List<GeofenceEventEntity> syncPage;
+    private int syncRun = 0;
+    // Sem progresso por esse tempo (callback do Firestore perdido), a rodada é abandonada
+    private static final long SYNC_STALL_MS = 2 * 60 * 1000;
+    private long syncProgressElapsed = 0;
+    private WakeLockManager.Hold gpsSyncWakeHold;
+    private EventOutbox eventOutbox;
     private FirebaseFirestore firestore;
     private SharedPreferences sharedPreferences;
 
     // === HANDLERS E RECEIVERS ===
-    private final Handler syncHandler = new Handler();
-    private final Handler updateHandler = new Handler();
-    private final Handler exitCheckHandler = new Handler();
+    private final MaintenanceScheduler maintenanceScheduler = new MaintenanceScheduler();
     private NetworkReceiver networkReceiver;
     private GpsStatusReceiver gpsStatusReceiver;
 
     // === ESTADO DE PRECISÃO ===
-    private enum PrecisionState {HIGH, LOW, VERY_LOW}
-
     private PrecisionState currentPrecisionState = null;
+    private PrecisionController precisionController;
 
-    // === RUNNABLES ===
-    private final Runnable syncRunnable = new Runnable() {
-        @Override
-        public void run() {
-            try {
-                syncOfflineEventsToFirebase();
-            } catch (Exception e) {
-                Log.e(TAG, "Erro durante sincronização", e);
-            } finally {
-                syncHandler.postDelayed(this, SYNC_INTERVAL_MS);
-            }
-        }
-    };
+    // === MODO HÍBRIDO (GEOFENCES DO SO) ===
+    private boolean hybridModeEnabled = false;
+    private GeofenceRotationManager geofenceRotationManager;
+    private long hybridConfirmationUntil = 0;
+
+    // === FILTRO DE QUALIDADE ===
+    private final FixQualityGate fixQualityGate = new FixQualityGate();
 
-    private final Runnable updateGeofencesRunnable = new Runnable() {
+    // === INICIALIZAÇÃO ===
+    private static final long DEFERRED_INIT_TIMEOUT_MS = 20 * 1000; // 20 segundos
+    private final Handler startupHandler = new Handler();
+    private boolean deferredInitDone = false;
+    private boolean firstEvaluationDone = false;
+
+    private final Runnable deferredInitRunnable = new Runnable() {
         @Override
         public void run() {
             try {
-                fetchGeofencesFromFirestore();
+                runDeferredInitialization();
             } catch (Exception e) {
-                Log.e(TAG, "Erro ao atualizar geofences", e);
-            } finally {
-                updateHandler.postDelayed(this, 24 * 60 * 60 * 1000);
+                Log.e(TAG, "Erro na inicialização adiada", e);
             }
         }
     };
 
-    private final Runnable exitCheckRunnable = new Runnable() {
+    // === PARTIDA RÁPIDA ===
+    private boolean liveFixReceived = false;
+    private boolean warmStartVoted = false;
+    private final Map<String, Boolean> warmStartVotes = new HashMap<>();
+
+    // === DETECÇÃO DE DISPOSITIVO PARADO ===
+    private final StationaryDetector stationaryDetector = new StationaryDetector();
+    private boolean stationarySuspended = false;
+
+    // === MODO PASSIVO (LONGE DE TODAS AS GEOFENCES) ===
+    private PassiveLocationMode passiveLocationMode;
+    private final Handler passiveCheckHandler = new Handler();
+
+    // === COALESCÊNCIA DO STATUS DO GPS ===
+    private static final String PREF_GPS_REPORTED_ENABLED = "gps_reported_enabled";
+    private GpsStatusCoalescer gpsStatusCoalescer;
+    private final Handler gpsStatusHandler = new Handler();
+    private final Runnable gpsStatusFlushRunnable = this::flushGpsStatusInterval;
+
+    // === RUNNABLES ===
+    private final Runnable passiveStalenessRunnable = new Runnable() {
         @Override
         public void run() {
             try {
-                checkForStaleEntries();
+                if (passiveLocationMode.shouldStartFallback(SystemClock.elapsedRealtime())) {
+                    Log.d(TAG, "Nenhuma localização passiva recente - iniciando fallback ativo (passivas: "
+                            + Math.round(passiveLocationMode.getPassiveShare() * 100) + "%)");
+                    locationRequest = createPassiveFallbackLocationRequest();
+                    restartLocationUpdates();
+                }
             } catch (Exception e) {
-                Log.e(TAG, "Erro na verificação de entradas obsoletas", e);
+                Log.e(TAG, "Erro na verificação do modo passivo", e);
             } finally {
-                exitCheckHandler.postDelayed(this, STALE_CHECK_INTERVAL);
+                if (passiveLocationMode.isActive()) {
+                    passiveCheckHandler.postDelayed(this, passiveLocationMode.getStalenessMs() / 2);
+                }
             }
         }
     };
 
-
     @Override
     public void onCreate() {
         super.onCreate();
@@ -155,6 +227,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         }
 
         Log.d(TAG, "Serviço iniciado para empresa: " + currentCompanyId);
+        StartupMilestones.record(this, StartupMilestones.SERVICE_CREATED);
 
         try {
             initializeService();
@@ -165,29 +238,53 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     }
 
     private void initializeService() {
-        // Inicializa WakeLock
         deviceStateReceiver.setDeviceStateListener(this);
-        initializeWakeLock();
-
-        // Inicializa componentes básicos
-        sharedPreferences = getSharedPreferences("GeofencesPrefs", MODE_PRIVATE);
-        firestore = FirebaseFirestore.getInstance();
-        geofenceList = new ArrayList<>();
+        // WakeLocks curtos apenas em torno de trabalho real
+        wakeLockManager = WakeLockManager.getInstance(this);
+        eventOutbox = EventOutbox.getInstance(this);
 
-        // Carrega estado anterior
-        loadLastGeofenceEvent();
-
-        // Configura notificação em primeiro plano
+        // Configura notificação em primeiro plano antes de qualquer I/O
         createNotificationChannel();
         startForeground(1, createNotification());
 
+        // Inicializa componentes básicos (Firestore é inicializado sob demanda)
+        sharedPreferences = StateStore.prefs(this, StateStore.GEOFENCES);
+        geofenceList = new ArrayList<>();
+        storageWriter = Executors.newSingleThreadScheduledExecutor();
+
+        // Reaplica o journal de rastreamento na thread de armazenamento: saídas de
+        // desligamento (registrado ou perdido) entram no outbox antes de carregar o estado
+        storageWriter.execute(() -> {
+            TrackingJournal.State recovered = TrackingRecovery.recover(this);
+            TrackingJournal journal = TrackingJournal.getInstance(this);
+            storageResultHandler.post(() -> onTrackingRecovered(journal, recovered));
+        });
+
         // Inicializa cliente de localização
         fusedLocationClient = com.google.android.gms.location.LocationServices.getFusedLocationProviderClient(this);
 
-        // Carrega dados e inicia serviços
+        // Carrega dados locais - o suficiente para a primeira avaliação
         loadGeofencesFromLocal();
-        startGeofenceUpdateCycle();
-        listenForGeofenceChanges();
+    }
+
+    /**
+     * Continuação da inicialização na thread principal, depois da recuperação do journal;
+     * a localização só começa aqui, com o estado anterior já carregado
+     */
+    private void onTrackingRecovered(TrackingJournal journal, TrackingJournal.State recovered) {
+        // Serviço destruído durante a recuperação
+        if (storageWriter.isShutdown()) return;
+        trackingJournal = journal;
+
+        // Carrega estado anterior
+        sessionState = new GeofenceSessionState(
+                StateStore.prefs(this, StateStore.GEOFENCE_STATE),
+                StateStore.prefs(this, StateStore.APP),
+                (task, delayMs) -> storageWriter.schedule(task, delayMs, TimeUnit.MILLISECONDS),
+                GeofenceSessionState.DEFAULT_WRITE_DELAY_MS);
+        loadLastGeofenceEvent();
+        restoreTrackingState(recovered);
+        stageShutdownExits();
 
         // Registra receivers
         registerBroadcastReceivers();
@@ -195,31 +292,75 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         // Configura localização
         setupLocationTracking();
 
+        // Inicia handlers periódicos
+        startPeriodicTasks();
+
+        // Firestore, atualização de geofences e status do GPS ficam para depois da primeira avaliação
+        if (!hasGeofences()) {
+            runDeferredInitialization();
+        } else {
+            startupHandler.postDelayed(deferredInitRunnable, DEFERRED_INIT_TIMEOUT_MS);
+        }
+
+        // Avaliação imediata a partir da última localização conhecida
+        warmStart();
+    }
+
+    /**
+     * Trabalho não crítico da inicialização, executado após a primeira avaliação
+     * (ou após um tempo limite, se nenhuma avaliação acontecer)
+     */
+    private void runDeferredInitialization() {
+        if (deferredInitDone) return;
+        deferredInitDone = true;
+        startupHandler.removeCallbacks(deferredInitRunnable);
+
+        startGeofenceUpdateCycle();
+        listenForGeofenceChanges();
+
         //Status Inicial do GPS
         recordInitialGpsStatus();
 
-        // Inicia handlers periódicos
-        startPeriodicTasks();
+        StartupMilestones.record(this, StartupMilestones.DEFERRED_INIT_DONE);
+        StartupMilestones.logSummary(this);
     }
 
-    private void initializeWakeLock() {
-        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
-        if (powerManager != null) {
-            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "LocationService::WakeLock");
-            wakeLock.acquire(10 * 60 * 1000L); // 10 minutos timeout para segurança
+    private void onFirstEvaluation() {
+        if (firstEvaluationDone) return;
+        firstEvaluationDone = true;
+        StartupMilestones.record(this, StartupMilestones.FIRST_EVALUATION);
+        // Sai do caminho crítico da avaliação
+        startupHandler.post(this::runDeferredInitialization);
+    }
+
+    private FirebaseFirestore getFirestore() {
+        if (firestore == null) {
+            firestore = FirebaseFirestore.getInstance();
+        }
+        return firestore;
+    }
+
+    /**
+     * Inicia o serviço de localização
+     */
+    public static void start(Context context) {
+        Intent serviceIntent = new Intent(context, LocationForegroundService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(serviceIntent);
+        } else {
+            context.startService(serviceIntent);
         }
     }
 
     private void loadDeviceState() {
         try {
-            if (sharedPreferences == null) {
-                sharedPreferences = getSharedPreferences("device_state_prefs", Context.MODE_PRIVATE);
-            }
+            // Gravado pelo DeviceStateReceiver
+            SharedPreferences devicePrefs = StateStore.prefs(this, StateStore.DEVICE_STATE);
 
             // Load battery state
-            lowBatteryDetected = sharedPreferences.getBoolean("low_battery_detected", false);
-            criticalBatteryDetected = sharedPreferences.getBoolean("critical_battery_detected", false);
-            lastBatteryLevel = sharedPreferences.getInt("last_battery_level", -1);
+            lowBatteryDetected = devicePrefs.getBoolean("low_battery_detected", false);
+            criticalBatteryDetected = devicePrefs.getBoolean("critical_battery_detected", false);
+            lastBatteryLevel = devicePrefs.getInt("last_battery_level", -1);
 
             Log.d(TAG, "Device state loaded - Low battery: " + lowBatteryDetected +
                     ", Critical battery: " + criticalBatteryDetected +
@@ -243,6 +384,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             filter.addAction(Intent.ACTION_BATTERY_OKAY);
             filter.addAction(Intent.ACTION_BATTERY_CHANGED);
             filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+            filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
             filter.addAction(Intent.ACTION_SCREEN_ON);
             filter.addAction(Intent.ACTION_SCREEN_OFF);
 
@@ -274,15 +416,25 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     private void setupLocationTracking() {
         locationRequest = createLocationRequest(true);
         currentPrecisionState = PrecisionState.HIGH;
+        precisionController = new PrecisionController(currentPrecisionState, SystemClock.elapsedRealtime());
+        passiveLocationMode = new PassiveLocationMode(sharedPreferences.getLong(
+                PASSIVE_STALENESS_PREF_KEY, PassiveLocationMode.DEFAULT_STALENESS_MS));
+
+        hybridModeEnabled = sharedPreferences.getBoolean(HYBRID_MODE_PREF_KEY, false);
+        if (hybridModeEnabled) {
+            geofenceRotationManager = new GeofenceRotationManager(new PlayServicesGeofencingBackend(this));
+            geofenceRotationManager.setGeofences(getGeofenceList());
+            locationRequest = createHybridRotationLocationRequest();
+            Log.d(TAG, "Modo híbrido ativo: geofences do SO com rotação");
+        }
 
         locationCallback = new LocationCallback() {
             @Override
             public void onLocationResult(@NonNull LocationResult locationResult) {
-                try {
+                try (WakeLockManager.Hold hold = wakeLockManager.acquire(WakeLockManager.TAG_EVALUATION)) {
                     for (Location location : locationResult.getLocations()) {
                         Log.d(TAG, "Localização: " + location.getLatitude() + ", " + location.getLongitude());
-                        adjustLocationRequestBasedOnProximity(location);
-                        checkGeofence(location);
+                        processLocation(location);
                     }
                 } catch (Exception e) {
                     Log.e(TAG, "Erro ao processar resultado de localização", e);
@@ -290,39 +442,340 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             }
         };
 
+        locationScheduler = new LocationScheduler(fusedLocationClient, locationCallback);
+        readInitialPowerState();
+        locationScheduler.setBudget(computeSamplingBudget());
         startLocationUpdates();
     }
 
     private void startPeriodicTasks() {
-        syncHandler.postDelayed(syncRunnable, SYNC_INTERVAL_MS);
-        exitCheckHandler.postDelayed(exitCheckRunnable, STALE_CHECK_INTERVAL);
+        // Tarefas periódicas compartilham as mesmas janelas de manutenção;
+        // uploads e atualização de geofences esperam a tela ligar
+        maintenanceScheduler.addTask(TASK_SYNC, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, true,
+                this::syncOfflineEventsToFirebase);
+        maintenanceScheduler.addTask(TASK_STALE_CHECK, STALE_CHECK_INTERVAL, STALE_CHECK_INTERVAL, false,
+                this::checkForStaleEntries);
+        maintenanceScheduler.addTask(TASK_CLEANUP, CLEANUP_INTERVAL_MS, 60 * 60 * 1000, false,
+                this::cleanOldOfflineEvents);
 
-        // Cleanup de eventos antigos
-        Handler cleanupHandler = new Handler();
-        cleanupHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    cleanOldOfflineEvents();
-                } catch (Exception e) {
-                    Log.e(TAG, "Erro na limpeza de eventos", e);
-                } finally {
-                    cleanupHandler.postDelayed(this, 24 * 60 * 60 * 1000);
-                }
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        if (powerManager != null) {
+            maintenanceScheduler.setScreenOn(powerManager.isInteractive());
+            maintenanceScheduler.setDeviceIdle(powerManager.isDeviceIdleMode());
+        }
+        maintenanceScheduler.setPowerSaveMode(powerSaveModeDetected);
+        maintenanceScheduler.start();
+    }
+
+    private void processLocation(Location location) {
+        boolean mock = isMockLocation(location);
+        FixQualityGate.Verdict verdict = evaluateFixQuality(location, mock);
+        FixQualityGate.Reason reason = fixQualityGate.getLastReason();
+        // Simuladas e saltos impossíveis não são posições reais: não alimentam nada
+        if (verdict == FixQualityGate.Verdict.REJECT
+                && (reason == FixQualityGate.Reason.MOCK || reason == FixQualityGate.Reason.IMPOSSIBLE_SPEED)) {
+            Log.d(TAG, "Localização descartada (" + reason + ")");
+            return;
+        }
+        // Precisão grosseira e idade só decidem se a localização confirma entrada/saída.
+        // Os modos parado/passivo e a precisão também recebem essas, inclusive as
+        // entregues em lote, que são justamente as que fazem a precisão voltar a subir.
+        boolean confirmable = verdict == FixQualityGate.Verdict.ACCEPT;
+        if (verdict == FixQualityGate.Verdict.REJECT) {
+            Log.d(TAG, "Localização não usada para confirmação (precisão: " + location.getAccuracy() + "m)");
+        } else if (!liveFixReceived) {
+            liveFixReceived = true;
+            StartupMilestones.record(this, StartupMilestones.FIRST_LIVE_FIX);
+            onFirstEvaluation();
+        }
+        if (confirmable) {
+            reconcileWarmStartVotes(location);
+            persistLastFix(location);
+        }
+
+        if (hybridModeEnabled) {
+            geofenceRotationManager.onLocation(location.getLatitude(), location.getLongitude());
+            // Fora da janela de confirmação as transições vêm do SO
+            if (hybridConfirmationUntil == 0) return;
+            if (confirmable) {
+                checkGeofence(location);
             }
-        }, 60 * 60 * 1000);
+            finishHybridConfirmationIfIdle();
+            return;
+        }
+
+        if (passiveLocationMode.onFix(SystemClock.elapsedRealtime())
+                && currentPrecisionState == PrecisionState.VERY_LOW) {
+            // O fallback ativo já obteve uma localização - volta para a requisição passiva
+            locationRequest = createPassiveLocationRequest();
+            restartLocationUpdates();
+        }
+
+        updateStationaryMode(location);
+        if (!stationarySuspended) {
+            adjustLocationRequestBasedOnProximity(location);
+        }
+        if (confirmable) {
+            checkGeofence(location);
+        }
+    }
+
+    // === PARTIDA RÁPIDA ===
+    /**
+     * Avalia imediatamente a partir da última localização persistida e da última
+     * localização conhecida do provedor, sem esperar o primeiro callback.
+     * O estado de entrada persistido já foi carregado em loadLastGeofenceEvent().
+     */
+    private void warmStart() {
+        BreadcrumbRing ring = BreadcrumbRing.getInstance(this);
+        BreadcrumbRing.Record lastFix = ring != null ? ring.getLastFix() : null;
+        if (lastFix != null) {
+            Location persisted = new Location("persisted");
+            persisted.setLatitude(lastFix.latitude);
+            persisted.setLongitude(lastFix.longitude);
+            persisted.setAccuracy(lastFix.accuracy);
+            applyWarmStartSeed(persisted, System.currentTimeMillis() - lastFix.timestamp, "persistida");
+        }
+
+        try {
+            fusedLocationClient.getLastLocation().addOnSuccessListener(location -> {
+                if (location == null) return;
+                long ageMs = location.getElapsedRealtimeNanos() > 0
+                        ? SystemClock.elapsedRealtime() - location.getElapsedRealtimeNanos() / 1_000_000
+                        : System.currentTimeMillis() - location.getTime();
+                applyWarmStartSeed(location, ageMs, "última conhecida");
+            });
+        } catch (SecurityException e) {
+            Log.e(TAG, "Permissão de localização não concedida", e);
+        }
+    }
+
+    private void applyWarmStartSeed(Location seed, long ageMs, String source) {
+        // Uma localização real já chegou - a semente não acrescenta nada
+        if (liveFixReceived || !hasGeofences()) return;
+
+        double confidence = WarmStartEstimator.confidence(
+                seed.hasAccuracy() ? seed.getAccuracy() : 0, ageMs, findNearestGeofenceRadius(seed));
+        Log.d(TAG, "Partida rápida (" + source + "): idade " + (ageMs / 1000) + "s, confiança "
+                + String.format(Locale.US, "%.2f", confidence));
+        if (confidence < WarmStartEstimator.PRECISION_CONFIDENCE) return;
+        onFirstEvaluation();
+
+        if (hybridModeEnabled) {
+            geofenceRotationManager.onLocation(seed.getLatitude(), seed.getLongitude());
+            return;
+        }
+
+        // A semente escolhe a precisão inicial sem esperar a permanência mínima
+        applyPrecision(precisionController.seed(
+                calculateNearestEdgeDistance(seed), SystemClock.elapsedRealtime()));
+
+        // Só uma semente conta como atualização; a confirmação continua exigindo localizações reais
+        if (confidence < WarmStartEstimator.VOTE_CONFIDENCE || warmStartVoted) return;
+        warmStartVoted = true;
+        for (GeofenceData geofence : getCandidateGeofences(seed)) {
+            boolean inside = calculateDistance(seed, geofence) < geofence.getRadius();
+            boolean wasInside = Boolean.TRUE.equals(geofenceEntryState.getOrDefault(geofence.getName(), false));
+            if (inside != wasInside) {
+                warmStartVotes.put(geofence.getName(), inside);
+            }
+        }
+        checkGeofence(seed);
+    }
+
+    /**
+     * A primeira localização real confirma os votos da semente ou os descarta
+     */
+    private void reconcileWarmStartVotes(Location location) {
+        if (warmStartVotes.isEmpty()) return;
+
+        for (Map.Entry<String, Boolean> vote : warmStartVotes.entrySet()) {
+            GeofenceData geofence = findGeofenceByName(vote.getKey());
+            if (geofence == null) continue;
+            boolean inside = calculateDistance(location, geofence) < geofence.getRadius();
+            if (inside != vote.getValue()) {
+                Log.d(TAG, "Partida rápida corrigida para " + geofence.getName());
+                clearCountersForGeofence(geofence.getName());
+            }
+        }
+        warmStartVotes.clear();
+    }
+
+    private void persistLastFix(Location location) {
+        // Escrita na memória mapeada - barata o bastante para cada localização aceita
+        BreadcrumbRing ring = BreadcrumbRing.getInstance(this);
+        if (ring != null) {
+            ring.recordFix(System.currentTimeMillis(), location.getLatitude(), location.getLongitude(),
+                    location.getAccuracy());
+        }
+    }
+
+    // === FILTRO DE QUALIDADE DAS LOCALIZAÇÕES ===
+    private static boolean isMockLocation(Location location) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? location.isMock()
+                : location.isFromMockProvider();
+    }
+
+    private FixQualityGate.Verdict evaluateFixQuality(Location location, boolean mock) {
+        long nowMs = SystemClock.elapsedRealtime();
+        long fixElapsedMs = location.getElapsedRealtimeNanos() > 0
+                ? location.getElapsedRealtimeNanos() / 1_000_000
+                : nowMs;
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : 0;
+
+        return fixQualityGate.evaluate(location.getLatitude(), location.getLongitude(), accuracy,
+                fixElapsedMs, nowMs, mock, findNearestGeofenceRadius(location));
+    }
+
+    /**
+     * Raio da geofence cuja borda está mais próxima (0 quando não há geofences)
+     */
+    private float findNearestGeofenceRadius(Location location) {
+        if (geofenceSnapshot != null) {
+            int nearest = geofenceSnapshot.findNearestEdge(location.getLatitude(), location.getLongitude());
+            return nearest >= 0 ? geofenceSnapshot.getRadius(nearest) : 0;
+        }
+        float nearestEdge = Float.MAX_VALUE;
+        float radius = 0;
+        for (GeofenceData geofence : getGeofenceList()) {
+            float edge = calculateDistance(location, geofence) - geofence.getRadius();
+            if (edge < nearestEdge) {
+                nearestEdge = edge;
+                radius = geofence.getRadius();
+            }
+        }
+        return radius;
+    }
+
+    public long getFixRejectionCount(FixQualityGate.Reason reason) {
+        return fixQualityGate.getRejectionCount(reason);
+    }
+
+    /**
+     * Entra no modo passivo na precisão VERY_LOW e sai dele nos demais estados
+     */
+    private void updatePassiveMode() {
+        boolean shouldBePassive = currentPrecisionState == PrecisionState.VERY_LOW && !stationarySuspended;
+        if (shouldBePassive && !passiveLocationMode.isActive()) {
+            passiveLocationMode.enter(SystemClock.elapsedRealtime());
+            passiveCheckHandler.postDelayed(passiveStalenessRunnable, passiveLocationMode.getStalenessMs());
+        } else if (!shouldBePassive && passiveLocationMode.isActive()) {
+            passiveLocationMode.exit();
+            passiveCheckHandler.removeCallbacks(passiveStalenessRunnable);
+        }
+    }
+
+    public double getPassiveFixShare() {
+        return passiveLocationMode != null ? passiveLocationMode.getPassiveShare() : 0;
+    }
+
+    // === DISPOSITIVO PARADO DENTRO DA OBRA ===
+    /**
+     * Enquanto o dispositivo está parado dentro de uma geofence confirmada, reduz a
+     * localização para baixo consumo; retoma a amostragem normal no primeiro deslocamento
+     */
+    private void updateStationaryMode(Location location) {
+        long elapsedMs = location.getElapsedRealtimeNanos() > 0
+                ? location.getElapsedRealtimeNanos() / 1_000_000
+                : SystemClock.elapsedRealtime();
+        stationaryDetector.addFix(location.getLatitude(), location.getLongitude(), location.getAccuracy(), elapsedMs);
+
+        boolean shouldSuspend = stationaryDetector.isStationary() && isInsideConfirmedGeofence();
+        if (shouldSuspend == stationarySuspended) return;
+
+        stationarySuspended = shouldSuspend;
+        updatePassiveMode();
+        locationRequest = shouldSuspend
+                ? createStationaryLocationRequest()
+                : createLocationRequestForPrecision(currentPrecisionState);
+        Log.d(TAG, shouldSuspend
+                ? "Dispositivo parado dentro da obra - localização em baixo consumo"
+                : "Deslocamento detectado - retomando amostragem normal");
+        restartLocationUpdates();
+    }
+
+    private boolean isInsideConfirmedGeofence() {
+        return geofenceEntryState.containsValue(true);
+    }
+
+    // === MODO HÍBRIDO ===
+    /**
+     * Recebe transições das geofences do SO e as encaminha para o pipeline de confirmação
+     */
+    private void handleOsGeofenceEvent(Intent intent) {
+        GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+        if (event == null || event.hasError()) {
+            Log.e(TAG, "Erro no evento de geofence do SO: " + (event != null ? event.getErrorCode() : "nulo"));
+            return;
+        }
+
+        try (WakeLockManager.Hold hold = wakeLockManager.acquire(WakeLockManager.TAG_EVALUATION)) {
+            processOsGeofenceEvent(event);
+        }
+    }
+
+    private void processOsGeofenceEvent(GeofencingEvent event) {
+        int transition = event.getGeofenceTransition();
+        if (transition != Geofence.GEOFENCE_TRANSITION_ENTER && transition != Geofence.GEOFENCE_TRANSITION_EXIT) {
+            return;
+        }
+        boolean isEntry = transition == Geofence.GEOFENCE_TRANSITION_ENTER;
+        Location location = event.getTriggeringLocation();
+        if (location == null || event.getTriggeringGeofences() == null) return;
+
+        long currentTime = System.currentTimeMillis();
+        String lastGeofenceName = sessionState.getLastGeofenceName();
+        String lastEventType = sessionState.getLastEventType();
+
+        for (Geofence osGeofence : event.getTriggeringGeofences()) {
+            GeofenceData geofence = findGeofenceByName(osGeofence.getRequestId());
+            if (geofence == null) continue;
+
+            boolean wasInside = Boolean.TRUE.equals(geofenceEntryState.getOrDefault(geofence.getName(), false));
+            if (isEntry != wasInside) {
+                Log.d(TAG, "Transição do SO: " + (isEntry ? "entrada" : "saída") + " - " + geofence.getName());
+                handleGeofenceTransition(location, geofence, currentTime, isEntry,
+                        isEntry ? lastGeofenceName : null, isEntry ? lastEventType : null);
+            }
+        }
+
+        startHybridConfirmationWindow();
+    }
+
+    /**
+     * Ativa temporariamente a localização de alta precisão para confirmar a transição do SO
+     */
+    private void startHybridConfirmationWindow() {
+        boolean alreadyActive = hybridConfirmationUntil != 0;
+        hybridConfirmationUntil = SystemClock.elapsedRealtime() + HYBRID_CONFIRMATION_WINDOW_MS;
+        if (!alreadyActive) {
+            locationRequest = createLocationRequest(true);
+            restartLocationUpdates();
+        }
+    }
+
+    private void finishHybridConfirmationIfIdle() {
+        boolean pending = !entryUpdateCounter.isEmpty() || !exitUpdateCounter.isEmpty();
+        if (pending && SystemClock.elapsedRealtime() < hybridConfirmationUntil) return;
+
+        hybridConfirmationUntil = 0;
+        locationRequest = createHybridRotationLocationRequest();
+        restartLocationUpdates();
+        Log.d(TAG, "Janela de confirmação encerrada - voltando à localização de baixo consumo");
     }
 
     // === VERIFICAÇÃO DE GEOFENCES MELHORADA ===
     private void checkGeofence(Location location) {
-        if (location == null || geofenceList.isEmpty()) return;
+        if (location == null || !hasGeofences()) return;
 
         long currentTime = System.currentTimeMillis();
-        SharedPreferences prefs = getSharedPreferences("GeofenceStatePrefs", MODE_PRIVATE);
-        String lastGeofenceName = prefs.getString("last_geofence_name", null);
-        String lastEventType = prefs.getString("last_event_type", null);
+        String lastGeofenceName = sessionState.getLastGeofenceName();
+        String lastEventType = sessionState.getLastEventType();
+
+        List<GeofenceData> candidates = getCandidateGeofences(location);
 
-        for (GeofenceData geofence : geofenceList) {
+        for (GeofenceData geofence : candidates) {
             try {
                 float distance = calculateDistance(location, geofence);
                 boolean currentlyInside = distance < geofence.getRadius();
@@ -339,6 +792,38 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         }
     }
 
+    /**
+     * Geofences que precisam ser avaliadas nesta localização: as próximas (pela grade
+     * do snapshot) e as que estão com entrada registrada. As demais estão longe e fora.
+     */
+    private List<GeofenceData> getCandidateGeofences(Location location) {
+        // Parado dentro da obra, só a saída da geofence atual precisa ser verificada
+        if (stationarySuspended) return getEnteredGeofences();
+        if (geofenceSnapshot == null) return getGeofenceList();
+
+        List<GeofenceData> candidates = getEnteredGeofences();
+        for (int index : geofenceSnapshot.candidatesNear(location.getLatitude(), location.getLongitude())) {
+            GeofenceData geofence = geofenceSnapshot.get(index);
+            if (!candidates.contains(geofence)) {
+                candidates.add(geofence);
+            }
+        }
+        return candidates;
+    }
+
+    private List<GeofenceData> getEnteredGeofences() {
+        List<GeofenceData> entered = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : geofenceEntryState.entrySet()) {
+            if (Boolean.TRUE.equals(entry.getValue())) {
+                GeofenceData geofence = findGeofenceByName(entry.getKey());
+                if (geofence != null) {
+                    entered.add(geofence);
+                }
+            }
+        }
+        return entered;
+    }
+
     // === MÉTODO CONSOLIDADO para transições de geofence ===
     private void handleGeofenceTransition(Location location, GeofenceData geofence, long currentTime,
                                           boolean isEntry, String lastGeofenceName, String lastEventType) {
@@ -362,6 +847,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         // Incrementa contador
         int counter = counterMap.getOrDefault(geofenceName, 0) + 1;
         counterMap.put(geofenceName, counter);
+        journalPending(geofenceName, isEntry, counter, timestampMap.get(geofenceName));
 
         // Verifica se deve confirmar o evento
         if (counter >= requiredUpdates) {
@@ -387,6 +873,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                 if (lastGeofence != null) {
                     geofenceEntryState.put(lastGeofence.getName(), false);
                     generateGeofenceEvent(location, lastGeofence, "Saída Confirmada");
+                    journalTransition(lastGeofence.getName(), "Saída Confirmada", System.currentTimeMillis());
                     clearCountersForGeofence(lastGeofence.getName());
                 }
             }
@@ -404,6 +891,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         exitUpdateCounter.remove(geofenceName);
         entryFirstTimestamp.remove(geofenceName);
         exitFirstTimestamp.remove(geofenceName);
+        long timestamp = System.currentTimeMillis();
+        journalAsync("Erro ao registrar contadores no journal",
+                journal -> journal.recordPendingCleared(geofenceName, timestamp));
     }
 
     // === GERAÇÃO DE EVENTOS MELHORADA ===
@@ -423,7 +913,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             return;
         }
 
-        String userName = UserPreferences.loadUserName(getSharedPreferences("MyAppPrefs", MODE_PRIVATE));
+        String userName = sessionState.getUserName();
 
         try {
             if (isNetworkAvailable()) {
@@ -452,29 +942,85 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             return;
         }
 
-        // Sincroniza eventos de geofence (código existente)
-        SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-        String offlineEventsString = prefs.getString("offline_events", null);
-
-        if (offlineEventsString != null && !offlineEventsString.trim().isEmpty()) {
-            try {
-                JSONArray offlineEventsArray = new JSONArray(offlineEventsString);
-                if (offlineEventsArray.length() > 0) {
-                    Log.d(TAG, "Iniciando sincronização de " + offlineEventsArray.length() + " eventos de geofence");
-                    syncEventByEvent(offlineEventsArray, 0, prefs);
-                }
-            } catch (JSONException e) {
-                Log.e(TAG, "Erro ao processar eventos offline", e);
-            }
+        // Sincroniza eventos de geofence do outbox, segmento (dia) por segmento.
+        // Os eventos de GPS só sobem depois, ao fim desta sincronização (prioridade menor).
+        if (syncWakeHold != null) {
+            if (SystemClock.elapsedRealtime() - syncProgressElapsed < SYNC_STALL_MS) return;
+            Log.w(TAG, "Sincronização sem progresso há " + SYNC_STALL_MS / 1000 + "s - reiniciando");
+            abortGeofenceSync();
         }
-
-        // ADICIONE ESTA LINHA: Sincroniza eventos de GPS
-        syncOfflineGpsEventsToFirebase();
+        syncWakeHold = wakeLockManager.acquire(WakeLockManager.TAG_SYNC);
+        syncProgressElapsed = SystemClock.elapsedRealtime();
+        int run = ++syncRun;
+        eventOutbox.loadPendingGeofenceSegments(segments -> {
+            if (run != syncRun) return;
+            syncSegments = segments;
+            syncSegmentIndex = 0;
+            syncGeofenceEventPage(-1, 0);
+        });
     }
 
+    // === ORÇAMENTO DE BATERIA ===
     @Override
     public void onBatteryStateChanged(int batteryLevel, boolean isLow, boolean isCritical) {
+        lastBatteryLevel = batteryLevel;
+        lowBatteryDetected = isLow;
+        criticalBatteryDetected = isCritical;
+        applySamplingBudget();
+    }
+
+    @Override
+    public void onChargingStateChanged(boolean charging) {
+        chargingDetected = charging;
+        applySamplingBudget();
+    }
+
+    @Override
+    public void onPowerSaveModeChanged(boolean powerSaveMode) {
+        powerSaveModeDetected = powerSaveMode;
+        applySamplingBudget();
+        maintenanceScheduler.setPowerSaveMode(powerSaveMode);
+    }
+
+    // === TELA E MODO OCIOSO ===
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        maintenanceScheduler.setScreenOn(screenOn);
+    }
+
+    @Override
+    public void onDeviceIdleModeChanged(boolean idle) {
+        maintenanceScheduler.setDeviceIdle(idle);
+    }
+
+    public int getMaintenanceWakeupsLastHour() {
+        return maintenanceScheduler.getWakeupsLastHour();
+    }
+
+    private void readInitialPowerState() {
+        BatteryManager batteryManager = (BatteryManager) getSystemService(BATTERY_SERVICE);
+        if (batteryManager != null) {
+            int capacity = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            if (capacity > 0) {
+                lastBatteryLevel = capacity;
+            }
+            chargingDetected = batteryManager.isCharging();
+        }
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        if (powerManager != null) {
+            powerSaveModeDetected = powerManager.isPowerSaveMode();
+        }
+    }
 
+    private SamplingBudget computeSamplingBudget() {
+        return batteryGovernor.computeBudget(lastBatteryLevel, chargingDetected, powerSaveModeDetected,
+                batteryGovernor.hoursUntilShiftEnd(Calendar.getInstance()));
+    }
+
+    private void applySamplingBudget() {
+        if (locationScheduler != null) {
+            locationScheduler.setBudget(computeSamplingBudget());
+        }
     }
 
     private void recordInitialGpsStatus() {
@@ -485,30 +1031,84 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                 String statusMessage = gpsEnabled ? "GPS habilitado (serviço iniciado)" : "GPS desabilitado (serviço iniciado)";
 
                 Log.d(TAG, "Status inicial do GPS: " + statusMessage);
-                recordGpsStatusEvent(statusMessage, gpsEnabled);
+                observeGpsStatus(statusMessage, gpsEnabled);
             }
         } catch (Exception e) {
             Log.e(TAG, "Erro ao verificar status inicial do GPS", e);
         }
     }
 
-    private void syncEventByEvent(JSONArray eventsArray, int index, SharedPreferences prefs) {
-        if (index >= eventsArray.length()) {
-            Log.d(TAG, "Sincronização concluída. Limpando eventos offline");
-            prefs.edit().remove("offline_events").apply();
+    /**
+     * Carrega a próxima página do segmento atual após (afterTimestamp, afterId);
+     * segmento esgotado passa para o próximo
+     */
+    private void syncGeofenceEventPage(long afterTimestamp, long afterId) {
+        if (syncSegments == null || syncSegmentIndex >= syncSegments.size()) {
+            Log.d(TAG, "Sincronização concluída");
+            releaseSyncWakeHold();
+            syncOfflineGpsEventsToFirebase();
+            return;
+        }
+        long segment = syncSegments.get(syncSegmentIndex);
+        int run = syncRun;
+        eventOutbox.loadPendingGeofenceSegmentPage(segment, afterTimestamp, afterId,
+                EventOutbox.DEFAULT_PAGE_SIZE, page -> {
+                    if (run != syncRun) return;
+                    syncPage = page;
+                    if (page.isEmpty()) {
+                        syncNextSegment();
+                        return;
+                    }
+                    Log.d(TAG, "Sincronizando página de " + page.size() + " eventos do segmento " + segment);
+                    syncEventByEvent(page, 0);
+                });
+    }
+
+    /**
+     * Encerra a sincronização atual; os eventos restantes ficam pendentes para a próxima
+     */
+    private void abortGeofenceSync() {
+        syncSegments = null;
+        syncPage = null;
+        syncRun++;
+        releaseSyncWakeHold();
+    }
+
+    private void syncNextSegment() {
+        syncSegmentIndex++;
+        syncGeofenceEventPage(-1, 0);
+    }
+
+    private void syncEventByEvent(List<GeofenceEventEntity> page, int index) {
+        // Callback atrasado de uma rodada abandonada
+        if (page != syncPage) return;
+        syncProgressElapsed = SystemClock.elapsedRealtime();
+        if (index >= page.size()) {
+            if (page.size() < EventOutbox.DEFAULT_PAGE_SIZE) {
+                syncNextSegment();
+            } else {
+                GeofenceEventEntity last = page.get(page.size() - 1);
+                syncGeofenceEventPage(last.timestamp, last.id);
+            }
             return;
         }
 
         try {
-            JSONObject eventJson = eventsArray.getJSONObject(index);
-            checkAndInsertEvent(eventJson, eventsArray, index, prefs);
+            checkAndInsertEvent(page.get(index).toJson(), page, index);
         } catch (JSONException e) {
             Log.e(TAG, "Erro ao processar evento no índice " + index, e);
-            syncEventByEvent(eventsArray, index + 1, prefs);
+            syncEventByEvent(page, index + 1);
+        }
+    }
+
+    private void releaseSyncWakeHold() {
+        if (syncWakeHold != null) {
+            syncWakeHold.release();
+            syncWakeHold = null;
         }
     }
 
-    private void checkAndInsertEvent(JSONObject eventJson, JSONArray eventsArray, int index, SharedPreferences prefs) {
+    private void checkAndInsertEvent(JSONObject eventJson, List<GeofenceEventEntity> page, int index) {
         try {
             String geofenceName = eventJson.getString("geofence_name");
             String eventType = eventJson.getString("event_type");
@@ -518,7 +1118,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             long startTime = timestamp - DUPLICATE_WINDOW_MS;
             long endTime = timestamp + DUPLICATE_WINDOW_MS;
 
-            firestore.collection("geofence_records")
+            getFirestore().collection("geofence_records")
                     .whereEqualTo("geofence_name", geofenceName)
                     .whereEqualTo("event_type", eventType)
                     .whereEqualTo("user_name", userName)
@@ -527,42 +1127,38 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                     .get()
                     .addOnCompleteListener(task -> {
                         try {
-                            if (task.isSuccessful() && task.getResult() != null && task.getResult().isEmpty()) {
-                                insertEventToFirestore(eventJson, eventsArray, index, prefs);
+                            if (!task.isSuccessful() || task.getResult() == null) {
+                                // Sem a verificação não há como saber se já subiu: continua pendente
+                                Log.e(TAG, "Erro na verificação de duplicata - sincronização interrompida",
+                                        task.getException());
+                                abortGeofenceSync();
+                            } else if (task.getResult().isEmpty()) {
+                                insertEventToFirestore(eventJson, page, index);
                             } else {
                                 Log.d(TAG, "Evento duplicado ignorado: " + eventType + " - " + geofenceName);
-                                syncEventByEvent(eventsArray, index + 1, prefs);
+                                eventOutbox.markGeofenceEventSynced(page.get(index).id);
+                                syncEventByEvent(page, index + 1);
                             }
                         } catch (Exception e) {
                             Log.e(TAG, "Erro no processamento da verificação de duplicata", e);
-                            syncEventByEvent(eventsArray, index + 1, prefs);
+                            syncEventByEvent(page, index + 1);
                         }
                     });
         } catch (JSONException e) {
             Log.e(TAG, "Erro ao extrair dados do evento", e);
-            syncEventByEvent(eventsArray, index + 1, prefs);
+            syncEventByEvent(page, index + 1);
         }
     }
 
     // === ARMAZENAMENTO LOCAL MELHORADO ===
     private void storeEventLocally(String eventType, Location location, GeofenceData geofence) {
-        SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-
         try {
-            JSONArray offlineEventsArray = getOfflineEventsArray(prefs);
-
-            if (isDuplicateEvent(offlineEventsArray, eventType, geofence, prefs)) {
-                Log.d(TAG, "Evento duplicado local ignorado: " + eventType + " - " + geofence.getName());
-                return;
-            }
-
-            JSONObject eventJson = createEventJson(eventType, location, geofence, prefs);
+            JSONObject eventJson = createEventJson(eventType, location, geofence);
             // ADICIONE ESTA LINHA:
             eventJson.put("companyId", currentCompanyId);
 
-            offlineEventsArray.put(eventJson);
-
-            prefs.edit().putString("offline_events", offlineEventsArray.toString()).apply();
+            // Inserção de uma linha no outbox; duplicatas na janela são ignoradas pelo índice da chave
+            eventOutbox.addGeofenceEvent(eventJson, DUPLICATE_WINDOW_MS);
             Log.d(TAG, "Evento armazenado offline para empresa " + currentCompanyId + ": " + eventType + " - " + geofence.getName());
 
         } catch (JSONException e) {
@@ -570,33 +1166,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         }
     }
 
-    private JSONArray getOfflineEventsArray(SharedPreferences prefs) throws JSONException {
-        String offlineEventsString = prefs.getString("offline_events", null);
-        return offlineEventsString != null ? new JSONArray(offlineEventsString) : new JSONArray();
-    }
-
-    private boolean isDuplicateEvent(JSONArray eventsArray, String eventType, GeofenceData geofence, SharedPreferences prefs) throws JSONException {
-        long currentTime = System.currentTimeMillis();
-        String userName = UserPreferences.loadUserName(prefs);
-        String eventKey = geofence.getName() + "_" + eventType + "_" + userName;
-
-        for (int i = 0; i < eventsArray.length(); i++) {
-            JSONObject existingEvent = eventsArray.getJSONObject(i);
-            String existingKey = existingEvent.getString("geofence_name") + "_" +
-                    existingEvent.getString("event_type") + "_" +
-                    existingEvent.getString("user_name");
-
-            if (existingKey.equals(eventKey) &&
-                    Math.abs(currentTime - existingEvent.getLong("timestamp")) < DUPLICATE_WINDOW_MS) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private JSONObject createEventJson(String eventType, Location location, GeofenceData geofence, SharedPreferences prefs) throws JSONException {
+    private JSONObject createEventJson(String eventType, Location location, GeofenceData geofence) throws JSONException {
         long currentTime = System.currentTimeMillis();
-        String userName = UserPreferences.loadUserName(prefs);
+        String userName = sessionState.getUserName();
 
         JSONObject eventJson = new JSONObject();
         eventJson.put("event_type", eventType);
@@ -613,45 +1185,18 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
     // === MÉTODOS DE LIMPEZA E UTILITÁRIOS ===
     private void cleanOldOfflineEvents() {
-        SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-        String offlineEventsString = prefs.getString("offline_events", null);
-
-        if (offlineEventsString == null) return;
-
-        try {
-            JSONArray offlineEventsArray = new JSONArray(offlineEventsString);
-            JSONArray cleanedArray = new JSONArray();
-            long currentTime = System.currentTimeMillis();
-
-            for (int i = 0; i < offlineEventsArray.length(); i++) {
-                JSONObject event = offlineEventsArray.getJSONObject(i);
-                long eventTime = event.getLong("timestamp");
-
-                if (currentTime - eventTime < EVENT_CLEANUP_AGE_MS) {
-                    cleanedArray.put(event);
-                }
-            }
-
-            if (cleanedArray.length() != offlineEventsArray.length()) {
-                prefs.edit().putString("offline_events", cleanedArray.toString()).apply();
-                Log.d(TAG, "Removidos " + (offlineEventsArray.length() - cleanedArray.length()) + " eventos antigos");
-            }
-
-        } catch (JSONException e) {
-            Log.e(TAG, "Erro ao limpar eventos antigos", e);
-        }
+        eventOutbox.purge(System.currentTimeMillis() - EVENT_CLEANUP_AGE_MS);
     }
 
 
     private void checkForStaleEntries() {
         long currentTime = System.currentTimeMillis();
-        SharedPreferences prefs = getSharedPreferences("GeofenceStatePrefs", MODE_PRIVATE);
 
         for (String geofenceName : new ArrayList<>(geofenceEntryState.keySet())) {
             if (Boolean.TRUE.equals(geofenceEntryState.get(geofenceName))) {
                 GeofenceData geofence = findGeofenceByName(geofenceName);
                 if (geofence != null) {
-                    long lastEntryTime = prefs.getLong("last_event_timestamp", 0);
+                    long lastEntryTime = sessionState.getLastEventTimestamp();
                     if (currentTime - lastEntryTime > AUTO_EXIT_THRESHOLD_MS) {
                         generateGeofenceEvent(null, geofence, "Saída Automática");
                         geofenceEntryState.put(geofenceName, false);
@@ -670,7 +1215,16 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
     // === MÉTODOS AUXILIARES CONSOLIDADOS ===
     public GeofenceData findGeofenceByName(String name) {
-        return geofenceList.stream()
+        if (geofenceList == null && geofenceSnapshot != null) {
+            // Procura direto nas colunas do snapshot, sem materializar a lista
+            for (int i = 0; i < geofenceSnapshot.size(); i++) {
+                if (java.util.Objects.equals(geofenceSnapshot.getName(i), name)) {
+                    return geofenceSnapshot.get(i);
+                }
+            }
+            return null;
+        }
+        return getGeofenceList().stream()
                 .filter(geofence -> geofence.getName().equals(name))
                 .findFirst()
                 .orElse(null);
@@ -704,45 +1258,43 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
     // === PRECISÃO DE LOCALIZAÇÃO ===
     private void adjustLocationRequestBasedOnProximity(Location location) {
-        PrecisionState desiredPrecision = calculateDesiredPrecision(location);
+        applyPrecision(precisionController.evaluate(
+                calculateNearestEdgeDistance(location), SystemClock.elapsedRealtime()));
+    }
 
+    private void applyPrecision(PrecisionState desiredPrecision) {
         if (currentPrecisionState != desiredPrecision) {
             currentPrecisionState = desiredPrecision;
+            updatePassiveMode();
             locationRequest = createLocationRequestForPrecision(desiredPrecision);
-            Log.d(TAG, "Mudando precisão para: " + desiredPrecision);
+            Log.d(TAG, "Mudando precisão para: " + desiredPrecision
+                    + " (re-registros evitados: " + precisionController.getAvoidedReregistrationCount() + ")");
             restartLocationUpdates();
         }
     }
 
-    private PrecisionState calculateDesiredPrecision(Location location) {
-        boolean isInsideGeofence = false;
-        boolean isCloseToGeofence = false;
-        boolean isVeryFarFromAll = true;
-
-        for (GeofenceData geofence : geofenceList) {
-            float distance = calculateDistance(location, geofence);
-
-            if (distance < geofence.getRadius()) {
-                isInsideGeofence = true;
-                break;
-            } else if (distance < geofence.getRadius() + 10) {
-                isCloseToGeofence = true;
-            }
-
-            if (distance < geofence.getRadius() + 400) {
-                isVeryFarFromAll = false;
+    /**
+     * Distância até a borda da geofence mais próxima (negativa quando dentro)
+     */
+    private float calculateNearestEdgeDistance(Location location) {
+        if (geofenceSnapshot != null) {
+            int nearest = geofenceSnapshot.findNearestEdge(location.getLatitude(), location.getLongitude());
+            return nearest >= 0
+                    ? (float) geofenceSnapshot.edgeDistance(nearest, location.getLatitude(), location.getLongitude())
+                    : Float.MAX_VALUE;
+        }
+        float nearestEdge = Float.MAX_VALUE;
+        for (GeofenceData geofence : getGeofenceList()) {
+            float edge = calculateDistance(location, geofence) - geofence.getRadius();
+            if (edge < nearestEdge) {
+                nearestEdge = edge;
             }
         }
+        return nearestEdge;
+    }
 
-        if (isInsideGeofence) {
-            return PrecisionState.LOW;
-        } else if (isCloseToGeofence) {
-            return PrecisionState.HIGH;
-        } else if (isVeryFarFromAll) {
-            return PrecisionState.VERY_LOW;
-        } else {
-            return PrecisionState.LOW;
-        }
+    public long getAvoidedPrecisionReregistrations() {
+        return precisionController != null ? precisionController.getAvoidedReregistrationCount() : 0;
     }
 
     private LocationRequest createLocationRequestForPrecision(PrecisionState precision) {
@@ -750,7 +1302,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             case HIGH:
                 return createLocationRequest(true);
             case VERY_LOW:
-                return createLowPrecisionLocationRequest();
+                return passiveLocationMode.isFallbackActive()
+                        ? createPassiveFallbackLocationRequest()
+                        : createPassiveLocationRequest();
             default:
                 return createLocationRequest(false);
         }
@@ -768,28 +1322,53 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                 .build();
     }
 
-    private LocationRequest createLowPrecisionLocationRequest() {
-        return new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER)
-                .setMinUpdateIntervalMillis(2 * 60 * 1000)
+    /**
+     * Requisição usada com o dispositivo parado dentro da obra: baixo consumo, aceitando
+     * localizações obtidas por outros apps a cada minuto
+     */
+    private LocationRequest createStationaryLocationRequest() {
+        return new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 10 * 60 * 1000)
+                .setMinUpdateIntervalMillis(60 * 1000)
+                .setMaxUpdateDelayMillis(15 * 60 * 1000)
+                .build();
+    }
+
+    /**
+     * Requisição de consumo muito baixo usada no modo híbrido apenas para rotação das geofences
+     */
+    private LocationRequest createHybridRotationLocationRequest() {
+        return new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 10 * 60 * 1000)
+                .setMinUpdateIntervalMillis(5 * 60 * 1000)
+                .setMaxUpdateDelayMillis(30 * 60 * 1000)
+                .build();
+    }
+
+    /**
+     * Requisição passiva: recebe apenas localizações solicitadas por outros apps
+     */
+    private LocationRequest createPassiveLocationRequest() {
+        return new LocationRequest.Builder(Priority.PRIORITY_PASSIVE, 5 * 60 * 1000)
+                .setMinUpdateIntervalMillis(60 * 1000)
+                .build();
+    }
+
+    /**
+     * Fallback ativo de baixa frequência usado quando não chegam localizações passivas
+     */
+    private LocationRequest createPassiveFallbackLocationRequest() {
+        return new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 15 * 60 * 1000)
+                .setMinUpdateIntervalMillis(60 * 1000)
                 .setMaxUpdateDelayMillis(5 * 60 * 1000)
                 .build();
     }
 
     private void startLocationUpdates() {
-        try {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, null);
-        } catch (SecurityException e) {
-            Log.e(TAG, "Permissão de localização não concedida", e);
-        }
+        locationScheduler.request(locationRequest);
+        StartupMilestones.record(this, StartupMilestones.LOCATION_REQUESTED);
     }
 
     private void restartLocationUpdates() {
-        try {
-            fusedLocationClient.removeLocationUpdates(locationCallback);
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, null);
-        } catch (SecurityException e) {
-            Log.e(TAG, "Erro ao reiniciar atualizações de localização", e);
-        }
+        locationScheduler.request(locationRequest);
     }
 
     // 3. SUBSTITUA O MÉTODO fetchGeofencesFromFirestore()
@@ -801,7 +1380,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
         Log.d(TAG, "Buscando geofences da empresa: " + currentCompanyId);
 
-        firestore.collection("companies")
+        getFirestore().collection("companies")
                 .document(currentCompanyId)
                 .collection("geofences")
                 .whereEqualTo("active", true)
@@ -832,6 +1411,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         if (!newGeofenceList.isEmpty()) {
             geofenceList = newGeofenceList;
             saveGeofencesToLocal();
+            if (geofenceRotationManager != null) {
+                geofenceRotationManager.setGeofences(geofenceList);
+            }
             Log.d(TAG, "Carregadas " + geofenceList.size() + " geofences do Firestore");
         }
     }
@@ -839,7 +1421,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     private void listenForGeofenceChanges() {
         if (currentCompanyId == null) return;
 
-        firestore.collection("companies")
+        getFirestore().collection("companies")
                 .document(currentCompanyId)
                 .collection("geofences")
                 .whereEqualTo("active", true)
@@ -868,7 +1450,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         long startTime = currentTime - DUPLICATE_WINDOW_MS;
         long endTime = currentTime + DUPLICATE_WINDOW_MS;
 
-        firestore.collection("companies")
+        getFirestore().collection("companies")
                 .document(currentCompanyId)
                 .collection("geofence_events")
                 .whereEqualTo("geofenceName", geofence.getName())
@@ -935,7 +1517,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
         geofenceRecord.put("accuracy", location.getAccuracy());
         geofenceRecord.put("isOfflineSync", false);
 
-        firestore.collection("companies")
+        getFirestore().collection("companies")
                 .document(currentCompanyId)
                 .collection("geofence_events")
                 .add(geofenceRecord)
@@ -949,15 +1531,14 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     }
 
 
-    private void insertEventToFirestore(JSONObject eventJson, JSONArray eventsArray, int index,
-                                        SharedPreferences prefs) {
+    private void insertEventToFirestore(JSONObject eventJson, List<GeofenceEventEntity> page, int index) {
         try {
             // Verifica se o evento tem companyId, se não, usa o atual
             String eventCompanyId = eventJson.optString("companyId", currentCompanyId);
 
             if (eventCompanyId == null) {
                 Log.e(TAG, "CompanyId não encontrado para evento offline");
-                syncEventByEvent(eventsArray, index + 1, prefs);
+                syncEventByEvent(page, index + 1);
                 return;
             }
 
@@ -977,90 +1558,240 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             geofenceRecord.put("accuracy", eventJson.optDouble("accuracy", 0.0));
             geofenceRecord.put("isOfflineSync", true);
 
-            firestore.collection("companies")
+            getFirestore().collection("companies")
                     .document(eventCompanyId)
                     .collection("geofence_events")
                     .add(geofenceRecord)
                     .addOnSuccessListener(documentReference -> {
                         Log.d(TAG, "Evento offline sincronizado para empresa " + eventCompanyId + ": " + eventJson.optString("event_type"));
-                        syncEventByEvent(eventsArray, index + 1, prefs);
+                        eventOutbox.markGeofenceEventSynced(page.get(index).id);
+                        syncEventByEvent(page, index + 1);
                     })
                     .addOnFailureListener(e -> {
+                        // Continua pendente para a próxima sincronização
                         Log.e(TAG, "Erro ao sincronizar evento da empresa", e);
-                        syncEventByEvent(eventsArray, index + 1, prefs);
+                        syncEventByEvent(page, index + 1);
                     });
         } catch (JSONException e) {
             Log.e(TAG, "Erro ao converter evento para Firestore da empresa", e);
-            syncEventByEvent(eventsArray, index + 1, prefs);
+            syncEventByEvent(page, index + 1);
         }
     }
 
     // === ARMAZENAMENTO LOCAL DE GEOFENCES ===
+    /**
+     * Mapeia o snapshot binário das geofences; só o cabeçalho é lido aqui, o corpo
+     * é conferido em seguida na thread de armazenamento
+     */
     private void loadGeofencesFromLocal() {
-        String geofencesJson = sharedPreferences.getString("geofences_data", null);
-        if (geofencesJson != null) {
-            try {
-                JSONArray jsonArray = new JSONArray(geofencesJson);
-                geofenceList = new ArrayList<>();
+        geofenceSnapshot = GeofenceSnapshot.open(new File(getFilesDir(), GEOFENCE_SNAPSHOT_FILE));
+        if (geofenceSnapshot != null) {
+            geofenceList = null;
+            Log.d(TAG, "Snapshot local com " + geofenceSnapshot.size() + " geofences mapeado");
+            verifyGeofenceSnapshot(geofenceSnapshot);
+            return;
+        }
 
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    JSONObject jsonObject = jsonArray.getJSONObject(i);
-                    GeofenceData geofence = GeofenceData.fromJson(jsonObject);
-                    if (geofence != null) {
-                        geofenceList.add(geofence);
-                    }
+        // Instalações antigas: converte o JSON de GeofencesPrefs uma única vez
+        geofenceList = new ArrayList<>();
+        String geofencesJson = sharedPreferences.getString("geofences_data", null);
+        if (geofencesJson == null) return;
+        try {
+            JSONArray jsonArray = new JSONArray(geofencesJson);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(i);
+                GeofenceData geofence = GeofenceData.fromJson(jsonObject);
+                if (geofence != null) {
+                    geofenceList.add(geofence);
                 }
-
-                Log.d(TAG, "Carregadas " + geofenceList.size() + " geofences do armazenamento local");
-            } catch (JSONException e) {
-                Log.e(TAG, "Erro ao carregar geofences locais", e);
-                geofenceList = new ArrayList<>();
             }
-        } else {
-            geofenceList = new ArrayList<>();
+
+            Log.d(TAG, "Carregadas " + geofenceList.size() + " geofences do formato antigo");
+            saveGeofencesToLocal();
+        } catch (JSONException e) {
+            Log.e(TAG, "Erro ao carregar geofences locais", e);
         }
     }
 
+    /**
+     * Confere o CRC32 do corpo do snapshot fora da thread principal; se não bater,
+     * descarta o snapshot e busca as geofences de novo no Firestore
+     */
+    private void verifyGeofenceSnapshot(GeofenceSnapshot snapshot) {
+        if (storageWriter == null || storageWriter.isShutdown()) return;
+        storageWriter.execute(() -> {
+            if (snapshot.verifyBody()) return;
+            storageResultHandler.post(() -> {
+                // Uma lista mais nova pode ter substituído o snapshot nesse meio tempo
+                if (geofenceSnapshot != snapshot) return;
+                Log.e(TAG, "Snapshot local de geofences corrompido, descartando");
+                geofenceSnapshot = null;
+                geofenceList = new ArrayList<>();
+                new File(getFilesDir(), GEOFENCE_SNAPSHOT_FILE).delete();
+                if (isNetworkAvailable()) {
+                    fetchGeofencesFromFirestore();
+                }
+            });
+        });
+    }
+
+    /**
+     * Grava o snapshot na thread de armazenamento; até ele ficar pronto (ou se a
+     * gravação falhar) a avaliação usa a lista em memória
+     */
     private void saveGeofencesToLocal() {
-        try {
-            JSONArray jsonArray = new JSONArray();
-            for (GeofenceData geofence : geofenceList) {
-                jsonArray.put(geofence.toJson());
-            }
+        geofenceSnapshot = null;
+        if (storageWriter == null || storageWriter.isShutdown()) return;
 
-            sharedPreferences.edit()
-                    .putString("geofences_data", jsonArray.toString())
-                    .apply();
+        List<GeofenceData> geofences = geofenceList;
+        File file = new File(getFilesDir(), GEOFENCE_SNAPSHOT_FILE);
+        storageWriter.execute(() -> {
+            GeofenceSnapshot written;
+            try {
+                GeofenceSnapshot.write(file, geofences);
+                written = GeofenceSnapshot.open(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao salvar geofences localmente", e);
+                return;
+            }
+            storageResultHandler.post(() -> {
+                // Uma lista mais nova pode ter chegado durante a gravação
+                if (geofenceList != geofences || written == null) return;
+                geofenceSnapshot = written;
+                sharedPreferences.edit()
+                        .remove("geofences_data")
+                        .apply();
+                Log.d(TAG, "Geofences salvas localmente");
+            });
+        });
+    }
 
-            Log.d(TAG, "Geofences salvas localmente");
-        } catch (JSONException e) {
-            Log.e(TAG, "Erro ao salvar geofences localmente", e);
+    private List<GeofenceData> getGeofenceList() {
+        if (geofenceList == null) {
+            geofenceList = geofenceSnapshot != null ? geofenceSnapshot.toList() : new ArrayList<>();
         }
+        return geofenceList;
+    }
+
+    private boolean hasGeofences() {
+        if (geofenceList != null) return !geofenceList.isEmpty();
+        return geofenceSnapshot != null && geofenceSnapshot.size() > 0;
     }
 
     private void startGeofenceUpdateCycle() {
         if (isNetworkAvailable()) {
             fetchGeofencesFromFirestore();
         }
-        updateHandler.postDelayed(updateGeofencesRunnable, 24 * 60 * 60 * 1000);
+        maintenanceScheduler.addTask(TASK_GEOFENCE_UPDATE, GEOFENCE_UPDATE_INTERVAL_MS,
+                GEOFENCE_UPDATE_INTERVAL_MS, true, this::fetchGeofencesFromFirestore);
     }
 
     // === ESTADO DAS GEOFENCES ===
     private void saveLastGeofenceEvent(String geofenceName, String eventType) {
-        SharedPreferences prefs = getSharedPreferences("GeofenceStatePrefs", MODE_PRIVATE);
-        prefs.edit()
-                .putString("last_geofence_name", geofenceName)
-                .putString("last_event_type", eventType)
-                .putLong("last_event_timestamp", System.currentTimeMillis())
-                .apply();
+        long now = System.currentTimeMillis();
+        sessionState.recordTransition(geofenceName, eventType, now);
+        journalTransition(geofenceName, eventType, now);
+        stageShutdownExits();
+    }
+
+    // === JOURNAL DE RASTREAMENTO ===
+    /**
+     * Retoma entradas e confirmações em andamento reconstruídas pelo TrackingRecovery
+     * (reinício do processo no mesmo boot; após um boot as confirmações já vêm limpas)
+     */
+    private void restoreTrackingState(TrackingJournal.State recovered) {
+        if (recovered == null) return;
+        for (String geofenceName : recovered.entered.keySet()) {
+            geofenceEntryState.put(geofenceName, true);
+        }
+        for (TrackingJournal.Pending pending : recovered.pending.values()) {
+            Map<String, Integer> counterMap = pending.isEntry ? entryUpdateCounter : exitUpdateCounter;
+            Map<String, Long> timestampMap = pending.isEntry ? entryFirstTimestamp : exitFirstTimestamp;
+            counterMap.put(pending.geofenceName, pending.counter);
+            timestampMap.put(pending.geofenceName, pending.firstTimestamp);
+        }
+        if (!recovered.entered.isEmpty() || !recovered.pending.isEmpty()) {
+            Log.d(TAG, "Estado retomado do journal: " + recovered.entered.size() + " entradas, "
+                    + recovered.pending.size() + " confirmações em andamento");
+        }
+    }
+
+    /**
+     * Escrita no journal de rastreamento (fsync e checkpoints), feita na thread de armazenamento
+     */
+    private interface JournalWrite {
+        void run(TrackingJournal journal) throws IOException;
+    }
+
+    private void journalAsync(String errorMessage, JournalWrite write) {
+        TrackingJournal journal = trackingJournal;
+        if (journal == null || storageWriter == null || storageWriter.isShutdown()) return;
+        storageWriter.execute(() -> {
+            try {
+                write.run(journal);
+            } catch (IOException e) {
+                Log.e(TAG, errorMessage, e);
+            }
+        });
+    }
+
+    private void journalTransition(String geofenceName, String eventType, long timestamp) {
+        if ("Entrada Confirmada".equals(eventType)) {
+            GeofenceData geofence = findGeofenceByName(geofenceName);
+            if (geofence == null) return;
+            TrackingJournal.Entry entry = new TrackingJournal.Entry(geofenceName, geofence.getCodigoObra(),
+                    geofence.getLatitude(), geofence.getLongitude(), sessionState.getUserName(),
+                    currentCompanyId, timestamp);
+            journalAsync("Erro ao registrar transição no journal", journal -> journal.recordEntry(entry));
+        } else {
+            journalAsync("Erro ao registrar transição no journal",
+                    journal -> journal.recordExit(geofenceName, timestamp));
+        }
+    }
+
+    private void journalPending(String geofenceName, boolean isEntry, int counter, long firstTimestamp) {
+        TrackingJournal.Pending pending = new TrackingJournal.Pending(geofenceName, isEntry, counter, firstTimestamp);
+        long timestamp = System.currentTimeMillis();
+        journalAsync("Erro ao registrar contador no journal", journal -> journal.recordPending(pending, timestamp));
+    }
+
+    /**
+     * Prepara as saídas das geofences atuais para o desligamento (ShutdownExitStage),
+     * para o receiver só precisar confirmar horário e estado
+     */
+    private void stageShutdownExits() {
+        ShutdownExitStage stage = ShutdownExitStage.getInstance(this);
+        if (stage == null) return;
+
+        List<GeofenceEventEntity> exits = new ArrayList<>();
+        for (GeofenceData geofence : getEnteredGeofences()) {
+            try {
+                JSONObject exit = new JSONObject();
+                exit.put("event_type", ShutdownExitStage.EXIT_EVENT_TYPE);
+                exit.put("latitude", geofence.getLatitude());
+                exit.put("longitude", geofence.getLongitude());
+                exit.put("geofence_name", geofence.getName());
+                exit.put("geofence_code", geofence.getCodigoObra());
+                exit.put("user_name", sessionState.getUserName());
+                exit.put("companyId", currentCompanyId);
+                exit.put("accuracy", 1.0);
+                exit.put("is_automatic_exit", true);
+                exit.put("is_shutdown_event", true);
+                exit.put("detection_method", "realtime_shutdown");
+                exit.put("transition_type", "EXIT");
+                exit.put("source", "shutdown_receiver");
+                exits.add(GeofenceEventEntity.fromJson(exit));
+            } catch (JSONException e) {
+                Log.e(TAG, "Erro ao preparar saída de desligamento: " + geofence.getName(), e);
+            }
+        }
+        stage.stage(exits, System.currentTimeMillis());
     }
 
     private void loadLastGeofenceEvent() {
-        SharedPreferences prefs = getSharedPreferences("GeofenceStatePrefs", MODE_PRIVATE);
-        String lastGeofenceName = prefs.getString("last_geofence_name", null);
-        String lastEventType = prefs.getString("last_event_type", null);
+        String lastGeofenceName = sessionState.getEnteredGeofenceName();
 
-        if (lastGeofenceName != null && "Entrada Confirmada".equals(lastEventType)) {
+        if (lastGeofenceName != null) {
             geofenceEntryState.put(lastGeofenceName, true);
             Log.d(TAG, "Estado anterior carregado: dentro de " + lastGeofenceName);
         }
@@ -1109,7 +1840,7 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                 Log.d(TAG, "Mudança de conectividade: " + (isConnected ? "Conectado" : "Desconectado"));
 
                 if (isConnected) {
-                    syncHandler.post(syncRunnable);
+                    maintenanceScheduler.requestRun(TASK_SYNC);
                 }
             }
         }
@@ -1127,8 +1858,8 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
                         Log.d(TAG, "Status GPS mudou: " + statusMessage);
 
-                        // Registra o evento de GPS no Firestore
-                        recordGpsStatusEvent(statusMessage, gpsEnabled);
+                        // Oscilações próximas viram um único registro de intervalo
+                        observeGpsStatus(statusMessage, gpsEnabled);
                     }
                 } catch (Exception e) {
                     Log.e(TAG, "Erro ao processar mudança de GPS", e);
@@ -1136,48 +1867,94 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             }
         }
     }
-    private Map<String, Object> createGpsStatusEvent(String message, boolean gpsEnabled) {
-        SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-        String userName = UserPreferences.loadUserName(prefs);
+    // === COALESCÊNCIA DO STATUS DO GPS ===
+    /**
+     * Entrega o status observado ao coalescedor; o registro só é gerado quando o
+     * intervalo de oscilação fecha
+     */
+    private void observeGpsStatus(String message, boolean gpsEnabled) {
+        GpsStatusCoalescer coalescer = getGpsStatusCoalescer();
+        if (coalescer.onStatus(System.currentTimeMillis(), gpsEnabled, message)) {
+            gpsStatusHandler.removeCallbacks(gpsStatusFlushRunnable);
+            gpsStatusHandler.postDelayed(gpsStatusFlushRunnable, GpsStatusCoalescer.DEFAULT_QUIET_MS);
+        }
+    }
+
+    private void flushGpsStatusInterval() {
+        GpsStatusCoalescer coalescer = getGpsStatusCoalescer();
+        long now = System.currentTimeMillis();
+        GpsStatusCoalescer.Interval interval = coalescer.flushDue(now);
+        if (interval == null) {
+            long delay = coalescer.nextFlushDelay(now);
+            if (delay >= 0) {
+                gpsStatusHandler.postDelayed(gpsStatusFlushRunnable, delay);
+            }
+            return;
+        }
+        recordGpsStatusInterval(interval);
+    }
+
+    private GpsStatusCoalescer getGpsStatusCoalescer() {
+        if (gpsStatusCoalescer == null) {
+            SharedPreferences prefs = StateStore.prefs(this, StateStore.APP);
+            Boolean reported = prefs.contains(PREF_GPS_REPORTED_ENABLED)
+                    ? prefs.getBoolean(PREF_GPS_REPORTED_ENABLED, true) : null;
+            gpsStatusCoalescer = new GpsStatusCoalescer(GpsStatusCoalescer.DEFAULT_QUIET_MS,
+                    GpsStatusCoalescer.DEFAULT_MAX_SPAN_MS, reported);
+        }
+        return gpsStatusCoalescer;
+    }
+
+    private void recordGpsStatusInterval(GpsStatusCoalescer.Interval interval) {
+        StateStore.prefs(this, StateStore.APP).edit()
+                .putBoolean(PREF_GPS_REPORTED_ENABLED, interval.lastEnabled)
+                .apply();
+
+        if (interval.toggleCount > 1) {
+            Log.d(TAG, "GPS oscilou " + interval.toggleCount + " vezes em "
+                    + (interval.endTimestamp - interval.startTimestamp) / 1000 + "s");
+        }
+        recordGpsStatusEvent(createGpsStatusEvent(interval));
+    }
+
+    private Map<String, Object> createGpsStatusEvent(GpsStatusCoalescer.Interval interval) {
+        String userName = sessionState.getUserName();
         String employeeId = getEmployeeId(userName);
+        boolean gpsEnabled = interval.lastEnabled;
+        String message = interval.toggleCount == 1 ? interval.firstMessage
+                : "GPS oscilou " + interval.toggleCount + " vezes ("
+                + (gpsEnabled ? "habilitado" : "desabilitado") + " ao final)";
 
         Map<String, Object> gpsStatusEvent = new HashMap<>();
         gpsStatusEvent.put("employeeId", employeeId);
         gpsStatusEvent.put("employeeName", userName);
         gpsStatusEvent.put("eventType", gpsEnabled ? "gps_enabled" : "gps_disabled");
         gpsStatusEvent.put("message", message);
-        gpsStatusEvent.put("timestamp", System.currentTimeMillis());
+        gpsStatusEvent.put("timestamp", interval.startTimestamp);
         gpsStatusEvent.put("deviceInfo", Build.MODEL + " - " + Build.MANUFACTURER + " - Android " + Build.VERSION.RELEASE);
         gpsStatusEvent.put("gpsEnabled", gpsEnabled);
+        if (interval.toggleCount > 1) {
+            gpsStatusEvent.put("toggleCount", interval.toggleCount);
+            gpsStatusEvent.put("intervalStart", interval.startTimestamp);
+            gpsStatusEvent.put("intervalEnd", interval.endTimestamp);
+            gpsStatusEvent.put("firstGpsEnabled", interval.firstEnabled);
+        }
 
         return gpsStatusEvent;
     }
 
     // Método para registrar eventos de GPS no Firestore
-    private void recordGpsStatusEvent(String message, boolean gpsEnabled) {
+    private void recordGpsStatusEvent(Map<String, Object> gpsStatusEvent) {
+        String message = (String) gpsStatusEvent.get("message");
         if (currentCompanyId == null) {
             Log.e(TAG, "CompanyId não definido para evento GPS - armazenando localmente");
-            Map<String, Object> gpsStatusEvent = createGpsStatusEvent(message, gpsEnabled);
             storeGpsEventLocally(gpsStatusEvent);
             return;
         }
 
         try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-            String userName = UserPreferences.loadUserName(prefs);
-            String employeeId = getEmployeeId(userName);
-
-            Map<String, Object> gpsStatusEvent = new HashMap<>();
-            gpsStatusEvent.put("employeeId", employeeId);
-            gpsStatusEvent.put("employeeName", userName);
-            gpsStatusEvent.put("eventType", gpsEnabled ? "gps_enabled" : "gps_disabled");
-            gpsStatusEvent.put("message", message);
-            gpsStatusEvent.put("timestamp", System.currentTimeMillis());
-            gpsStatusEvent.put("deviceInfo", Build.MODEL + " - " + Build.MANUFACTURER + " - Android " + Build.VERSION.RELEASE);
-            gpsStatusEvent.put("gpsEnabled", gpsEnabled);
-
             if (isNetworkAvailable()) {
-                firestore.collection("companies")
+                getFirestore().collection("companies")
                         .document(currentCompanyId)
                         .collection("system_events")
                         .add(gpsStatusEvent)
@@ -1200,16 +1977,6 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     // Método para armazenar eventos de GPS localmente
     private void storeGpsEventLocally(Map<String, Object> gpsStatusEvent) {
         try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-            String offlineGpsEventsString = prefs.getString("offline_gps_events", null);
-
-            JSONArray offlineGpsEventsArray;
-            if (offlineGpsEventsString != null) {
-                offlineGpsEventsArray = new JSONArray(offlineGpsEventsString);
-            } else {
-                offlineGpsEventsArray = new JSONArray();
-            }
-
             // Converte o Map para JSONObject
             JSONObject gpsEventJson = new JSONObject();
             for (Map.Entry<String, Object> entry : gpsStatusEvent.entrySet()) {
@@ -1218,12 +1985,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
             // Adiciona um ID local único
             gpsEventJson.put("local_id", "gps_" + System.currentTimeMillis());
+            gpsEventJson.put("companyId", currentCompanyId);
 
-            offlineGpsEventsArray.put(gpsEventJson);
-
-            // Salva no SharedPreferences
-            prefs.edit().putString("offline_gps_events", offlineGpsEventsArray.toString()).apply();
-
+            eventOutbox.addSystemEvent(gpsEventJson);
             Log.d(TAG, "Evento GPS armazenado offline: " + gpsStatusEvent.get("message"));
 
         } catch (Exception e) {
@@ -1237,64 +2001,83 @@ public class LocationForegroundService extends Service implements DeviceStateRec
             Log.d(TAG, "Rede não disponível para sincronização de eventos GPS");
             return;
         }
+        if (gpsSyncWakeHold != null) return;
 
-        SharedPreferences prefs = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
-        String offlineGpsEventsString = prefs.getString("offline_gps_events", null);
-
-        if (offlineGpsEventsString == null || offlineGpsEventsString.trim().isEmpty()) {
-            return;
-        }
+        gpsSyncWakeHold = wakeLockManager.acquire(WakeLockManager.TAG_SYNC);
+        syncGpsEventPage(-1, -1, 0);
+    }
 
-        try {
-            JSONArray offlineGpsEventsArray = new JSONArray(offlineGpsEventsString);
-            if (offlineGpsEventsArray.length() == 0) {
+    private void syncGpsEventPage(int afterPriority, long afterTimestamp, long afterId) {
+        eventOutbox.loadPendingSystemEvents(afterPriority, afterTimestamp, afterId,
+                EventOutbox.DEFAULT_PAGE_SIZE, page -> {
+            if (page.isEmpty()) {
+                releaseGpsSyncWakeHold();
                 return;
             }
-
-            Log.d(TAG, "Iniciando sincronização de " + offlineGpsEventsArray.length() + " eventos GPS");
-            syncGpsEventByEvent(offlineGpsEventsArray, 0, prefs);
-
-        } catch (JSONException e) {
-            Log.e(TAG, "Erro ao processar eventos GPS offline", e);
-        }
+            Log.d(TAG, "Sincronizando página de " + page.size() + " eventos GPS");
+            syncGpsEventByEvent(page, 0);
+        });
     }
 
     // Método para sincronizar eventos GPS um por vez
-    private void syncGpsEventByEvent(JSONArray eventsArray, int index, SharedPreferences prefs) {
-        if (index >= eventsArray.length()) {
-            Log.d(TAG, "Sincronização de eventos GPS concluída. Limpando eventos offline");
-            prefs.edit().remove("offline_gps_events").apply();
+    private void syncGpsEventByEvent(List<SystemEventEntity> page, int index) {
+        if (index >= page.size()) {
+            if (page.size() < EventOutbox.DEFAULT_PAGE_SIZE) {
+                Log.d(TAG, "Sincronização de eventos GPS concluída");
+                releaseGpsSyncWakeHold();
+            } else {
+                SystemEventEntity last = page.get(page.size() - 1);
+                syncGpsEventPage(last.priority, last.timestamp, last.id);
+            }
             return;
         }
 
-        try {
-            JSONObject eventJson = eventsArray.getJSONObject(index);
-
-            // Converte JSONObject para Map
-            Map<String, Object> gpsStatusEvent = new HashMap<>();
-            gpsStatusEvent.put("message", eventJson.getString("message"));
-            gpsStatusEvent.put("timestamp", eventJson.getLong("timestamp"));
-            gpsStatusEvent.put("user_name", eventJson.getString("user_name"));
-            gpsStatusEvent.put("gps_enabled", eventJson.getBoolean("gps_enabled"));
+        SystemEventEntity event = page.get(index);
 
-            if (eventJson.has("device_info")) {
-                gpsStatusEvent.put("device_info", eventJson.getString("device_info"));
-            }
+        Map<String, Object> gpsStatusEvent = new HashMap<>();
+        gpsStatusEvent.put("message", event.message);
+        gpsStatusEvent.put("timestamp", event.timestamp);
+        gpsStatusEvent.put("user_name", event.userName);
+        gpsStatusEvent.put("gps_enabled", event.gpsEnabled);
+        if (event.deviceInfo != null) {
+            gpsStatusEvent.put("device_info", event.deviceInfo);
+        }
+        putIntervalExtras(gpsStatusEvent, event.extras);
 
-            firestore.collection("gps_status")
-                    .add(gpsStatusEvent)
-                    .addOnSuccessListener(documentReference -> {
-                        Log.d(TAG, "Evento GPS offline sincronizado: " + eventJson.optString("message"));
-                        syncGpsEventByEvent(eventsArray, index + 1, prefs);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Erro ao sincronizar evento GPS", e);
-                        syncGpsEventByEvent(eventsArray, index + 1, prefs);
-                    });
+        getFirestore().collection("gps_status")
+                .add(gpsStatusEvent)
+                .addOnSuccessListener(documentReference -> {
+                    Log.d(TAG, "Evento GPS offline sincronizado: " + event.message);
+                    eventOutbox.markSystemEventSynced(event.id);
+                    syncGpsEventByEvent(page, index + 1);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Erro ao sincronizar evento GPS", e);
+                    syncGpsEventByEvent(page, index + 1);
+                });
+    }
 
+    /**
+     * Copia os campos do intervalo de oscilação (guardados em extras) para o envio
+     */
+    private void putIntervalExtras(Map<String, Object> gpsStatusEvent, String extras) {
+        if (extras == null) return;
+        try {
+            JSONObject json = new JSONObject(extras);
+            if (!json.has("toggleCount")) return;
+            gpsStatusEvent.put("toggle_count", json.optInt("toggleCount"));
+            gpsStatusEvent.put("interval_start", json.optLong("intervalStart"));
+            gpsStatusEvent.put("interval_end", json.optLong("intervalEnd"));
+            gpsStatusEvent.put("first_gps_enabled", json.optBoolean("firstGpsEnabled"));
         } catch (JSONException e) {
-            Log.e(TAG, "Erro ao processar evento GPS no índice " + index, e);
-            syncGpsEventByEvent(eventsArray, index + 1, prefs);
+            Log.w(TAG, "Extras inválidos no evento GPS", e);
+        }
+    }
+
+    private void releaseGpsSyncWakeHold() {
+        if (gpsSyncWakeHold != null) {
+            gpsSyncWakeHold.release();
+            gpsSyncWakeHold = null;
         }
     }
 
@@ -1303,6 +2086,9 @@ public class LocationForegroundService extends Service implements DeviceStateRec
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "onStartCommand chamado");
+        if (intent != null && ACTION_OS_GEOFENCE_EVENT.equals(intent.getAction()) && hybridModeEnabled) {
+            handleOsGeofenceEvent(intent);
+        }
         return START_STICKY;
     }
 
@@ -1318,13 +2104,27 @@ public class LocationForegroundService extends Service implements DeviceStateRec
 
         try {
             // Para handlers
-            syncHandler.removeCallbacks(syncRunnable);
-            updateHandler.removeCallbacks(updateGeofencesRunnable);
-            exitCheckHandler.removeCallbacks(exitCheckRunnable);
+            maintenanceScheduler.stop();
+            passiveCheckHandler.removeCallbacks(passiveStalenessRunnable);
+            // Inicialização adiada (tempo limite e a postada pela primeira avaliação)
+            startupHandler.removeCallbacksAndMessages(null);
+            storageResultHandler.removeCallbacksAndMessages(null);
+
+            // Grava o intervalo de oscilação do GPS ainda aberto
+            gpsStatusHandler.removeCallbacks(gpsStatusFlushRunnable);
+            if (gpsStatusCoalescer != null) {
+                GpsStatusCoalescer.Interval interval = gpsStatusCoalescer.flush();
+                if (interval != null) {
+                    recordGpsStatusInterval(interval);
+                }
+            }
 
             // Para atualizações de localização
-            if (fusedLocationClient != null && locationCallback != null) {
-                fusedLocationClient.removeLocationUpdates(locationCallback);
+            if (locationScheduler != null) {
+                locationScheduler.stop();
+            }
+            if (geofenceRotationManager != null) {
+                geofenceRotationManager.clear();
             }
 
             // Desregistra receivers
@@ -1335,9 +2135,23 @@ public class LocationForegroundService extends Service implements DeviceStateRec
                 unregisterReceiver(gpsStatusReceiver);
             }
 
-            // Libera WakeLock
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
+            // Grava o estado pendente antes de o processo poder ser encerrado
+            if (sessionState != null) {
+                sessionState.close();
+            }
+            if (storageWriter != null) {
+                storageWriter.shutdown();
+            }
+            StateStore.getInstance(this).flush();
+
+            // Libera WakeLocks de sincronização pendentes
+            releaseSyncWakeHold();
+            if (gpsSyncWakeHold != null) {
+                gpsSyncWakeHold.release();
+                gpsSyncWakeHold = null;
+            }
+            if (wakeLockManager != null) {
+                wakeLockManager.logSummary();
             }
 
         } catch (Exception e) {
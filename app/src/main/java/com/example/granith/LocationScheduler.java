@@ -0,0 +1,103 @@
+package com.example.granith;
+
+import android.util.Log;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.Priority;
+
+/**
+ * Único ponto de registro das requisições de localização do serviço.
+ * Aplica o orçamento de amostragem (bateria) sobre a requisição desejada antes
+ * de registrá-la no provedor fundido.
+ */
+public class LocationScheduler {
+    private static final String TAG = "LocationScheduler";
+
+    private final FusedLocationProviderClient fusedLocationClient;
+    private final LocationCallback locationCallback;
+
+    private LocationRequest desiredRequest;
+    private SamplingBudget budget = SamplingBudget.UNLIMITED;
+    private boolean registered = false;
+    private long registrationCount = 0;
+
+    public LocationScheduler(FusedLocationProviderClient fusedLocationClient, LocationCallback locationCallback) {
+        this.fusedLocationClient = fusedLocationClient;
+        this.locationCallback = locationCallback;
+    }
+
+    /**
+     * Registra (ou re-registra) a requisição desejada respeitando o orçamento atual
+     */
+    public void request(LocationRequest request) {
+        desiredRequest = request;
+        apply();
+    }
+
+    /**
+     * Atualiza o orçamento; a requisição atual é re-registrada apenas se o orçamento mudou
+     */
+    public void setBudget(SamplingBudget newBudget) {
+        if (newBudget == null || newBudget.equals(budget)) return;
+        Log.d(TAG, "Orçamento de amostragem: " + budget + " -> " + newBudget);
+        budget = newBudget;
+        if (desiredRequest != null) {
+            apply();
+        }
+    }
+
+    private void apply() {
+        LocationRequest effective = enforceBudget(desiredRequest, budget);
+        try {
+            if (registered) {
+                fusedLocationClient.removeLocationUpdates(locationCallback);
+            }
+            fusedLocationClient.requestLocationUpdates(effective, locationCallback, null);
+            registered = true;
+            registrationCount++;
+        } catch (SecurityException e) {
+            Log.e(TAG, "Permissão de localização não concedida", e);
+        }
+    }
+
+    /**
+     * Requisição efetiva: prioridade e intervalos limitados pelo orçamento
+     */
+    static LocationRequest enforceBudget(LocationRequest request, SamplingBudget budget) {
+        // Requisições passivas não geram custo próprio
+        if (request.getPriority() == Priority.PRIORITY_PASSIVE) {
+            return request;
+        }
+
+        int priority = budget.clampPriority(request.getPriority());
+        long minInterval = budget.getMinIntervalMillis();
+        if (priority == request.getPriority()
+                && request.getIntervalMillis() >= minInterval
+                && request.getMinUpdateIntervalMillis() >= minInterval) {
+            return request;
+        }
+
+        return new LocationRequest.Builder(request)
+                .setPriority(priority)
+                .setIntervalMillis(Math.max(request.getIntervalMillis(), minInterval))
+                .setMinUpdateIntervalMillis(Math.max(request.getMinUpdateIntervalMillis(), minInterval))
+                .build();
+    }
+
+    public void stop() {
+        if (registered) {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            registered = false;
+        }
+    }
+
+    public SamplingBudget getBudget() {
+        return budget;
+    }
+
+    public long getRegistrationCount() {
+        return registrationCount;
+    }
+}
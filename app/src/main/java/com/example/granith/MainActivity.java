@@ -49,7 +49,7 @@ public class MainActivity extends AppCompatActivity {
         db = FirebaseFirestore.getInstance();
 
         // Verifica se há nome salvo nas SharedPreferences
-        SharedPreferences sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        SharedPreferences sharedPreferences = StateStore.prefs(this, StateStore.APP);
         String userName = UserPreferences.loadUserName(sharedPreferences);
 
         if (userName == null) {
@@ -116,7 +116,7 @@ public class MainActivity extends AppCompatActivity {
      */
 
     private void logDownload(String userName) {
-        SharedPreferences sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        SharedPreferences sharedPreferences = StateStore.prefs(this, StateStore.APP);
         boolean downloadLogged = sharedPreferences.getBoolean("DOWNLOAD_LOGGED", false);
         if (!downloadLogged) {
             long timestamp = System.currentTimeMillis();
@@ -147,7 +147,7 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     private void checkAndUpdateUserInfo(String userName) {
-        SharedPreferences sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        SharedPreferences sharedPreferences = StateStore.prefs(this, StateStore.APP);
         String savedVersion = sharedPreferences.getString("APP_VERSION", "");
         String currentVersion = "";
 
@@ -341,7 +341,7 @@ public class MainActivity extends AppCompatActivity {
                     startActivity(intent);
                 })
                 .setNegativeButton("Tentar Novamente", (dialog, which) -> {
-                    String userName = UserPreferences.loadUserName(getSharedPreferences("MyAppPrefs", MODE_PRIVATE));
+                    String userName = UserPreferences.loadUserName(StateStore.prefs(this, StateStore.APP));
                     checkBackgroundLocationPermission(userName);
                 })
                 .show();
@@ -350,8 +350,9 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        ServiceConditionMonitor.notifyConditionsChanged(this);
 
-        String userName = UserPreferences.loadUserName(getSharedPreferences("MyAppPrefs", MODE_PRIVATE));
+        String userName = UserPreferences.loadUserName(StateStore.prefs(this, StateStore.APP));
 
         if (requestCode == LOCATION_PERMISSION_REQUEST_CODE) {
             if (allPermissionsGranted(grantResults)) {
@@ -409,7 +410,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void checkBatteryOptimization(String userName) {
-        SharedPreferences sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        SharedPreferences sharedPreferences = StateStore.prefs(this, StateStore.APP);
         boolean batteryOptimizationAsked = sharedPreferences.getBoolean("BatteryOptimizationAsked", false);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -445,7 +446,7 @@ public class MainActivity extends AppCompatActivity {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
                     PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
                     if (pm.isIgnoringBatteryOptimizations(getPackageName())) {
-                        String userName = UserPreferences.loadUserName(getSharedPreferences("MyAppPrefs", MODE_PRIVATE));
+                        String userName = UserPreferences.loadUserName(StateStore.prefs(this, StateStore.APP));
                         startLocationService(userName);
                     } else {
                         statusTextView.setText("A otimização de bateria ainda está ativada. Por favor, desative-a.");
@@ -458,10 +459,12 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        // Permissões podem ter sido concedidas nas configurações do sistema
+        ServiceConditionMonitor.notifyConditionsChanged(this);
         // Verifica novamente as permissões quando o usuário volta para o app
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-                String userName = UserPreferences.loadUserName(getSharedPreferences("MyAppPrefs", MODE_PRIVATE));
+                String userName = UserPreferences.loadUserName(StateStore.prefs(this, StateStore.APP));
                 if (userName != null) {
                     statusTextView.setText("Bem-vindo, " + userName);
                 }
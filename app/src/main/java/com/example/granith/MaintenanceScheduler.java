@@ -0,0 +1,218 @@
+package com.example.granith;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Agenda as tarefas periódicas do serviço (sincronização, limpeza, verificação de
+ * entradas obsoletas) em janelas de manutenção compartilhadas.
+ *
+ * - Todas as tarefas que vencem antes da próxima janela rodam juntas, em um único despertar.
+ * - Com a tela desligada, tarefas adiáveis (uploads não urgentes) esperam até a tela ligar,
+ *   até a saída do modo ocioso (Doze) ou até o limite máximo de adiamento.
+ * - No modo de economia de energia as janelas ficam maiores.
+ *
+ * A avaliação das geofences não passa por aqui e continua respondendo a cada localização.
+ */
+public class MaintenanceScheduler {
+    private static final String TAG = "MaintenanceScheduler";
+
+    private static final long WINDOW_MS = 5 * 60 * 1000; // 5 minutos
+    private static final long POWER_SAVE_WINDOW_MS = 15 * 60 * 1000; // 15 minutos
+    private static final long MAX_DEFERRAL_MS = 60 * 60 * 1000; // 1 hora
+    private static final long ONE_HOUR_MS = 60 * 60 * 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final ArrayDeque<Long> wakeupTimes = new ArrayDeque<>();
+
+    private boolean started = false;
+    private boolean screenOn = true;
+    private boolean deviceIdle = false;
+    private boolean powerSaveMode = false;
+    private long scheduledWakeup = 0;
+
+    private long totalWakeups = 0;
+    private long deferredRuns = 0;
+
+    private static final class Task {
+        final String name;
+        final long periodMs;
+        final boolean deferWhileScreenOff;
+        final Runnable action;
+        long nextDue;
+
+        Task(String name, long periodMs, boolean deferWhileScreenOff, Runnable action, long nextDue) {
+            this.name = name;
+            this.periodMs = periodMs;
+            this.deferWhileScreenOff = deferWhileScreenOff;
+            this.action = action;
+            this.nextDue = nextDue;
+        }
+    }
+
+    private final Runnable wakeupRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduledWakeup = 0;
+            long now = SystemClock.elapsedRealtime();
+            recordWakeup(now);
+            runDueTasks(now);
+            scheduleNextWakeup();
+        }
+    };
+
+    /**
+     * @param deferWhileScreenOff true para uploads e outras tarefas que podem esperar a tela ligar
+     */
+    public void addTask(String name, long periodMs, long initialDelayMs, boolean deferWhileScreenOff, Runnable action) {
+        tasks.put(name, new Task(name, periodMs, deferWhileScreenOff, action,
+                SystemClock.elapsedRealtime() + initialDelayMs));
+        if (started) {
+            scheduleNextWakeup();
+        }
+    }
+
+    public void start() {
+        started = true;
+        scheduleNextWakeup();
+    }
+
+    public void stop() {
+        started = false;
+        handler.removeCallbacks(wakeupRunnable);
+        scheduledWakeup = 0;
+    }
+
+    /**
+     * Antecipa uma tarefa. Com o dispositivo ativo roda agora; caso contrário na próxima janela.
+     */
+    public void requestRun(String name) {
+        Task task = tasks.get(name);
+        if (task == null) return;
+
+        long now = SystemClock.elapsedRealtime();
+        task.nextDue = Math.min(task.nextDue, now);
+        if (screenOn && !deviceIdle) {
+            runDueTasks(now);
+        }
+        scheduleNextWakeup();
+    }
+
+    public void setScreenOn(boolean on) {
+        boolean turnedOn = on && !screenOn;
+        screenOn = on;
+        if (turnedOn && started) {
+            // Aproveita o despertar causado pelo usuário para rodar o que foi adiado
+            runDueTasks(SystemClock.elapsedRealtime());
+        }
+        scheduleNextWakeup();
+    }
+
+    public void setDeviceIdle(boolean idle) {
+        boolean leftIdle = !idle && deviceIdle;
+        deviceIdle = idle;
+        if (leftIdle && started) {
+            // Janela de manutenção do Doze: roda tudo que venceu durante o modo ocioso
+            runDueTasks(SystemClock.elapsedRealtime());
+        }
+        scheduleNextWakeup();
+    }
+
+    public void setPowerSaveMode(boolean enabled) {
+        powerSaveMode = enabled;
+        scheduleNextWakeup();
+    }
+
+    private long windowMs() {
+        return powerSaveMode ? POWER_SAVE_WINDOW_MS : WINDOW_MS;
+    }
+
+    private boolean isDeferred(Task task, long now) {
+        return task.deferWhileScreenOff && (!screenOn || deviceIdle)
+                && now - task.nextDue < MAX_DEFERRAL_MS;
+    }
+
+    /**
+     * Roda as tarefas vencidas e as que venceriam antes da próxima janela
+     */
+    private void runDueTasks(long now) {
+        if (!started) return;
+        long horizon = alignToWindow(now + 1);
+
+        for (Task task : tasks.values()) {
+            if (task.nextDue > horizon) continue;
+            if (isDeferred(task, now)) {
+                deferredRuns++;
+                continue;
+            }
+            try {
+                task.action.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Erro na tarefa " + task.name, e);
+            }
+            task.nextDue = now + task.periodMs;
+        }
+    }
+
+    private void scheduleNextWakeup() {
+        if (!started || tasks.isEmpty()) return;
+
+        long now = SystemClock.elapsedRealtime();
+        long earliest = Long.MAX_VALUE;
+        for (Task task : tasks.values()) {
+            long due = task.nextDue;
+            if (task.deferWhileScreenOff && (!screenOn || deviceIdle)) {
+                due = task.nextDue + MAX_DEFERRAL_MS;
+            }
+            earliest = Math.min(earliest, due);
+        }
+
+        long target = alignToWindow(Math.max(earliest, now + 1));
+        if (scheduledWakeup == target) return;
+
+        handler.removeCallbacks(wakeupRunnable);
+        scheduledWakeup = target;
+        handler.postDelayed(wakeupRunnable, target - now);
+    }
+
+    /**
+     * Arredonda para o próximo limite de janela, alinhando os despertares das tarefas
+     */
+    private long alignToWindow(long time) {
+        long window = windowMs();
+        return ((time + window - 1) / window) * window;
+    }
+
+    private void recordWakeup(long now) {
+        totalWakeups++;
+        wakeupTimes.addLast(now);
+        while (!wakeupTimes.isEmpty() && now - wakeupTimes.peekFirst() >= ONE_HOUR_MS) {
+            wakeupTimes.pollFirst();
+        }
+        Log.d(TAG, "Janela de manutenção (" + wakeupTimes.size() + " despertares na última hora, "
+                + deferredRuns + " execuções adiadas)");
+    }
+
+    public int getWakeupsLastHour() {
+        long now = SystemClock.elapsedRealtime();
+        while (!wakeupTimes.isEmpty() && now - wakeupTimes.peekFirst() >= ONE_HOUR_MS) {
+            wakeupTimes.pollFirst();
+        }
+        return wakeupTimes.size();
+    }
+
+    public long getTotalWakeups() {
+        return totalWakeups;
+    }
+
+    public long getDeferredRuns() {
+        return deferredRuns;
+    }
+}
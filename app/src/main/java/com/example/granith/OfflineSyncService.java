@@ -2,13 +2,10 @@ package com.example.granith;
 
 
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.IBinder;
 import android.util.Log;
 import com.google.firebase.firestore.FirebaseFirestore;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,48 +36,44 @@ public class OfflineSyncService extends Service {
     }
 
     private void syncOfflineEvents() {
-        try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            String offlineEventsString = prefs.getString("offline_events", "[]");
-            JSONArray offlineEvents = new JSONArray(offlineEventsString);
+        EventOutbox outbox = EventOutbox.getInstance(this);
+        outbox.loadPendingGeofenceEvents(-1, 0, EventOutbox.DEFAULT_PAGE_SIZE, offlineEvents -> {
+            try {
+                if (offlineEvents.isEmpty()) {
+                    Log.d(TAG, "Nenhum evento offline para sincronizar");
+                    return;
+                }
 
-            if (offlineEvents.length() == 0) {
-                Log.d(TAG, "Nenhum evento offline para sincronizar");
-                stopSelf();
-                return;
-            }
+                Log.d(TAG, "📤 Sincronizando " + offlineEvents.size() + " eventos offline");
 
-            Log.d(TAG, "📤 Sincronizando " + offlineEvents.length() + " eventos offline");
+                for (GeofenceEventEntity offlineEvent : offlineEvents) {
+                    JSONObject eventJson = offlineEvent.toJson();
 
-            for (int i = 0; i < offlineEvents.length(); i++) {
-                JSONObject eventJson = offlineEvents.getJSONObject(i);
+                    // Converte JSON para Map
+                    Map<String, Object> eventMap = new HashMap<>();
+                    for (Iterator<String> it = eventJson.keys(); it.hasNext(); ) {
+                        String key = it.next();
+                        eventMap.put(key, eventJson.get(key));
+                    }
 
-                // Converte JSON para Map
-                Map<String, Object> eventMap = new HashMap<>();
-                for (Iterator<String> it = eventJson.keys(); it.hasNext(); ) {
-                    String key = it.next();
-                    eventMap.put(key, eventJson.get(key));
+                    // Envia para Firebase
+                    long eventId = offlineEvent.id;
+                    firestore.collection("geofence_records")
+                            .add(eventMap)
+                            .addOnSuccessListener(documentReference -> {
+                                Log.d(TAG, "✅ Evento sincronizado: " + documentReference.getId());
+                                outbox.markGeofenceEventSynced(eventId);
+                            })
+                            .addOnFailureListener(e -> {
+                                Log.e(TAG, "❌ Falha na sincronização", e);
+                            });
                 }
 
-                // Envia para Firebase
-                firestore.collection("geofence_records")
-                        .add(eventMap)
-                        .addOnSuccessListener(documentReference -> {
-                            Log.d(TAG, "✅ Evento sincronizado: " + documentReference.getId());
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "❌ Falha na sincronização", e);
-                        });
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Erro na sincronização", e);
+            } finally {
+                stopSelf();
             }
-
-            // Limpa eventos após envio
-            prefs.edit().putString("offline_events", "[]").apply();
-            Log.d(TAG, "🧹 Eventos offline limpos após sincronização");
-
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Erro na sincronização", e);
-        } finally {
-            stopSelf();
-        }
+        });
     }
 }
@@ -0,0 +1,132 @@
+package com.example.granith;
+
+/**
+ * Orçamento em bytes do outbox, por classe de prioridade.
+ *
+ * Quando o total passa do orçamento, eventos de status do GPS e de diagnóstico são
+ * descartados do mais antigo para o mais novo, começando pela prioridade mais baixa.
+ * Confirmações e saídas (automáticas ou por shutdown) são críticas: só são descartadas,
+ * também da mais antiga, se sozinhas passarem do limite rígido (aparelho sem
+ * sincronizar por semanas). A sincronização segue a ordem inversa.
+ */
+public class OutboxBudget {
+    public static final int PRIORITY_CRITICAL = 0;
+    public static final int PRIORITY_GPS_STATUS = 1;
+    public static final int PRIORITY_DIAGNOSTIC = 2;
+    private static final int PRIORITY_COUNT = 3;
+
+    public static final long DEFAULT_BUDGET_BYTES = 2 * 1024 * 1024; // 2 MB
+    public static final long DEFAULT_CRITICAL_LIMIT_BYTES = 16 * 1024 * 1024; // 16 MB
+
+    // Estimativa do custo fixo de uma linha (id, colunas numéricas, índices)
+    private static final int ROW_OVERHEAD_BYTES = 48;
+
+    private final long[] pendingBytes = new long[PRIORITY_COUNT];
+    private final long[] evictedEvents = new long[PRIORITY_COUNT];
+    private final long budgetBytes;
+    private final long criticalLimitBytes;
+
+    public OutboxBudget(long budgetBytes) {
+        this(budgetBytes, DEFAULT_CRITICAL_LIMIT_BYTES);
+    }
+
+    public OutboxBudget(long budgetBytes, long criticalLimitBytes) {
+        this.budgetBytes = budgetBytes;
+        this.criticalLimitBytes = Math.max(budgetBytes, criticalLimitBytes);
+    }
+
+    /**
+     * Prioridade de um evento de sistema pelo tipo
+     */
+    public static int priorityOfSystemEvent(String eventType) {
+        if ("gps_enabled".equals(eventType) || "gps_disabled".equals(eventType)) {
+            return PRIORITY_GPS_STATUS;
+        }
+        return PRIORITY_DIAGNOSTIC;
+    }
+
+    /**
+     * Tamanho aproximado de uma linha a partir dos campos de texto
+     */
+    public static int estimateBytes(String... fields) {
+        int bytes = ROW_OVERHEAD_BYTES;
+        for (String field : fields) {
+            if (field != null) bytes += field.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Mesma estimativa de estimateBytes em SQL, para preencher linhas já gravadas
+     */
+    public static String estimateBytesSql(String... columns) {
+        StringBuilder sql = new StringBuilder().append(ROW_OVERHEAD_BYTES);
+        for (String column : columns) {
+            sql.append(" + LENGTH(COALESCE(").append(column).append(", ''))");
+        }
+        return sql.toString();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void add(int priority, long bytes) {
+        pendingBytes[priority] += bytes;
+    }
+
+    public void remove(int priority, long bytes) {
+        pendingBytes[priority] = Math.max(0, pendingBytes[priority] - bytes);
+    }
+
+    public void set(int priority, long bytes) {
+        pendingBytes[priority] = bytes;
+    }
+
+    public long getPendingBytes(int priority) {
+        return pendingBytes[priority];
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (long bytes : pendingBytes) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    public boolean isOverBudget() {
+        return getTotalBytes() > budgetBytes;
+    }
+
+    public long getCriticalLimitBytes() {
+        return criticalLimitBytes;
+    }
+
+    /**
+     * Prioridade da qual descartar eventos agora, ou -1 se está dentro do orçamento
+     * (ou só sobraram eventos críticos abaixo do limite rígido)
+     */
+    public int nextEvictionPriority() {
+        if (isOverBudget()) {
+            for (int priority = PRIORITY_COUNT - 1; priority > PRIORITY_CRITICAL; priority--) {
+                if (pendingBytes[priority] > 0) {
+                    return priority;
+                }
+            }
+        }
+        if (pendingBytes[PRIORITY_CRITICAL] > criticalLimitBytes) {
+            return PRIORITY_CRITICAL;
+        }
+        return -1;
+    }
+
+    public void recordEviction(int priority, int events, long bytes) {
+        evictedEvents[priority] += events;
+        remove(priority, bytes);
+    }
+
+    public long getEvictedEvents(int priority) {
+        return evictedEvents[priority];
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.granith;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Acesso ao outbox de eventos. As leituras para sincronização são paginadas por
+ * (timestamp, id), usando o índice (status, timestamp), ou percorridas segmento por
+ * segmento (um dia por segmento). A retenção apaga segmentos inteiros pelo índice
+ * (segment, status), sem depender de quantos eventos estão pendentes.
+ */
+@Dao
+public interface OutboxDao {
+
+    // === EVENTOS DE GEOFENCE ===
+    @Insert
+    long insertGeofenceEvent(GeofenceEventEntity event);
+
+    @Insert
+    void insertGeofenceEvents(List<GeofenceEventEntity> events);
+
+    @Query("SELECT COUNT(*) FROM geofence_events WHERE dedup_key = :dedupKey "
+            + "AND timestamp > :fromTimestamp AND timestamp < :toTimestamp")
+    int countGeofenceEventsByDedupKey(String dedupKey, long fromTimestamp, long toTimestamp);
+
+    @Query("SELECT id, dedup_key, timestamp FROM geofence_events WHERE id > :afterId ORDER BY id")
+    List<DedupEntry> getDedupEntriesAfter(long afterId);
+
+    @Query("SELECT * FROM geofence_events WHERE status = :status "
+            + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) "
+            + "ORDER BY timestamp, id LIMIT :limit")
+    List<GeofenceEventEntity> getGeofenceEventsPage(int status, long afterTimestamp, long afterId, int limit);
+
+    @Query("SELECT DISTINCT segment FROM geofence_events WHERE status = :status ORDER BY segment")
+    List<Long> getGeofenceSegments(int status);
+
+    @Query("SELECT * FROM geofence_events WHERE segment = :segment AND status = :status "
+            + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) "
+            + "ORDER BY timestamp, id LIMIT :limit")
+    List<GeofenceEventEntity> getGeofenceSegmentPage(long segment, int status, long afterTimestamp, long afterId, int limit);
+
+    @Query("SELECT * FROM geofence_events WHERE status = :status ORDER BY timestamp, id LIMIT :limit")
+    List<GeofenceEventEntity> getOldestGeofenceEvents(int status, int limit);
+
+    @Query("SELECT COALESCE(SUM(size_bytes), 0) FROM geofence_events WHERE status = :status")
+    long sumGeofenceEventBytes(int status);
+
+    @Query("SELECT COALESCE(SUM(size_bytes), 0) FROM geofence_events WHERE id IN (:ids) AND status = :status")
+    long sumGeofenceEventBytesByIds(List<Long> ids, int status);
+
+    @Query("UPDATE geofence_events SET status = :status WHERE id IN (:ids)")
+    void updateGeofenceEventStatus(List<Long> ids, int status);
+
+    @Query("SELECT COUNT(*) FROM geofence_events WHERE status = :status")
+    int countGeofenceEvents(int status);
+
+    @Query("DELETE FROM geofence_events WHERE id IN (:ids)")
+    int deleteGeofenceEvents(List<Long> ids);
+
+    @Query("DELETE FROM geofence_events WHERE segment < :segment")
+    int dropGeofenceSegmentsBefore(long segment);
+
+    @Query("DELETE FROM geofence_events WHERE status = :status")
+    int deleteGeofenceEventsByStatus(int status);
+
+    // === EVENTOS DE SISTEMA ===
+    @Insert
+    long insertSystemEvent(SystemEventEntity event);
+
+    @Insert
+    void insertSystemEvents(List<SystemEventEntity> events);
+
+    /**
+     * Página ordenada por prioridade (mais alta primeiro), depois por (timestamp, id)
+     */
+    @Query("SELECT * FROM system_events WHERE status = :status "
+            + "AND (priority > :afterPriority OR (priority = :afterPriority "
+            + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)))) "
+            + "ORDER BY priority, timestamp, id LIMIT :limit")
+    List<SystemEventEntity> getSystemEventsPage(int status, int afterPriority, long afterTimestamp,
+                                                long afterId, int limit);
+
+    @Query("SELECT * FROM system_events WHERE status = :status AND priority = :priority "
+            + "ORDER BY timestamp, id LIMIT :limit")
+    List<SystemEventEntity> getOldestSystemEvents(int status, int priority, int limit);
+
+    @Query("SELECT COALESCE(SUM(size_bytes), 0) FROM system_events WHERE status = :status AND priority = :priority")
+    long sumSystemEventBytes(int status, int priority);
+
+    @Query("SELECT * FROM system_events WHERE id = :id")
+    SystemEventEntity getSystemEvent(long id);
+
+    @Query("DELETE FROM system_events WHERE id IN (:ids)")
+    int deleteSystemEvents(List<Long> ids);
+
+    @Query("UPDATE system_events SET status = :status WHERE id IN (:ids)")
+    void updateSystemEventStatus(List<Long> ids, int status);
+
+    @Query("DELETE FROM system_events WHERE segment < :segment")
+    int dropSystemSegmentsBefore(long segment);
+
+    @Query("DELETE FROM system_events WHERE status = :status")
+    int deleteSystemEventsByStatus(int status);
+}
@@ -0,0 +1,75 @@
+package com.example.granith;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Banco Room do outbox de eventos (substitui os blobs JSON em MyAppPrefs)
+ */
+@Database(entities = {GeofenceEventEntity.class, SystemEventEntity.class}, version = 3, exportSchema = false)
+public abstract class OutboxDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "granith_outbox.db";
+
+    private static volatile OutboxDatabase instance;
+
+    // Largura do segmento (partição por dia UTC) das duas tabelas do outbox
+    public static final long SEGMENT_MS = 24 * 60 * 60 * 1000; // 1 dia
+
+    public static long segmentOf(long timestamp) {
+        return Math.floorDiv(timestamp, SEGMENT_MS);
+    }
+
+    public abstract OutboxDao outboxDao();
+
+    // 1 -> 2: coluna de segmento diário (retenção por segmento inteiro)
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            for (String table : new String[]{"geofence_events", "system_events"}) {
+                db.execSQL("ALTER TABLE " + table + " ADD COLUMN segment INTEGER NOT NULL DEFAULT 0");
+                // Mesmo arredondamento de segmentOf (floorDiv) para timestamps negativos
+                db.execSQL("UPDATE " + table + " SET segment = CASE WHEN timestamp < 0 "
+                        + "THEN (timestamp + 1) / " + SEGMENT_MS + " - 1 ELSE timestamp / " + SEGMENT_MS + " END");
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_" + table + "_segment_status ON "
+                        + table + " (segment, status)");
+            }
+        }
+    };
+
+    // 2 -> 3: tamanho estimado das linhas e prioridade dos eventos de sistema (orçamento do outbox)
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE geofence_events ADD COLUMN size_bytes INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE system_events ADD COLUMN size_bytes INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE system_events ADD COLUMN priority INTEGER NOT NULL DEFAULT 2");
+            // Mesmas colunas de estimateSizeBytes, para o orçamento não subestimar linhas antigas
+            db.execSQL("UPDATE geofence_events SET size_bytes = "
+                    + OutboxBudget.estimateBytesSql(GeofenceEventEntity.SIZE_COLUMNS));
+            db.execSQL("UPDATE system_events SET size_bytes = "
+                    + OutboxBudget.estimateBytesSql(SystemEventEntity.SIZE_COLUMNS) + ", "
+                    + "priority = CASE WHEN event_type IN ('gps_enabled', 'gps_disabled') THEN 1 ELSE 2 END");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_system_events_status_priority_timestamp "
+                    + "ON system_events (status, priority, timestamp)");
+        }
+    };
+
+    public static OutboxDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OutboxDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            OutboxDatabase.class, DATABASE_NAME)
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
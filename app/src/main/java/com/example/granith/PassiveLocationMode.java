@@ -0,0 +1,96 @@
+package com.example.granith;
+
+/**
+ * Controla o modo passivo usado quando o dispositivo está longe de todas as geofences.
+ *
+ * No modo passivo o serviço só recebe localizações solicitadas por outros apps, sem
+ * custo adicional. Se nenhuma localização chegar dentro do limite de obsolescência,
+ * um fallback ativo de baixa frequência é iniciado até a próxima localização.
+ */
+public class PassiveLocationMode {
+    public static final long DEFAULT_STALENESS_MS = 20 * 60 * 1000; // 20 minutos
+
+    private final long stalenessMs;
+
+    private boolean active = false;
+    private boolean fallbackActive = false;
+    private long lastFixElapsedMs;
+
+    private long passiveFixCount = 0;
+    private long activeFixCount = 0;
+    private long fallbackStartCount = 0;
+
+    public PassiveLocationMode(long stalenessMs) {
+        this.stalenessMs = stalenessMs;
+    }
+
+    public void enter(long nowElapsedMs) {
+        if (active) return;
+        active = true;
+        fallbackActive = false;
+        lastFixElapsedMs = nowElapsedMs;
+    }
+
+    public void exit() {
+        active = false;
+        fallbackActive = false;
+    }
+
+    /**
+     * Verifica se a última localização passiva está obsoleta
+     *
+     * @return true se o fallback ativo deve ser iniciado agora
+     */
+    public boolean shouldStartFallback(long nowElapsedMs) {
+        if (!active || fallbackActive) return false;
+        if (nowElapsedMs - lastFixElapsedMs < stalenessMs) return false;
+
+        fallbackActive = true;
+        fallbackStartCount++;
+        return true;
+    }
+
+    /**
+     * Registra uma localização recebida
+     *
+     * @return true se o fallback estava ativo e o serviço deve voltar para a requisição passiva
+     */
+    public boolean onFix(long nowElapsedMs) {
+        if (active && !fallbackActive) {
+            passiveFixCount++;
+        } else {
+            activeFixCount++;
+        }
+        lastFixElapsedMs = nowElapsedMs;
+
+        if (fallbackActive) {
+            fallbackActive = false;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isFallbackActive() {
+        return fallbackActive;
+    }
+
+    public long getStalenessMs() {
+        return stalenessMs;
+    }
+
+    public long getFallbackStartCount() {
+        return fallbackStartCount;
+    }
+
+    /**
+     * Fração das localizações obtidas passivamente (0 a 1)
+     */
+    public double getPassiveShare() {
+        long total = passiveFixCount + activeFixCount;
+        return total == 0 ? 0 : (double) passiveFixCount / total;
+    }
+}
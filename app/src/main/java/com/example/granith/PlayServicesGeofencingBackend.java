@@ -0,0 +1,80 @@
+package com.example.granith;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra geofences no GeofencingClient do Play Services (monitoramento pelo hardware/SO).
+ * As transições chegam ao GeofenceBroadcastReceiver pela ação ACTION_OS_GEOFENCE_EVENT,
+ * que as encaminha ao LocationForegroundService.
+ */
+public class PlayServicesGeofencingBackend implements GeofencingBackend {
+    private static final String TAG = "PlayServicesGeofencing";
+    private static final int NOTIFICATION_RESPONSIVENESS_MS = 60 * 1000;
+
+    private final Context context;
+    private final GeofencingClient geofencingClient;
+    private PendingIntent geofencePendingIntent;
+
+    public PlayServicesGeofencingBackend(Context context) {
+        this.context = context.getApplicationContext();
+        this.geofencingClient = LocationServices.getGeofencingClient(this.context);
+    }
+
+    @Override
+    public void register(List<GeofenceData> geofences) {
+        List<Geofence> osGeofences = new ArrayList<>();
+        for (GeofenceData geofence : geofences) {
+            osGeofences.add(new Geofence.Builder()
+                    .setRequestId(geofence.getName())
+                    .setCircularRegion(geofence.getLatitude(), geofence.getLongitude(), geofence.getRadius())
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .setNotificationResponsiveness(NOTIFICATION_RESPONSIVENESS_MS)
+                    .build());
+        }
+
+        GeofencingRequest request = new GeofencingRequest.Builder()
+                .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+                .addGeofences(osGeofences)
+                .build();
+
+        try {
+            geofencingClient.addGeofences(request, getGeofencePendingIntent())
+                    .addOnSuccessListener(unused -> Log.d(TAG, "Registradas " + osGeofences.size() + " geofences no SO"))
+                    .addOnFailureListener(e -> Log.e(TAG, "Erro ao registrar geofences no SO", e));
+        } catch (SecurityException e) {
+            Log.e(TAG, "Permissão de localização não concedida para geofences do SO", e);
+        }
+    }
+
+    @Override
+    public void unregister(List<String> requestIds) {
+        geofencingClient.removeGeofences(requestIds)
+                .addOnFailureListener(e -> Log.e(TAG, "Erro ao remover geofences do SO", e));
+    }
+
+    private PendingIntent getGeofencePendingIntent() {
+        if (geofencePendingIntent == null) {
+            Intent intent = new Intent(context, GeofenceBroadcastReceiver.class);
+            intent.setAction(LocationForegroundService.ACTION_OS_GEOFENCE_EVENT);
+            // GeofencingEvent precisa preencher os extras do Intent; FLAG_MUTABLE só existe a partir do Android 12
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE
+                    : PendingIntent.FLAG_UPDATE_CURRENT;
+            geofencePendingIntent = PendingIntent.getBroadcast(context, 2, intent, flags);
+        }
+        return geofencePendingIntent;
+    }
+}
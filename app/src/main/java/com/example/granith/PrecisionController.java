@@ -0,0 +1,162 @@
+package com.example.granith;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+/**
+ * Controla as trocas de precisão de localização.
+ *
+ * Cada troca de estado custa um removeLocationUpdates + requestLocationUpdates no
+ * provedor fundido. Para evitar oscilação perto da borda das geofences, o controlador
+ * aplica limiares separados de entrada/saída por faixa, um tempo mínimo de permanência
+ * em cada estado e um limite de re-registros por hora.
+ */
+public class PrecisionController {
+    private static final String TAG = "PrecisionController";
+
+    // === LIMIARES (metros em relação à borda da geofence mais próxima) ===
+    // Distância negativa = dentro da geofence
+    private static final float HIGH_ENTER_OUTSIDE_M = 10f;
+    private static final float HIGH_LEAVE_OUTSIDE_M = 30f;
+    private static final float HIGH_LEAVE_INSIDE_M = -15f;
+    private static final float VERY_LOW_ENTER_M = 400f;
+    private static final float VERY_LOW_LEAVE_M = 300f;
+
+    // === PERMANÊNCIA MÍNIMA POR ESTADO ===
+    private static final long MIN_DWELL_HIGH_MS = 2 * 60 * 1000; // 2 minutos
+    private static final long MIN_DWELL_LOW_MS = 3 * 60 * 1000; // 3 minutos
+    private static final long MIN_DWELL_VERY_LOW_MS = 5 * 60 * 1000; // 5 minutos
+
+    private static final int DEFAULT_MAX_REREGISTRATIONS_PER_HOUR = 12;
+    private static final long ONE_HOUR_MS = 60 * 60 * 1000;
+
+    private final int maxReregistrationsPerHour;
+    private final ArrayDeque<Long> reregistrationTimes = new ArrayDeque<>();
+
+    private PrecisionState currentState;
+    private long stateEnteredAt;
+    private long reregistrationCount = 0;
+    private long avoidedReregistrationCount = 0;
+    // Troca suprimida em andamento: conta uma vez, não a cada fix
+    private PrecisionState suppressedState;
+    // Até a primeira localização real a precisão pode ser escolhida por semente
+    private boolean evaluated = false;
+
+    public PrecisionController(PrecisionState initialState, long nowElapsedMs) {
+        this(initialState, nowElapsedMs, DEFAULT_MAX_REREGISTRATIONS_PER_HOUR);
+    }
+
+    public PrecisionController(PrecisionState initialState, long nowElapsedMs, int maxReregistrationsPerHour) {
+        this.currentState = initialState;
+        this.stateEnteredAt = nowElapsedMs;
+        this.maxReregistrationsPerHour = maxReregistrationsPerHour;
+    }
+
+    /**
+     * Avalia a distância até a borda mais próxima e retorna o estado que deve ser aplicado.
+     * Retorna o estado atual quando a troca é suprimida por histerese, permanência ou limite.
+     *
+     * @param nearestEdgeDistance distância até a borda da geofence mais próxima
+     *                            (negativa quando dentro), ou Float.MAX_VALUE sem geofences
+     */
+    public PrecisionState evaluate(float nearestEdgeDistance, long nowElapsedMs) {
+        evaluated = true;
+        PrecisionState desired = desiredState(nearestEdgeDistance);
+        if (desired == currentState) {
+            suppressedState = null;
+            return currentState;
+        }
+
+        if (nowElapsedMs - stateEnteredAt < minDwellFor(currentState)) {
+            countSuppressed(desired);
+            Log.d(TAG, "Troca para " + desired + " suprimida (permanência mínima em " + currentState + ")");
+            return currentState;
+        }
+
+        while (!reregistrationTimes.isEmpty() && nowElapsedMs - reregistrationTimes.peekFirst() >= ONE_HOUR_MS) {
+            reregistrationTimes.pollFirst();
+        }
+        if (reregistrationTimes.size() >= maxReregistrationsPerHour) {
+            countSuppressed(desired);
+            Log.d(TAG, "Troca para " + desired + " suprimida (limite de " + maxReregistrationsPerHour + "/hora)");
+            return currentState;
+        }
+
+        reregistrationTimes.addLast(nowElapsedMs);
+        reregistrationCount++;
+        currentState = desired;
+        stateEnteredAt = nowElapsedMs;
+        suppressedState = null;
+        return currentState;
+    }
+
+    private void countSuppressed(PrecisionState desired) {
+        if (desired != suppressedState) {
+            suppressedState = desired;
+            avoidedReregistrationCount++;
+        }
+    }
+
+    /**
+     * Escolhe a precisão inicial a partir de uma localização semente (partida rápida).
+     * O estado de construção é só um padrão, então a permanência mínima não se aplica;
+     * depois da primeira avaliação real a semente é ignorada.
+     */
+    public PrecisionState seed(float nearestEdgeDistance, long nowElapsedMs) {
+        if (evaluated) return currentState;
+        PrecisionState desired = desiredState(nearestEdgeDistance);
+        if (desired != currentState) {
+            reregistrationTimes.addLast(nowElapsedMs);
+            reregistrationCount++;
+            currentState = desired;
+            stateEnteredAt = nowElapsedMs;
+        }
+        return currentState;
+    }
+
+    /**
+     * Aplica os limiares de entrada/saída considerando o estado atual
+     */
+    private PrecisionState desiredState(float edge) {
+        if (currentState == PrecisionState.HIGH) {
+            if (edge >= HIGH_LEAVE_INSIDE_M && edge <= HIGH_LEAVE_OUTSIDE_M) {
+                return PrecisionState.HIGH;
+            }
+        } else if (edge >= 0 && edge < HIGH_ENTER_OUTSIDE_M) {
+            return PrecisionState.HIGH;
+        }
+
+        if (currentState == PrecisionState.VERY_LOW) {
+            return edge < VERY_LOW_LEAVE_M ? PrecisionState.LOW : PrecisionState.VERY_LOW;
+        }
+        return edge > VERY_LOW_ENTER_M ? PrecisionState.VERY_LOW : PrecisionState.LOW;
+    }
+
+    private long minDwellFor(PrecisionState state) {
+        switch (state) {
+            case HIGH:
+                return MIN_DWELL_HIGH_MS;
+            case VERY_LOW:
+                return MIN_DWELL_VERY_LOW_MS;
+            default:
+                return MIN_DWELL_LOW_MS;
+        }
+    }
+
+    public PrecisionState getCurrentState() {
+        return currentState;
+    }
+
+    public long getReregistrationCount() {
+        return reregistrationCount;
+    }
+
+    /**
+     * Quantidade de trocas distintas evitadas pela permanência/limite
+     * (fixes seguidos pedindo a mesma troca contam uma vez)
+     */
+    public long getAvoidedReregistrationCount() {
+        return avoidedReregistrationCount;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.granith;
+
+/**
+ * Níveis de precisão usados nas requisições de localização
+ */
+public enum PrecisionState {HIGH, LOW, VERY_LOW}
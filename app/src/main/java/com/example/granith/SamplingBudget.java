@@ -0,0 +1,60 @@
+package com.example.granith;
+
+import com.google.android.gms.location.Priority;
+
+/**
+ * Orçamento de amostragem de localização: máximo de localizações por hora e
+ * prioridade mais alta (mais precisa) permitida
+ */
+public final class SamplingBudget {
+    public static final SamplingBudget UNLIMITED = new SamplingBudget(60, Priority.PRIORITY_HIGH_ACCURACY);
+
+    private final int maxFixesPerHour;
+    private final int maxPriority;
+
+    public SamplingBudget(int maxFixesPerHour, int maxPriority) {
+        this.maxFixesPerHour = Math.max(1, maxFixesPerHour);
+        this.maxPriority = maxPriority;
+    }
+
+    public int getMaxFixesPerHour() {
+        return maxFixesPerHour;
+    }
+
+    /**
+     * Prioridade mais precisa permitida. As constantes de Priority crescem da mais
+     * precisa (HIGH_ACCURACY) para a mais econômica (PASSIVE).
+     */
+    public int getMaxPriority() {
+        return maxPriority;
+    }
+
+    public long getMinIntervalMillis() {
+        return 60 * 60 * 1000L / maxFixesPerHour;
+    }
+
+    /**
+     * Prioridade efetiva de uma requisição sob este orçamento
+     */
+    public int clampPriority(int requestedPriority) {
+        return Math.max(requestedPriority, maxPriority);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        SamplingBudget that = (SamplingBudget) obj;
+        return maxFixesPerHour == that.maxFixesPerHour && maxPriority == that.maxPriority;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * maxFixesPerHour + maxPriority;
+    }
+
+    @Override
+    public String toString() {
+        return "SamplingBudget{" + maxFixesPerHour + "/h, prioridade máx=" + maxPriority + "}";
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.granith;
 
-import android.Manifest;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -10,39 +9,64 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.PackageManager;
 import android.location.LocationManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.util.Log;
-import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
+/**
+ * Aguarda as condições (permissões e GPS) para iniciar o serviço principal.
+ * Reage a eventos (mudança de provedor, permissão concedida no app) e usa uma
+ * verificação de segurança com backoff exponencial em vez de polling fixo.
+ */
 public class ServiceConditionMonitor extends Service {
     private static final String TAG = "ServiceConditionMonitor";
     private static final String CHANNEL_ID = "service_monitor_channel";
-    private static final long CHECK_INTERVAL_MS = 30 * 1000; // 30 segundos
+
+    public static final String ACTION_RECHECK_CONDITIONS = "com.example.granith.RECHECK_CONDITIONS";
+
+    // Backoff da verificação de segurança
+    private static final long INITIAL_CHECK_INTERVAL_MS = 30 * 1000; // 30 segundos
+    private static final long MAX_CHECK_INTERVAL_MS = 30 * 60 * 1000; // 30 minutos
 
     private Handler checkHandler = new Handler();
     private LocationStatusReceiver locationStatusReceiver;
     private boolean isMainServiceRunning = false;
+    private long currentCheckIntervalMs = INITIAL_CHECK_INTERVAL_MS;
+    private String lastStatusMessage = null;
 
     private final Runnable conditionCheckRunnable = new Runnable() {
         @Override
         public void run() {
             checkConditionsAndStartService();
-            checkHandler.postDelayed(this, CHECK_INTERVAL_MS);
+            if (!isMainServiceRunning) {
+                checkHandler.postDelayed(this, currentCheckIntervalMs);
+                currentCheckIntervalMs = Math.min(currentCheckIntervalMs * 2, MAX_CHECK_INTERVAL_MS);
+            }
         }
     };
 
+    /**
+     * Pede uma nova verificação imediata (ex.: após o usuário conceder uma permissão).
+     * Não faz nada se o monitor não estiver rodando.
+     */
+    public static void notifyConditionsChanged(Context context) {
+        Intent intent = new Intent(ACTION_RECHECK_CONDITIONS);
+        intent.setPackage(context.getPackageName());
+        context.sendBroadcast(intent);
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "Monitor de condições iniciado");
 
         createNotificationChannel();
-        startForeground(2, createMonitorNotification("Aguardando condições..."));
+        lastStatusMessage = "Aguardando condições...";
+        startForeground(2, createMonitorNotification(lastStatusMessage));
 
         registerLocationReceiver();
         startConditionChecking();
@@ -84,55 +108,44 @@ public class ServiceConditionMonitor extends Service {
     private void registerLocationReceiver() {
         locationStatusReceiver = new LocationStatusReceiver();
         IntentFilter filter = new IntentFilter(LocationManager.PROVIDERS_CHANGED_ACTION);
-        registerReceiver(locationStatusReceiver, filter);
+        filter.addAction(LocationManager.MODE_CHANGED_ACTION);
+        filter.addAction(ACTION_RECHECK_CONDITIONS);
+        ContextCompat.registerReceiver(this, locationStatusReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
     private void startConditionChecking() {
         checkHandler.post(conditionCheckRunnable);
     }
 
+    /**
+     * Verificação imediata disparada por evento; reinicia o backoff
+     */
+    private void recheckNow() {
+        if (isMainServiceRunning) return;
+        currentCheckIntervalMs = INITIAL_CHECK_INTERVAL_MS;
+        checkHandler.removeCallbacks(conditionCheckRunnable);
+        checkHandler.post(conditionCheckRunnable);
+    }
+
     private void checkConditionsAndStartService() {
         try {
-            ConditionCheckResult result = checkAllConditions();
+            ServiceConditions result = ServiceConditions.check(this);
 
-            if (result.allConditionsMet && !isMainServiceRunning) {
+            if (result.allConditionsMet() && !isMainServiceRunning) {
+                StartupMilestones.record(this, StartupMilestones.CONDITIONS_MET);
                 startMainService();
-            } else if (!result.allConditionsMet) {
-                updateNotificationStatus(result.getStatusMessage());
-                Log.d(TAG, "Condições não atendidas: " + result.getStatusMessage());
+            } else if (!result.allConditionsMet()) {
+                String statusMessage = result.getStatusMessage();
+                if (!statusMessage.equals(lastStatusMessage)) {
+                    updateNotificationStatus(statusMessage);
+                    Log.d(TAG, "Condições não atendidas: " + statusMessage);
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "Erro ao verificar condições", e);
         }
     }
 
-    private ConditionCheckResult checkAllConditions() {
-        ConditionCheckResult result = new ConditionCheckResult();
-
-        // Verifica permissões de localização
-        boolean hasLocationPermission = ActivityCompat.checkSelfPermission(this,
-                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
-
-        boolean hasBackgroundPermission = true;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            hasBackgroundPermission = ActivityCompat.checkSelfPermission(this,
-                    Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED;
-        }
-
-        // Verifica GPS
-        LocationManager locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-        boolean isGpsEnabled = locationManager != null &&
-                locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
-
-        // Avalia condições
-        result.hasLocationPermission = hasLocationPermission;
-        result.hasBackgroundPermission = hasBackgroundPermission;
-        result.isGpsEnabled = isGpsEnabled;
-        result.allConditionsMet = hasLocationPermission && hasBackgroundPermission && isGpsEnabled;
-
-        return result;
-    }
-
     private void startMainService() {
         try {
             Intent serviceIntent = new Intent(this, LocationForegroundService.class);
@@ -144,6 +157,7 @@ public class ServiceConditionMonitor extends Service {
             }
 
             isMainServiceRunning = true;
+            checkHandler.removeCallbacks(conditionCheckRunnable);
             updateNotificationStatus("Serviço principal ativo");
             Log.d(TAG, "Serviço principal iniciado com sucesso");
 
@@ -162,6 +176,7 @@ public class ServiceConditionMonitor extends Service {
     }
 
     private void updateNotificationStatus(String status) {
+        lastStatusMessage = status;
         NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         if (manager != null) {
             manager.notify(2, createMonitorNotification(status));
@@ -193,34 +208,17 @@ public class ServiceConditionMonitor extends Service {
     }
 
     // ============= Classes auxiliares =============
-    private static class ConditionCheckResult {
-        boolean hasLocationPermission = false;
-        boolean hasBackgroundPermission = false;
-        boolean isGpsEnabled = false;
-        boolean allConditionsMet = false;
-
-        String getStatusMessage() {
-            if (!hasLocationPermission) {
-                return "Aguardando permissão de localização";
-            }
-            if (!hasBackgroundPermission) {
-                return "Aguardando permissão de localização em segundo plano";
-            }
-            if (!isGpsEnabled) {
-                return "Aguardando GPS ser ligado";
-            }
-            return "Todas condições atendidas";
-        }
-    }
-
     private class LocationStatusReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (LocationManager.PROVIDERS_CHANGED_ACTION.equals(intent.getAction())) {
+            String action = intent.getAction();
+            if (LocationManager.PROVIDERS_CHANGED_ACTION.equals(action)
+                    || LocationManager.MODE_CHANGED_ACTION.equals(action)) {
                 Log.d(TAG, "Status do GPS alterado, verificando condições...");
-                // Força uma verificação imediata
-                checkHandler.removeCallbacks(conditionCheckRunnable);
-                checkHandler.post(conditionCheckRunnable);
+                recheckNow();
+            } else if (ACTION_RECHECK_CONDITIONS.equals(action)) {
+                Log.d(TAG, "Permissões alteradas, verificando condições...");
+                recheckNow();
             }
         }
     }
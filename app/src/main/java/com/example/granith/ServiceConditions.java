@@ -0,0 +1,63 @@
+package com.example.granith;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.LocationManager;
+import android.os.Build;
+
+import androidx.core.app.ActivityCompat;
+
+/**
+ * Condições para iniciar o serviço principal de localização.
+ * Compartilhado entre o BootReceiver (caminho rápido), o BootWorker e o ServiceConditionMonitor.
+ */
+public final class ServiceConditions {
+    boolean hasLocationPermission = false;
+    boolean hasBackgroundPermission = false;
+    boolean isGpsEnabled = false;
+    boolean allConditionsMet = false;
+
+    private ServiceConditions() {
+    }
+
+    public static ServiceConditions check(Context context) {
+        ServiceConditions result = new ServiceConditions();
+
+        // Verifica permissões de localização
+        result.hasLocationPermission = ActivityCompat.checkSelfPermission(context,
+                Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+
+        result.hasBackgroundPermission = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            result.hasBackgroundPermission = ActivityCompat.checkSelfPermission(context,
+                    Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED;
+        }
+
+        // Verifica GPS
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        result.isGpsEnabled = locationManager != null &&
+                locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
+
+        result.allConditionsMet = result.hasLocationPermission && result.hasBackgroundPermission
+                && result.isGpsEnabled;
+        return result;
+    }
+
+    public boolean allConditionsMet() {
+        return allConditionsMet;
+    }
+
+    public String getStatusMessage() {
+        if (!hasLocationPermission) {
+            return "Aguardando permissão de localização";
+        }
+        if (!hasBackgroundPermission) {
+            return "Aguardando permissão de localização em segundo plano";
+        }
+        if (!isGpsEnabled) {
+            return "Aguardando GPS ser ligado";
+        }
+        return "Todas condições atendidas";
+    }
+}
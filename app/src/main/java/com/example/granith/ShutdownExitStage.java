@@ -0,0 +1,289 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registros de saída preparados com antecedência para o desligamento.
+ *
+ * A cada transição confirmada o serviço codifica (EventCodec) as saídas das geofences
+ * em que o usuário está e grava no arquivo mapeado. No desligamento só falta gravar o
+ * horário e trocar a palavra de estado para "confirmado", o que cabe no pouco tempo
+ * que o SO dá ao receiver. O cabeçalho também é o registro do desligamento (horário e
+ * motivo), mesmo sem saídas preparadas. Na próxima inicialização os registros
+ * confirmados vão para o outbox e o desligamento é anotado em DeviceStatePrefs.
+ *
+ * Cabeçalho: [magic][versão][estado + motivo][tamanho][horário da saída][horário da preparação]
+ * (horário da saída diferente de 0 = desligamento registrado e ainda não drenado)
+ */
+public class ShutdownExitStage {
+    private static final String TAG = "ShutdownExitStage";
+    private static final String FILE_NAME = "shutdown_exit.stage";
+
+    private static final int MAGIC = 0x47534553; // "GSES"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int OFFSET_STATE = 8;
+    private static final int OFFSET_LENGTH = 12;
+    private static final int OFFSET_EXIT_TIME = 16;
+    private static final int OFFSET_STAGED_AT = 24;
+
+    public static final int STATE_EMPTY = 0;
+    public static final int STATE_STAGED = 1;
+    public static final int STATE_COMMITTED = 2;
+
+    public static final String EXIT_EVENT_TYPE = "Saída por Shutdown";
+
+    // Motivo guardado como código na palavra de estado; só acrescentar no final
+    private static final String[] REASONS = {
+            null,
+            "Desligamento do Dispositivo",
+            "Saída por Desligamento Manual",
+            "Saída por Bateria Esgotada",
+            "Saída por Reinicialização",
+            "Saída por Desligamento de Emergência",
+            "Bateria Baixa",
+            "Bateria Crítica",
+            "Shutdown Perdido Detectado",
+            "Shutdown Não Detectado (Recovery)"
+    };
+
+    /**
+     * Ajustes de quem drena os registros (ex.: método de detecção no recovery)
+     */
+    public interface ExitDecorator {
+        void decorate(JSONObject exit) throws JSONException;
+    }
+
+    private static ShutdownExitStage instance;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    public ShutdownExitStage(File file, int capacity) throws IOException {
+        this.capacity = capacity;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // O mapeamento continua válido depois de fechar o arquivo
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + capacity);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            // Arquivo novo ou de outra versão: nada preparado
+            buffer.putInt(OFFSET_STATE, STATE_EMPTY);
+            buffer.putInt(OFFSET_LENGTH, 0);
+            buffer.putLong(OFFSET_EXIT_TIME, 0);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        }
+    }
+
+    public static synchronized ShutdownExitStage getInstance(Context context) {
+        if (instance == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            try {
+                instance = new ShutdownExitStage(file, DEFAULT_CAPACITY);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao mapear " + FILE_NAME, e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    // === PREPARAÇÃO (fora do desligamento) ===
+    /**
+     * Substitui as saídas preparadas; lista vazia limpa o arquivo.
+     * Não mexe em um desligamento registrado e ainda não drenado.
+     *
+     * @return false se não couber ou se houver um desligamento pendente
+     */
+    public synchronized boolean stage(List<GeofenceEventEntity> exits, long now) {
+        if (hasShutdownRecord()) return false;
+        if (exits.isEmpty()) {
+            buffer.putInt(OFFSET_STATE, STATE_EMPTY);
+            return true;
+        }
+
+        byte[] payload = EventCodec.encode(exits);
+        if (payload.length > capacity) {
+            Log.w(TAG, "Saídas preparadas não cabem no arquivo: " + payload.length + " bytes");
+            buffer.putInt(OFFSET_STATE, STATE_EMPTY);
+            return false;
+        }
+
+        // Invalida antes de sobrescrever e marca como preparado por último
+        buffer.putInt(OFFSET_STATE, STATE_EMPTY);
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_BYTES);
+        view.put(payload);
+        buffer.putInt(OFFSET_LENGTH, payload.length);
+        buffer.putLong(OFFSET_EXIT_TIME, 0);
+        buffer.putLong(OFFSET_STAGED_AT, now);
+        buffer.putInt(OFFSET_STATE, STATE_STAGED);
+        return true;
+    }
+
+    // === DESLIGAMENTO ===
+    /**
+     * Registra o desligamento: grava o horário, troca a palavra de estado (confirmando
+     * as saídas preparadas, se houver) e força as páginas para o disco. Tempo constante,
+     * sem JSON nem banco.
+     *
+     * @return false se não havia saídas preparadas
+     */
+    public synchronized boolean commit(long exitTimestamp, String reason) {
+        // Um desligamento anterior ainda não drenado prevalece
+        if (hasShutdownRecord()) return false;
+        boolean staged = getState() == STATE_STAGED;
+        buffer.putLong(OFFSET_EXIT_TIME, exitTimestamp);
+        buffer.putInt(OFFSET_STATE, (staged ? STATE_COMMITTED : STATE_EMPTY) | (reasonCode(reason) << 8));
+        buffer.force();
+        return staged;
+    }
+
+    // === LEITURA ===
+    public synchronized int getState() {
+        return buffer.getInt(OFFSET_STATE) & 0xff;
+    }
+
+    public synchronized String getCommittedReason() {
+        int code = buffer.getInt(OFFSET_STATE) >>> 8;
+        return code < REASONS.length ? REASONS[code] : null;
+    }
+
+    public synchronized long getExitTimestamp() {
+        return buffer.getLong(OFFSET_EXIT_TIME);
+    }
+
+    /**
+     * Se há um desligamento registrado (com ou sem saídas) ainda não drenado
+     */
+    public synchronized boolean hasShutdownRecord() {
+        return buffer.getLong(OFFSET_EXIT_TIME) != 0;
+    }
+
+    /**
+     * Saídas preparadas (com horário 0 enquanto não confirmadas)
+     */
+    public synchronized List<GeofenceEventEntity> getStagedExits() {
+        if (getState() == STATE_EMPTY) return Collections.emptyList();
+        int length = buffer.getInt(OFFSET_LENGTH);
+        if (length <= 0 || length > capacity) return Collections.emptyList();
+
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_BYTES);
+        view.get(payload);
+        try {
+            return EventCodec.decode(payload);
+        } catch (IOException e) {
+            Log.e(TAG, "Saídas preparadas corrompidas", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Saídas confirmadas no formato JSON dos produtores, com horário e motivo do desligamento
+     */
+    public synchronized List<JSONObject> getCommittedExits() {
+        List<JSONObject> exits = new ArrayList<>();
+        if (getState() != STATE_COMMITTED) return exits;
+
+        long exitTimestamp = getExitTimestamp();
+        String reason = getCommittedReason();
+        for (GeofenceEventEntity entity : getStagedExits()) {
+            try {
+                entity.timestamp = exitTimestamp;
+                JSONObject exit = entity.toJson();
+                exit.put("local_id", "shutdown_exit_" + entity.geofenceName + "_" + exitTimestamp);
+                if (reason != null) {
+                    exit.put("shutdown_cause", reason);
+                }
+                exits.add(exit);
+            } catch (JSONException e) {
+                Log.e(TAG, "Erro ao montar saída confirmada", e);
+            }
+        }
+        return exits;
+    }
+
+    public synchronized void clear() {
+        buffer.putInt(OFFSET_STATE, STATE_EMPTY);
+        buffer.putInt(OFFSET_LENGTH, 0);
+        buffer.putLong(OFFSET_EXIT_TIME, 0);
+    }
+
+    private static int reasonCode(String reason) {
+        for (int i = 1; i < REASONS.length; i++) {
+            if (REASONS[i].equals(reason)) return i;
+        }
+        return 0;
+    }
+
+    // === DRENAGEM ===
+    /**
+     * Anota o desligamento registrado em DeviceStatePrefs, leva as saídas confirmadas
+     * para o outbox e registra a saída no estado de transição e no journal de
+     * rastreamento, para o serviço não retomar uma entrada já encerrada.
+     *
+     * @return quantidade de saídas enviadas ao outbox
+     */
+    public static int drainCommitted(Context context, ExitDecorator decorator) {
+        ShutdownExitStage stage = getInstance(context);
+        if (stage == null || !stage.hasShutdownRecord()) return 0;
+
+        StateStore.prefs(context, StateStore.DEVICE_STATE).edit()
+                .putBoolean("shutdown_processed", true)
+                .putString("last_shutdown_reason", stage.getCommittedReason())
+                .putLong("last_shutdown_timestamp", stage.getExitTimestamp())
+                .apply();
+
+        List<JSONObject> exits = stage.getCommittedExits();
+        if (exits.isEmpty()) {
+            stage.clear();
+            return 0;
+        }
+
+        EventOutbox outbox = EventOutbox.getInstance(context);
+        SharedPreferences statePrefs = StateStore.prefs(context, StateStore.GEOFENCE_STATE);
+        TrackingJournal journal = TrackingJournal.getInstance(context);
+        for (JSONObject exit : exits) {
+            try {
+                if (decorator != null) {
+                    decorator.decorate(exit);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Erro ao complementar saída confirmada", e);
+            }
+            outbox.addGeofenceEvent(exit, EventOutbox.DEDUP_WINDOW_MS);
+            String geofenceName = exit.optString("geofence_name", null);
+            GeofenceSessionState.markExited(statePrefs, geofenceName,
+                    exit.optString("event_type", EXIT_EVENT_TYPE), exit.optLong("timestamp"));
+            if (journal != null && geofenceName != null) {
+                try {
+                    journal.recordExit(geofenceName, exit.optLong("timestamp"));
+                } catch (IOException e) {
+                    Log.e(TAG, "Erro ao registrar saída no journal de rastreamento", e);
+                }
+            }
+        }
+        stage.clear();
+        Log.d(TAG, exits.size() + " saídas de desligamento enviadas ao outbox");
+        return exits.size();
+    }
+}
@@ -10,10 +10,10 @@ import androidx.core.app.JobIntentService;
 
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ShutdownJobIntentService extends JobIntentService {
@@ -21,6 +21,8 @@ public class ShutdownJobIntentService extends JobIntentService {
     public static final int JOB_ID = 1234;
 
     private FirebaseFirestore firestore;
+    // Última localização registrada antes de um shutdown perdido (só em recovery)
+    private BreadcrumbRing.Record lastKnownFix;
 
     public ShutdownJobIntentService() {
         this.firestore = FirebaseFirestore.getInstance();
@@ -38,6 +40,16 @@ public class ShutdownJobIntentService extends JobIntentService {
         Log.d(TAG, "É recovery: " + isRecovery);
         Log.d(TAG, "Método de detecção: " + detectionMethod);
 
+        if (isRecovery) {
+            BreadcrumbRing ring = BreadcrumbRing.getInstance(this);
+            if (ring != null) {
+                lastKnownFix = ring.getLastFix();
+                if (!intent.hasExtra("estimated_shutdown_time") && ring.getLastAliveTime() > 0) {
+                    estimatedShutdownTime = ring.getLastAliveTime();
+                }
+            }
+        }
+
         try {
             // Processa geofences ativas no momento do shutdown
             if (isRecovery) {
@@ -79,50 +91,26 @@ public class ShutdownJobIntentService extends JobIntentService {
     }
 
     /**
-     * Método unificado para processar geofences ativas
+     * Método unificado para processar geofences ativas: confirma as saídas preparadas
+     * pelo serviço (ShutdownExitStage) e já as leva para o outbox
      */
     private void processActiveGeofences(String shutdownReason, long eventTime, String detectionMethod) {
         try {
-            SharedPreferences prefs = getSharedPreferences("GeofencePrefs", Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = prefs.edit();
-
-            // Recupera estado das geofences ativas
-            Map<String, ?> allEntries = prefs.getAll();
-            int processedGeofences = 0;
+            ShutdownExitStage stage = ShutdownExitStage.getInstance(this);
+            if (stage == null) return;
 
             Log.d(TAG, "🔍 Verificando geofences ativas...");
-
-            for (Map.Entry<String, ?> entry : allEntries.entrySet()) {
-                String key = entry.getKey();
-
-                // Verifica se é uma entrada de geofence ativa
-                if (key.endsWith("_active") && Boolean.TRUE.equals(entry.getValue())) {
-                    String geofenceName = key.replace("_active", "");
-
-                    // Recupera dados da geofence
-                    double latitude = Double.longBitsToDouble(prefs.getLong(geofenceName + "_lat", 0));
-                    double longitude = Double.longBitsToDouble(prefs.getLong(geofenceName + "_lng", 0));
-
-                    if (latitude != 0 && longitude != 0) {
-                        Log.d(TAG, "📍 Processando geofence ativa: " + geofenceName);
-
-                        // Gera evento de saída automática
-                        generateShutdownGeofenceEvent(geofenceName, latitude, longitude,
-                                shutdownReason, eventTime, detectionMethod);
-
-                        // Limpa contadores e estado da geofence
-                        editor.remove(geofenceName + "_active");
-                        editor.remove(geofenceName + "_entry_count");
-                        editor.remove(geofenceName + "_exit_count");
-                        editor.remove(geofenceName + "_lat");
-                        editor.remove(geofenceName + "_lng");
-
-                        processedGeofences++;
-                    }
+            stage.commit(eventTime, shutdownReason);
+
+            int processedGeofences = ShutdownExitStage.drainCommitted(this, exit -> {
+                exit.put("detection_method", detectionMethod != null ? detectionMethod : "unknown");
+                if (lastKnownFix != null) {
+                    exit.put("last_fix_latitude", lastKnownFix.latitude);
+                    exit.put("last_fix_longitude", lastKnownFix.longitude);
+                    exit.put("last_fix_accuracy", lastKnownFix.accuracy);
+                    exit.put("last_fix_timestamp", lastKnownFix.timestamp);
                 }
-            }
-
-            editor.apply();
+            });
 
             Log.d(TAG, "✅ Processadas " + processedGeofences + " geofences ativas");
 
@@ -131,91 +119,15 @@ public class ShutdownJobIntentService extends JobIntentService {
         }
     }
 
-    private void generateShutdownGeofenceEvent(String geofenceName, double latitude, double longitude,
-                                               String eventType, long eventTime, String detectionMethod) {
-        try {
-            // Recupera nome do usuário
-            SharedPreferences userPrefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            String userName = userPrefs.getString("user_name", "Usuário Desconhecido");
-
-            // Cria evento de shutdown
-            Map<String, Object> event = new HashMap<>();
-            event.put("event_type", eventType);
-            event.put("latitude", latitude);
-            event.put("longitude", longitude);
-            event.put("geofence_name", geofenceName);
-            event.put("timestamp", eventTime);
-            event.put("user_name", userName);
-            event.put("is_automatic_exit", true);
-            event.put("shutdown_cause", "device_shutdown");
-            event.put("accuracy", 1.0f);
-            event.put("detection_method", detectionMethod != null ? detectionMethod : "unknown");
-
-            Log.d(TAG, "🎯 Gerando evento para: " + geofenceName + " (" + eventType + ")");
-
-            // Tenta enviar para Firebase, senão armazena localmente
-            if (isNetworkAvailable()) {
-                firestore.collection("geofence_records")
-                        .add(event)
-                        .addOnSuccessListener(documentReference -> {
-                            Log.d(TAG, "📤 Evento enviado: " + documentReference.getId());
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "❌ Falha ao enviar evento, armazenando localmente", e);
-                            storeShutdownEventLocally(event);
-                        });
-            } else {
-                Log.d(TAG, "📱 Sem internet, armazenando localmente");
-                storeShutdownEventLocally(event);
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Erro ao gerar evento de shutdown", e);
-        }
-    }
-
-    private void storeShutdownEventLocally(Map<String, Object> shutdownEvent) {
-        try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            JSONArray offlineEventsArray = getOfflineEventsArray(prefs);
-
-            JSONObject eventJson = new JSONObject();
-            for (Map.Entry<String, Object> entry : shutdownEvent.entrySet()) {
-                eventJson.put(entry.getKey(), entry.getValue());
-            }
-
-            eventJson.put("is_shutdown_event", true);
-            eventJson.put("local_id", "shutdown_" + System.currentTimeMillis());
-
-            offlineEventsArray.put(eventJson);
-            prefs.edit().putString("offline_events", offlineEventsArray.toString()).apply();
-
-            Log.d(TAG, "💾 Evento de shutdown armazenado localmente");
-
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Erro ao armazenar evento localmente", e);
-        }
-    }
-
-    private JSONArray getOfflineEventsArray(SharedPreferences prefs) {
-        try {
-            String offlineEventsString = prefs.getString("offline_events", "[]");
-            return new JSONArray(offlineEventsString);
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Erro ao carregar eventos offline", e);
-            return new JSONArray();
-        }
-    }
-
     private void saveShutdownState(String shutdownReason, boolean isRecovery) {
-        SharedPreferences prefs = getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = StateStore.prefs(this, StateStore.DEVICE_STATE);
         prefs.edit()
                 .putString("last_shutdown_reason", shutdownReason)
                 .putLong("last_shutdown_timestamp", System.currentTimeMillis())
                 .putBoolean("shutdown_processed", true)
                 .putBoolean("shutdown_occurred", true)
                 .putBoolean("was_recovery_shutdown", isRecovery)
-                .apply();
+                .commit();
 
         Log.d(TAG, "💾 Estado de shutdown salvo: " + shutdownReason +
                 (isRecovery ? " (Recovery)" : ""));
@@ -223,18 +135,21 @@ public class ShutdownJobIntentService extends JobIntentService {
 
     private void syncOfflineEventsToFirebase() {
         try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            JSONArray offlineEvents = getOfflineEventsArray(prefs);
+            EventOutbox outbox = EventOutbox.getInstance(this);
+            // Os eventos de saída acabaram de ser enfileirados
+            outbox.awaitFlush();
+            List<GeofenceEventEntity> offlineEvents =
+                    outbox.getPendingGeofenceEventsNow(-1, 0, EventOutbox.DEFAULT_PAGE_SIZE);
 
-            if (offlineEvents.length() == 0) {
+            if (offlineEvents.isEmpty()) {
                 Log.d(TAG, "📭 Nenhum evento offline para sincronizar");
                 return;
             }
 
-            Log.d(TAG, "🔄 Sincronizando " + offlineEvents.length() + " eventos offline");
+            Log.d(TAG, "🔄 Sincronizando " + offlineEvents.size() + " eventos offline");
 
-            for (int i = 0; i < offlineEvents.length(); i++) {
-                JSONObject eventJson = offlineEvents.getJSONObject(i);
+            for (GeofenceEventEntity offlineEvent : offlineEvents) {
+                JSONObject eventJson = offlineEvent.toJson();
 
                 Map<String, Object> eventMap = new HashMap<>();
                 eventMap.put("event_type", eventJson.optString("event_type"));
@@ -248,12 +163,12 @@ public class ShutdownJobIntentService extends JobIntentService {
                 eventMap.put("accuracy", eventJson.optDouble("accuracy", 1.0));
                 eventMap.put("detection_method", eventJson.optString("detection_method", "offline_sync"));
 
-                firestore.collection("geofence_records").add(eventMap);
+                long eventId = offlineEvent.id;
+                firestore.collection("geofence_records").add(eventMap)
+                        .addOnSuccessListener(documentReference -> outbox.markGeofenceEventSynced(eventId));
             }
 
-            // Limpa eventos offline após sincronização
-            prefs.edit().putString("offline_events", "[]").apply();
-            Log.d(TAG, "✅ Eventos offline sincronizados e limpos");
+            Log.d(TAG, "✅ Eventos offline enviados para sincronização");
 
         } catch (Exception e) {
             Log.e(TAG, "❌ Erro ao sincronizar eventos offline", e);
@@ -10,7 +10,6 @@ import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.Nullable;
 import com.google.firebase.firestore.FirebaseFirestore;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,7 +24,6 @@ import java.util.concurrent.TimeUnit;
 public class ShutdownMonitorService extends Service {
     private static final String TAG = "ShutdownMonitorService";
     private static final long HEARTBEAT_INTERVAL = 30000; // 30 segundos
-    private static final long SHUTDOWN_THRESHOLD = 90000; // 90 segundos
 
     private ScheduledExecutorService scheduler;
     private Handler mainHandler;
@@ -83,24 +81,16 @@ public class ShutdownMonitorService extends Service {
                 TimeUnit.MILLISECONDS
         );
 
-        // Verifica por shutdown perdido a cada 60 segundos
-        scheduler.scheduleAtFixedRate(
-                this::checkForMissedShutdown,
-                60000,
-                60000,
-                TimeUnit.MILLISECONDS
-        );
+        // Shutdowns perdidos são tratados na inicialização pelo TrackingRecovery
     }
 
     private void updateHeartbeat() {
         try {
-            SharedPreferences prefs = getSharedPreferences("HeartbeatPrefs", Context.MODE_PRIVATE);
             long currentTime = System.currentTimeMillis();
-
-            prefs.edit()
-                    .putLong("last_heartbeat", currentTime)
-                    .putBoolean("app_running", true)
-                    .apply();
+            BreadcrumbRing ring = BreadcrumbRing.getInstance(this);
+            if (ring != null) {
+                ring.recordHeartbeat(currentTime, true);
+            }
 
             Log.v(TAG, "Heartbeat atualizado: " + currentTime);
 
@@ -109,34 +99,12 @@ public class ShutdownMonitorService extends Service {
         }
     }
 
-    private void checkForMissedShutdown() {
-        try {
-            SharedPreferences prefs = getSharedPreferences("HeartbeatPrefs", Context.MODE_PRIVATE);
-            SharedPreferences devicePrefs = getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
-
-            long lastHeartbeat = prefs.getLong("last_heartbeat", 0);
-            long currentTime = System.currentTimeMillis();
-            long timeSinceLastHeartbeat = currentTime - lastHeartbeat;
-
-            boolean lastShutdownProcessed = devicePrefs.getBoolean("shutdown_processed", true);
-
-            // Se passou muito tempo desde o último heartbeat e não foi processado
-            if (timeSinceLastHeartbeat > SHUTDOWN_THRESHOLD && !lastShutdownProcessed) {
-                Log.w(TAG, "Shutdown perdido detectado - gap de " + timeSinceLastHeartbeat + "ms");
-                handlePossibleShutdown("Shutdown Perdido Detectado");
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Erro ao verificar shutdown perdido", e);
-        }
-    }
-
     private void handlePossibleShutdown(String reason) {
         try {
             Log.w(TAG, "Processando possível shutdown: " + reason);
 
             // Marca como não processado para próxima verificação
-            SharedPreferences devicePrefs = getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+            SharedPreferences devicePrefs = StateStore.prefs(this, StateStore.DEVICE_STATE);
             devicePrefs.edit().putBoolean("shutdown_processed", false).apply();
 
             // Processa geofences ativas
@@ -155,7 +123,7 @@ public class ShutdownMonitorService extends Service {
 
     private void processActiveGeofencesOnShutdown(String shutdownReason) {
         try {
-            SharedPreferences prefs = getSharedPreferences("GeofencePrefs", Context.MODE_PRIVATE);
+            SharedPreferences prefs = StateStore.prefs(this, StateStore.GEOFENCE);
             Map<String, ?> allEntries = prefs.getAll();
 
             for (Map.Entry<String, ?> entry : allEntries.entrySet()) {
@@ -193,7 +161,7 @@ public class ShutdownMonitorService extends Service {
     private void generateShutdownGeofenceEvent(String geofenceName, double latitude,
                                                double longitude, String eventType) {
         try {
-            SharedPreferences userPrefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
+            SharedPreferences userPrefs = StateStore.prefs(this, StateStore.APP);
             String userName = userPrefs.getString("user_name", "Usuário Desconhecido");
 
             Map<String, Object> event = new HashMap<>();
@@ -229,10 +197,6 @@ public class ShutdownMonitorService extends Service {
 
     private void storeEventLocally(Map<String, Object> event) {
         try {
-            SharedPreferences prefs = getSharedPreferences("MyAppPrefs", Context.MODE_PRIVATE);
-            String offlineEventsString = prefs.getString("offline_events", "[]");
-            JSONArray offlineEvents = new JSONArray(offlineEventsString);
-
             JSONObject eventJson = new JSONObject();
             for (Map.Entry<String, Object> entry : event.entrySet()) {
                 eventJson.put(entry.getKey(), entry.getValue());
@@ -241,8 +205,7 @@ public class ShutdownMonitorService extends Service {
             eventJson.put("is_shutdown_event", true);
             eventJson.put("local_id", "shutdown_" + System.currentTimeMillis());
 
-            offlineEvents.put(eventJson);
-            prefs.edit().putString("offline_events", offlineEvents.toString()).apply();
+            EventOutbox.getInstance(this).addGeofenceEvent(eventJson, 0);
 
             Log.d(TAG, "Evento armazenado localmente");
 
@@ -252,12 +215,12 @@ public class ShutdownMonitorService extends Service {
     }
 
     private void saveShutdownState(String shutdownReason) {
-        SharedPreferences prefs = getSharedPreferences("DeviceStatePrefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = StateStore.prefs(this, StateStore.DEVICE_STATE);
         prefs.edit()
                 .putString("last_shutdown_reason", shutdownReason)
                 .putLong("last_shutdown_timestamp", System.currentTimeMillis())
                 .putBoolean("shutdown_occurred", true)
-                .apply();
+                .commit();
     }
 
     private boolean isNetworkAvailable() {
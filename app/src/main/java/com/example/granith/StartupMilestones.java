@@ -0,0 +1,98 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Marcos de inicialização (boot → rastreamento) persistidos por boot.
+ * Cada marco guarda o tempo desde o boot (elapsedRealtime) da primeira vez em que
+ * foi atingido; ao detectar um novo boot os marcos anteriores são descartados.
+ */
+public final class StartupMilestones {
+    private static final String TAG = "StartupMilestones";
+    private static final String KEY_BOOT_ID = "boot_id";
+    private static final String KEY_PREFIX = "milestone_";
+
+    public static final String BOOT_RECEIVED = "boot_received";
+    public static final String CONDITIONS_MET = "conditions_met";
+    public static final String SERVICE_CREATED = "service_created";
+    public static final String LOCATION_REQUESTED = "location_requested";
+    public static final String FIRST_EVALUATION = "first_evaluation";
+    public static final String FIRST_LIVE_FIX = "first_live_fix";
+    public static final String DEFERRED_INIT_DONE = "deferred_init_done";
+
+    private static final String[] ORDER = {
+            BOOT_RECEIVED, CONDITIONS_MET, SERVICE_CREATED, LOCATION_REQUESTED,
+            FIRST_EVALUATION, FIRST_LIVE_FIX, DEFERRED_INIT_DONE
+    };
+
+    private StartupMilestones() {
+    }
+
+    /**
+     * Registra o marco se ainda não foi atingido neste boot
+     */
+    public static void record(Context context, String milestone) {
+        try {
+            SharedPreferences prefs = StateStore.prefs(context, StateStore.STARTUP_MILESTONES);
+            String bootId = currentBootId(context);
+            SharedPreferences.Editor editor = prefs.edit();
+
+            if (!bootId.equals(prefs.getString(KEY_BOOT_ID, null))) {
+                editor.clear().putString(KEY_BOOT_ID, bootId);
+            } else if (prefs.contains(KEY_PREFIX + milestone)) {
+                return;
+            }
+
+            long sinceBootMs = SystemClock.elapsedRealtime();
+            editor.putLong(KEY_PREFIX + milestone, sinceBootMs).apply();
+            Log.d(TAG, "Marco " + milestone + ": " + sinceBootMs + "ms após o boot");
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao registrar marco " + milestone, e);
+        }
+    }
+
+    /**
+     * Marcos do boot atual, em ordem, em ms desde o boot
+     */
+    public static Map<String, Long> getMilestones(Context context) {
+        Map<String, Long> milestones = new LinkedHashMap<>();
+        SharedPreferences prefs = StateStore.prefs(context, StateStore.STARTUP_MILESTONES);
+        if (!currentBootId(context).equals(prefs.getString(KEY_BOOT_ID, null))) {
+            return milestones;
+        }
+        for (String milestone : ORDER) {
+            long value = prefs.getLong(KEY_PREFIX + milestone, -1);
+            if (value >= 0) {
+                milestones.put(milestone, value);
+            }
+        }
+        return milestones;
+    }
+
+    public static void logSummary(Context context) {
+        StringBuilder summary = new StringBuilder("Inicialização:");
+        for (Map.Entry<String, Long> entry : getMilestones(context).entrySet()) {
+            summary.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        Log.d(TAG, summary.toString());
+    }
+
+    /**
+     * Identifica o boot atual (contador de boots do sistema)
+     */
+    static String currentBootId(Context context) {
+        int bootCount = Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        if (bootCount >= 0) {
+            return String.valueOf(bootCount);
+        }
+        // Sem contador de boots: usa o horário aproximado do boot (resolução de 1 minuto)
+        return "t" + ((System.currentTimeMillis() - SystemClock.elapsedRealtime()) / 60000);
+    }
+}
@@ -0,0 +1,606 @@
+package com.example.granith;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Armazenamento único do estado do app, no lugar dos vários arquivos de SharedPreferences.
+ *
+ * Cada antigo arquivo vira um namespace, exposto como SharedPreferences para que
+ * serviços e receivers continuem lendo e gravando valores tipados do mesmo jeito.
+ * Todos os namespaces ficam em memória e em um único arquivo binário. Cada edição é
+ * aplicada de uma vez (transação) e avisa os listeners do namespace; apply() marca
+ * o estado como sujo e as edições da mesma janela (DEFAULT_FLUSH_DELAY_MS) viram uma
+ * única gravação, enquanto commit() grava na hora (sessão e caminhos de desligamento).
+ * O pendente também é gravado quando uma activity pausa, quando o serviço de
+ * localização é destruído e ao fim de onReceive dos receivers do manifesto.
+ */
+public class StateStore {
+    private static final String TAG = "StateStore";
+    private static final String FILE_NAME = "state.bin";
+
+    private static final int MAGIC = 0x47535453; // "GSTS"
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_STRING_SET = 6;
+
+    // Janela longa: com a bateria mudando a cada poucos minutos, uma janela curta grava
+    // quase todo apply() sozinho. O que não pode se perder num kill usa commit().
+    public static final long DEFAULT_FLUSH_DELAY_MS = 5 * 60 * 1000;
+
+    // === NAMESPACES (nomes dos antigos arquivos) ===
+    public static final String APP = "MyAppPrefs";
+    public static final String GEOFENCES = "GeofencesPrefs";
+    public static final String GEOFENCE_STATE = "GeofenceStatePrefs";
+    public static final String GEOFENCE = "GeofencePrefs";
+    public static final String DEVICE_STATE = "DeviceStatePrefs";
+    public static final String COMPANY = "company_prefs";
+    public static final String STARTUP_MILESTONES = "StartupMilestonesPrefs";
+
+    // Arquivo antigo -> namespace; device_state_prefs é lido antes para DeviceStatePrefs prevalecer
+    private static final String[][] LEGACY_FILES = {
+            {"device_state_prefs", DEVICE_STATE},
+            {DEVICE_STATE, DEVICE_STATE},
+            {APP, APP},
+            {GEOFENCES, GEOFENCES},
+            {GEOFENCE_STATE, GEOFENCE_STATE},
+            {GEOFENCE, GEOFENCE},
+            {COMPANY, COMPANY},
+            {STARTUP_MILESTONES, STARTUP_MILESTONES},
+    };
+    // Sem uso desde o arquivo circular de heartbeats; só é removido
+    private static final String[] OBSOLETE_FILES = {"HeartbeatPrefs"};
+
+    /**
+     * Agenda a gravação adiada (permite relógio controlado nos testes)
+     */
+    public interface FlushScheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    private static StateStore instance;
+
+    private final File file;
+    private final long flushDelayMs;
+    private final FlushScheduler scheduler;
+    private final Executor notifier;
+
+    private final Map<String, Map<String, Object>> values = new HashMap<>();
+    private final Map<String, Namespace> namespaces = new HashMap<>();
+
+    private boolean flushScheduled = false;
+    private long generation = 0;
+    private long writtenGeneration = 0;
+    private final Object fileLock = new Object();
+
+    private long transactions = 0;
+    private long diskWrites = 0;
+
+    public StateStore(File file, long flushDelayMs, FlushScheduler scheduler, Executor notifier) {
+        this.file = file;
+        this.flushDelayMs = flushDelayMs;
+        this.scheduler = scheduler;
+        this.notifier = notifier;
+        load();
+    }
+
+    public static synchronized StateStore getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            File file = new File(appContext.getFilesDir(), FILE_NAME);
+            boolean firstRun = !file.exists();
+            instance = new StateStore(file, DEFAULT_FLUSH_DELAY_MS,
+                    (task, delayMs) -> executor.schedule(task, delayMs, TimeUnit.MILLISECONDS),
+                    mainHandler::post);
+            if (firstRun) {
+                instance.importLegacyPreferences(appContext);
+            }
+            if (appContext instanceof Application) {
+                ((Application) appContext).registerActivityLifecycleCallbacks(instance.new FlushOnPause());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Atalho para o namespace do armazenamento único
+     */
+    public static SharedPreferences prefs(Context context, String namespace) {
+        return getInstance(context).getPreferences(namespace);
+    }
+
+    public synchronized SharedPreferences getPreferences(String namespace) {
+        Namespace view = namespaces.get(namespace);
+        if (view == null) {
+            view = new Namespace(namespace);
+            namespaces.put(namespace, view);
+        }
+        return view;
+    }
+
+    // === GRAVAÇÃO ===
+    /**
+     * Grava agora, se houver alterações pendentes
+     *
+     * @return false se a gravação falhou
+     */
+    public boolean flush() {
+        Map<String, Map<String, Object>> snapshot;
+        long snapshotGeneration;
+        synchronized (this) {
+            flushScheduled = false;
+            if (generation == writtenGeneration) return true;
+            snapshotGeneration = generation;
+            snapshot = new HashMap<>();
+            for (Map.Entry<String, Map<String, Object>> entry : values.entrySet()) {
+                snapshot.put(entry.getKey(), new HashMap<>(entry.getValue()));
+            }
+        }
+
+        synchronized (fileLock) {
+            // Outra thread já gravou um estado igual ou mais novo
+            synchronized (this) {
+                if (writtenGeneration >= snapshotGeneration) return true;
+            }
+            try {
+                writeTo(file, snapshot);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao gravar estado", e);
+                synchronized (this) {
+                    scheduleFlush();
+                }
+                return false;
+            }
+            synchronized (this) {
+                writtenGeneration = Math.max(writtenGeneration, snapshotGeneration);
+                diskWrites++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Quantas edições (transações) foram aplicadas e quantas gravações em disco elas geraram
+     */
+    public synchronized long getTransactionCount() {
+        return transactions;
+    }
+
+    public synchronized long getDiskWriteCount() {
+        return diskWrites;
+    }
+
+    private boolean applyEdit(Namespace namespace, boolean clear, Map<String, Object> puts,
+                              Set<String> removes, boolean durable) {
+        List<String> changed = new ArrayList<>();
+        synchronized (this) {
+            Map<String, Object> current = values.get(namespace.name);
+            if (current == null) {
+                current = new HashMap<>();
+                values.put(namespace.name, current);
+            }
+            if (clear) {
+                changed.addAll(current.keySet());
+                current.clear();
+            }
+            for (String key : removes) {
+                if (current.remove(key) != null && !changed.contains(key)) changed.add(key);
+            }
+            for (Map.Entry<String, Object> entry : puts.entrySet()) {
+                Object previous = current.put(entry.getKey(), entry.getValue());
+                if (!Objects.equals(previous, entry.getValue()) && !changed.contains(entry.getKey())) {
+                    changed.add(entry.getKey());
+                }
+            }
+            transactions++;
+            if (!changed.isEmpty()) {
+                generation++;
+                if (!durable) scheduleFlush();
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            namespace.notifyListeners(changed);
+        }
+        return !durable || flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        scheduler.schedule(this::flush, flushDelayMs);
+    }
+
+    // === PERSISTÊNCIA ===
+    /**
+     * Formato: magic, versão, quantidade de namespaces e, para cada um, nome,
+     * quantidade e entradas (chave, tipo, valor)
+     */
+    private static void writeTo(File file, Map<String, Map<String, Object>> snapshot) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Map<String, Object>> namespace : snapshot.entrySet()) {
+                writeString(out, namespace.getKey());
+                out.writeInt(namespace.getValue().size());
+                for (Map.Entry<String, Object> entry : namespace.getValue().entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Não foi possível substituir " + file);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(TAG, "Arquivo de estado com formato desconhecido - ignorado");
+                return;
+            }
+            int namespaceCount = in.readInt();
+            for (int i = 0; i < namespaceCount; i++) {
+                String name = readString(in);
+                int count = in.readInt();
+                Map<String, Object> entries = new HashMap<>();
+                for (int j = 0; j < count; j++) {
+                    String key = readString(in);
+                    entries.put(key, readValue(in));
+                }
+                values.put(name, entries);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao ler estado - começando vazio", e);
+            values.clear();
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Set) {
+            out.writeByte(TYPE_STRING_SET);
+            Set<?> set = (Set<?>) value;
+            out.writeInt(set.size());
+            for (Object item : set) {
+                writeString(out, String.valueOf(item));
+            }
+        } else {
+            throw new IOException("Tipo não suportado: " + value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_STRING_SET:
+                int size = in.readInt();
+                Set<String> set = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    set.add(readString(in));
+                }
+                return set;
+            default:
+                throw new IOException("Tipo desconhecido: " + type);
+        }
+    }
+
+    // Comprimento em int: valores antigos (ex.: JSON de eventos) passam de 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Comprimento inválido: " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // === MIGRAÇÃO ===
+    /**
+     * Copia os antigos arquivos de SharedPreferences para o armazenamento único e os remove
+     */
+    private void importLegacyPreferences(Context context) {
+        int imported = 0;
+        synchronized (this) {
+            for (String[] legacy : LEGACY_FILES) {
+                Map<String, ?> entries = context.getSharedPreferences(legacy[0], Context.MODE_PRIVATE).getAll();
+                if (entries.isEmpty()) continue;
+                Map<String, Object> target = values.get(legacy[1]);
+                if (target == null) {
+                    target = new HashMap<>();
+                    values.put(legacy[1], target);
+                }
+                for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                    if (entry.getValue() != null) {
+                        target.put(entry.getKey(), entry.getValue());
+                        imported++;
+                    }
+                }
+            }
+            generation++;
+        }
+
+        if (!flush()) return;
+        for (String[] legacy : LEGACY_FILES) {
+            context.getSharedPreferences(legacy[0], Context.MODE_PRIVATE).edit().clear().commit();
+            context.deleteSharedPreferences(legacy[0]);
+        }
+        for (String obsolete : OBSOLETE_FILES) {
+            context.deleteSharedPreferences(obsolete);
+        }
+        Log.d(TAG, "Importados " + imported + " valores dos arquivos de SharedPreferences antigos");
+    }
+
+    // === CICLO DE VIDA ===
+    /**
+     * Grava o pendente quando uma activity pausa (o processo pode ser encerrado em seguida)
+     */
+    private final class FlushOnPause implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityPaused(Activity activity) {
+            flush();
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+
+    // === VISÃO DE UM NAMESPACE ===
+    private final class Namespace implements SharedPreferences {
+        private final String name;
+        private final List<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+        Namespace(String name) {
+            this.name = name;
+        }
+
+        private Object get(String key) {
+            synchronized (StateStore.this) {
+                Map<String, Object> entries = values.get(name);
+                return entries != null ? entries.get(key) : null;
+            }
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            Object value = get(key);
+            return value instanceof String ? (String) value : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            Object value = get(key);
+            return value instanceof Set ? new HashSet<>((Set<String>) value) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            Object value = get(key);
+            return value instanceof Integer ? (Integer) value : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            Object value = get(key);
+            return value instanceof Long ? (Long) value : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            Object value = get(key);
+            return value instanceof Float ? (Float) value : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            Object value = get(key);
+            return value instanceof Boolean ? (Boolean) value : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Map<String, ?> getAll() {
+            synchronized (StateStore.this) {
+                Map<String, Object> entries = values.get(name);
+                return entries != null ? new HashMap<>(entries) : new HashMap<>();
+            }
+        }
+
+        @Override
+        public Editor edit() {
+            return new BatchEditor(this);
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            listeners.remove(listener);
+        }
+
+        void notifyListeners(List<String> keys) {
+            if (listeners.isEmpty()) return;
+            notifier.execute(() -> {
+                for (String key : keys) {
+                    for (OnSharedPreferenceChangeListener listener : listeners) {
+                        listener.onSharedPreferenceChanged(this, key);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Edição acumulada; aplicada de uma vez em apply() ou commit()
+     */
+    private final class BatchEditor implements SharedPreferences.Editor {
+        private final Namespace namespace;
+        private final Map<String, Object> puts = new HashMap<>();
+        private final Set<String> removes = new HashSet<>();
+        private boolean clear = false;
+
+        BatchEditor(Namespace namespace) {
+            this.namespace = namespace;
+        }
+
+        private SharedPreferences.Editor put(String key, Object value) {
+            if (value == null) return remove(key);
+            removes.remove(key);
+            puts.put(key, value);
+            return this;
+        }
+
+        @Override
+        public SharedPreferences.Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public SharedPreferences.Editor putStringSet(String key, Set<String> values) {
+            return put(key, values != null ? new HashSet<>(values) : null);
+        }
+
+        @Override
+        public SharedPreferences.Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public SharedPreferences.Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public SharedPreferences.Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public SharedPreferences.Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public SharedPreferences.Editor remove(String key) {
+            puts.remove(key);
+            removes.add(key);
+            return this;
+        }
+
+        @Override
+        public SharedPreferences.Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return applyEdit(namespace, clear, puts, removes, true);
+        }
+
+        @Override
+        public void apply() {
+            applyEdit(namespace, clear, puts, removes, false);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.granith;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Detecta quando o dispositivo está parado a partir do fluxo de localizações.
+ *
+ * O dispositivo é considerado parado quando a dispersão (desvio quadrático médio em
+ * relação ao centróide) das localizações de uma janela de tempo é menor que a
+ * precisão média reportada. Um único deslocamento significativo em relação ao
+ * centróide encerra o estado parado imediatamente.
+ */
+public class StationaryDetector {
+    private static final long WINDOW_MS = 10 * 60 * 1000; // 10 minutos
+    private static final int MIN_FIXES = 4;
+    private static final double MIN_DISPERSION_LIMIT_M = 15;
+    private static final double SIGNIFICANT_DISPLACEMENT_M = 50;
+    private static final double SIGNIFICANT_DISPLACEMENT_ACCURACY_FACTOR = 2;
+
+    // Metros por grau (projeção equiretangular local, suficiente para poucas centenas de metros)
+    private static final double METERS_PER_DEGREE_LAT = 110540;
+    private static final double METERS_PER_DEGREE_LNG_EQUATOR = 111320;
+
+    private final ArrayDeque<Fix> window = new ArrayDeque<>();
+    private boolean stationary = false;
+    private double centroidLat;
+    private double centroidLng;
+
+    private static final class Fix {
+        final double lat;
+        final double lng;
+        final float accuracy;
+        final long elapsedMs;
+
+        Fix(double lat, double lng, float accuracy, long elapsedMs) {
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracy = accuracy;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    /**
+     * Adiciona uma localização e reavalia o estado
+     *
+     * @return true se o estado (parado/em movimento) mudou
+     */
+    public boolean addFix(double lat, double lng, float accuracy, long elapsedMs) {
+        boolean wasStationary = stationary;
+
+        if (stationary && isSignificantDisplacement(lat, lng, accuracy)) {
+            window.clear();
+            stationary = false;
+        }
+
+        window.addLast(new Fix(lat, lng, accuracy, elapsedMs));
+        while (!window.isEmpty() && elapsedMs - window.peekFirst().elapsedMs > WINDOW_MS) {
+            window.pollFirst();
+        }
+
+        if (!stationary) {
+            stationary = evaluateWindow();
+        }
+        return wasStationary != stationary;
+    }
+
+    private boolean isSignificantDisplacement(double lat, double lng, float accuracy) {
+        double limit = Math.max(SIGNIFICANT_DISPLACEMENT_M, SIGNIFICANT_DISPLACEMENT_ACCURACY_FACTOR * accuracy);
+        return GeoUtils.distanceMeters(centroidLat, centroidLng, lat, lng) > limit;
+    }
+
+    /**
+     * A janela precisa cobrir quase todo o período e ter dispersão menor que a precisão média
+     */
+    private boolean evaluateWindow() {
+        if (window.size() < MIN_FIXES) return false;
+        if (window.peekLast().elapsedMs - window.peekFirst().elapsedMs < WINDOW_MS / 2) return false;
+
+        double sumLat = 0, sumLng = 0, sumAccuracy = 0;
+        for (Fix fix : window) {
+            sumLat += fix.lat;
+            sumLng += fix.lng;
+            sumAccuracy += fix.accuracy;
+        }
+        double meanLat = sumLat / window.size();
+        double meanLng = sumLng / window.size();
+        double meanAccuracy = sumAccuracy / window.size();
+
+        double metersPerDegreeLng = METERS_PER_DEGREE_LNG_EQUATOR * Math.cos(Math.toRadians(meanLat));
+        double sumSquares = 0;
+        Iterator<Fix> iterator = window.iterator();
+        while (iterator.hasNext()) {
+            Fix fix = iterator.next();
+            double dy = (fix.lat - meanLat) * METERS_PER_DEGREE_LAT;
+            double dx = (fix.lng - meanLng) * metersPerDegreeLng;
+            sumSquares += dx * dx + dy * dy;
+        }
+        double dispersion = Math.sqrt(sumSquares / window.size());
+
+        if (dispersion < Math.max(MIN_DISPERSION_LIMIT_M, meanAccuracy)) {
+            centroidLat = meanLat;
+            centroidLng = meanLng;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isStationary() {
+        return stationary;
+    }
+
+    public void reset() {
+        window.clear();
+        stationary = false;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.granith;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Evento de sistema (status do GPS etc.) pendente de sincronização (outbox)
+ */
+@Entity(tableName = "system_events",
+        indices = {
+                @Index(value = {"status", "timestamp"}),
+                @Index(value = {"dedup_key"}),
+                @Index(value = {"segment", "status"}),
+                @Index(value = {"status", "priority", "timestamp"})
+        })
+public class SystemEventEntity {
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_SYNCED = 1;
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "local_id")
+    public String localId;
+
+    @NonNull
+    @ColumnInfo(name = "dedup_key")
+    public String dedupKey = "";
+
+    @ColumnInfo(name = "status")
+    public int status = STATUS_PENDING;
+
+    @ColumnInfo(name = "timestamp")
+    public long timestamp;
+
+    // Partição por dia (UTC) do timestamp: a retenção apaga segmentos inteiros
+    @ColumnInfo(name = "segment", defaultValue = "0")
+    public long segment;
+
+    // Classe de prioridade (OutboxBudget) e tamanho estimado da linha
+    @ColumnInfo(name = "priority", defaultValue = "2")
+    public int priority = OutboxBudget.PRIORITY_DIAGNOSTIC;
+
+    @ColumnInfo(name = "size_bytes", defaultValue = "0")
+    public int sizeBytes;
+
+    @ColumnInfo(name = "event_type")
+    public String eventType;
+
+    @ColumnInfo(name = "message")
+    public String message;
+
+    @ColumnInfo(name = "user_name")
+    public String userName;
+
+    @ColumnInfo(name = "employee_id")
+    public String employeeId;
+
+    @ColumnInfo(name = "company_id")
+    public String companyId;
+
+    @ColumnInfo(name = "gps_enabled")
+    public boolean gpsEnabled;
+
+    @ColumnInfo(name = "device_info")
+    public String deviceInfo;
+
+    @ColumnInfo(name = "extras")
+    public String extras;
+
+    // Colunas somadas por estimateSizeBytes, para o preenchimento da MIGRATION_2_3
+    static final String[] SIZE_COLUMNS = {"local_id", "dedup_key", "event_type", "message", "user_name",
+            "employee_id", "company_id", "device_info", "extras"};
+
+    public int estimateSizeBytes() {
+        return OutboxBudget.estimateBytes(localId, dedupKey, eventType, message, userName,
+                employeeId, companyId, deviceInfo, extras);
+    }
+
+    /**
+     * Converte o JSON do antigo offline_gps_events (chaves do evento de status do GPS)
+     */
+    public static SystemEventEntity fromJson(JSONObject json) throws JSONException {
+        SystemEventEntity entity = new SystemEventEntity();
+        JSONObject extras = new JSONObject();
+
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            switch (key) {
+                case "local_id":
+                    entity.localId = json.optString(key, null);
+                    break;
+                case "timestamp":
+                    entity.timestamp = json.optLong(key, System.currentTimeMillis());
+                    break;
+                case "eventType":
+                    entity.eventType = json.optString(key, null);
+                    break;
+                case "message":
+                    entity.message = json.optString(key, null);
+                    break;
+                case "employeeName":
+                case "user_name":
+                    entity.userName = json.optString(key, null);
+                    break;
+                case "employeeId":
+                    entity.employeeId = json.optString(key, null);
+                    break;
+                case "companyId":
+                    entity.companyId = json.optString(key, null);
+                    break;
+                case "gpsEnabled":
+                case "gps_enabled":
+                    entity.gpsEnabled = json.optBoolean(key, false);
+                    break;
+                case "deviceInfo":
+                case "device_info":
+                    entity.deviceInfo = json.optString(key, null);
+                    break;
+                default:
+                    extras.put(key, json.get(key));
+                    break;
+            }
+        }
+
+        if (entity.timestamp == 0) {
+            entity.timestamp = System.currentTimeMillis();
+        }
+        entity.dedupKey = entity.eventType + "_" + entity.userName;
+        entity.priority = OutboxBudget.priorityOfSystemEvent(entity.eventType);
+        entity.extras = extras.length() > 0 ? extras.toString() : null;
+        return entity;
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Journal do estado de rastreamento: entradas e saídas confirmadas, confirmações em
+ * andamento (contadores) e início de sessão por boot.
+ *
+ * Cada mudança vira um registro no EventJournal; transições são forçadas no disco,
+ * contadores não. Periodicamente o estado inteiro é gravado como checkpoint e o
+ * journal é descartado, então a recuperação lê o checkpoint e reaplica só os
+ * registros posteriores: o tempo de recuperação depende do tamanho do journal
+ * desde o último checkpoint, não da duração do rastreamento.
+ * O journal só é descartado depois de o checkpoint novo ser lido de volta; o
+ * anterior fica guardado como reserva. Faz I/O síncrono: não chamar na thread principal.
+ */
+public class TrackingJournal {
+    private static final String TAG = "TrackingJournal";
+    private static final String DIRECTORY = "tracking_journal";
+
+    private static final int CHECKPOINT_MAGIC = 0x4754434B; // "GTCK"
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+    private static final String PREVIOUS_CHECKPOINT_FILE = "checkpoint.prev";
+
+    public static final int DEFAULT_CHECKPOINT_EVERY = 256;
+
+    private static final byte RECORD_SESSION_START = 1;
+    private static final byte RECORD_ENTRY = 2;
+    private static final byte RECORD_EXIT = 3;
+    private static final byte RECORD_PENDING = 4;
+    private static final byte RECORD_PENDING_CLEARED = 5;
+
+    /**
+     * Entrada confirmada, com o necessário para gerar a saída sem a lista de geofences
+     */
+    public static class Entry {
+        public final String geofenceName;
+        public final String geofenceCode;
+        public final double latitude;
+        public final double longitude;
+        public final String userName;
+        public final String companyId;
+        public final long timestamp;
+
+        public Entry(String geofenceName, String geofenceCode, double latitude, double longitude,
+                     String userName, String companyId, long timestamp) {
+            this.geofenceName = geofenceName;
+            this.geofenceCode = geofenceCode;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.userName = userName;
+            this.companyId = companyId;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Confirmação de entrada ou saída em andamento
+     */
+    public static class Pending {
+        public final String geofenceName;
+        public final boolean isEntry;
+        public final int counter;
+        public final long firstTimestamp;
+
+        public Pending(String geofenceName, boolean isEntry, int counter, long firstTimestamp) {
+            this.geofenceName = geofenceName;
+            this.isEntry = isEntry;
+            this.counter = counter;
+            this.firstTimestamp = firstTimestamp;
+        }
+    }
+
+    /**
+     * Estado reconstruído (checkpoint + registros posteriores)
+     */
+    public static class State {
+        public final Map<String, Entry> entered = new LinkedHashMap<>();
+        public final Map<String, Pending> pending = new LinkedHashMap<>();
+        public String bootId;
+        public long lastTimestamp;
+        public long sequence;
+        public int replayedRecords;
+
+        public boolean isEmpty() {
+            return sequence == 0;
+        }
+
+        void clearPending(String geofenceName) {
+            pending.remove(pendingKey(geofenceName, true));
+            pending.remove(pendingKey(geofenceName, false));
+        }
+    }
+
+    private static TrackingJournal instance;
+
+    private final File directory;
+    private final int checkpointEvery;
+    private final EventJournal journal;
+    private final State state;
+    private int recordsSinceCheckpoint;
+
+    public TrackingJournal(File directory, int checkpointEvery) throws IOException {
+        this.directory = directory;
+        this.checkpointEvery = checkpointEvery;
+        this.journal = new EventJournal(directory);
+        this.state = loadCheckpoint(directory);
+        replay();
+    }
+
+    public static synchronized TrackingJournal getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+            try {
+                instance = new TrackingJournal(directory, DEFAULT_CHECKPOINT_EVERY);
+            } catch (IOException e) {
+                Log.e(TAG, "Erro ao abrir o journal de rastreamento", e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    // === ESCRITA ===
+    public synchronized void recordSessionStart(String bootId, long timestamp) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, RECORD_SESSION_START, timestamp);
+        out.writeUTF(bootId);
+        append(bytes.toByteArray(), true);
+    }
+
+    public synchronized void recordEntry(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, RECORD_ENTRY, entry.timestamp);
+        writeEntry(out, entry);
+        append(bytes.toByteArray(), true);
+    }
+
+    public synchronized void recordExit(String geofenceName, long timestamp) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, RECORD_EXIT, timestamp);
+        out.writeUTF(geofenceName);
+        append(bytes.toByteArray(), true);
+    }
+
+    /**
+     * Contador de confirmação; sem force, já que perder o último só reinicia a contagem
+     */
+    public synchronized void recordPending(Pending pending, long timestamp) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, RECORD_PENDING, timestamp);
+        out.writeUTF(pending.geofenceName);
+        out.writeBoolean(pending.isEntry);
+        out.writeInt(pending.counter);
+        out.writeLong(pending.firstTimestamp);
+        append(bytes.toByteArray(), false);
+    }
+
+    public synchronized void recordPendingCleared(String geofenceName, long timestamp) throws IOException {
+        if (!state.pending.containsKey(pendingKey(geofenceName, true))
+                && !state.pending.containsKey(pendingKey(geofenceName, false))) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, RECORD_PENDING_CLEARED, timestamp);
+        out.writeUTF(geofenceName);
+        append(bytes.toByteArray(), false);
+    }
+
+    /**
+     * Grava o estado atual como checkpoint e descarta o journal; se o checkpoint novo
+     * não puder ser lido de volta, o journal e o checkpoint anterior são mantidos
+     */
+    public synchronized void checkpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT_FILE);
+        File temp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        File previous = new File(directory, PREVIOUS_CHECKPOINT_FILE);
+        writeCheckpoint(temp);
+
+        State written = readCheckpoint(temp);
+        if (written == null || written.sequence != state.sequence
+                || written.entered.size() != state.entered.size()
+                || written.pending.size() != state.pending.size()) {
+            throw new IOException("Checkpoint gravado não confere - journal mantido");
+        }
+        // Entre as duas trocas, a leitura usa o anterior e reaplica o journal inteiro
+        if (file.exists() && !file.renameTo(previous)) {
+            throw new IOException("Não foi possível guardar o checkpoint anterior");
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Não foi possível substituir " + file);
+        }
+        journal.clear();
+        recordsSinceCheckpoint = 0;
+    }
+
+    private void writeCheckpoint(File temp) throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(state.sequence);
+            out.writeLong(state.lastTimestamp);
+            out.writeBoolean(state.bootId != null);
+            if (state.bootId != null) out.writeUTF(state.bootId);
+            out.writeInt(state.entered.size());
+            for (Entry entry : state.entered.values()) {
+                writeEntry(out, entry);
+            }
+            out.writeInt(state.pending.size());
+            for (Pending pending : state.pending.values()) {
+                out.writeUTF(pending.geofenceName);
+                out.writeBoolean(pending.isEntry);
+                out.writeInt(pending.counter);
+                out.writeLong(pending.firstTimestamp);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    // === LEITURA ===
+    /**
+     * Cópia do estado atual
+     */
+    public synchronized State getState() {
+        State copy = new State();
+        copy.entered.putAll(state.entered);
+        copy.pending.putAll(state.pending);
+        copy.bootId = state.bootId;
+        copy.lastTimestamp = state.lastTimestamp;
+        copy.sequence = state.sequence;
+        copy.replayedRecords = state.replayedRecords;
+        return copy;
+    }
+
+    public synchronized int getRecordsSinceCheckpoint() {
+        return recordsSinceCheckpoint;
+    }
+
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    // === REGISTROS ===
+    private DataOutputStream header(ByteArrayOutputStream bytes, byte type, long timestamp) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(state.sequence + 1);
+        out.writeLong(timestamp);
+        return out;
+    }
+
+    private void append(byte[] payload, boolean force) throws IOException {
+        journal.append(payload, force);
+        apply(state, payload);
+        recordsSinceCheckpoint++;
+        if (recordsSinceCheckpoint >= checkpointEvery) {
+            checkpoint();
+        }
+    }
+
+    private void replay() throws IOException {
+        journal.replay(payload -> {
+            try {
+                if (apply(state, payload)) {
+                    state.replayedRecords++;
+                    recordsSinceCheckpoint++;
+                }
+            } catch (IOException e) {
+                // Registro com CRC válido mas conteúdo inesperado: ignora
+            }
+        });
+    }
+
+    /**
+     * Aplica o registro ao estado; registros já cobertos pelo checkpoint são ignorados
+     */
+    private static boolean apply(State state, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        if (sequence <= state.sequence) return false;
+
+        switch (type) {
+            case RECORD_SESSION_START:
+                state.bootId = in.readUTF();
+                break;
+            case RECORD_ENTRY:
+                Entry entry = readEntry(in);
+                state.entered.put(entry.geofenceName, entry);
+                state.clearPending(entry.geofenceName);
+                break;
+            case RECORD_EXIT:
+                String exited = in.readUTF();
+                state.entered.remove(exited);
+                state.clearPending(exited);
+                break;
+            case RECORD_PENDING:
+                Pending pending = new Pending(in.readUTF(), in.readBoolean(), in.readInt(), in.readLong());
+                state.pending.put(pendingKey(pending.geofenceName, pending.isEntry), pending);
+                break;
+            case RECORD_PENDING_CLEARED:
+                state.clearPending(in.readUTF());
+                break;
+            default:
+                throw new IOException("Tipo de registro desconhecido: " + type);
+        }
+        state.sequence = sequence;
+        state.lastTimestamp = Math.max(state.lastTimestamp, timestamp);
+        return true;
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeUTF(entry.geofenceName);
+        out.writeUTF(entry.geofenceCode != null ? entry.geofenceCode : "");
+        out.writeDouble(entry.latitude);
+        out.writeDouble(entry.longitude);
+        out.writeUTF(entry.userName != null ? entry.userName : "");
+        out.writeUTF(entry.companyId != null ? entry.companyId : "");
+        out.writeLong(entry.timestamp);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        String code = in.readUTF();
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        String userName = in.readUTF();
+        String companyId = in.readUTF();
+        long timestamp = in.readLong();
+        return new Entry(name, code.isEmpty() ? null : code, latitude, longitude,
+                userName.isEmpty() ? null : userName, companyId.isEmpty() ? null : companyId, timestamp);
+    }
+
+    /**
+     * Checkpoint atual ou, se estiver ausente ou ilegível, o anterior
+     */
+    private static State loadCheckpoint(File directory) {
+        File file = new File(directory, CHECKPOINT_FILE);
+        State state = readCheckpoint(file);
+        if (state != null) return state;
+
+        File previous = new File(directory, PREVIOUS_CHECKPOINT_FILE);
+        State fallback = readCheckpoint(previous);
+        if (file.exists()) {
+            Log.e(TAG, fallback != null
+                    ? "Checkpoint ilegível - usando o anterior; registros entre os dois podem faltar"
+                    : "Checkpoint ilegível e sem anterior - estado reconstruído só pelo journal");
+        }
+        return fallback != null ? fallback : new State();
+    }
+
+    /**
+     * Lê o checkpoint; null se o arquivo não existir ou estiver ilegível
+     */
+    private static State readCheckpoint(File file) {
+        if (!file.exists()) return null;
+        State state = new State();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+                return null;
+            }
+            state.sequence = in.readLong();
+            state.lastTimestamp = in.readLong();
+            if (in.readBoolean()) state.bootId = in.readUTF();
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                Entry entry = readEntry(in);
+                state.entered.put(entry.geofenceName, entry);
+            }
+            int pendings = in.readInt();
+            for (int i = 0; i < pendings; i++) {
+                Pending pending = new Pending(in.readUTF(), in.readBoolean(), in.readInt(), in.readLong());
+                state.pending.put(pendingKey(pending.geofenceName, pending.isEntry), pending);
+            }
+            return state;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String pendingKey(String geofenceName, boolean isEntry) {
+        return (isEntry ? "in:" : "out:") + geofenceName;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recuperação na inicialização a partir do journal de rastreamento, no lugar das
+ * heurísticas de intervalo entre heartbeats.
+ *
+ * Reaplica o TrackingJournal desde o último checkpoint e reconstrói as entradas e as
+ * confirmações em andamento. O outbox reaplica o próprio journal de eventos ainda
+ * não sincronizados ao ser aberto. Se o journal é de um boot anterior e o
+ * desligamento não foi registrado, cada geofence ainda aberta recebe uma saída de
+ * recuperação com o último instante em que o app comprovadamente estava vivo.
+ * Depois grava um checkpoint, o que limita a próxima recuperação.
+ */
+public final class TrackingRecovery {
+    private static final String TAG = "TrackingRecovery";
+
+    public static final String RECOVERY_REASON = "Shutdown Não Detectado (Recovery)";
+    public static final String DETECTION_METHOD = "journal_replay";
+
+    private TrackingRecovery() {
+    }
+
+    /**
+     * Executa a recuperação (idempotente dentro do mesmo boot)
+     *
+     * @return estado reconstruído para o serviço retomar, ou null se o journal não abrir
+     */
+    public static synchronized TrackingJournal.State recover(Context context) {
+        TrackingJournal journal = TrackingJournal.getInstance(context);
+        if (journal == null) return null;
+
+        // Abrir o outbox reaplica os eventos não sincronizados do seu journal
+        EventOutbox.getInstance(context);
+
+        long startNanos = System.nanoTime();
+        TrackingJournal.State state = journal.getState();
+        String bootId = StartupMilestones.currentBootId(context);
+        boolean newBoot = state.bootId != null && !state.bootId.equals(bootId);
+        long now = System.currentTimeMillis();
+
+        try {
+            ShutdownExitStage stage = ShutdownExitStage.getInstance(context);
+
+            boolean committed = stage != null && stage.getState() == ShutdownExitStage.STATE_COMMITTED;
+            if (stage != null && stage.hasShutdownRecord()) {
+                // Desligamento registrado: as saídas confirmadas já têm o horário real
+                ShutdownExitStage.drainCommitted(context, null);
+            }
+            if (!committed && newBoot && (!state.entered.isEmpty()
+                    || (stage != null && stage.getState() == ShutdownExitStage.STATE_STAGED))) {
+                long lastAlive = lastAliveTime(context, state);
+                Log.w(TAG, "Desligamento não registrado no boot anterior - último sinal de vida em " + lastAlive);
+                recoverMissedShutdown(context, journal, stage, state, lastAlive);
+            }
+
+            if (newBoot) {
+                // Confirmações em andamento não sobrevivem a um desligamento
+                for (TrackingJournal.Pending pending : new ArrayList<>(state.pending.values())) {
+                    journal.recordPendingCleared(pending.geofenceName, now);
+                }
+            }
+            if (!bootId.equals(state.bootId)) {
+                journal.recordSessionStart(bootId, now);
+            }
+            journal.checkpoint();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao gravar a recuperação no journal", e);
+        }
+
+        TrackingJournal.State recovered = journal.getState();
+        Log.d(TAG, "Recuperação: " + state.replayedRecords + " registros reaplicados, "
+                + recovered.entered.size() + " entradas e " + recovered.pending.size()
+                + " confirmações em andamento em " + (System.nanoTime() - startNanos) / 1000000 + "ms");
+        return recovered;
+    }
+
+    /**
+     * Confirma as saídas preparadas com o último sinal de vida e gera pelo journal as
+     * que não estavam preparadas
+     */
+    private static void recoverMissedShutdown(Context context, TrackingJournal journal, ShutdownExitStage stage,
+                                              TrackingJournal.State state, long lastAlive) throws IOException {
+        Set<String> exited = new HashSet<>();
+        BreadcrumbRing ring = BreadcrumbRing.getInstance(context);
+        BreadcrumbRing.Record lastFix = ring != null ? ring.getLastFix() : null;
+        ShutdownExitStage.ExitDecorator decorator = exit -> {
+            exit.put("detection_method", DETECTION_METHOD);
+            exit.put("is_recovery", true);
+            if (lastFix != null) {
+                exit.put("last_fix_latitude", lastFix.latitude);
+                exit.put("last_fix_longitude", lastFix.longitude);
+                exit.put("last_fix_accuracy", lastFix.accuracy);
+                exit.put("last_fix_timestamp", lastFix.timestamp);
+            }
+            exited.add(exit.optString("geofence_name"));
+        };
+
+        // Registra o desligamento perdido (com as saídas preparadas, se houver) e drena
+        if (stage != null) {
+            stage.commit(lastAlive, RECOVERY_REASON);
+            ShutdownExitStage.drainCommitted(context, decorator);
+        }
+
+        EventOutbox outbox = EventOutbox.getInstance(context);
+        SharedPreferences statePrefs = StateStore.prefs(context, StateStore.GEOFENCE_STATE);
+        List<TrackingJournal.Entry> remaining = new ArrayList<>();
+        for (TrackingJournal.Entry entry : state.entered.values()) {
+            if (!exited.contains(entry.geofenceName)) remaining.add(entry);
+        }
+        for (TrackingJournal.Entry entry : remaining) {
+            try {
+                JSONObject exit = createRecoveryExit(entry, lastAlive);
+                decorator.decorate(exit);
+                outbox.addGeofenceEvent(exit, EventOutbox.DEDUP_WINDOW_MS);
+                GeofenceSessionState.markExited(statePrefs, entry.geofenceName,
+                        ShutdownExitStage.EXIT_EVENT_TYPE, lastAlive);
+                journal.recordExit(entry.geofenceName, lastAlive);
+            } catch (JSONException e) {
+                Log.e(TAG, "Erro ao gerar saída de recuperação: " + entry.geofenceName, e);
+            }
+        }
+    }
+
+    static JSONObject createRecoveryExit(TrackingJournal.Entry entry, long lastAlive) throws JSONException {
+        JSONObject exit = new JSONObject();
+        exit.put("event_type", ShutdownExitStage.EXIT_EVENT_TYPE);
+        exit.put("latitude", entry.latitude);
+        exit.put("longitude", entry.longitude);
+        exit.put("geofence_name", entry.geofenceName);
+        if (entry.geofenceCode != null) exit.put("geofence_code", entry.geofenceCode);
+        if (entry.userName != null) exit.put("user_name", entry.userName);
+        if (entry.companyId != null) exit.put("companyId", entry.companyId);
+        exit.put("timestamp", lastAlive);
+        exit.put("accuracy", 1.0);
+        exit.put("is_automatic_exit", true);
+        exit.put("is_shutdown_event", true);
+        exit.put("shutdown_cause", RECOVERY_REASON);
+        exit.put("local_id", "recovery_exit_" + entry.geofenceName + "_" + lastAlive);
+        return exit;
+    }
+
+    /**
+     * Último instante comprovadamente vivo: anel de heartbeats/localizações ou o
+     * último registro do journal, o que for mais recente
+     */
+    static long lastAliveTime(Context context, TrackingJournal.State state) {
+        BreadcrumbRing ring = BreadcrumbRing.getInstance(context);
+        long lastAlive = ring != null ? ring.getLastAliveTime() : 0;
+        return Math.max(lastAlive, state.lastTimestamp);
+    }
+}
@@ -52,7 +52,7 @@ public class VeicleController extends AppCompatActivity {
         btnConfirm = findViewById(R.id.btnConfirm);
 
         // Configurar shared preferences
-        sharedPreferences = getSharedPreferences("MyAppPrefs", MODE_PRIVATE);
+        sharedPreferences = StateStore.prefs(this, StateStore.APP);
         currentDriverId = sharedPreferences.getString("USER_NAME", "Motorista Desconhecido");
 
         // Atualizar estado do botão de confirmação
@@ -0,0 +1,137 @@
+package com.example.granith;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gerencia WakeLocks curtos, nomeados e com contagem de referência, usados apenas
+ * em torno de trabalho real (avaliação de localizações, gravação de eventos, sincronização).
+ * Registra o tempo total de retenção por tag para auditoria do consumo de bateria.
+ */
+public class WakeLockManager {
+    private static final String TAG = "WakeLockManager";
+
+    public static final String TAG_EVALUATION = "evaluation";
+    public static final String TAG_OUTBOX_FLUSH = "outbox_flush";
+    public static final String TAG_SYNC = "sync_batch";
+
+    // Tempo máximo de segurança: nenhum WakeLock fica preso se um release for perdido
+    private static final long MAX_HOLD_MS = 60 * 1000;
+
+    private static WakeLockManager instance;
+
+    private final PowerManager powerManager;
+    private final Map<String, TagState> tagStates = new HashMap<>();
+
+    private static final class TagState {
+        PowerManager.WakeLock wakeLock;
+        int referenceCount;
+        long heldSince;
+        long totalHeldMs;
+        long acquireCount;
+    }
+
+    /**
+     * Retenção ativa de um WakeLock; liberar mais de uma vez não tem efeito
+     */
+    public final class Hold implements AutoCloseable {
+        private final String tag;
+        private boolean released = false;
+
+        private Hold(String tag) {
+            this.tag = tag;
+        }
+
+        public void release() {
+            if (released) return;
+            released = true;
+            WakeLockManager.this.release(tag);
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    private WakeLockManager(Context context) {
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    public static synchronized WakeLockManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new WakeLockManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public synchronized Hold acquire(String tag) {
+        TagState state = tagStates.get(tag);
+        if (state == null) {
+            state = new TagState();
+            tagStates.put(tag, state);
+        }
+
+        if (state.referenceCount == 0) {
+            if (state.wakeLock == null && powerManager != null) {
+                state.wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "granith:" + tag);
+                state.wakeLock.setReferenceCounted(false);
+            }
+            if (state.wakeLock != null) {
+                state.wakeLock.acquire(MAX_HOLD_MS);
+            }
+            state.heldSince = SystemClock.elapsedRealtime();
+        }
+        state.referenceCount++;
+        state.acquireCount++;
+        return new Hold(tag);
+    }
+
+    private synchronized void release(String tag) {
+        TagState state = tagStates.get(tag);
+        if (state == null || state.referenceCount == 0) return;
+
+        state.referenceCount--;
+        if (state.referenceCount == 0) {
+            long heldMs = SystemClock.elapsedRealtime() - state.heldSince;
+            // Após o timeout de segurança o sistema já liberou o WakeLock
+            state.totalHeldMs += Math.min(heldMs, MAX_HOLD_MS);
+            if (state.wakeLock != null && state.wakeLock.isHeld()) {
+                state.wakeLock.release();
+            }
+        }
+    }
+
+    /**
+     * Tempo total retido para a tag, incluindo a retenção em andamento
+     */
+    public synchronized long getTotalHoldTimeMs(String tag) {
+        TagState state = tagStates.get(tag);
+        if (state == null) return 0;
+        long total = state.totalHeldMs;
+        if (state.referenceCount > 0) {
+            total += Math.min(SystemClock.elapsedRealtime() - state.heldSince, MAX_HOLD_MS);
+        }
+        return total;
+    }
+
+    public synchronized Map<String, Long> getHoldTimeSnapshot() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (String tag : tagStates.keySet()) {
+            snapshot.put(tag, getTotalHoldTimeMs(tag));
+        }
+        return snapshot;
+    }
+
+    public synchronized void logSummary() {
+        for (Map.Entry<String, TagState> entry : tagStates.entrySet()) {
+            Log.d(TAG, "WakeLock " + entry.getKey() + ": " + getTotalHoldTimeMs(entry.getKey()) + "ms em "
+                    + entry.getValue().acquireCount + " aquisições");
+        }
+    }
+}
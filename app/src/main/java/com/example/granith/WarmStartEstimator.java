@@ -0,0 +1,39 @@
+package com.example.granith;
+
+/**
+ * Confiança de uma localização "semente" usada na partida do serviço, antes da
+ * primeira localização do provedor. A confiança cai com a idade da localização
+ * e com a precisão ruim em relação ao raio da geofence mais próxima.
+ *
+ * - Confiança alta: a semente conta como uma atualização de confirmação
+ * - Confiança média: a semente apenas escolhe a precisão inicial da requisição
+ * - Confiança baixa: a semente é ignorada
+ */
+public final class WarmStartEstimator {
+    public static final double VOTE_CONFIDENCE = 0.7;
+    public static final double PRECISION_CONFIDENCE = 0.3;
+
+    // Idade a partir da qual a semente não tem mais valor
+    static final long MAX_USEFUL_AGE_MS = 30 * 60 * 1000; // 30 minutos
+
+    private WarmStartEstimator() {
+    }
+
+    /**
+     * @param accuracy      precisão da semente em metros (0 quando desconhecida)
+     * @param ageMs         idade da semente
+     * @param nearestRadius raio da geofence mais próxima (0 quando não há geofences)
+     * @return confiança entre 0 e 1
+     */
+    public static double confidence(float accuracy, long ageMs, float nearestRadius) {
+        if (ageMs < 0 || ageMs >= MAX_USEFUL_AGE_MS || accuracy <= 0) {
+            return 0;
+        }
+
+        double freshness = 1.0 - (double) ageMs / MAX_USEFUL_AGE_MS;
+        double accuracyFactor = nearestRadius > 0
+                ? Math.max(0, 1.0 - accuracy / (double) nearestRadius)
+                : 1.0;
+        return freshness * accuracyFactor;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.granith;
+
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.Priority;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class BatteryGovernorTest {
+    private final BatteryGovernor governor = new BatteryGovernor(18);
+
+    @Test
+    public void computeBudget_chargingOrUnknownLevelIsUnlimited() {
+        assertEquals(SamplingBudget.UNLIMITED, governor.computeBudget(5, true, true, 8));
+        assertEquals(SamplingBudget.UNLIMITED, governor.computeBudget(-1, false, true, 8));
+    }
+
+    @Test
+    public void computeBudget_fullBatteryIsUnlimitedUnlessPowerSave() {
+        assertEquals(SamplingBudget.UNLIMITED, governor.computeBudget(50, false, false, 8));
+        assertEquals(SamplingBudget.UNLIMITED, governor.computeBudget(100, false, false, 8));
+
+        SamplingBudget saver = governor.computeBudget(90, false, true, 8);
+        assertEquals(30, saver.getMaxFixesPerHour());
+        assertEquals(Priority.PRIORITY_BALANCED_POWER_ACCURACY, saver.getMaxPriority());
+    }
+
+    @Test
+    public void computeBudget_mediumBatteryUsesSaverBudget() {
+        SamplingBudget budget = governor.computeBudget(49, false, false, 8);
+        assertEquals(30, budget.getMaxFixesPerHour());
+        assertEquals(Priority.PRIORITY_BALANCED_POWER_ACCURACY, budget.getMaxPriority());
+        assertEquals(governor.computeBudget(20, false, false, 8), budget);
+    }
+
+    @Test
+    public void computeBudget_lowBatteryStretchesToShiftEnd() {
+        // 19% por 8 h: 19 * 6 / 8 = 14 -> limitado a 12 por hora, baixo consumo
+        SamplingBudget budget = governor.computeBudget(19, false, false, 8);
+        assertEquals(12, budget.getMaxFixesPerHour());
+        assertEquals(Priority.PRIORITY_LOW_POWER, budget.getMaxPriority());
+
+        // 10% por 8 h: 10 * 6 / 8 = 7,5 -> 8 por hora
+        assertEquals(8, governor.computeBudget(10, false, false, 8).getMaxFixesPerHour());
+        // Pouca bateria e turno longo: nunca abaixo do mínimo
+        assertEquals(2, governor.computeBudget(1, false, false, 10).getMaxFixesPerHour());
+        // Modo de economia não afrouxa o orçamento de bateria baixa
+        assertEquals(budget, governor.computeBudget(19, false, true, 8));
+    }
+
+    @Test
+    public void computeBudget_lowBatteryLastsTheShift() {
+        // Consumo estimado até o fim do turno cabe na carga restante (fora o piso mínimo
+        // e o arredondamento de meia localização por hora)
+        for (int level = 4; level < 20; level++) {
+            for (double hours = 1; hours <= 10; hours++) {
+                SamplingBudget budget = governor.computeBudget(level, false, false, hours);
+                if (budget.getMaxFixesPerHour() > 2) {
+                    double percentUsed = budget.getMaxFixesPerHour() * hours / 6.0;
+                    assertTrue(level + "% por " + hours + "h", percentUsed <= level + 0.5 * hours / 6.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hoursUntilShiftEnd_neverBelowOneHour() {
+        Calendar morning = Calendar.getInstance();
+        morning.set(Calendar.HOUR_OF_DAY, 9);
+        morning.set(Calendar.MINUTE, 30);
+        assertEquals(8.5, governor.hoursUntilShiftEnd(morning), 1e-9);
+
+        Calendar evening = Calendar.getInstance();
+        evening.set(Calendar.HOUR_OF_DAY, 20);
+        evening.set(Calendar.MINUTE, 0);
+        assertEquals(1.0, governor.hoursUntilShiftEnd(evening), 1e-9);
+    }
+
+    // === LocationScheduler ===
+    @Test
+    public void enforceBudget_clampsPriorityAndIntervals() {
+        SamplingBudget lowBattery = new SamplingBudget(12, Priority.PRIORITY_LOW_POWER);
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 10000)
+                .setMinUpdateIntervalMillis(5000)
+                .build();
+
+        LocationRequest effective = LocationScheduler.enforceBudget(request, lowBattery);
+        assertEquals(Priority.PRIORITY_LOW_POWER, effective.getPriority());
+        assertEquals(5 * 60 * 1000L, effective.getIntervalMillis());
+        assertEquals(5 * 60 * 1000L, effective.getMinUpdateIntervalMillis());
+    }
+
+    @Test
+    public void enforceBudget_keepsRequestsWithinBudget() {
+        LocationRequest relaxed = new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 10 * 60 * 1000L)
+                .setMinUpdateIntervalMillis(10 * 60 * 1000L)
+                .build();
+        assertSame(relaxed, LocationScheduler.enforceBudget(relaxed,
+                new SamplingBudget(12, Priority.PRIORITY_LOW_POWER)));
+
+        // Passiva não gera custo próprio
+        LocationRequest passive = new LocationRequest.Builder(Priority.PRIORITY_PASSIVE, 1000).build();
+        assertSame(passive, LocationScheduler.enforceBudget(passive,
+                new SamplingBudget(2, Priority.PRIORITY_LOW_POWER)));
+
+        // Sem limite: alta precisão a cada minuto passa intacta
+        LocationRequest high = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 60000)
+                .setMinUpdateIntervalMillis(60000)
+                .build();
+        assertSame(high, LocationScheduler.enforceBudget(high, SamplingBudget.UNLIMITED));
+    }
+}
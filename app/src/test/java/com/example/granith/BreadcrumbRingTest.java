@@ -0,0 +1,90 @@
+package com.example.granith;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BreadcrumbRingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "breadcrumbs.ring");
+    }
+
+    @Test
+    public void emptyRing_hasNoRecords() throws Exception {
+        BreadcrumbRing ring = new BreadcrumbRing(file, 4, 8);
+        assertNull(ring.getLastHeartbeat());
+        assertNull(ring.getLastFix());
+        assertEquals(0, ring.getLastAliveTime());
+    }
+
+    @Test
+    public void fixes_wrapAroundKeepingTheLastN() throws Exception {
+        BreadcrumbRing ring = new BreadcrumbRing(file, 4, 8);
+        for (int i = 1; i <= 20; i++) {
+            ring.recordFix(1000L * i, -23.0 - i * 0.001, -46.0, 10f);
+        }
+
+        List<BreadcrumbRing.Record> fixes = ring.getRecentFixes();
+        assertEquals(8, fixes.size());
+        assertEquals(13000L, fixes.get(0).timestamp);
+        assertEquals(20000L, fixes.get(7).timestamp);
+        assertEquals(-23.02, ring.getLastFix().latitude, 1e-9);
+    }
+
+    @Test
+    public void reopen_continuesFromLastSequence() throws Exception {
+        BreadcrumbRing ring = new BreadcrumbRing(file, 4, 8);
+        for (int i = 1; i <= 6; i++) {
+            ring.recordHeartbeat(1000L * i, true);
+        }
+        ring.flush();
+
+        BreadcrumbRing reopened = new BreadcrumbRing(file, 4, 8);
+        assertEquals(6000L, reopened.getLastHeartbeat().timestamp);
+
+        reopened.recordHeartbeat(7000L, false);
+        assertEquals(7000L, reopened.getLastHeartbeat().timestamp);
+        assertFalse(reopened.getLastHeartbeat().isRunning());
+    }
+
+    @Test
+    public void lastAliveTime_usesNewestOfHeartbeatAndFix() throws Exception {
+        BreadcrumbRing ring = new BreadcrumbRing(file, 4, 8);
+        ring.recordHeartbeat(10000L, true);
+        ring.recordFix(25000L, -23.5, -46.6, 8f);
+        assertEquals(25000L, ring.getLastAliveTime());
+
+        ring.recordHeartbeat(40000L, true);
+        assertEquals(40000L, ring.getLastAliveTime());
+    }
+
+    @Test
+    public void tornRecord_isIgnored() throws Exception {
+        BreadcrumbRing ring = new BreadcrumbRing(file, 4, 8);
+        ring.recordHeartbeat(1000L, true);
+        ring.recordHeartbeat(2000L, true);
+        ring.flush();
+
+        // Segundo heartbeat sem a sequência gravada (escrita interrompida)
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16 + 40);
+            raf.writeLong(0);
+        }
+
+        BreadcrumbRing reopened = new BreadcrumbRing(file, 4, 8);
+        assertEquals(1000L, reopened.getLastHeartbeat().timestamp);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.granith;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DedupIndexTest {
+    private static final long WINDOW = 2 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void contains_respectsWindowAcrossBucketBoundaries() {
+        DedupIndex index = new DedupIndex(WINDOW);
+        long t = 10 * WINDOW - 1000; // perto do fim do bucket
+        index.add("Obra_Entrada_Ana", t);
+
+        assertTrue(index.contains("Obra_Entrada_Ana", t + WINDOW - 1, WINDOW));
+        assertTrue(index.contains("Obra_Entrada_Ana", t - WINDOW + 1, WINDOW));
+        assertFalse(index.contains("Obra_Entrada_Ana", t + WINDOW, WINDOW));
+        assertFalse(index.contains("Obra_Entrada_Ana", t - WINDOW, WINDOW));
+        assertFalse(index.contains("Obra_Saida_Ana", t, WINDOW));
+    }
+
+    @Test
+    public void contains_matchesLinearScanOnRandomEvents() {
+        DedupIndex index = new DedupIndex(WINDOW);
+        List<String> keys = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            String key = "G" + random.nextInt(5) + "_Entrada_U" + random.nextInt(3);
+            // Timestamps fora de ordem, como os eventos de recuperação de shutdown
+            long timestamp = 1_700_000_000_000L + random.nextInt(6 * 60 * 60 * 1000);
+            long window = random.nextBoolean() ? WINDOW : 1 + random.nextInt((int) WINDOW);
+
+            boolean expected = false;
+            for (int j = 0; j < keys.size(); j++) {
+                if (keys.get(j).equals(key) && Math.abs(times.get(j) - timestamp) < window) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(expected, index.contains(key, timestamp, window));
+
+            if (!expected) {
+                index.add(key, timestamp);
+                keys.add(key);
+                times.add(timestamp);
+            }
+        }
+    }
+
+    @Test
+    public void writeAndRead_roundTrip() throws Exception {
+        DedupIndex index = new DedupIndex(WINDOW);
+        index.add("A_Entrada_U", 1_000_000L);
+        index.add("B_Saida_U", 5_000_000L);
+        index.setCoveredId(17);
+
+        File file = new File(folder.getRoot(), "dedup.idx");
+        index.writeTo(file);
+
+        DedupIndex loaded = DedupIndex.readFrom(file, WINDOW);
+        assertNotNull(loaded);
+        assertEquals(17, loaded.getCoveredId());
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.contains("A_Entrada_U", 1_050_000L, WINDOW));
+        assertTrue(loaded.contains("B_Saida_U", 5_000_000L, 1));
+
+        // Outra largura de bucket invalida o arquivo
+        assertNull(DedupIndex.readFrom(file, WINDOW * 2));
+    }
+
+    @Test
+    public void pruneBefore_dropsOldBuckets() {
+        DedupIndex index = new DedupIndex(WINDOW);
+        index.add("A_Entrada_U", 1_000_000L);
+        index.add("A_Entrada_U", 9_000_000L);
+
+        assertEquals(1, index.pruneBefore(5_000_000L));
+        assertFalse(index.contains("A_Entrada_U", 1_000_000L, WINDOW));
+        assertTrue(index.contains("A_Entrada_U", 9_000_000L, WINDOW));
+    }
+}
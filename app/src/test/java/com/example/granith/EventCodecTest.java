@@ -0,0 +1,98 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventCodecTest {
+
+    @Test
+    public void roundTrip_preservesFieldsWithinPrecision() throws Exception {
+        GeofenceEventEntity event = event("Obra Centro", "Entrada Confirmada", 1_700_000_000_123L);
+        event.geofenceId = "abc123";
+        event.employeeId = "emp-7";
+        event.companyId = "empresa-1";
+        event.deviceInfo = "Samsung SM-A515F";
+        event.extras = "{\"is_shutdown_event\":true}";
+
+        GeofenceEventEntity decoded = EventCodec.decode(EventCodec.encode(event)).get(0);
+
+        assertEquals(event.timestamp, decoded.timestamp);
+        assertEquals(event.eventType, decoded.eventType);
+        assertEquals(event.geofenceName, decoded.geofenceName);
+        assertEquals(event.geofenceCode, decoded.geofenceCode);
+        assertEquals(event.geofenceId, decoded.geofenceId);
+        assertEquals(event.userName, decoded.userName);
+        assertEquals(event.employeeId, decoded.employeeId);
+        assertEquals(event.companyId, decoded.companyId);
+        assertEquals(event.deviceInfo, decoded.deviceInfo);
+        assertEquals(event.extras, decoded.extras);
+        assertEquals(event.localId, decoded.localId);
+        assertEquals(event.dedupKey, decoded.dedupKey);
+        assertEquals(event.latitude, decoded.latitude, 1e-6);
+        assertEquals(event.longitude, decoded.longitude, 1e-6);
+        assertEquals(event.accuracy, decoded.accuracy, 0.05);
+    }
+
+    @Test
+    public void roundTrip_keepsUnknownEventTypeAndCustomLocalId() throws Exception {
+        GeofenceEventEntity event = event("Obra Norte", "Tipo Novo", 1_700_000_000_000L);
+        event.localId = "shutdown_1700000000000";
+
+        GeofenceEventEntity decoded = EventCodec.decode(EventCodec.encode(event)).get(0);
+        assertEquals("Tipo Novo", decoded.eventType);
+        assertEquals("shutdown_1700000000000", decoded.localId);
+        assertNull(decoded.geofenceId);
+    }
+
+    @Test
+    public void batch_internsRepeatedStringsAndHandlesOutOfOrderTimestamps() throws Exception {
+        List<GeofenceEventEntity> events = new ArrayList<>();
+        events.add(event("Obra Centro", "Entrada Confirmada", 1_700_000_100_000L));
+        events.add(event("Obra Centro", "Saída Confirmada", 1_700_000_050_000L));
+        events.add(event("Obra Centro", "Saída Automática", 1_700_000_200_000L));
+
+        byte[] single = EventCodec.encode(events.get(0));
+        byte[] batch = EventCodec.encode(events);
+        // Os dois eventos extras reaproveitam as strings do primeiro
+        assertTrue(batch.length < single.length * 2);
+
+        List<GeofenceEventEntity> decoded = EventCodec.decode(batch);
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(events.get(i).timestamp, decoded.get(i).timestamp);
+            assertEquals(events.get(i).eventType, decoded.get(i).eventType);
+        }
+    }
+
+    @Test
+    public void decode_rejectsTruncatedData() {
+        byte[] data = EventCodec.encode(event("Obra Centro", "Entrada Confirmada", 1_700_000_000_000L));
+        try {
+            EventCodec.decode(Arrays.copyOf(data, data.length - 3));
+            fail("Lote truncado deveria falhar");
+        } catch (IOException expected) {
+            // esperado
+        }
+    }
+
+    static GeofenceEventEntity event(String geofenceName, String eventType, long timestamp) {
+        GeofenceEventEntity event = new GeofenceEventEntity();
+        event.geofenceName = geofenceName;
+        event.eventType = eventType;
+        event.geofenceCode = "OB-" + geofenceName.length();
+        event.userName = "Ana Souza";
+        event.timestamp = timestamp;
+        event.latitude = -23.550520;
+        event.longitude = -46.633308;
+        event.accuracy = 12.3;
+        event.localId = geofenceName + "_" + eventType + "_" + event.userName + "_" + timestamp;
+        event.dedupKey = GeofenceEventEntity.dedupKey(geofenceName, eventType, event.userName);
+        return event;
+    }
+}
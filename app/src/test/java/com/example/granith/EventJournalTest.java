@@ -0,0 +1,145 @@
+package com.example.granith;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.*;
+
+public class EventJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = folder.newFolder("journal");
+    }
+
+    @Test
+    public void replay_returnsRecordsInOrder() throws Exception {
+        EventJournal journal = new EventJournal(dir);
+        for (int i = 0; i < 5; i++) {
+            journal.append(record(i), i % 2 == 0);
+        }
+        journal.close();
+
+        List<byte[]> records = new EventJournal(dir).readAll();
+        assertEquals(5, records.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("evento-" + i, new String(records.get(i), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void recovery_truncatesPartialTailRecord() throws Exception {
+        EventJournal journal = new EventJournal(dir);
+        journal.append(record(0), true);
+        journal.append(record(1), true);
+        journal.close();
+
+        // Simula queda de energia no meio do segundo registro
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        EventJournal recovered = new EventJournal(dir);
+        assertEquals(1, recovered.getRecoveredTruncations());
+        assertEquals(1, recovered.readAll().size());
+
+        // Novos registros continuam a partir do último válido
+        recovered.append(record(2), true);
+        List<byte[]> records = recovered.readAll();
+        assertEquals(2, records.size());
+        assertEquals("evento-2", new String(records.get(1), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void recovery_stopsAtCorruptedRecord() throws Exception {
+        EventJournal journal = new EventJournal(dir);
+        journal.append(record(0), true);
+        journal.append(record(1), true);
+        journal.append(record(2), true);
+        journal.close();
+
+        // Corrompe um byte do conteúdo do segundo registro (cabeçalho 8 + registro 8+8)
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long secondPayload = 8 + (8 + record(0).length) + 8;
+            file.seek(secondPayload);
+            file.write('X');
+        }
+
+        List<byte[]> records = new EventJournal(dir).readAll();
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    public void append_rollsSegmentsAndClearRemovesThem() throws Exception {
+        EventJournal journal = new EventJournal(dir, 64);
+        for (int i = 0; i < 10; i++) {
+            journal.append(record(i), false);
+        }
+        journal.sync();
+        assertTrue(journal.getSegmentCount() > 1);
+        assertEquals(10, journal.readAll().size());
+
+        journal.clear();
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(0, journal.readAll().size());
+    }
+
+    @Test
+    public void concurrentForcedAppends_shareForceCalls() throws Exception {
+        EventJournal journal = new EventJournal(dir);
+        int threads = 8;
+        int rounds = 25;
+        // A cada rodada todas as threads escrevem antes de qualquer uma pedir o force
+        CyclicBarrier written = new CyclicBarrier(threads);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int base = t * rounds;
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        long sequence = journal.write(record(base + i));
+                        written.await();
+                        journal.syncTo(sequence);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * rounds, journal.readAll().size());
+        // O primeiro force de cada rodada cobre os registros das outras threads
+        assertTrue(journal.getForceCount() > 0);
+        assertTrue(journal.getForceCount() <= rounds);
+        assertTrue(journal.getForceCount() < threads * rounds);
+    }
+
+    private File onlySegment() {
+        File[] files = dir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static byte[] record(int i) {
+        return ("evento-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.granith;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Backend falso que apenas guarda as geofences "registradas no SO"
+ */
+public class FakeGeofencingBackend implements GeofencingBackend {
+    private final Set<String> registered = new LinkedHashSet<>();
+    private int registerCalls = 0;
+    private int unregisterCalls = 0;
+
+    @Override
+    public void register(List<GeofenceData> geofences) {
+        registerCalls++;
+        for (GeofenceData geofence : geofences) {
+            if (!registered.add(geofence.getName())) {
+                throw new IllegalStateException("Geofence registrada duas vezes: " + geofence.getName());
+            }
+        }
+    }
+
+    @Override
+    public void unregister(List<String> requestIds) {
+        unregisterCalls++;
+        for (String id : requestIds) {
+            if (!registered.remove(id)) {
+                throw new IllegalStateException("Geofence não registrada: " + id);
+            }
+        }
+    }
+
+    public Set<String> getRegistered() {
+        return registered;
+    }
+
+    public List<String> getRegisteredList() {
+        return new ArrayList<>(registered);
+    }
+
+    public int getRegisterCalls() {
+        return registerCalls;
+    }
+
+    public int getUnregisterCalls() {
+        return unregisterCalls;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FixQualityGateTest {
+    private static final double LAT = -23.55;
+    private static final double LNG = -46.63;
+    private static final long NOW = 10 * 60 * 1000;
+    private static final float RADIUS = 100;
+
+    @Test
+    public void accuracy_comparedToNearestRadius() {
+        FixQualityGate gate = new FixQualityGate();
+
+        assertEquals(FixQualityGate.Verdict.ACCEPT, gate.evaluate(LAT, LNG, 40, NOW, NOW, false, RADIUS));
+        assertEquals(FixQualityGate.Verdict.DEGRADED, gate.evaluate(LAT, LNG, 60, NOW, NOW, false, RADIUS));
+        assertEquals(FixQualityGate.Verdict.REJECT, gate.evaluate(LAT, LNG, 160, NOW, NOW, false, RADIUS));
+        assertEquals(1, gate.getRejectionCount(FixQualityGate.Reason.POOR_ACCURACY));
+        assertEquals(1, gate.getDegradedCount(FixQualityGate.Reason.POOR_ACCURACY));
+
+        // Sem geofences a precisão não é avaliada
+        assertEquals(FixQualityGate.Verdict.ACCEPT, gate.evaluate(LAT, LNG, 500, NOW, NOW, false, 0));
+    }
+
+    @Test
+    public void unknownAccuracy_isDegraded() {
+        FixQualityGate gate = new FixQualityGate();
+        assertEquals(FixQualityGate.Verdict.DEGRADED, gate.evaluate(LAT, LNG, 0, NOW, NOW, false, RADIUS));
+    }
+
+    @Test
+    public void age_degradesThenRejects() {
+        FixQualityGate gate = new FixQualityGate();
+
+        assertEquals(FixQualityGate.Verdict.ACCEPT,
+                gate.evaluate(LAT, LNG, 10, NOW - 10 * 1000, NOW, false, RADIUS));
+        assertEquals(FixQualityGate.Verdict.DEGRADED,
+                gate.evaluate(LAT, LNG, 10, NOW - 60 * 1000, NOW, false, RADIUS));
+        assertEquals(FixQualityGate.Verdict.REJECT,
+                gate.evaluate(LAT, LNG, 10, NOW - 3 * 60 * 1000, NOW, false, RADIUS));
+        assertEquals(1, gate.getRejectionCount(FixQualityGate.Reason.STALE));
+    }
+
+    @Test
+    public void impossibleJump_isRejected() {
+        FixQualityGate gate = new FixQualityGate();
+        assertEquals(FixQualityGate.Verdict.ACCEPT, gate.evaluate(LAT, LNG, 10, NOW, NOW, false, RADIUS));
+
+        // ~10 km em 10 segundos
+        assertEquals(FixQualityGate.Verdict.REJECT,
+                gate.evaluate(LAT + 0.09, LNG, 10, NOW + 10 * 1000, NOW + 10 * 1000, false, RADIUS));
+        assertEquals(1, gate.getRejectionCount(FixQualityGate.Reason.IMPOSSIBLE_SPEED));
+        assertEquals(FixQualityGate.Reason.IMPOSSIBLE_SPEED, gate.getLastReason());
+
+        // A referência continua sendo a última aceita: ~100 m em 20 segundos passa
+        assertEquals(FixQualityGate.Verdict.ACCEPT,
+                gate.evaluate(LAT + 0.0009, LNG, 10, NOW + 20 * 1000, NOW + 20 * 1000, false, RADIUS));
+        assertNull(gate.getLastReason());
+    }
+
+    @Test
+    public void mock_rejectedUnlessAllowed() {
+        FixQualityGate gate = new FixQualityGate();
+        assertEquals(FixQualityGate.Verdict.REJECT, gate.evaluate(LAT, LNG, 10, NOW, NOW, true, RADIUS));
+        assertEquals(1, gate.getRejectionCount(FixQualityGate.Reason.MOCK));
+        assertEquals(FixQualityGate.Reason.MOCK, gate.getLastReason());
+
+        FixQualityGate permissive = new FixQualityGate(
+                FixQualityGate.DEFAULT_DEGRADED_ACCURACY_RATIO, FixQualityGate.DEFAULT_REJECT_ACCURACY_RATIO,
+                FixQualityGate.DEFAULT_MAX_SPEED_MPS, FixQualityGate.DEFAULT_DEGRADED_AGE_MS,
+                FixQualityGate.DEFAULT_MAX_AGE_MS, true);
+        assertEquals(FixQualityGate.Verdict.ACCEPT, permissive.evaluate(LAT, LNG, 10, NOW, NOW, true, RADIUS));
+    }
+}
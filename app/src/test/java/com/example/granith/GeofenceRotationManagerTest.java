@@ -0,0 +1,116 @@
+package com.example.granith;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GeofenceRotationManagerTest {
+    // ~111 m por 0.001 grau de latitude
+    private static final double STEP_DEG = 0.01;
+
+    private FakeGeofencingBackend backend;
+    private List<GeofenceData> geofences;
+
+    @Before
+    public void setUp() {
+        backend = new FakeGeofencingBackend();
+        geofences = new ArrayList<>();
+        // 200 obras em linha, uma a cada ~1,1 km ao norte
+        for (int i = 0; i < 200; i++) {
+            geofences.add(new GeofenceData(-23.0 + i * STEP_DEG, -46.0, 100f, "obra_" + i, "C" + i));
+        }
+    }
+
+    @Test
+    public void registersAllWhenBelowLimit() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences.subList(0, 50));
+
+        assertTrue(manager.onLocation(-23.0, -46.0));
+        assertEquals(50, backend.getRegistered().size());
+
+        // Com todas registradas não há rotação, mesmo após grande deslocamento
+        assertFalse(manager.onLocation(-22.0, -46.0));
+        assertEquals(1, manager.getRotationCount());
+    }
+
+    @Test
+    public void registersOnlyNearestN() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences);
+        manager.onLocation(-23.0, -46.0);
+
+        assertEquals(90, backend.getRegistered().size());
+        assertTrue(backend.getRegistered().contains("obra_0"));
+        assertTrue(backend.getRegistered().contains("obra_89"));
+        assertFalse(backend.getRegistered().contains("obra_90"));
+    }
+
+    @Test
+    public void doesNotRotateForSmallMovements() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences);
+        manager.onLocation(-23.0, -46.0);
+
+        assertFalse(manager.onLocation(-23.0 + 5 * STEP_DEG, -46.0));
+        assertEquals(1, backend.getRegisterCalls());
+        assertEquals(0, backend.getUnregisterCalls());
+    }
+
+    @Test
+    public void rotatesSetWhenDeviceMovesAcrossRegions() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences);
+        manager.onLocation(-23.0, -46.0);
+
+        // Desloca ~110 km para o norte, até a obra 100
+        assertTrue(manager.onLocation(-23.0 + 100 * STEP_DEG, -46.0));
+
+        assertEquals(90, backend.getRegistered().size());
+        assertEquals(manager.getRegisteredIds(), backend.getRegistered());
+        assertTrue(backend.getRegistered().contains("obra_100"));
+        assertTrue(backend.getRegistered().contains("obra_144"));
+        assertTrue(backend.getRegistered().contains("obra_56"));
+        assertFalse(backend.getRegistered().contains("obra_0"));
+    }
+
+    @Test
+    public void nearestSiteAlwaysRegisteredWhileWalkingTheLine() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 20);
+        manager.setGeofences(geofences);
+
+        for (int i = 0; i < 200; i++) {
+            manager.onLocation(-23.0 + i * STEP_DEG, -46.0);
+            assertTrue("obra_" + i + " deveria estar registrada",
+                    backend.getRegistered().contains("obra_" + i));
+        }
+        assertTrue(manager.getRotationCount() < 200);
+    }
+
+    @Test
+    public void geofenceListUpdateReconcilesRegisteredSet() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences.subList(0, 10));
+        manager.onLocation(-23.0, -46.0);
+
+        manager.setGeofences(geofences.subList(5, 15));
+        assertEquals(10, backend.getRegistered().size());
+        assertFalse(backend.getRegistered().contains("obra_0"));
+        assertTrue(backend.getRegistered().contains("obra_14"));
+    }
+
+    @Test
+    public void clearUnregistersEverything() {
+        GeofenceRotationManager manager = new GeofenceRotationManager(backend, 90);
+        manager.setGeofences(geofences);
+        manager.onLocation(-23.0, -46.0);
+
+        manager.clear();
+        assertTrue(backend.getRegistered().isEmpty());
+        assertTrue(manager.getRegisteredIds().isEmpty());
+    }
+}
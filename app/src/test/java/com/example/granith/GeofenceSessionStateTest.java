@@ -0,0 +1,137 @@
+package com.example.granith;
+
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GeofenceSessionStateTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StateStore store;
+    private SharedPreferences statePrefs;
+    private SharedPreferences appPrefs;
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        store = new StateStore(new File(folder.getRoot(), "state.bin"), 0,
+                (task, delayMs) -> { }, Runnable::run);
+        statePrefs = store.getPreferences(StateStore.GEOFENCE_STATE);
+        appPrefs = store.getPreferences(StateStore.APP);
+    }
+
+    private GeofenceSessionState newState() {
+        return new GeofenceSessionState(statePrefs, appPrefs,
+                (task, delayMs) -> scheduled.add(task), GeofenceSessionState.DEFAULT_WRITE_DELAY_MS);
+    }
+
+    @Test
+    public void constructor_loadsPersistedState() {
+        statePrefs.edit()
+                .putString("last_geofence_name", "Obra A")
+                .putString("last_event_type", "Entrada Confirmada")
+                .putLong("last_event_timestamp", 1000L)
+                .commit();
+        UserPreferences.saveUserDetails(appPrefs, "Ana", "Obras");
+
+        GeofenceSessionState state = newState();
+        assertEquals("Obra A", state.getEnteredGeofenceName());
+        assertEquals(1000L, state.getLastEventTimestamp());
+        assertEquals("Ana", state.getUserName());
+    }
+
+    @Test
+    public void transitions_areVisibleAtOnceAndWrittenInOneEdit() {
+        GeofenceSessionState state = newState();
+
+        state.recordTransition("Obra A", "Saída Confirmada", 1000L);
+        state.recordTransition("Obra B", "Entrada Confirmada", 2000L);
+
+        assertEquals("Obra B", state.getLastGeofenceName());
+        assertEquals("Obra B", state.getEnteredGeofenceName());
+        assertNull(statePrefs.getString("last_geofence_name", null));
+        assertEquals(1, scheduled.size());
+
+        scheduled.get(0).run();
+        assertEquals(1, state.getWriteCount());
+        assertEquals("Obra B", statePrefs.getString("last_geofence_name", null));
+        assertEquals("Entrada Confirmada", statePrefs.getString("last_event_type", null));
+        assertEquals(2000L, statePrefs.getLong("last_event_timestamp", 0));
+    }
+
+    @Test
+    public void userName_followsStoreChanges() {
+        GeofenceSessionState state = newState();
+        assertNull(state.getUserName());
+
+        UserPreferences.saveUserDetails(appPrefs, "Bruno", "Obras");
+        assertEquals("Bruno", state.getUserName());
+
+        state.close();
+        UserPreferences.saveUserDetails(appPrefs, "Carla", "Obras");
+        assertEquals("Bruno", state.getUserName());
+    }
+
+    @Test
+    public void externalExit_updatesRunningInstance() {
+        GeofenceSessionState state = newState();
+        state.recordTransition("Obra A", "Entrada Confirmada", 1000L);
+        scheduled.get(0).run();
+
+        GeofenceSessionState.markExited(statePrefs, "Obra A", "Saída por Desligamento", 2000L);
+        assertNull(state.getEnteredGeofenceName());
+        assertEquals("Saída por Desligamento", state.getLastEventType());
+        assertEquals(2000L, state.getLastEventTimestamp());
+    }
+
+    @Test
+    public void close_doesNotOverwriteNewerExternalExit() {
+        statePrefs.edit()
+                .putString("last_geofence_name", "Obra A")
+                .putString("last_event_type", "Entrada Confirmada")
+                .putLong("last_event_timestamp", 1000L)
+                .commit();
+        GeofenceSessionState state = newState();
+        // Transição pendente em memória, ainda não gravada
+        state.recordTransition("Obra A", "Entrada Confirmada", 1500L);
+        state.close();
+        assertEquals(1500L, statePrefs.getLong("last_event_timestamp", 0));
+
+        GeofenceSessionState next = newState();
+        next.recordTransition("Obra B", "Entrada Confirmada", 2500L);
+        statePrefs.edit()
+                .putString("last_geofence_name", "Obra A")
+                .putString("last_event_type", "Saída por Desligamento")
+                .putLong("last_event_timestamp", 3000L)
+                .commit();
+        next.close();
+
+        assertEquals("Saída por Desligamento", statePrefs.getString("last_event_type", null));
+        assertEquals(3000L, statePrefs.getLong("last_event_timestamp", 0));
+        assertEquals("Obra A", next.getLastGeofenceName());
+    }
+
+    @Test
+    public void close_writesPendingTransition() {
+        GeofenceSessionState state = newState();
+        state.recordTransition("Obra A", "Saída Automática", 5000L);
+
+        state.close();
+        assertEquals("Saída Automática", statePrefs.getString("last_event_type", null));
+        assertNull(state.getEnteredGeofenceName());
+
+        // A gravação agendada não repete a edição
+        scheduled.get(0).run();
+        assertEquals(1, state.getWriteCount());
+    }
+}
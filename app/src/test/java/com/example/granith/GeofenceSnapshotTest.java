@@ -0,0 +1,168 @@
+package com.example.granith;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeofenceSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndOpen_readsColumnsInPlace() throws Exception {
+        List<GeofenceData> geofences = new ArrayList<>();
+        geofences.add(new GeofenceData(-23.550520, -46.633308, 120f, "Obra Sé", "OB-001"));
+        geofences.add(new GeofenceData(-22.906847, -43.172897, 80f, "Obra Centro", "OB-002"));
+        geofences.add(new GeofenceData(-23.551000, -46.634000, 60f, "Obra Sé", "OB-003"));
+        File file = new File(folder.getRoot(), "geofences.snap");
+
+        GeofenceSnapshot.write(file, geofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+
+        assertNotNull(snapshot);
+        assertEquals(3, snapshot.size());
+        assertEquals(-22.906847, snapshot.getLatitude(1), 0);
+        assertEquals(-43.172897, snapshot.getLongitude(1), 0);
+        assertEquals(80f, snapshot.getRadius(1), 0);
+        assertEquals("Obra Sé", snapshot.getName(2));
+        assertEquals("OB-003", snapshot.getCode(2));
+        assertEquals(geofences, snapshot.toList());
+        assertSame(snapshot.get(0), snapshot.get(0));
+    }
+
+    @Test
+    public void candidatesNear_includesEveryGeofenceWithinMargin() throws Exception {
+        Random random = new Random(7);
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            geofences.add(new GeofenceData(-23.5 + random.nextDouble() * 0.5, -46.6 + random.nextDouble() * 0.5,
+                    50f + random.nextInt(300), "Obra " + i, "OB-" + i));
+        }
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, geofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = -23.5 + random.nextDouble() * 0.5;
+            double lng = -46.6 + random.nextDouble() * 0.5;
+            List<Integer> candidates = new ArrayList<>();
+            for (int index : snapshot.candidatesNear(lat, lng)) {
+                candidates.add(index);
+            }
+
+            int bruteNearest = -1;
+            double bruteEdge = Double.MAX_VALUE;
+            for (int i = 0; i < geofences.size(); i++) {
+                double edge = GeoUtils.edgeDistanceMeters(lat, lng, geofences.get(i));
+                if (edge < GeofenceSnapshot.GRID_MARGIN_M) {
+                    assertTrue("Geofence " + i + " fora dos candidatos", candidates.contains(i));
+                }
+                if (edge < bruteEdge) {
+                    bruteEdge = edge;
+                    bruteNearest = i;
+                }
+            }
+            assertEquals(bruteNearest, snapshot.findNearestEdge(lat, lng));
+        }
+    }
+
+    @Test
+    public void findNearestEdge_fallsBackToScanWhenNothingIsNear() throws Exception {
+        List<GeofenceData> geofences = new ArrayList<>();
+        geofences.add(new GeofenceData(-23.55, -46.63, 100f, "Longe", "OB-1"));
+        geofences.add(new GeofenceData(-22.90, -43.17, 100f, "Mais longe", "OB-2"));
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, geofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+
+        assertEquals(0, snapshot.candidatesNear(-20.0, -44.0).length);
+        assertEquals(1, snapshot.findNearestEdge(-21.0, -43.0));
+    }
+
+    @Test
+    public void open_rejectsMissingOrInvalidFile() throws Exception {
+        File missing = new File(folder.getRoot(), "missing.snap");
+        assertNull(GeofenceSnapshot.open(missing));
+
+        File garbage = new File(folder.getRoot(), "garbage.snap");
+        try (FileOutputStream out = new FileOutputStream(garbage)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        assertNull(GeofenceSnapshot.open(garbage));
+    }
+
+    @Test
+    public void open_rejectsTruncatedFileOrCorruptedHeader() throws Exception {
+        List<GeofenceData> geofences = new ArrayList<>();
+        geofences.add(new GeofenceData(-23.55, -46.63, 100f, "Obra Centro", "OB-1"));
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, geofences);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        File truncated = new File(folder.getRoot(), "truncated.snap");
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        assertNull(GeofenceSnapshot.open(truncated));
+
+        // Quantidade de geofences trocada: o CRC32 do cabeçalho não bate
+        byte[] header = bytes.clone();
+        header[11] ^= 0x01;
+        File corrupted = new File(folder.getRoot(), "corrupted.snap");
+        Files.write(corrupted.toPath(), header);
+        assertNull(GeofenceSnapshot.open(corrupted));
+    }
+
+    @Test
+    public void verifyBody_detectsCorruptedBodyAfterOpen() throws Exception {
+        List<GeofenceData> geofences = new ArrayList<>();
+        geofences.add(new GeofenceData(-23.55, -46.63, 100f, "Obra Centro", "OB-1"));
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, geofences);
+        assertTrue(GeofenceSnapshot.open(file).verifyBody());
+
+        // Cabeçalho intacto, um byte do nome trocado: abre, mas não passa na conferência
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 2] ^= 0x20;
+        File corrupted = new File(folder.getRoot(), "corrupted.snap");
+        Files.write(corrupted.toPath(), bytes);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(corrupted);
+        assertNotNull(snapshot);
+        assertFalse(snapshot.verifyBody());
+    }
+
+    @Test
+    public void nullNameAndCode_arePreserved() throws Exception {
+        List<GeofenceData> geofences = new ArrayList<>();
+        geofences.add(new GeofenceData(-23.55, -46.63, 100f, null, "OB-1"));
+        geofences.add(new GeofenceData(-23.56, -46.64, 100f, "", null));
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, geofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+
+        assertNull(snapshot.getName(0));
+        assertEquals("OB-1", snapshot.getCode(0));
+        assertEquals("", snapshot.getName(1));
+        assertNull(snapshot.getCode(1));
+        assertEquals(geofences, snapshot.toList());
+    }
+
+    @Test
+    public void emptySnapshot_hasNoNearest() throws Exception {
+        File file = new File(folder.getRoot(), "geofences.snap");
+        GeofenceSnapshot.write(file, new ArrayList<>());
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(file);
+
+        assertEquals(0, snapshot.size());
+        assertEquals(-1, snapshot.findNearestEdge(-23.5, -46.6));
+    }
+}
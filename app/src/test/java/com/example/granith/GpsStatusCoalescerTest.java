@@ -0,0 +1,76 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GpsStatusCoalescerTest {
+    private static final long QUIET = 30 * 1000;
+    private static final long MAX_SPAN = 5 * 60 * 1000;
+
+    @Test
+    public void flapping_collapsesIntoOneInterval() {
+        GpsStatusCoalescer coalescer = new GpsStatusCoalescer(QUIET, MAX_SPAN, true);
+
+        assertTrue(coalescer.onStatus(1000, false, "GPS desabilitado"));
+        assertFalse(coalescer.onStatus(3000, true, "GPS habilitado"));
+        assertFalse(coalescer.onStatus(5000, false, "GPS desabilitado"));
+        assertFalse(coalescer.onStatus(8000, true, "GPS habilitado"));
+
+        assertNull(coalescer.flushDue(8000 + QUIET - 1));
+        GpsStatusCoalescer.Interval interval = coalescer.flushDue(8000 + QUIET);
+        assertNotNull(interval);
+        assertEquals(1000, interval.startTimestamp);
+        assertEquals(8000, interval.endTimestamp);
+        assertFalse(interval.firstEnabled);
+        assertTrue(interval.lastEnabled);
+        assertEquals(4, interval.toggleCount);
+        assertFalse(coalescer.hasOpenInterval());
+    }
+
+    @Test
+    public void sameStateAsReported_isIgnored() {
+        GpsStatusCoalescer coalescer = new GpsStatusCoalescer(QUIET, MAX_SPAN, true);
+
+        // Status inicial a cada início do serviço
+        assertFalse(coalescer.onStatus(1000, true, "GPS habilitado (serviço iniciado)"));
+        assertFalse(coalescer.hasOpenInterval());
+        assertEquals(1, coalescer.getSuppressedChanges());
+    }
+
+    @Test
+    public void unknownReportedState_opensIntervalWithSingleToggle() {
+        GpsStatusCoalescer coalescer = new GpsStatusCoalescer(QUIET, MAX_SPAN, null);
+
+        assertTrue(coalescer.onStatus(1000, true, "GPS habilitado (serviço iniciado)"));
+        GpsStatusCoalescer.Interval interval = coalescer.flush();
+        assertEquals(1, interval.toggleCount);
+        assertEquals("GPS habilitado (serviço iniciado)", interval.firstMessage);
+
+        // Depois de entregue, o mesmo estado não gera novo registro
+        assertFalse(coalescer.onStatus(2000, true, "GPS habilitado"));
+    }
+
+    @Test
+    public void continuousFlapping_isClosedAtMaxSpan() {
+        GpsStatusCoalescer coalescer = new GpsStatusCoalescer(QUIET, MAX_SPAN, true);
+        boolean enabled = false;
+        long t = 0;
+        for (; t < MAX_SPAN; t += 10 * 1000) {
+            coalescer.onStatus(t, enabled, "GPS");
+            enabled = !enabled;
+        }
+
+        assertEquals(0, coalescer.nextFlushDelay(MAX_SPAN));
+        GpsStatusCoalescer.Interval interval = coalescer.flushDue(MAX_SPAN);
+        assertNotNull(interval);
+        assertEquals(MAX_SPAN / (10 * 1000), interval.toggleCount);
+    }
+
+    @Test
+    public void nextFlushDelay_isNegativeWithoutOpenInterval() {
+        GpsStatusCoalescer coalescer = new GpsStatusCoalescer(QUIET, MAX_SPAN, true);
+        assertEquals(-1, coalescer.nextFlushDelay(0));
+        assertNull(coalescer.flush());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OutboxBudgetTest {
+
+    @Test
+    public void nextEvictionPriority_startsWithLowestPriority() {
+        OutboxBudget budget = new OutboxBudget(1000);
+        budget.add(OutboxBudget.PRIORITY_CRITICAL, 600);
+        budget.add(OutboxBudget.PRIORITY_GPS_STATUS, 300);
+        assertEquals(-1, budget.nextEvictionPriority());
+
+        budget.add(OutboxBudget.PRIORITY_DIAGNOSTIC, 200);
+        assertEquals(OutboxBudget.PRIORITY_DIAGNOSTIC, budget.nextEvictionPriority());
+
+        budget.recordEviction(OutboxBudget.PRIORITY_DIAGNOSTIC, 2, 200);
+        assertEquals(-1, budget.nextEvictionPriority());
+        assertEquals(2, budget.getEvictedEvents(OutboxBudget.PRIORITY_DIAGNOSTIC));
+
+        budget.add(OutboxBudget.PRIORITY_CRITICAL, 200);
+        assertEquals(OutboxBudget.PRIORITY_GPS_STATUS, budget.nextEvictionPriority());
+    }
+
+    @Test
+    public void nextEvictionPriority_neverEvictsCriticalEvents() {
+        OutboxBudget budget = new OutboxBudget(100);
+        budget.add(OutboxBudget.PRIORITY_CRITICAL, 500);
+
+        assertTrue(budget.isOverBudget());
+        assertEquals(-1, budget.nextEvictionPriority());
+    }
+
+    @Test
+    public void nextEvictionPriority_evictsCriticalOnlyAboveHardLimit() {
+        OutboxBudget budget = new OutboxBudget(100, 1000);
+        budget.add(OutboxBudget.PRIORITY_CRITICAL, 900);
+        budget.add(OutboxBudget.PRIORITY_DIAGNOSTIC, 50);
+        assertEquals(OutboxBudget.PRIORITY_DIAGNOSTIC, budget.nextEvictionPriority());
+
+        budget.recordEviction(OutboxBudget.PRIORITY_DIAGNOSTIC, 1, 50);
+        assertEquals(-1, budget.nextEvictionPriority());
+
+        budget.add(OutboxBudget.PRIORITY_CRITICAL, 200);
+        assertEquals(OutboxBudget.PRIORITY_CRITICAL, budget.nextEvictionPriority());
+        budget.recordEviction(OutboxBudget.PRIORITY_CRITICAL, 3, 150);
+        assertEquals(-1, budget.nextEvictionPriority());
+        assertEquals(3, budget.getEvictedEvents(OutboxBudget.PRIORITY_CRITICAL));
+    }
+
+    @Test
+    public void estimateBytesSql_matchesEstimateBytesTerms() {
+        assertEquals("48 + LENGTH(COALESCE(a, '')) + LENGTH(COALESCE(b, ''))",
+                OutboxBudget.estimateBytesSql("a", "b"));
+        assertEquals(48 + 3, OutboxBudget.estimateBytes("abc", null));
+    }
+
+    @Test
+    public void remove_neverGoesNegative() {
+        OutboxBudget budget = new OutboxBudget(100);
+        budget.add(OutboxBudget.PRIORITY_GPS_STATUS, 50);
+        budget.remove(OutboxBudget.PRIORITY_GPS_STATUS, 80);
+
+        assertEquals(0, budget.getPendingBytes(OutboxBudget.PRIORITY_GPS_STATUS));
+        assertEquals(0, budget.getTotalBytes());
+    }
+
+    @Test
+    public void priorityOfSystemEvent_classifiesGpsStatus() {
+        assertEquals(OutboxBudget.PRIORITY_GPS_STATUS, OutboxBudget.priorityOfSystemEvent("gps_enabled"));
+        assertEquals(OutboxBudget.PRIORITY_GPS_STATUS, OutboxBudget.priorityOfSystemEvent("gps_disabled"));
+        assertEquals(OutboxBudget.PRIORITY_DIAGNOSTIC, OutboxBudget.priorityOfSystemEvent("service_restart"));
+        assertEquals(OutboxBudget.PRIORITY_DIAGNOSTIC, OutboxBudget.priorityOfSystemEvent(null));
+    }
+}
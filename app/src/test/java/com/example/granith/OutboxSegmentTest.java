@@ -0,0 +1,25 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OutboxSegmentTest {
+    private static final long DAY = OutboxDatabase.SEGMENT_MS;
+
+    @Test
+    public void segmentOf_splitsAtUtcMidnight() {
+        assertEquals(0, OutboxDatabase.segmentOf(0));
+        assertEquals(0, OutboxDatabase.segmentOf(DAY - 1));
+        assertEquals(1, OutboxDatabase.segmentOf(DAY));
+        assertEquals(20000, OutboxDatabase.segmentOf(20000 * DAY + 12345));
+    }
+
+    @Test
+    public void segmentOf_negativeTimestampRoundsDown() {
+        // Relógio antes de 1970 não pode cair no segmento 0 (floorDiv, não divisão inteira)
+        assertEquals(-1, OutboxDatabase.segmentOf(-1));
+        assertEquals(-1, OutboxDatabase.segmentOf(-DAY));
+        assertEquals(-2, OutboxDatabase.segmentOf(-DAY - 1));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PassiveLocationModeTest {
+    private static final long STALENESS = 20 * 60 * 1000;
+
+    @Test
+    public void staleness_startsFallbackOnce() {
+        PassiveLocationMode mode = new PassiveLocationMode(STALENESS);
+        mode.enter(0);
+
+        assertFalse(mode.shouldStartFallback(STALENESS - 1));
+        assertTrue(mode.shouldStartFallback(STALENESS));
+        assertFalse(mode.shouldStartFallback(STALENESS + 1000));
+        assertTrue(mode.isFallbackActive());
+        assertEquals(1, mode.getFallbackStartCount());
+    }
+
+    @Test
+    public void fixDuringFallback_returnsToPassive() {
+        PassiveLocationMode mode = new PassiveLocationMode(STALENESS);
+        mode.enter(0);
+        mode.shouldStartFallback(STALENESS);
+
+        assertTrue(mode.onFix(STALENESS + 5000));
+        assertFalse(mode.isFallbackActive());
+        assertTrue(mode.isActive());
+
+        // O prazo recomeça a partir do último fix
+        assertFalse(mode.shouldStartFallback(2 * STALENESS));
+        assertTrue(mode.shouldStartFallback(2 * STALENESS + 5000));
+    }
+
+    @Test
+    public void passiveFixes_resetStaleness() {
+        PassiveLocationMode mode = new PassiveLocationMode(STALENESS);
+        mode.enter(0);
+
+        assertFalse(mode.onFix(STALENESS - 1000));
+        assertFalse(mode.shouldStartFallback(STALENESS));
+        assertEquals(1.0, mode.getPassiveShare(), 0.0001);
+    }
+
+    @Test
+    public void exit_stopsFallbackAndCountsActiveFixes() {
+        PassiveLocationMode mode = new PassiveLocationMode(STALENESS);
+        mode.enter(0);
+        mode.onFix(1000);
+        mode.shouldStartFallback(STALENESS + 1000);
+
+        mode.exit();
+        assertFalse(mode.isActive());
+        assertFalse(mode.isFallbackActive());
+        assertFalse(mode.shouldStartFallback(10 * STALENESS));
+
+        assertFalse(mode.onFix(10 * STALENESS));
+        assertEquals(0.5, mode.getPassiveShare(), 0.0001);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PrecisionControllerTest {
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void dwell_holdsStateUntilMinimumElapsed() {
+        PrecisionController controller = new PrecisionController(PrecisionState.LOW, 0);
+
+        // Borda a 5 m pede HIGH, mas LOW exige 3 minutos
+        assertEquals(PrecisionState.LOW, controller.evaluate(5, MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(5, 2 * MINUTE));
+        assertEquals(PrecisionState.HIGH, controller.evaluate(5, 3 * MINUTE));
+        assertEquals(1, controller.getReregistrationCount());
+    }
+
+    @Test
+    public void hysteresis_usesSeparateEnterAndLeaveThresholds() {
+        PrecisionController controller = new PrecisionController(PrecisionState.HIGH, 0);
+
+        // HIGH só sai acima de 30 m fora ou abaixo de 15 m dentro
+        assertEquals(PrecisionState.HIGH, controller.evaluate(25, 10 * MINUTE));
+        assertEquals(PrecisionState.HIGH, controller.evaluate(-10, 11 * MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(35, 12 * MINUTE));
+
+        // VERY_LOW entra acima de 400 m e só sai abaixo de 300 m
+        assertEquals(PrecisionState.LOW, controller.evaluate(350, 20 * MINUTE));
+        assertEquals(PrecisionState.VERY_LOW, controller.evaluate(450, 21 * MINUTE));
+        assertEquals(PrecisionState.VERY_LOW, controller.evaluate(350, 30 * MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(250, 31 * MINUTE));
+        assertEquals(3, controller.getReregistrationCount());
+    }
+
+    @Test
+    public void avoided_countsEachSuppressedChangeOnce() {
+        PrecisionController controller = new PrecisionController(PrecisionState.LOW, 0);
+
+        for (int i = 0; i < 10; i++) {
+            controller.evaluate(5, i * 1000);
+        }
+        assertEquals(1, controller.getAvoidedReregistrationCount());
+
+        // Outro destino é outra troca evitada
+        controller.evaluate(450, 20 * 1000);
+        controller.evaluate(450, 21 * 1000);
+        assertEquals(2, controller.getAvoidedReregistrationCount());
+
+        // Voltar ao estado atual encerra a supressão; pedir de novo conta de novo
+        controller.evaluate(100, 22 * 1000);
+        controller.evaluate(5, 23 * 1000);
+        assertEquals(3, controller.getAvoidedReregistrationCount());
+        assertEquals(0, controller.getReregistrationCount());
+    }
+
+    @Test
+    public void hourlyLimit_suppressesUntilWindowSlides() {
+        PrecisionController controller = new PrecisionController(PrecisionState.LOW, 0, 2);
+
+        assertEquals(PrecisionState.HIGH, controller.evaluate(5, 3 * MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(100, 6 * MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(5, 10 * MINUTE));
+        assertEquals(PrecisionState.LOW, controller.evaluate(5, 30 * MINUTE));
+        assertEquals(1, controller.getAvoidedReregistrationCount());
+
+        // A troca de 3 min sai da janela de uma hora
+        assertEquals(PrecisionState.HIGH, controller.evaluate(5, 64 * MINUTE));
+        assertEquals(3, controller.getReregistrationCount());
+    }
+
+    @Test
+    public void seed_bypassesDwellUntilFirstEvaluation() {
+        PrecisionController controller = new PrecisionController(PrecisionState.HIGH, 0);
+
+        // Semente longe de tudo: sai de HIGH na hora
+        assertEquals(PrecisionState.VERY_LOW, controller.seed(1000, 1000));
+        assertEquals(0, controller.getAvoidedReregistrationCount());
+
+        // Uma semente mais recente ainda pode corrigir a escolha
+        assertEquals(PrecisionState.LOW, controller.seed(100, 2000));
+
+        // Depois da primeira avaliação real a semente não tem efeito
+        assertEquals(PrecisionState.LOW, controller.evaluate(100, 3000));
+        assertEquals(PrecisionState.LOW, controller.seed(1000, 4000));
+    }
+}
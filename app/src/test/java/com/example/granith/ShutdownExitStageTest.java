@@ -0,0 +1,112 @@
+package com.example.granith;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShutdownExitStageTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "shutdown_exit.stage");
+    }
+
+    private static GeofenceEventEntity exit(String geofenceName) throws Exception {
+        JSONObject json = new JSONObject();
+        json.put("event_type", ShutdownExitStage.EXIT_EVENT_TYPE);
+        json.put("latitude", -23.55);
+        json.put("longitude", -46.63);
+        json.put("geofence_name", geofenceName);
+        json.put("user_name", "Ana");
+        json.put("is_automatic_exit", true);
+        return GeofenceEventEntity.fromJson(json);
+    }
+
+    @Test
+    public void commit_patchesTimestampAndReason() throws Exception {
+        ShutdownExitStage stage = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        assertTrue(stage.stage(Arrays.asList(exit("Obra A"), exit("Obra B")), 1000L));
+        assertEquals(ShutdownExitStage.STATE_STAGED, stage.getState());
+        assertTrue(stage.getCommittedExits().isEmpty());
+
+        assertTrue(stage.commit(50000L, "Desligamento do Dispositivo"));
+
+        // Reabre como na próxima inicialização
+        ShutdownExitStage reopened = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        List<JSONObject> exits = reopened.getCommittedExits();
+        assertEquals(2, exits.size());
+        assertEquals("Obra A", exits.get(0).getString("geofence_name"));
+        assertEquals(50000L, exits.get(0).getLong("timestamp"));
+        assertEquals("Desligamento do Dispositivo", exits.get(0).getString("shutdown_cause"));
+        assertTrue(exits.get(0).getBoolean("is_automatic_exit"));
+        assertEquals(-23.55, exits.get(1).getDouble("latitude"), 1e-6);
+    }
+
+    @Test
+    public void commit_withoutStagedExits_onlyRecordsShutdown() throws Exception {
+        ShutdownExitStage stage = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        stage.stage(Collections.singletonList(exit("Obra A")), 1000L);
+        stage.stage(Collections.<GeofenceEventEntity>emptyList(), 2000L);
+        assertFalse(stage.hasShutdownRecord());
+
+        assertFalse(stage.commit(50000L, "Desligamento do Dispositivo"));
+
+        ShutdownExitStage reopened = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        assertEquals(ShutdownExitStage.STATE_EMPTY, reopened.getState());
+        assertTrue(reopened.getCommittedExits().isEmpty());
+        assertTrue(reopened.hasShutdownRecord());
+        assertEquals(50000L, reopened.getExitTimestamp());
+        assertEquals("Desligamento do Dispositivo", reopened.getCommittedReason());
+
+        reopened.clear();
+        assertFalse(reopened.hasShutdownRecord());
+    }
+
+    @Test
+    public void committedExits_areKeptUntilCleared() throws Exception {
+        ShutdownExitStage stage = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        stage.stage(Collections.singletonList(exit("Obra A")), 1000L);
+        stage.commit(50000L, "Saída por Reinicialização");
+
+        // Uma nova preparação ou um segundo desligamento não sobrescrevem o registro confirmado
+        assertFalse(stage.stage(Collections.singletonList(exit("Obra B")), 60000L));
+        assertFalse(stage.commit(70000L, "Desligamento do Dispositivo"));
+        assertEquals("Obra A", stage.getCommittedExits().get(0).getString("geofence_name"));
+        assertEquals("Saída por Reinicialização", stage.getCommittedReason());
+
+        stage.clear();
+        assertTrue(stage.getCommittedExits().isEmpty());
+        assertTrue(stage.stage(Collections.singletonList(exit("Obra B")), 80000L));
+    }
+
+    @Test
+    public void unknownReason_keepsExitWithoutCause() throws Exception {
+        ShutdownExitStage stage = new ShutdownExitStage(file, ShutdownExitStage.DEFAULT_CAPACITY);
+        stage.stage(Collections.singletonList(exit("Obra A")), 1000L);
+        stage.commit(50000L, "Bateria 2.0%");
+
+        JSONObject exit = stage.getCommittedExits().get(0);
+        assertNull(stage.getCommittedReason());
+        assertFalse(exit.has("shutdown_cause"));
+    }
+
+    @Test
+    public void oversizedStage_isRejected() throws Exception {
+        ShutdownExitStage stage = new ShutdownExitStage(file, 16);
+        assertFalse(stage.stage(Arrays.asList(exit("Obra A"), exit("Obra B")), 1000L));
+        assertEquals(ShutdownExitStage.STATE_EMPTY, stage.getState());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.granith;
+
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StateStoreTest {
+    private static final long FLUSH_DELAY = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private List<Runnable> scheduled;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "state.bin");
+        scheduled = new ArrayList<>();
+    }
+
+    private StateStore newStore() {
+        return new StateStore(file, FLUSH_DELAY, (task, delayMs) -> scheduled.add(task), Runnable::run);
+    }
+
+    private void runScheduled() {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        for (Runnable task : tasks) task.run();
+    }
+
+    @Test
+    public void apply_coalescesEditsIntoOneDiskWrite() {
+        StateStore store = newStore();
+        SharedPreferences device = store.getPreferences(StateStore.DEVICE_STATE);
+        SharedPreferences state = store.getPreferences(StateStore.GEOFENCE_STATE);
+
+        device.edit().putInt("last_battery_level", 80).apply();
+        device.edit().putInt("last_battery_level", 79).apply();
+        state.edit().putString("last_geofence_name", "Obra A").apply();
+
+        assertEquals(1, scheduled.size());
+        assertEquals(0, store.getDiskWriteCount());
+        runScheduled();
+        assertEquals(1, store.getDiskWriteCount());
+        assertEquals(3, store.getTransactionCount());
+    }
+
+    @Test
+    public void commit_writesImmediatelyAndSurvivesReopen() {
+        StateStore store = newStore();
+        store.getPreferences(StateStore.DEVICE_STATE).edit()
+                .putBoolean("shutdown_processed", true)
+                .putLong("last_shutdown_timestamp", 1234L)
+                .putString("last_shutdown_reason", "Desligamento Manual")
+                .putFloat("accuracy", 4.5f)
+                .putStringSet("tags", new HashSet<>(Arrays.asList("a", "b")))
+                .commit();
+        assertEquals(1, store.getDiskWriteCount());
+
+        SharedPreferences reopened = newStore().getPreferences(StateStore.DEVICE_STATE);
+        assertTrue(reopened.getBoolean("shutdown_processed", false));
+        assertEquals(1234L, reopened.getLong("last_shutdown_timestamp", 0));
+        assertEquals("Desligamento Manual", reopened.getString("last_shutdown_reason", null));
+        assertEquals(4.5f, reopened.getFloat("accuracy", 0), 0);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), reopened.getStringSet("tags", null));
+    }
+
+    @Test
+    public void namespaces_areIsolated() {
+        StateStore store = newStore();
+        store.getPreferences(StateStore.GEOFENCE).edit().putLong("Obra A_lat", 1L).apply();
+        store.getPreferences(StateStore.APP).edit().putString("USER_NAME", "Ana").apply();
+
+        assertEquals(1, store.getPreferences(StateStore.GEOFENCE).getAll().size());
+        assertFalse(store.getPreferences(StateStore.GEOFENCE).contains("USER_NAME"));
+
+        store.getPreferences(StateStore.GEOFENCE).edit().clear().commit();
+        assertTrue(store.getPreferences(StateStore.GEOFENCE).getAll().isEmpty());
+        assertEquals("Ana", store.getPreferences(StateStore.APP).getString("USER_NAME", null));
+    }
+
+    @Test
+    public void listeners_receiveOnlyChangedKeys() {
+        StateStore store = newStore();
+        SharedPreferences prefs = store.getPreferences(StateStore.GEOFENCE_STATE);
+        List<String> changed = new ArrayList<>();
+        prefs.registerOnSharedPreferenceChangeListener((p, key) -> changed.add(key));
+
+        prefs.edit().putString("last_geofence_name", "Obra A").putString("last_event_type", "Entrada Confirmada").apply();
+        prefs.edit().putString("last_geofence_name", "Obra A").apply();
+        prefs.edit().remove("last_event_type").apply();
+
+        // Chaves da mesma edição chegam sem ordem garantida; o put sem alteração não notifica
+        assertEquals(3, changed.size());
+        assertEquals(new HashSet<>(Arrays.asList("last_geofence_name", "last_event_type")),
+                new HashSet<>(changed.subList(0, 2)));
+        assertEquals("last_event_type", changed.get(2));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StationaryDetectorTest {
+    private static final long MINUTE = 60 * 1000;
+    private static final double LAT = -23.55;
+    private static final double LNG = -46.63;
+
+    @Test
+    public void stillFixes_becomeStationaryAfterHalfWindow() {
+        StationaryDetector detector = new StationaryDetector();
+
+        // Variação de ~2 m com precisão de 10 m
+        for (int i = 0; i < 5; i++) {
+            assertFalse(detector.addFix(LAT + (i % 2) * 0.00002, LNG, 10, i * MINUTE));
+        }
+        assertFalse(detector.isStationary());
+        assertTrue(detector.addFix(LAT, LNG, 10, 5 * MINUTE));
+        assertTrue(detector.isStationary());
+    }
+
+    @Test
+    public void movingFixes_neverBecomeStationary() {
+        StationaryDetector detector = new StationaryDetector();
+
+        // ~50 m por minuto
+        for (int i = 0; i < 12; i++) {
+            detector.addFix(LAT + i * 0.00045, LNG, 10, i * MINUTE);
+        }
+        assertFalse(detector.isStationary());
+    }
+
+    @Test
+    public void significantDisplacement_exitsImmediately() {
+        StationaryDetector detector = new StationaryDetector();
+        for (int i = 0; i <= 5; i++) {
+            detector.addFix(LAT, LNG, 10, i * MINUTE);
+        }
+        assertTrue(detector.isStationary());
+
+        // 30 m fica dentro do limite de 50 m
+        assertFalse(detector.addFix(LAT + 0.00027, LNG, 10, 6 * MINUTE));
+        assertTrue(detector.isStationary());
+
+        // ~100 m encerra o estado parado no mesmo fix
+        assertTrue(detector.addFix(LAT + 0.0009, LNG, 10, 7 * MINUTE));
+        assertFalse(detector.isStationary());
+    }
+
+    @Test
+    public void coarseFix_needsLargerDisplacementToExit() {
+        StationaryDetector detector = new StationaryDetector();
+        for (int i = 0; i <= 5; i++) {
+            detector.addFix(LAT, LNG, 10, i * MINUTE);
+        }
+
+        // Com precisão de 100 m o limite passa a 200 m
+        assertFalse(detector.addFix(LAT + 0.0009, LNG, 100, 6 * MINUTE));
+        assertTrue(detector.isStationary());
+    }
+}
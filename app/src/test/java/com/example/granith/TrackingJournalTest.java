@@ -0,0 +1,155 @@
+package com.example.granith;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TrackingJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TrackingJournal.Entry entry(String geofenceName, long timestamp) {
+        return new TrackingJournal.Entry(geofenceName, "OBRA-1", -23.55, -46.63, "Ana", "empresa-1", timestamp);
+    }
+
+    @Test
+    public void reopen_replaysEntriesAndPendingCounters() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordSessionStart("boot-1", 1000);
+        journal.recordEntry(entry("Obra Centro", 2000));
+        journal.recordPending(new TrackingJournal.Pending("Obra Norte", true, 2, 3000), 3500);
+        journal.close();
+
+        TrackingJournal reopened = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        TrackingJournal.State state = reopened.getState();
+        assertEquals("boot-1", state.bootId);
+        assertEquals(3, state.replayedRecords);
+        assertEquals(3500, state.lastTimestamp);
+
+        TrackingJournal.Entry restored = state.entered.get("Obra Centro");
+        assertNotNull(restored);
+        assertEquals("OBRA-1", restored.geofenceCode);
+        assertEquals("Ana", restored.userName);
+        assertEquals(2000, restored.timestamp);
+
+        assertEquals(1, state.pending.size());
+        TrackingJournal.Pending pending = state.pending.values().iterator().next();
+        assertEquals("Obra Norte", pending.geofenceName);
+        assertTrue(pending.isEntry);
+        assertEquals(2, pending.counter);
+        assertEquals(3000, pending.firstTimestamp);
+        reopened.close();
+    }
+
+    @Test
+    public void exit_removesEntryAndClearsPending() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordEntry(entry("Obra Centro", 1000));
+        journal.recordPending(new TrackingJournal.Pending("Obra Centro", false, 1, 2000), 2000);
+        journal.recordExit("Obra Centro", 3000);
+        journal.close();
+
+        TrackingJournal.State state = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY).getState();
+        assertTrue(state.entered.isEmpty());
+        assertTrue(state.pending.isEmpty());
+        assertEquals(3000, state.lastTimestamp);
+    }
+
+    @Test
+    public void checkpoint_boundsReplayToLaterRecords() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordSessionStart("boot-1", 1000);
+        for (int i = 0; i < 100; i++) {
+            journal.recordEntry(entry("Obra " + (i % 5), 2000 + i));
+            journal.recordExit("Obra " + (i % 5), 2000 + i);
+        }
+        journal.recordEntry(entry("Obra Centro", 5000));
+        journal.checkpoint();
+        journal.recordEntry(entry("Obra Norte", 6000));
+        journal.recordExit("Obra Centro", 7000);
+        journal.close();
+
+        TrackingJournal.State state = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY).getState();
+        // Só os registros depois do checkpoint são reaplicados
+        assertEquals(2, state.replayedRecords);
+        assertEquals("boot-1", state.bootId);
+        assertEquals(1, state.entered.size());
+        assertTrue(state.entered.containsKey("Obra Norte"));
+        assertEquals(7000, state.lastTimestamp);
+    }
+
+    @Test
+    public void checkpoint_isWrittenEveryNRecords() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, 4);
+        for (int i = 0; i < 10; i++) {
+            journal.recordPending(new TrackingJournal.Pending("Obra Centro", true, i + 1, 1000), 1000 + i);
+        }
+        assertEquals(2, journal.getRecordsSinceCheckpoint());
+        journal.close();
+
+        TrackingJournal.State state = new TrackingJournal(dir, 4).getState();
+        assertEquals(2, state.replayedRecords);
+        assertEquals(10, state.pending.values().iterator().next().counter);
+        assertEquals(10, state.sequence);
+    }
+
+    @Test
+    public void checkpoint_keepsPreviousAsFallback() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordEntry(entry("Obra Centro", 1000));
+        journal.checkpoint();
+        journal.recordEntry(entry("Obra Norte", 2000));
+        journal.checkpoint();
+        journal.close();
+        assertTrue(new File(dir, "checkpoint.prev").exists());
+
+        // Checkpoint atual corrompido: usa o anterior em vez de começar vazio
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "checkpoint.bin"))) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        TrackingJournal.State state = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY).getState();
+        assertEquals(1, state.entered.size());
+        assertTrue(state.entered.containsKey("Obra Centro"));
+    }
+
+    @Test
+    public void checkpoint_interruptedBetweenRenames_replaysJournalOverPrevious() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordEntry(entry("Obra Centro", 1000));
+        journal.checkpoint();
+        journal.recordEntry(entry("Obra Norte", 2000));
+        journal.close();
+
+        // Checkpoint atual já guardado como anterior, novo ainda não no lugar
+        assertTrue(new File(dir, "checkpoint.bin").renameTo(new File(dir, "checkpoint.prev")));
+        TrackingJournal.State state = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY).getState();
+        assertEquals(2, state.entered.size());
+        assertEquals(1, state.replayedRecords);
+    }
+
+    @Test
+    public void pendingCleared_withoutPendingWritesNothing() throws Exception {
+        File dir = folder.newFolder("journal");
+        TrackingJournal journal = new TrackingJournal(dir, TrackingJournal.DEFAULT_CHECKPOINT_EVERY);
+        journal.recordPendingCleared("Obra Centro", 1000);
+        assertEquals(0, journal.getRecordsSinceCheckpoint());
+        assertTrue(journal.getState().isEmpty());
+
+        journal.recordPending(new TrackingJournal.Pending("Obra Centro", true, 1, 1000), 1000);
+        journal.recordPendingCleared("Obra Centro", 2000);
+        assertEquals(2, journal.getRecordsSinceCheckpoint());
+        assertTrue(journal.getState().pending.isEmpty());
+        journal.close();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.granith;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WarmStartEstimatorTest {
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void freshAccurateSeed_canVote() {
+        double confidence = WarmStartEstimator.confidence(10, 30 * 1000, 200);
+        assertTrue(confidence >= WarmStartEstimator.VOTE_CONFIDENCE);
+    }
+
+    @Test
+    public void confidence_fallsWithAgeAndAccuracy() {
+        double fresh = WarmStartEstimator.confidence(20, MINUTE, 100);
+        double older = WarmStartEstimator.confidence(20, 15 * MINUTE, 100);
+        double coarse = WarmStartEstimator.confidence(80, MINUTE, 100);
+
+        assertTrue(older < fresh);
+        assertTrue(coarse < fresh);
+        // Metade da vida útil e precisão de 20% do raio: 0.5 * 0.8
+        assertEquals(0.4, older, 0.0001);
+        assertTrue(older >= WarmStartEstimator.PRECISION_CONFIDENCE);
+        assertTrue(older < WarmStartEstimator.VOTE_CONFIDENCE);
+    }
+
+    @Test
+    public void unusableSeeds_haveZeroConfidence() {
+        assertEquals(0, WarmStartEstimator.confidence(10, WarmStartEstimator.MAX_USEFUL_AGE_MS, 100), 0);
+        assertEquals(0, WarmStartEstimator.confidence(10, -1, 100), 0);
+        assertEquals(0, WarmStartEstimator.confidence(0, MINUTE, 100), 0);
+        // Precisão pior que o raio
+        assertEquals(0, WarmStartEstimator.confidence(150, MINUTE, 100), 0);
+    }
+
+    @Test
+    public void withoutGeofences_onlyAgeCounts() {
+        assertEquals(0.5, WarmStartEstimator.confidence(500, 15 * MINUTE, 0), 0.0001);
+    }
+}